@@ -213,6 +213,11 @@ public class DBDatabaseEntry {
 	 * Should we use typed relationships in Neo4j databases
 	 */
 	@Getter @Setter private boolean neo4jTypedRelationship = false;
+	
+	/**
+	 * In case of PostGreSQL database, should we export the models content using COPY requests rather than JDBC batches
+	 */
+	@Getter @Setter private boolean postgresqlCopyMode = false;
 
 
 	/**
@@ -378,6 +383,8 @@ public class DBDatabaseEntry {
 				databaseEntry.setNeo4jNativeMode(store.getBoolean(preferenceName+"_neo4j-native-mode_"+String.valueOf(line)));
 				databaseEntry.setShouldEmptyNeo4jDB(store.getBoolean(preferenceName+"_neo4j-empty-database_"+String.valueOf(line)));
 				databaseEntry.setNeo4jTypedRelationship(store.getBoolean(preferenceName+"_neo4j-typed-relationships_"+String.valueOf(line)));
+				
+				databaseEntry.setPostgresqlCopyMode(store.getBoolean(preferenceName+"_postgresql-copy-mode_"+String.valueOf(line)));
 					
 				databaseEntry.setSchema(store.getString(preferenceName+"_schema_"+String.valueOf(line)));
 				
@@ -445,6 +452,7 @@ public class DBDatabaseEntry {
 			store.setValue(DBDatabaseEntry.preferenceName + "_neo4j-native-mode_"			+ indexString, false);
 			store.setValue(DBDatabaseEntry.preferenceName + "_neo4j-empty-database_"		+ indexString, false);
 			store.setValue(DBDatabaseEntry.preferenceName + "_neo4j-typed-relationships_"	+ indexString, false);
+			store.setValue(DBDatabaseEntry.preferenceName + "_postgresql-copy-mode_"		+ indexString, false);
 			store.setValue(DBDatabaseEntry.preferenceName + "_isExpertMode_"				+ indexString, false);
 			store.setValue(DBDatabaseEntry.preferenceName + "_jdbcConnectionString_"		+ indexString, "");
 		}
@@ -462,6 +470,7 @@ public class DBDatabaseEntry {
 		String indexString = String.valueOf(getIndex());
 		boolean isNeo4j = getDriver().equals(DBDatabase.NEO4J.getDriverName());
 		boolean isSqlite = getDriver().equals(DBDatabase.SQLITE.getDriverName());
+		boolean isPostgresql = getDriver().equals(DBDatabase.POSTGRESQL.getDriverName());
 		
 		store.setValue(DBDatabaseEntry.preferenceName + "_id_" +                        indexString, getId());
 		store.setValue(DBDatabaseEntry.preferenceName + "_name_" +                      indexString, getName());
@@ -483,6 +492,8 @@ public class DBDatabaseEntry {
 		store.setValue(DBDatabaseEntry.preferenceName + "_neo4j-empty-database_" +      indexString, isNeo4j ? shouldEmptyNeo4jDB() : false);
 		store.setValue(DBDatabaseEntry.preferenceName + "_neo4j-typed-relationships_" + indexString, isNeo4j ? isNeo4jTypedRelationship() : false);
 		
+		store.setValue(DBDatabaseEntry.preferenceName + "_postgresql-copy-mode_" +      indexString, isPostgresql ? isPostgresqlCopyMode() : false);
+		
 		store.setValue(DBDatabaseEntry.preferenceName + "_schema_" +                    indexString, isNeo4j ? ""    : getSchema());
 		store.setValue(DBDatabaseEntry.preferenceName + "_export-views-images_" +       indexString, isNeo4j ? false : isViewSnapshotRequired());
 		store.setValue(DBDatabaseEntry.preferenceName + "_views-images-border-width_" + indexString, isNeo4j ? 0     : getViewsImagesBorderWidth());
@@ -0,0 +1,88 @@
+package org.archicontribs.database;
+
+import java.util.List;
+
+import org.archicontribs.database.data.DBDatabase;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Setter;
+
+/**
+ * Secondary index required by the requests of the plugin
+ *
+ * @author Herve
+ *
+ */
+@AllArgsConstructor()
+@Getter
+@Setter
+public class DBIndex {
+	String schema;
+	@NonNull String name;
+	@NonNull String tableName;
+	@NonNull List<String> columns;
+
+	/**
+	 * @return
+	 */
+	public String getFullTableName() {
+		StringBuilder fullName = new StringBuilder();
+		if ( !DBPlugin.isEmpty(this.schema) ) {
+			fullName.append(this.schema);
+			fullName.append(".");
+		}
+		fullName.append(this.tableName);
+
+		return fullName.toString();
+	}
+
+	/**
+	 * @param existingIndexes the columns of the indexes that exist on the table
+	 * @return true if one of the existing indexes starts with the columns of this index
+	 */
+	public boolean isCoveredBy(List<List<String>> existingIndexes) {
+		for ( List<String> existingColumns: existingIndexes ) {
+			if ( existingColumns.size() < this.columns.size() )
+				continue;
+
+			boolean isCovered = true;
+			for ( int i = 0 ; i < this.columns.size() ; ++i ) {
+				if ( !this.columns.get(i).equalsIgnoreCase(existingColumns.get(i)) ) {
+					isCovered = false;
+					break;
+				}
+			}
+			if ( isCovered )
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param driver the database driver
+	 * @return
+	 */
+	public String generateCreateStatement(String driver) {
+		StringBuilder createRequest = new StringBuilder("CREATE INDEX ");
+		// Oracle creates the index in the schema of the user, the other databases create it with its table
+		if ( DBPlugin.areEqual(driver, DBDatabase.ORACLE.getDriverName()) && !DBPlugin.isEmpty(this.schema) ) {
+			createRequest.append(this.schema);
+			createRequest.append(".");
+		}
+		createRequest.append(this.name);
+		createRequest.append(" ON ");
+		createRequest.append(getFullTableName());
+		createRequest.append(" (");
+		createRequest.append(String.join(", ", this.columns));
+		createRequest.append(")");
+
+		return createRequest.toString();
+	}
+
+	@Override
+	public String toString() {
+		return this.name+" on "+this.tableName+" ("+String.join(", ", this.columns)+")";
+	}
+}
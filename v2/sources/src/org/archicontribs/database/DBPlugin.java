@@ -14,12 +14,14 @@ import java.util.UUID;
 
 import org.apache.log4j.Level;
 import org.archicontribs.database.GUI.DBGui;
+import org.archicontribs.database.connection.DBConnectionPool;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.jface.preference.IPersistentPreferenceStore;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.eclipse.ui.preferences.ScopedPreferenceStore;
+import org.osgi.framework.BundleContext;
 
 import com.archimatetool.model.IIdentifier;
 
@@ -466,6 +468,16 @@ public class DBPlugin extends AbstractUIPlugin {
 		preferenceStore.setDefault("traceSQL",                true);
 		preferenceStore.setDefault("checkMaxMemory",          true);
 		preferenceStore.setDefault("checkNotNullConstraints", true);
+		preferenceStore.setDefault("exportBatchSize",         500);
+		preferenceStore.setDefault("preparedStatementCacheSize", 100);
+		preferenceStore.setDefault("importViewsInSinglePass", true);
+		preferenceStore.setDefault("exportImagesThreads",     2);
+		preferenceStore.setDefault("connectionPoolMaxSize",   4);
+		preferenceStore.setDefault("connectionPoolIdleTimeout", 300);
+		preferenceStore.setDefault("compareVersionsInTemporaryTable", true);
+		preferenceStore.setDefault("maxBlobSize",             64);
+		preferenceStore.setDefault("importImagesOnDemand",    false);
+		preferenceStore.setDefault("useSearchIndex",          true);
 		preferenceStore.setDefault("copySuffix",              " (copy)");
 		preferenceStore.setDefault("defaultImportMode",       "template");
 		preferenceStore.setDefault("loggerMode",		      "disabled");
@@ -569,6 +581,15 @@ public class DBPlugin extends AbstractUIPlugin {
 		}
 	}
 
+	/**
+	 * Called when Archi stops: we close the database connections that are still opened in the connection pool
+	 */
+	@Override
+	public void stop(BundleContext context) throws Exception {
+		DBConnectionPool.closeAll();
+		super.stop(context);
+	}
+
 	@Override
 	public IPersistentPreferenceStore getPreferenceStore() {
 		if (preferenceStore == null) {
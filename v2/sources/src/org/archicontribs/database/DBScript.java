@@ -4,15 +4,15 @@ import java.util.List;
 
 import org.archicontribs.database.connection.DBDatabaseConnection;
 import org.archicontribs.database.connection.DBDatabaseImportConnection;
+import org.archicontribs.database.connection.DBImportModelJob;
 import org.archicontribs.database.model.DBArchimateFactory;
 import org.archicontribs.database.model.DBArchimateModel;
-import org.archicontribs.database.model.DBMetadata;
+import org.archicontribs.database.model.DBArchiveManager;
 import org.eclipse.gef.commands.CommandStack;
 
 import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.model.IArchimateModel;
-import com.archimatetool.model.IDiagramModel;
 
 /**
  * This class is an API for the script plugin 
@@ -78,59 +78,11 @@ public class DBScript {
 	        modelToImport.setName(modelName);
 	        
 	        // awe create the model's archive manager
-	        modelToImport.setAdapter(IArchiveManager.class, IArchiveManager.FACTORY.createArchiveManager(modelToImport));
+	        modelToImport.setAdapter(IArchiveManager.class, DBArchiveManager.createArchiveManager(modelToImport, connection.getDatabaseEntry()));
 	        
 	        try {
 	        	// at last, we import the model
-	            connection.importModel(modelToImport);
-	        
-	            if ( logger.isDebugEnabled() ) logger.debug("Importing the folders ...");
-	            connection.prepareImportFolders(modelToImport);
-	            while ( connection.importFolders(modelToImport) ) {
-	                // each loop imports a folder
-	            }
-	            
-	            if ( logger.isDebugEnabled() ) logger.debug("Importing the elements ...");
-	            connection.prepareImportElements(modelToImport);
-	            while ( connection.importElements(modelToImport) ) {
-	                // each loop imports an element
-	            }
-	            
-	            if ( logger.isDebugEnabled() ) logger.debug("Importing the relationships ...");
-	            connection.prepareImportRelationships(modelToImport);
-	            while ( connection.importRelationships(modelToImport) ) {
-	                // each loop imports a relationship
-	            }
-	            
-	            modelToImport.resolveSourceAndTargetRelationships();
-	            
-	            if ( logger.isDebugEnabled() ) logger.debug("Importing the views ...");
-	            connection.prepareImportViews(modelToImport);
-	            while ( connection.importViews(modelToImport) ) {
-	                // each loop imports a view
-	            }
-	            
-	            if ( logger.isDebugEnabled() ) logger.debug("Importing the views objects ...");
-	            for (IDiagramModel view: modelToImport.getAllViews().values()) {
-	                connection.prepareImportViewsObjects(view.getId(), DBMetadata.getDBMetadata(view).getInitialVersion().getVersion());
-	                while ( connection.importViewsObjects(modelToImport, view) ) {
-	                    // each loop imports a view object
-	                }
-	            }
-	            
-	            if ( logger.isDebugEnabled() ) logger.debug("Importing the views connections ...");
-	            for (IDiagramModel view: modelToImport.getAllViews().values()) {
-	                connection.prepareImportViewsConnections(view.getId(), DBMetadata.getDBMetadata(view).getInitialVersion().getVersion());
-	                while ( connection.importViewsConnections(modelToImport) ) {
-	                    // each loop imports a view connection
-	                }
-	            }
-	            
-	            modelToImport.resolveSourceAndTargetConnections();
-	    
-	            if ( logger.isDebugEnabled() ) logger.debug("Importing the images ...");
-	            for (String path: connection.getAllImagePaths())
-	                connection.importImage(modelToImport, path);
+	        	new DBImportModelJob(connection, modelToImport, null, 0).importModel();
 	        } catch ( Exception e) {
 	            // in case of an import error, we remove the newly created model, except if we are in force mode
 	            if ( !force ) {
@@ -117,7 +117,13 @@ import lombok.Setter;
 public class DBGui {
     protected static final DBLogger logger = new DBLogger(DBGui.class);
 
-    @Getter @Setter private boolean closedByUser = false;
+    @Getter @Setter private volatile boolean closedByUser = false;
+
+    /**
+     * Thread that imports or exports the model in the background (null if there is none)<br>
+     * While it is running, closing the window only sets the closedByUser flag, that the thread checks between two components.
+     */
+    @Getter @Setter private Thread backgroundThread = null;
 
     protected List<DBDatabaseEntry> databaseEntries;
     protected List<DBDatabaseEntry> comboDatabaseEntries;
@@ -293,6 +299,12 @@ public class DBGui {
                 
                 if ( doIt ) {
                     setClosedByUser(true);
+                    if ( isBackgroundThreadRunning() ) {
+                        // the background thread still uses the database connection, so we just ask it to stop: the transaction is rolled back and the window closed once it has stopped
+                        DBGui.this.btnClose.setEnabled(false);
+                        event.doit = false;
+                        return;
+                    }
                     try {
                         rollbackAndCloseConnection();
                     } catch (SQLException e) {
@@ -545,6 +557,12 @@ public class DBGui {
                 
                 if ( doIt ) {
                     setClosedByUser(true);
+                    if ( isBackgroundThreadRunning() ) {
+                        // the background thread still uses the database connection, so we just ask it to stop: the transaction is rolled back and the window closed once it has stopped
+                        DBGui.this.btnClose.setEnabled(false);
+                        event.doit = false;
+                        return;
+                    }
                     try {
                         rollbackAndCloseConnection();
                     } catch (SQLException e) {
@@ -1293,13 +1311,38 @@ public class DBGui {
         refreshDisplay();
     }
 
+    /**
+     * Sets the progressBar selection
+     */
+    public void setProgressBarValue(int value) {
+        if ( this.lblProgressBar != null )
+            this.progressBar.setSelection(value);
+    }
+
     /**
      * Increases the progressBar selection in the SWT thread (thread safe method)
      */
     public void increaseProgressBar() {
         if ( this.lblProgressBar != null )
             this.progressBar.setSelection(this.progressBar.getSelection()+1);
-        refreshDisplay();
+
+        // refreshing the display for each imported or exported component is time consuming, so we refresh it at most every 100 ms
+        long now = System.currentTimeMillis();
+        if ( now - this.lastDisplayRefresh >= 100 ) {
+            this.lastDisplayRefresh = now;
+            refreshDisplay();
+        }
+    }
+
+    private long lastDisplayRefresh = 0;
+
+    /**
+     * Increases the progressBar selection by several steps, without refreshing the display
+     * @param value
+     */
+    public void increaseProgressBar(int value) {
+        if ( (this.lblProgressBar != null) && (value != 0) )
+            this.progressBar.setSelection(this.progressBar.getSelection()+value);
     }
 
     public void setMessage(String message) {
@@ -1404,6 +1447,13 @@ public class DBGui {
         }
     }
 
+    /**
+     * @return true if a background thread is still importing or exporting the model
+     */
+    public boolean isBackgroundThreadRunning() {
+        return (this.backgroundThread != null) && this.backgroundThread.isAlive();
+    }
+
     public boolean isDisposed() {
         return this.dialog==null ? true : this.dialog.isDisposed();
     }
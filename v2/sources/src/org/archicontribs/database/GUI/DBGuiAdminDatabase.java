@@ -64,6 +64,7 @@ public class DBGuiAdminDatabase extends DBGui {
     
     Button btnCheckStructure;
     Button btnCheckContent;
+    Button btnRebuildLatestVersions;
     Button btnDeleteModel;
     //Button btnDeleteVersion;
     
@@ -406,6 +407,18 @@ public class DBGuiAdminDatabase extends DBGui {
             public void widgetDefaultSelected(SelectionEvent e) { widgetSelected(e); }
 		});
 		
+		this.btnRebuildLatestVersions = new Button(this.grpActions, SWT.NONE);
+		this.btnRebuildLatestVersions.setText("Rebuild latest versions");
+		this.btnRebuildLatestVersions.setToolTipText("Recalculates the latest version of all the components.
+
+This is only required if the database content has been modified outside of the plugin.");
+		this.btnRebuildLatestVersions.addSelectionListener(new SelectionListener() {
+			@Override
+            public void widgetSelected(SelectionEvent e) { rebuildLatestVersionsCallback(); }
+			@Override
+            public void widgetDefaultSelected(SelectionEvent e) { widgetSelected(e); }
+		});
+		
 		this.btnDeleteModel = new Button(this.grpActions, SWT.NONE);
 		this.btnDeleteModel.setText("Delete model");
 		this.btnDeleteModel.setToolTipText("Completely delete a whole model and all the components that are not shared with another model\n(shared components will be kept)\n\nBeware, components versions my be recalculated.");
@@ -522,6 +535,47 @@ public class DBGuiAdminDatabase extends DBGui {
 		DBGui.popup(Level.INFO, duplicateObjectsStatus+"\n"+duplicateConnectionsStatus+"\n\nDatabase content successfully checked.");
 	}
 	
+	/**
+	 * Called when the "rebuild latest versions" button has been pressed
+	 */
+	void rebuildLatestVersionsCallback() {
+		try {
+			// we start a new transaction
+			this.importConnection.setAutoCommit(false);
+		} catch (SQLException err) {
+			DBGui.popup(Level.ERROR, "Failed to start a new transaction.", err);
+			return;
+		}
+		
+		int rowCount;
+		logger.info("Rebuilding the latest versions table ...");
+		try {
+			rowCount = this.importConnection.rebuildLatestVersions();
+		} catch (SQLException err) {
+			try {
+				this.importConnection.rollback();
+				this.importConnection.setAutoCommit(true);
+			} catch (SQLException err2) {
+				DBGui.popup(Level.ERROR, "Failed to rebuild the latest versions table.", err);
+				DBGui.popup(Level.FATAL, "Failed to roll back the transaction. We suggest you close Archi and verify your database manually.", err2);
+				return;
+			}
+			
+			DBGui.popup(Level.ERROR, "Failed to rebuild the latest versions table. The transaction has been rolled back.", err);
+			return;
+		}
+		
+		try {
+			this.importConnection.commit();
+			this.importConnection.setAutoCommit(true);
+		} catch (SQLException err) {
+			DBGui.popup(Level.FATAL, "Failed to commit the transaction. We suggest you close Archi and verify your database manually.", err);
+			return;
+		}
+		
+		DBGui.popup(Level.INFO, "The latest version of "+rowCount+" component"+((rowCount == 1)?"":"s")+" has been recalculated.");
+	}
+	
 	/**
 	 * Called when the "delete model" button has been pressed
 	 */
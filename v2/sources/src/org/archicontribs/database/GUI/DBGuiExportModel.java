@@ -15,6 +15,10 @@ import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Level;
 import org.archicontribs.database.DBLogger;
@@ -1172,6 +1176,19 @@ public class DBGuiExportModel extends DBGui {
 		this.txtNewViewConnectionsInModel.setText(this.ZERO); this.txtUpdatedViewConnectionsInModel.setText(this.ZERO); this.txtNewViewConnectionsInDatabase.setText(this.ZERO);  this.txtUpdatedViewConnectionsInDatabase.setText(this.ZERO);  this.txtConflictingViewConnections.setText(this.ZERO);
 	}
 
+	/**
+	 * Sets to zero the text widgets that shows up the new, updated, deleted and conflicting components
+	 */
+	private void resetComparisonTextFields() {
+		this.txtNewElementsInModel.setText(this.ZERO);         this.txtUpdatedElementsInModel.setText(this.ZERO);         this.txtDeletedElementsInModel.setText(this.ZERO);         this.txtNewElementsInDatabase.setText(this.ZERO);          this.txtUpdatedElementsInDatabase.setText(this.ZERO);          this.txtDeletedElementsInDatabase.setText(this.ZERO);        this.txtConflictingElements.setText(this.ZERO);
+		this.txtNewRelationshipsInModel.setText(this.ZERO);    this.txtUpdatedRelationshipsInModel.setText(this.ZERO);    this.txtDeletedRelationshipsInModel.setText(this.ZERO);    this.txtNewRelationshipsInDatabase.setText(this.ZERO);     this.txtUpdatedRelationshipsInDatabase.setText(this.ZERO);     this.txtDeletedRelationshipsInDatabase.setText(this.ZERO);   this.txtConflictingRelationships.setText(this.ZERO);
+		this.txtNewFoldersInModel.setText(this.ZERO);          this.txtUpdatedFoldersInModel.setText(this.ZERO);          this.txtDeletedFoldersInModel.setText(this.ZERO);          this.txtNewFoldersInDatabase.setText(this.ZERO);           this.txtUpdatedFoldersInDatabase.setText(this.ZERO);           this.txtDeletedFoldersInDatabase.setText(this.ZERO);         this.txtConflictingFolders.setText(this.ZERO);
+		this.txtNewViewsInModel.setText(this.ZERO);            this.txtUpdatedViewsInModel.setText(this.ZERO);            this.txtDeletedViewsInModel.setText(this.ZERO);            this.txtNewViewsInDatabase.setText(this.ZERO);             this.txtUpdatedViewsInDatabase.setText(this.ZERO);             this.txtDeletedViewsInDatabase.setText(this.ZERO);           this.txtConflictingViews.setText(this.ZERO);
+		this.txtNewViewObjectsInModel.setText(this.ZERO);      this.txtUpdatedViewObjectsInModel.setText(this.ZERO);      this.txtDeletedViewObjectsInModel.setText(this.ZERO);      this.txtNewViewObjectsInDatabase.setText(this.ZERO);       this.txtUpdatedViewObjectsInDatabase.setText(this.ZERO);       this.txtDeletedViewObjectsInDatabase.setText(this.ZERO);     this.txtConflictingViewObjects.setText(this.ZERO);
+		this.txtNewViewConnectionsInModel.setText(this.ZERO);  this.txtUpdatedViewConnectionsInModel.setText(this.ZERO);  this.txtDeletedViewConnectionsInModel.setText(this.ZERO);  this.txtNewViewConnectionsInDatabase.setText(this.ZERO);   this.txtUpdatedViewConnectionsInDatabase.setText(this.ZERO);   this.txtDeletedViewConnectionsInDatabase.setText(this.ZERO); this.txtConflictingViewConnections.setText(this.ZERO);
+		this.txtNewImagesInModel.setText(this.ZERO);           this.txtNewImagesInDatabase.setText(this.ZERO);
+	}
+
 	/**
 	 * Update the text widgets that shows up the new, updated and deleted components
 	 * 
@@ -1182,22 +1199,8 @@ public class DBGuiExportModel extends DBGui {
 		if ( DBPlugin.areEqual(this.selectedDatabase.getDriver().toLowerCase(), "neo4j") )
 			return true;
 		
-		int progressBarWidth = this.exportedModel.getAllElements().size() + this.exportedModel.getAllRelationships().size() + this.exportedModel.getAllFolders().size() + this.exportedModel.getAllViews().size() + this.exportedModel.getAllViewObjects().size() + this.exportedModel.getAllViewConnections().size();
-		createProgressBar("Comparing the model to the database ...", 1, progressBarWidth);
-
-		try {
-			// we compare the elements, relationships, folders and views
-			this.exportConnection.getAllVersionFromDatabase(this.exportedModel, this);
-		} catch (SQLException err ) {
-			hideProgressBar();
-			popup(Level.FATAL, "Failed to get latest version of components in the database.", err);
-			setActiveAction(STATUS.Error);
-			doShowResult(STATUS.Error, "Error while exporting model.\n"+err.getMessage());
-			return false;
-		}
-
 		// we create the view screenshots if the database is configured to export them
-		hideProgressBar();
+		// (this must be done first as the views checksums, and thus the root of the model's Merkle tree, depend on them)
 		hideGrpDatabase();
 		createProgressBar("Checking if view screenshots are required", 1, this.exportedModel.getAllViews().size());
 		Iterator<Entry<String, IDiagramModel>> screenshotsIterator = this.exportedModel.getAllViews().entrySet().iterator();
@@ -1223,6 +1226,32 @@ public class DBGuiExportModel extends DBGui {
 		}
 		hideProgressBar();
 		showGrpDatabase();
+
+		int progressBarWidth = this.exportedModel.getAllElements().size() + this.exportedModel.getAllRelationships().size() + this.exportedModel.getAllFolders().size() + this.exportedModel.getAllViews().size() + this.exportedModel.getAllViewObjects().size() + this.exportedModel.getAllViewConnections().size();
+		createProgressBar("Comparing the model to the database ...", 1, progressBarWidth);
+
+		try {
+			// if the root of the model's Merkle tree is unchanged, there is no need to compare the components one by one
+			// else, we compare only the components of the folders whose subtree differs from the database
+			Set<String> foldersToCompare = this.exportConnection.getFoldersToCompare(this.exportedModel);
+			if ( (foldersToCompare != null) && foldersToCompare.isEmpty() ) {
+				hideProgressBar();
+				if ( updateTextFields )
+					resetComparisonTextFields();
+				logger.info("The model does not need to be exported to the database.");
+				return true;
+			}
+
+			// we compare the elements, relationships, folders and views
+			this.exportConnection.getAllVersionFromDatabase(this.exportedModel, this, foldersToCompare);
+		} catch (SQLException err ) {
+			hideProgressBar();
+			popup(Level.FATAL, "Failed to get latest version of components in the database.", err);
+			setActiveAction(STATUS.Error);
+			doShowResult(STATUS.Error, "Error while exporting model.\n"+err.getMessage());
+			return false;
+		}
+		hideProgressBar();
 		setMessage("Calculating number of new, updated and deleted components.");
 
 		int total = 0;
@@ -1918,7 +1947,8 @@ public class DBGuiExportModel extends DBGui {
 					errorMessage = "Failed to import components from the database.";
 
 					try ( DBDatabaseImportConnection importConnection = new DBDatabaseImportConnection(this.exportConnection) ) {
-						
+						// we get all the components to import from the database in a few requests rather than one request per component
+						importConnection.prefetchComponentsToSync(this.exportedModel, this.exportConnection);
 						
 						// IMPORT FOLDERS (we import the folders BEFORE the elements, relationships and views because they must exist when the elements, relationships and views are imported)
 						if ( this.exportConnection.getFoldersNotInModel().size() == 0 )
@@ -2202,160 +2232,61 @@ public class DBGuiExportModel extends DBGui {
 			createProgressBar("Exporting model to the database ...", 0, progressBarWidth);
 			errorMessage = "Failed to export the model to the database";
 
-			// we start a new database transaction
-			this.exportConnection.setAutoCommit(false);
-
-			if ( !isNeo4JDatabase ) {
-				logger.info("Exporting the model itslef ...");
-				this.exportConnection.exportModel(this.exportedModel, this.txtReleaseNote.getText());
-			} else {
-				if ( this.selectedDatabase.shouldEmptyNeo4jDB() ) {
-					errorMessage = "Failed to empty the Neo4J database.";
-					this.exportConnection.emptyNeo4jDB();
+			// the views screenshots need the display thread, so they are created before the components are exported
+			if ( !isNeo4JDatabase )
+				createViewsScreenshots();
+
+			// the components are exported to the database in a background thread, the display being refreshed at most every 100 ms
+			this.exportErrorMessage = errorMessage;
+			this.exportException = null;
+			final String releaseNote = this.txtReleaseNote.getText();
+			final Thread exportThread = new Thread(new Runnable() {
+				@Override public void run() {
+					try {
+						exportToDatabase(isNeo4JDatabase, releaseNote);
+					} catch (Exception err) {
+						DBGuiExportModel.this.exportException = err;
+					} finally {
+						display.wake();
+					}
 				}
-			}
-
-			// EXPORT ELEMENTS
-			setProgressBarLabel("Exporting elements ...");
-			Iterator<Entry<String, IArchimateElement>> elementsIterator = this.exportedModel.getAllElements().entrySet().iterator();
-			while ( elementsIterator.hasNext() ) {
-				EObject componentToExport = elementsIterator.next().getValue();
-				if ( isNeo4JDatabase )
-					doExport(componentToExport, this.txtNewElementsInModel);
-				else {
-					DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
-					if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
-						doExport(componentToExport, this.txtNewElementsInModel);
-					else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
-						doExport(componentToExport, this.txtUpdatedElementsInModel);
-
-					this.exportConnection.assignEObjectToModel(componentToExport);
+			}, "DBExportModel");
+			exportThread.setDaemon(true);
+			setBackgroundThread(exportThread);
+			exportThread.start();
+
+			display.timerExec(100, new Runnable() {
+				@Override public void run() {
+					showExportProgress();
+					if ( exportThread.isAlive() )
+						display.timerExec(100, this);
 				}
-				incrementText(this.txtTotalElements);
-				increaseProgressBar();
+			});
+			while ( exportThread.isAlive() ) {
+				if ( !display.readAndDispatch() )
+					display.sleep();
 			}
+			exportThread.join();
+			setBackgroundThread(null);
+			showExportProgress();
 
-			// EXPORT RELATIONSHIPS
-			setProgressBarLabel("Exporting relationships ...");
-			Iterator<Entry<String, IArchimateRelationship>> relationshipsIterator = this.exportedModel.getAllRelationships().entrySet().iterator();
-			while ( relationshipsIterator.hasNext() ) {
-				EObject componentToExport = relationshipsIterator.next().getValue();
-				if ( isNeo4JDatabase )
-					doExport(componentToExport, this.txtNewRelationshipsInModel);
-				else {
-					DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
-					if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
-						doExport(componentToExport, this.txtNewRelationshipsInModel);
-					else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
-						doExport(componentToExport, this.txtUpdatedRelationshipsInModel);
-
-					this.exportConnection.assignEObjectToModel(componentToExport);
-				}
-				incrementText(this.txtTotalRelationships);
-				increaseProgressBar();
+			if ( this.exportException != null ) {
+				errorMessage = this.exportErrorMessage;
+				throw this.exportException;
 			}
 
-			if ( !isNeo4JDatabase ) {
-				setProgressBarLabel("Exporting folders ...");
-				Iterator<Entry<String, IFolder>> foldersIterator = this.exportedModel.getAllFolders().entrySet().iterator();
-				while ( foldersIterator.hasNext() ) {
-					EObject componentToExport = foldersIterator.next().getValue();
-					DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
-					if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
-						doExport(componentToExport, this.txtNewFoldersInModel);
-					else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
-						doExport(componentToExport, this.txtUpdatedFoldersInModel);
-					
-					this.exportConnection.assignEObjectToModel(componentToExport);
-					incrementText(this.txtTotalFolders);
-					increaseProgressBar();
-				}
-
-				setProgressBarLabel("Exporting views ...");
-				Iterator<Entry<String, IDiagramModel>> viewsIterator = this.exportedModel.getAllViews().entrySet().iterator();
-				while ( viewsIterator.hasNext() ) {
-					EObject componentToExport = viewsIterator.next().getValue();
-					Text txtFieldToIncrement = null;
-					DBMetadata metadata = this.exportedModel.getDBMetadata(componentToExport);
-					DATABASE_STATUS dbStatus = metadata.getDatabaseStatus();
-					if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
-							txtFieldToIncrement = this.txtNewViewsInModel;
-					else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
-							txtFieldToIncrement = this.txtUpdatedViewsInModel;
-
-					if ( txtFieldToIncrement != null ) {
-						if ( metadata.getScreenshot().isScreenshotActive() ) {
-							setProgressBarLabel("Creating screenshot of view \""+metadata.getName()+"\"");
-							createImage((IDiagramModel)componentToExport, this.exportConnection.getDatabaseEntry().getViewsImagesScaleFactor(), this.exportConnection.getDatabaseEntry().getViewsImagesBorderWidth());
-							setProgressBarLabel("Exporting views ...");
-						}
-						doExport(componentToExport, txtFieldToIncrement);
-						metadata.setExported(true);
-					} else
-						metadata.setExported(false);
-
-					this.exportConnection.assignEObjectToModel(componentToExport);
-					incrementText(this.txtTotalViews);
-					increaseProgressBar();
-				}
-
-				setProgressBarLabel("Exporting view objects ...");
-				Iterator<Entry<String, IDiagramModelObject>> viewObjectsIterator = this.exportedModel.getAllViewObjects().entrySet().iterator();
-				while ( viewObjectsIterator.hasNext() ) {
-					IDiagramModelObject componentToExport = viewObjectsIterator.next().getValue();
-
-					if ( this.exportedModel.getDBMetadata(componentToExport.getDiagramModel()).isExported() ) {
-						DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
-						if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
-							doExport(componentToExport, this.txtNewViewObjectsInModel);
-						else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
-							doExport(componentToExport, this.txtUpdatedViewObjectsInModel);
-						
-						this.exportConnection.assignEObjectToModel(componentToExport);
-					}
-					
-					incrementText(this.txtTotalViewObjects);
-					increaseProgressBar();
-				}
-
-				setProgressBarLabel("Exporting view connections ...");
-				Iterator<Entry<String, IDiagramModelConnection>> viewConnectionsIterator = this.exportedModel.getAllViewConnections().entrySet().iterator();
-				while ( viewConnectionsIterator.hasNext() ) {
-					IDiagramModelConnection componentToExport = viewConnectionsIterator.next().getValue();
-					
-					if ( this.exportedModel.getDBMetadata(componentToExport.getDiagramModel()).isExported() ) {
-						DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
-						if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
-							doExport(componentToExport, this.txtNewViewConnectionsInModel);
-						else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
-							doExport(componentToExport, this.txtUpdatedViewConnectionsInModel);
-						
-						this.exportConnection.assignEObjectToModel(componentToExport);
-					}
+			// the user may have cancelled the export after the last component has been exported
+			if ( isClosedByUser() )
+				throw new InterruptedException("The export has been cancelled.");
 
-					incrementText(this.txtTotalViewConnections);
-					increaseProgressBar();
-				}
-
-				setProgressBarLabel("Exporting images ...");
-				// no need to use imagesNotInModel as the requested images have been imported at the same time as their view object
-				IArchiveManager archiveMgr = (IArchiveManager)this.exportedModel.getAdapter(IArchiveManager.class);
-				for ( String path: this.exportedModel.getAllImagePaths() ) {
-					if ( this.exportConnection.exportImage(path, archiveMgr.getBytesFromEntry(path)) )
-						incrementText(this.txtNewImagesInModel);
-					increaseProgressBar();
-				}
-
-				// we register the undoableCommands on the model's stack, this way, the user will be able to manually undo them
+			// we register the undoableCommands on the model's stack, this way, the user will be able to manually undo them
+			if ( !isNeo4JDatabase )
 				this.stack.execute(undoableCommands);
-			}
 		} catch (Exception exportError) {
 			// if the exception is not raised because the user clicked on the cancel button, then we rollback and close the database connection
 			if ( !isClosedByUser() ) {
-				// TODO: find a better way to manage the cancel button
 				setActiveAction(STATUS.Error);
 
-				// if the user clicked on the "cancel" button, then the database connection is closed, which generates an exception when a SQL request is executed
 				try {
 					rollbackAndCloseConnection();
 
@@ -2367,6 +2298,13 @@ public class DBGuiExportModel extends DBGui {
 					popup(Level.FATAL, "An error occurred while exporting the components."+exportError);
 					popup(Level.FATAL, "An exception has been detected during the rollback and closure of the database transaction.\n\nThe database is left in an unknown state.\n\nPlease check carrefully your database !", closeDBError);
 				}
+			} else if ( !isBackgroundThreadRunning() ) {
+				// the export thread has stopped, so we can now rollback and close the database connection
+				try {
+					rollbackAndCloseConnection();
+				} catch (SQLException closeDBError) {
+					popup(Level.FATAL, "An exception has been detected during the rollback and closure of the database transaction.\n\nThe database is left in an unknown state.\n\nPlease check carrefully your database !", closeDBError);
+				}
 			}
 
 			// we rollback any update done on the model
@@ -2388,6 +2326,10 @@ public class DBGuiExportModel extends DBGui {
 				}
 			}
 
+			// if the user cancelled the export, the window is closed now that the export thread has stopped
+			if ( isClosedByUser() && !isDisposed() )
+				close();
+
 			return;
 		}
 
@@ -2407,9 +2349,265 @@ public class DBGuiExportModel extends DBGui {
 		}
 	}
 	
+	/**
+	 * Exports the model's components to the database (this method is run by the export thread)<br>
+	 * <br>
+	 * It does not access the widgets: the counters and the progress bar are updated by the display thread from the values kept by the incrementTextLater, increaseProgressBarLater and setProgressBarLabelLater methods.
+	 * The views screenshots must have been created beforehand by the display thread.
+	 * If the user closes the window, the export stops after the current component and the display thread rolls back the transaction.
+	 * @param isNeo4JDatabase
+	 * @param releaseNote
+	 * @throws Exception
+	 */
+	void exportToDatabase(boolean isNeo4JDatabase, String releaseNote) throws Exception {
+		// the Neo4J indexes must be created before the transaction is started
+		if ( isNeo4JDatabase )
+			this.exportConnection.createNeo4jIndexes(this.exportedModel);
+
+		// we start a new database transaction
+		this.exportConnection.setAutoCommit(false);
+		this.exportConnection.setBatchSize(DBPlugin.INSTANCE.getPreferenceStore().getInt("exportBatchSize"));
+
+		if ( !isNeo4JDatabase ) {
+			logger.info("Exporting the model itslef ...");
+			this.exportConnection.exportModel(this.exportedModel, releaseNote);
+		} else {
+			if ( this.selectedDatabase.shouldEmptyNeo4jDB() ) {
+				this.exportErrorMessage = "Failed to empty the Neo4J database.";
+				this.exportConnection.emptyNeo4jDB();
+			}
+		}
+
+		// EXPORT ELEMENTS
+		setProgressBarLabelLater("Exporting elements ...");
+		Iterator<Entry<String, IArchimateElement>> elementsIterator = this.exportedModel.getAllElements().entrySet().iterator();
+		while ( elementsIterator.hasNext() ) {
+			EObject componentToExport = elementsIterator.next().getValue();
+			if ( isNeo4JDatabase )
+				doExport(componentToExport, this.txtNewElementsInModel);
+			else {
+				DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
+				if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
+					doExport(componentToExport, this.txtNewElementsInModel);
+				else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
+					doExport(componentToExport, this.txtUpdatedElementsInModel);
+
+				this.exportConnection.assignEObjectToModel(componentToExport);
+			}
+			incrementTextLater(this.txtTotalElements);
+			increaseProgressBarLater();
+		}
+
+		// EXPORT RELATIONSHIPS
+		setProgressBarLabelLater("Exporting relationships ...");
+		Iterator<Entry<String, IArchimateRelationship>> relationshipsIterator = this.exportedModel.getAllRelationships().entrySet().iterator();
+		while ( relationshipsIterator.hasNext() ) {
+			EObject componentToExport = relationshipsIterator.next().getValue();
+			if ( isNeo4JDatabase )
+				doExport(componentToExport, this.txtNewRelationshipsInModel);
+			else {
+				DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
+				if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
+					doExport(componentToExport, this.txtNewRelationshipsInModel);
+				else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
+					doExport(componentToExport, this.txtUpdatedRelationshipsInModel);
+
+				this.exportConnection.assignEObjectToModel(componentToExport);
+			}
+			incrementTextLater(this.txtTotalRelationships);
+			increaseProgressBarLater();
+		}
+
+		if ( !isNeo4JDatabase ) {
+			setProgressBarLabelLater("Exporting folders ...");
+			Iterator<Entry<String, IFolder>> foldersIterator = this.exportedModel.getAllFolders().entrySet().iterator();
+			while ( foldersIterator.hasNext() ) {
+				EObject componentToExport = foldersIterator.next().getValue();
+				DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
+				if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
+					doExport(componentToExport, this.txtNewFoldersInModel);
+				else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
+					doExport(componentToExport, this.txtUpdatedFoldersInModel);
+			
+				this.exportConnection.assignEObjectToModel(componentToExport);
+				incrementTextLater(this.txtTotalFolders);
+				increaseProgressBarLater();
+			}
+
+			exportViews();
+
+			setProgressBarLabelLater("Exporting view objects ...");
+			Iterator<Entry<String, IDiagramModelObject>> viewObjectsIterator = this.exportedModel.getAllViewObjects().entrySet().iterator();
+			while ( viewObjectsIterator.hasNext() ) {
+				IDiagramModelObject componentToExport = viewObjectsIterator.next().getValue();
+
+				if ( this.exportedModel.getDBMetadata(componentToExport.getDiagramModel()).isExported() ) {
+					DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
+					if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
+						doExport(componentToExport, this.txtNewViewObjectsInModel);
+					else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
+						doExport(componentToExport, this.txtUpdatedViewObjectsInModel);
+				
+					this.exportConnection.assignEObjectToModel(componentToExport);
+				}
+			
+				incrementTextLater(this.txtTotalViewObjects);
+				increaseProgressBarLater();
+			}
+
+			setProgressBarLabelLater("Exporting view connections ...");
+			Iterator<Entry<String, IDiagramModelConnection>> viewConnectionsIterator = this.exportedModel.getAllViewConnections().entrySet().iterator();
+			while ( viewConnectionsIterator.hasNext() ) {
+				IDiagramModelConnection componentToExport = viewConnectionsIterator.next().getValue();
+			
+				if ( this.exportedModel.getDBMetadata(componentToExport.getDiagramModel()).isExported() ) {
+					DATABASE_STATUS dbStatus = this.exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
+					if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
+						doExport(componentToExport, this.txtNewViewConnectionsInModel);
+					else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
+						doExport(componentToExport, this.txtUpdatedViewConnectionsInModel);
+				
+					this.exportConnection.assignEObjectToModel(componentToExport);
+				}
+
+				incrementTextLater(this.txtTotalViewConnections);
+				increaseProgressBarLater();
+			}
+
+			setProgressBarLabelLater("Exporting images ...");
+			// no need to use imagesNotInModel as the requested images have been imported at the same time as their view object
+			int exportedImages = this.exportConnection.exportImages(this.exportedModel).size();
+			for ( int i = 0; i < this.exportedModel.getAllImagePaths().size(); ++i ) {
+				if ( i < exportedImages )
+					incrementTextLater(this.txtNewImagesInModel);
+				increaseProgressBarLater();
+			}
+		}
+
+		// we copy the unchanged memberships from the previous version of the model and send to the database the lines that are still waiting in the batches
+		if ( !isNeo4JDatabase )
+			this.exportConnection.copyMembershipsForward();
+		this.exportConnection.flushBatches();
+	}
+
+	/**
+	 * Creates the screenshots of the views that will be exported (must be called from the display thread)
+	 */
+	private void createViewsScreenshots() {
+		Iterator<Entry<String, IDiagramModel>> viewsIterator = this.exportedModel.getAllViews().entrySet().iterator();
+		while ( viewsIterator.hasNext() ) {
+			IDiagramModel view = viewsIterator.next().getValue();
+			DBMetadata metadata = this.exportedModel.getDBMetadata(view);
+			DATABASE_STATUS dbStatus = metadata.getDatabaseStatus();
+			if ( ((dbStatus == DATABASE_STATUS.isNewInModel) || (dbStatus == DATABASE_STATUS.isUpdatedInModel)) && metadata.getScreenshot().isScreenshotActive() ) {
+				setProgressBarLabel("Creating screenshot of view \""+metadata.getName()+"\"");
+				createImage(view, this.exportConnection.getDatabaseEntry().getViewsImagesScaleFactor(), this.exportConnection.getDatabaseEntry().getViewsImagesBorderWidth());
+			}
+		}
+	}
+
+	/**
+	 * Exports the model's views on the main database connection
+	 * @throws Exception
+	 */
+	private void exportViews() throws Exception {
+		setProgressBarLabelLater("Exporting views ...");
+		Iterator<Entry<String, IDiagramModel>> viewsIterator = this.exportedModel.getAllViews().entrySet().iterator();
+		while ( viewsIterator.hasNext() ) {
+			EObject componentToExport = viewsIterator.next().getValue();
+			Text txtFieldToIncrement = null;
+			DBMetadata metadata = this.exportedModel.getDBMetadata(componentToExport);
+			DATABASE_STATUS dbStatus = metadata.getDatabaseStatus();
+			if ( dbStatus == DATABASE_STATUS.isNewInModel ) 
+					txtFieldToIncrement = this.txtNewViewsInModel;
+			else if ( dbStatus == DATABASE_STATUS.isUpdatedInModel )
+					txtFieldToIncrement = this.txtUpdatedViewsInModel;
+
+			if ( txtFieldToIncrement != null ) {
+				doExport(componentToExport, txtFieldToIncrement);
+				metadata.setExported(true);
+			} else
+				metadata.setExported(false);
+
+			this.exportConnection.assignEObjectToModel(componentToExport);
+			incrementTextLater(this.txtTotalViews);
+			increaseProgressBarLater();
+		}
+	}
+
 	private void doExport(EObject objToExport, Text txtFieldToIncrement) throws Exception {
 		this.exportConnection.exportEObject(objToExport);
-		incrementText(txtFieldToIncrement);
+		incrementTextLater(txtFieldToIncrement);
+	}
+
+	/**
+	 * Error message of the export thread, that will be shown if an exception is raised
+	 */
+	private volatile String exportErrorMessage = null;
+
+	/**
+	 * Exception raised by the export thread (null if the export succeeded)
+	 */
+	volatile Exception exportException = null;
+
+	/**
+	 * Increments of the text fields done by the export thread, that are not yet shown by the display thread
+	 */
+	private final Map<Text, AtomicInteger> pendingIncrements = new ConcurrentHashMap<Text, AtomicInteger>();
+
+	/**
+	 * Progress bar increments done by the export thread, that are not yet shown by the display thread
+	 */
+	private final AtomicInteger pendingProgress = new AtomicInteger(0);
+
+	/**
+	 * Progress bar label set by the export thread, that is not yet shown by the display thread
+	 */
+	private final AtomicReference<String> pendingProgressBarLabel = new AtomicReference<String>(null);
+
+	private void incrementTextLater(Text txt) {
+		if ( txt == null )
+			return;
+		AtomicInteger increment = this.pendingIncrements.get(txt);
+		if ( increment == null ) {
+			this.pendingIncrements.putIfAbsent(txt, new AtomicInteger(0));
+			increment = this.pendingIncrements.get(txt);
+		}
+		increment.incrementAndGet();
+	}
+
+	/**
+	 * Increases the progress bar once the current component is exported, and stops the export if the user cancelled it
+	 * @throws InterruptedException if the user cancelled the export
+	 */
+	private void increaseProgressBarLater() throws InterruptedException {
+		if ( isClosedByUser() )
+			throw new InterruptedException("The export has been cancelled.");
+		this.pendingProgress.incrementAndGet();
+	}
+
+	private void setProgressBarLabelLater(String label) {
+		this.pendingProgressBarLabel.set(label);
+	}
+
+	/**
+	 * Shows the progress of the export thread (must be called from the display thread)
+	 */
+	void showExportProgress() {
+		if ( isDisposed() )
+			return;
+
+		String label = this.pendingProgressBarLabel.getAndSet(null);
+		if ( label != null )
+			setProgressBarLabel(label);
+
+		for ( Entry<Text, AtomicInteger> entry: this.pendingIncrements.entrySet() ) {
+			int increment = entry.getValue().getAndSet(0);
+			if ( increment != 0 )
+				entry.getKey().setText(toString(toInt(entry.getKey().getText()) + increment));
+		}
+
+		increaseProgressBar(this.pendingProgress.getAndSet(0));
 	}
 
 	void copyCurrentVersionToInitialVersion() {
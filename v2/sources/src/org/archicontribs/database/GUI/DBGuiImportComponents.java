@@ -8,18 +8,19 @@ package org.archicontribs.database.GUI;
 
 import java.io.ByteArrayInputStream;
 import java.sql.SQLException;
-import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
 import org.apache.log4j.Level;
 import org.archicontribs.database.DBLogger;
 import org.archicontribs.database.DBPlugin;
 import org.archicontribs.database.connection.DBDatabaseImportConnection;
+import org.archicontribs.database.connection.DBSearchIndex;
 import org.archicontribs.database.connection.DBSelect;
 import org.archicontribs.database.data.DBImportMode;
 import org.archicontribs.database.model.DBArchimateModel;
@@ -58,6 +59,7 @@ import org.eclipse.swt.layout.RowLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Canvas;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
@@ -106,6 +108,11 @@ public class DBGuiImportComponents extends DBGui {
 
 	DBDatabaseImportConnection importConnection = null;
 
+	/**
+	 * Local full-text index of the database components (null if the "useSearchIndex" preference is not set)
+	 */
+	DBSearchIndex searchIndex = null;
+
 	//private Composite compoFolders;
 	//private Button strategyFolders;
 	//private Button applicationFolders;
@@ -196,6 +203,29 @@ public class DBGuiImportComponents extends DBGui {
 
 	ComponentLabel[] allElementLabels;
 
+	/**
+	 * Number of components got from the database each time the table needs to show more components
+	 */
+	static final int COMPONENTS_PAGE_SIZE = 100;
+
+	/**
+	 * Delay, in milliseconds, between the last modification of the name filter and the refresh of the components table
+	 */
+	private static final int FILTER_DELAY = 300;
+
+	/**
+	 * Maximum number of components found by the search index that are shown in the table, once the components that do not match the other criterias have been removed
+	 */
+	private static final int MAX_SEARCH_RESULTS = 1000;
+
+	/**
+	 * Components already got from the database, in the order of the table
+	 */
+	final List<ComponentRow> componentRows = new ArrayList<ComponentRow>();
+	ComponentsRequest componentsRequest = null;
+	ComponentsLoader componentsLoader = null;
+	final Object componentsLoaderLock = new Object();
+
 	/**
 	 * Creates the GUI to import components
 	 * @param model 
@@ -334,6 +364,12 @@ public class DBGuiImportComponents extends DBGui {
 	@Override
 	protected void connectedToDatabase(boolean ignore) {
 		this.importConnection = new DBDatabaseImportConnection(getDatabaseConnection());
+		if ( DBPlugin.INSTANCE.getPreferenceStore().getBoolean("useSearchIndex") ) {
+			// the name filter is searched in the database until the search index is built
+			this.searchIndex = DBSearchIndex.getIndex(this.importConnection.getDatabaseEntry());
+			this.searchIndex.updateInBackground(this.importConnection.getDatabaseEntry());
+		} else
+			this.searchIndex = null;
 		this.compoRightBottom.setVisible(true);
 		this.compoRightBottom.layout();
 		try {
@@ -458,20 +494,10 @@ public class DBGuiImportComponents extends DBGui {
 		this.filterName.addModifyListener(new ModifyListener() {
 			@Override
 			public void modifyText(ModifyEvent event) {
-				try {
-					if ( DBGuiImportComponents.this.importConnection.isConnected() ) {
-						if ( DBGuiImportComponents.this.radioOptionModel.getSelection() )
-							getModels();
-						if ( DBGuiImportComponents.this.radioOptionElement.getSelection() )
-							getElements();
-						//else if ( compoFolders.isVisible() )
-						//	getFolders();
-						else if ( DBGuiImportComponents.this.radioOptionView.getSelection () )
-							getViews();
-					}
-				} catch (Exception err) {
-					DBGui.popup(Level.ERROR, "An exception has been raised.", err);
-				} 
+				// the components are got from the database once the user stopped typing
+				Display display = DBGuiImportComponents.this.filterName.getDisplay();
+				display.timerExec(-1, DBGuiImportComponents.this.filterTimer);
+				display.timerExec(FILTER_DELAY, DBGuiImportComponents.this.filterTimer);
 			}
 		});
 
@@ -1603,20 +1629,7 @@ public class DBGuiImportComponents extends DBGui {
 		SelectionListener redrawTblComponents = new SelectionListener() {
 			@Override
 			public void widgetSelected(SelectionEvent event) {
-				try {
-					if ( DBGuiImportComponents.this.importConnection.isConnected() ) {
-						DBGuiImportComponents.this.tblComponents.clearAll();
-						
-						if ( DBGuiImportComponents.this.radioOptionModel.getSelection() )
-							getModels();
-						else if ( DBGuiImportComponents.this.radioOptionElement.getSelection() )
-							getElements();
-						else if ( DBGuiImportComponents.this.radioOptionView.getSelection() )
-							getViews();
-					}
-				} catch (Exception err) {
-					DBGui.popup(Level.ERROR, "An exception has been raised.", err);
-				} 
+				getComponents();
 			}
 
 			@Override
@@ -1637,29 +1650,36 @@ public class DBGuiImportComponents extends DBGui {
 		this.hideOption.setSelection(true);
 		this.hideOption.addSelectionListener(redrawTblComponents);
 
-		this.tblComponents = new Table(this.grpComponent, SWT.BORDER | SWT.FULL_SELECTION | SWT.V_SCROLL | SWT.MULTI);
+		this.tblComponents = new Table(this.grpComponent, SWT.BORDER | SWT.FULL_SELECTION | SWT.V_SCROLL | SWT.MULTI | SWT.VIRTUAL);
 		this.tblComponents.setLinesVisible(true);
 		this.tblComponents.setHeaderVisible(true);
 		this.tblComponents.setBackground(TABLE_BACKGROUND_COLOR);
-		this.tblComponents.addListener(SWT.Selection, new Listener() {
+		this.tblComponents.addListener(SWT.SetData, new Listener() {
 			@Override
 			public void handleEvent(Event event) {
-				if ( DBGuiImportComponents.this.tblComponents.getItemCount() < 2 ) {
-					DBGuiImportComponents.this.lblComponents.setText(DBGuiImportComponents.this.tblComponents.getItemCount()+" component matches your criterias");
-				} else {
-					DBGuiImportComponents.this.lblComponents.setText(DBGuiImportComponents.this.tblComponents.getItemCount()+" components match your criterias");
+				TableItem item = (TableItem)event.item;
+				int index = DBGuiImportComponents.this.tblComponents.indexOf(item);
+				if ( index < DBGuiImportComponents.this.componentRows.size() )
+					fillTableItem(item, DBGuiImportComponents.this.componentRows.get(index));
+				else {
+					// the placeholder is shown, so we get the next page from the database
+					item.setText(0, "  Loading ...");
+					loadNextComponentsPage();
 				}
+			}
+		});
+		this.tblComponents.addListener(SWT.Selection, new Listener() {
+			@Override
+			public void handleEvent(Event event) {
+				updateComponentsLabel();
 
-				if ( DBGuiImportComponents.this.tblComponents.getSelectionCount() == 0) {
-					DBGuiImportComponents.this.lblComponents.setText(DBGuiImportComponents.this.lblComponents.getText()+".");
-				} else {
-					DBGuiImportComponents.this.lblComponents.setText(DBGuiImportComponents.this.lblComponents.getText()+" ("+DBGuiImportComponents.this.tblComponents.getSelectionCount()+" selected).");
-
+				List<ComponentRow> selectedComponents = getSelectedComponents();
+				if ( !selectedComponents.isEmpty() ) {
 					byte[] screenshot = null;
-					if ( DBGuiImportComponents.this.compoViews.isVisible() && (DBGuiImportComponents.this.tblComponents.getSelectionCount() == 1) ) {
-						try ( DBSelect resultViewScreenshot = new DBSelect(DBGuiImportComponents.this.importConnection.getDatabaseEntry().getName(), DBGuiImportComponents.this.importConnection.getConnection(), "SELECT screenshot FROM "+DBGuiImportComponents.this.selectedDatabase.getSchemaPrefix()+"views WHERE id = ? AND version = (SELECT MAX(version) FROM "+DBGuiImportComponents.this.selectedDatabase.getSchemaPrefix()+"views WHERE id = ?)", DBGuiImportComponents.this.tblComponents.getSelection()[0].getData("id"), DBGuiImportComponents.this.tblComponents.getSelection()[0].getData("id")) ) {
+					if ( DBGuiImportComponents.this.compoViews.isVisible() && (selectedComponents.size() == 1) ) {
+						try ( DBSelect resultViewScreenshot = new DBSelect(DBGuiImportComponents.this.importConnection.getDatabaseEntry().getName(), DBGuiImportComponents.this.importConnection.getConnection(), "SELECT "+DBGuiImportComponents.this.importConnection.getBlobSizeRequest("screenshot")+" AS screenshot_size, screenshot FROM "+DBGuiImportComponents.this.selectedDatabase.getSchemaPrefix()+"views WHERE id = ? AND version = "+DBGuiImportComponents.this.importConnection.getLatestVersionRequest("?"), selectedComponents.get(0).id, selectedComponents.get(0).id) ) {
 							if ( resultViewScreenshot.next() )
-								screenshot = resultViewScreenshot.getBytes("screenshot");
+								screenshot = resultViewScreenshot.getBytes("screenshot", "screenshot_size", DBSelect.getMaxBlobSize());
 						} catch (SQLException e) {
 							logger.error("Failed to get the view screenshot from the database",e);
 						}
@@ -1668,7 +1688,7 @@ public class DBGuiImportComponents extends DBGui {
 					DBGuiImportComponents.this.lblPreview.notifyListeners(SWT.Resize, new Event());
 				}
 
-				DBGuiImportComponents.this.btnDoAction.setEnabled(true);		// as soon a component is selected, we can import it
+				DBGuiImportComponents.this.btnDoAction.setEnabled(!selectedComponents.isEmpty());		// as soon a component is selected, we can import it
 			}
 		});
 
@@ -1716,12 +1736,14 @@ public class DBGuiImportComponents extends DBGui {
 		colName.setText("Name");
 		colName.setWidth(150);
 		colName.addListener(SWT.Selection, this.sortListener);
+		this.tblComponents.setSortColumn(colName);
+		this.tblComponents.setSortDirection(SWT.UP);
 		
 		
+		// the documentation cannot be sorted by all the databases (CLOB on Oracle), so the table can only be sorted by name
 		TableColumn colDocumentation = new TableColumn(this.tblComponents, SWT.NONE);
 		colDocumentation.setText("Documentation");
 		colDocumentation.setWidth(300);
-		colDocumentation.addListener(SWT.Selection, this.sortListener);
 
 		this.tblComponents.addListener(SWT.MouseDoubleClick, new Listener() {
 			@Override
@@ -1749,13 +1771,32 @@ public class DBGuiImportComponents extends DBGui {
 		this.tblComponents.setLayoutData(fd);
 	}
 
+	/**
+	 * Gets the components of the selected category from the database
+	 */
+	void getComponents() {
+		try {
+			if ( (this.importConnection != null) && this.importConnection.isConnected() ) {
+				if ( this.radioOptionModel.getSelection() )
+					getModels();
+				else if ( this.radioOptionElement.getSelection() )
+					getElements();
+				//else if ( compoFolders.isVisible() )
+				//	getFolders();
+				else if ( this.radioOptionView.getSelection() )
+					getViews();
+			}
+		} catch (Exception err) {
+			DBGui.popup(Level.ERROR, "An exception has been raised.", err);
+		}
+	}
+
 	void getModels() throws Exception {
 		this.compoModels.setVisible(true);
 		this.compoElements.setVisible(false);
 		//compoFolders.setVisible(false);
 		this.compoViews.setVisible(false);
 
-		this.tblComponents.removeAll();
 		Image image = this.lblPreview.getImage();
 		if ( image != null ) {
 			this.lblPreview.setImage(null);
@@ -1763,56 +1804,25 @@ public class DBGuiImportComponents extends DBGui {
 		}
 		this.lblPreview.setVisible(false);
 
-		if ( this.selectedDatabase == null )
-			return;
+		this.tblComponents.getColumn(1).setText("Purpose");
 
-		setMessage("Getting list of models from database ...");
+		if ( this.selectedDatabase == null ) {
+			loadComponents(null);
+			return;
+		}
 
 		if ( logger.isDebugEnabled() ) logger.debug("Getting models");
 
 		this.hideAlreadyInModel.setVisible(false);
 		this.hideOption.setVisible(false);
 
-		this.tblComponents.getColumn(1).setText("Purpose");
-		
-		String filterRequest = "";
-		if ( this.filterName.getText().length() != 0 )
-			filterRequest = " AND UPPER(name) like '%"+this.filterName.getText().toUpperCase()+"%'";
-			
-		try (DBSelect result = new DBSelect(DBGuiImportComponents.this.importConnection.getDatabaseEntry().getName(), DBGuiImportComponents.this.importConnection.getConnection(), "SELECT id, version, name, purpose FROM "+this.selectedDatabase.getSchemaPrefix()+"models m WHERE version = (SELECT MAX(version) FROM "+this.selectedDatabase.getSchemaPrefix()+"models WHERE id = m.id)" + filterRequest) ) {
-			while (result.next()) {
-				if ( !DBPlugin.areEqual(result.getString("id"), this.importedModel.getId()) ) {
-					StringBuilder tooltipBuilder = new StringBuilder();
-					TableItem item = createTableItem(this.tblComponents, result.getString("id"), "model", result.getString("name"), result.getString("purpose"));
-					logger.trace("Found model "+result.getString("name"));
-					try ( DBSelect resultProperties = new DBSelect(DBGuiImportComponents.this.importConnection.getDatabaseEntry().getName(), DBGuiImportComponents.this.importConnection.getConnection(), "SELECT name, value FROM "+this.selectedDatabase.getSchemaPrefix()+"properties WHERE parent_id = ? AND parent_version = ?", result.getString("id"), result.getInt("version")) ) {
-						while ( resultProperties.next() ) {
-							if ( tooltipBuilder.length() != 0 )
-								tooltipBuilder.append("\n");
-							tooltipBuilder.append("   - ");
-							tooltipBuilder.append(resultProperties.getString("name"));
-							tooltipBuilder.append(": ");
-							String value = resultProperties.getString("value");
-							if ( value.length() > 22 )
-								tooltipBuilder.append(value.substring(0,19)+"...");
-							else
-								tooltipBuilder.append(value);
-						}
-					}
-					if ( tooltipBuilder.length() != 0 )
-						item.setData("tooltip", tooltipBuilder.toString());
-				}
-			}
-		}
-		closeMessage();
+		String nameExpression = getNameExpression();
+		ComponentsRequest request = new ComponentsRequest("model", "SELECT id, version, 'Model' AS class, name, purpose AS documentation, "+nameExpression+" AS sort_name FROM "+this.selectedDatabase.getSchemaPrefix()+"models m", nameExpression, this.tblComponents.getSortDirection() == SWT.DOWN);
+		request.addCondition("version = (SELECT MAX(version) FROM "+this.selectedDatabase.getSchemaPrefix()+"models WHERE id = m.id)");
+		request.addCondition("id <> ?", this.importedModel.getId());
+		addNameFilter(request, Collections.singletonList("Model"));
 
-		if ( this.tblComponents.getItemCount() < 2 ) {
-			this.lblComponents.setText(this.tblComponents.getItemCount()+" model matches your criterias");
-		} else {
-			this.lblComponents.setText(this.tblComponents.getItemCount()+" models match your criterias");
-		}
-
-		this.btnDoAction.setEnabled(false);
+		loadComponents(request);
 	}
 
 	void getElements() throws Exception {
@@ -1821,7 +1831,6 @@ public class DBGuiImportComponents extends DBGui {
 		//compoFolders.setVisible(false);
 		this.compoViews.setVisible(false);
 
-		this.tblComponents.removeAll();
 		Image image = this.lblPreview.getImage();
 		if ( image != null ) {
 			this.lblPreview.setImage(null);
@@ -1831,8 +1840,10 @@ public class DBGuiImportComponents extends DBGui {
 		
 		this.tblComponents.getColumn(1).setText("Documentation");
 
-		if ( this.selectedDatabase == null )
+		if ( this.selectedDatabase == null ) {
+			loadComponents(null);
 			return;
+		}
 
 		StringBuilder inList = new StringBuilder();
 		ArrayList<String> classList = new ArrayList<String>();
@@ -1843,68 +1854,33 @@ public class DBGuiImportComponents extends DBGui {
 			}
 		}
 
-		if ( inList.length() != 0 ) {
-			if ( logger.isDebugEnabled() ) logger.debug("Getting elements");
-
-			setMessage("Getting list of elements from the database ...");
-
-			this.hideAlreadyInModel.setVisible(true);
-			this.hideOption.setVisible(true);
-			this.hideOption.setText("Hide components with empty names");
-			String addOn = "";
-			if ( this.hideOption.getSelection() ) {
-				if ( this.selectedDatabase.getDriver().equals("oracle") ) {
-					addOn = " AND LENGTH(name) <> 0";
-				} else {
-					addOn = " AND name <> ''";
-				}
-			}
+		if ( inList.length() == 0 ) {
+			loadComponents(null);
+			return;
+		}
 
-			addOn += " AND version = (SELECT MAX(version) FROM "+this.selectedDatabase.getSchemaPrefix()+"elements WHERE id = e.id)";
-			addOn += " ORDER BY name";
-
-			if ( inList.length() != 0 ) {
-				String filterRequest = "";
-				if ( this.filterName.getText().length() != 0 )
-					filterRequest = " AND UPPER(name) like '%"+this.filterName.getText().toUpperCase()+"%'";
-				
-				try (DBSelect result = new DBSelect(DBGuiImportComponents.this.importConnection.getDatabaseEntry().getName(), DBGuiImportComponents.this.importConnection.getConnection(), "SELECT id, version, class, name, documentation FROM "+this.selectedDatabase.getSchemaPrefix()+"elements e WHERE class IN ("+inList.toString()+")" + filterRequest + addOn, classList) ) {
-					while (result.next()) {
-						if ( !this.hideAlreadyInModel.getSelection() || (this.importedModel.getAllElements().get(result.getString("id"))==null)) {
-							StringBuilder tooltipBuilder = new StringBuilder();
-							TableItem item = createTableItem(this.tblComponents, result.getString("id"), result.getString("Class"), result.getString("name"), result.getString("documentation"));
-
-							try ( DBSelect resultProperties = new DBSelect(DBGuiImportComponents.this.importConnection.getDatabaseEntry().getName(), DBGuiImportComponents.this.importConnection.getConnection(), "SELECT name, value FROM "+this.selectedDatabase.getSchemaPrefix()+"properties WHERE parent_id = ? AND parent_version = ?", result.getString("id"), result.getInt("version")) ) {
-								while ( resultProperties.next() ) {
-									if ( tooltipBuilder.length() != 0 )
-										tooltipBuilder.append("\n");
-									tooltipBuilder.append("   - ");
-									tooltipBuilder.append(resultProperties.getString("name"));
-									tooltipBuilder.append(": ");
-									String value = resultProperties.getString("value");
-									if ( value.length() > 22 )
-										tooltipBuilder.append(value.substring(0,19)+"...");
-									else
-										tooltipBuilder.append(value);
-								}
-							}
-							if ( tooltipBuilder.length() != 0 )
-								item.setData("tooltip", tooltipBuilder.toString());
-						}
-					}
-				}
-			}
+		if ( logger.isDebugEnabled() ) logger.debug("Getting elements");
 
-			closeMessage();
-		}
+		this.hideAlreadyInModel.setVisible(true);
+		this.hideOption.setVisible(true);
+		this.hideOption.setText("Hide components with empty names");
 
-		if ( this.tblComponents.getItemCount() < 2 ) {
-			this.lblComponents.setText(this.tblComponents.getItemCount()+" component matches your criterias");
-		} else {
-			this.lblComponents.setText(this.tblComponents.getItemCount()+" components match your criterias");
+		String nameExpression = getNameExpression();
+		ComponentsRequest request = new ComponentsRequest("component", "SELECT id, version, class, name, documentation, "+nameExpression+" AS sort_name FROM "+this.selectedDatabase.getSchemaPrefix()+"elements e", nameExpression, this.tblComponents.getSortDirection() == SWT.DOWN);
+		request.addCondition("class IN ("+inList.toString()+")", classList);
+		request.addCondition("version = "+this.importConnection.getLatestVersionRequest("e.id"));
+		if ( this.hideOption.getSelection() ) {
+			if ( this.selectedDatabase.getDriver().equals("oracle") ) {
+				request.addCondition("LENGTH(name) <> 0");
+			} else {
+				request.addCondition("name <> ''");
+			}
 		}
+		addNameFilter(request, classList);
+		if ( this.hideAlreadyInModel.getSelection() )
+			request.excludedIds = this.importedModel.getAllElements();
 
-		this.btnDoAction.setEnabled(false);
+		loadComponents(request);
 	}
 
 	/*
@@ -1990,7 +1966,6 @@ public class DBGuiImportComponents extends DBGui {
 		//compoFolders.setVisible(false);
 		this.compoViews.setVisible(true);
 
-		this.tblComponents.removeAll();
 		Image image = this.lblPreview.getImage();
 		if ( image != null ) {
 			this.lblPreview.setImage(null);
@@ -2000,8 +1975,10 @@ public class DBGuiImportComponents extends DBGui {
 		
 		this.tblComponents.getColumn(1).setText("Documentation");
 
-		if ( this.selectedDatabase == null )
+		if ( this.selectedDatabase == null ) {
+			loadComponents(null);
 			return;
+		}
 
 		StringBuilder inList = new StringBuilder();
 		ArrayList<String> classList = new ArrayList<String>();
@@ -2018,74 +1995,181 @@ public class DBGuiImportComponents extends DBGui {
 			classList.add("SketchModel");
 		}
 
-		if ( inList.length() != 0 ) {
-			setMessage("Getting list of views from database ...");
-
-			if ( logger.isDebugEnabled() ) logger.debug("Getting views");
-
-			this.hideAlreadyInModel.setVisible(true);
-			this.hideOption.setVisible(true);
-			this.hideOption.setText("Hide default views");
-			String addOn = "";
-			if ( this.hideOption.getSelection() )
-				addOn = " AND name <> 'Default View'";
-
-			addOn += " AND version = (SELECT MAX(version) FROM "+this.selectedDatabase.getSchemaPrefix()+"views WHERE id = v.id)";
-			addOn += " ORDER BY name";
-
-			if ( inList.length() != 0 ) {
-				String filterRequest = "";
-				if ( this.filterName.getText().length() != 0 )
-					filterRequest = " AND UPPER(name) like '%"+this.filterName.getText().toUpperCase()+"%'";
-				
-				try (DBSelect result = new DBSelect(DBGuiImportComponents.this.importConnection.getDatabaseEntry().getName(), DBGuiImportComponents.this.importConnection.getConnection(), "SELECT id, version, class, name, documentation FROM "+this.selectedDatabase.getSchemaPrefix()+"views v WHERE class IN ("+inList.toString()+")" + filterRequest + addOn, classList)) {
-					while (result.next()) {
-						if ( !this.hideAlreadyInModel.getSelection() || (this.importedModel.getAllViews().get(result.getString("id"))==null)) {
-							StringBuilder tooltipBuilder = new StringBuilder();
-							TableItem item = createTableItem(this.tblComponents, result.getString("id"), result.getString("Class"), result.getString("name"), result.getString("documentation"));
-
-							try ( DBSelect resultProperties = new DBSelect(DBGuiImportComponents.this.importConnection.getDatabaseEntry().getName(), DBGuiImportComponents.this.importConnection.getConnection(), "SELECT name, value FROM "+this.selectedDatabase.getSchemaPrefix()+"properties WHERE parent_id = ? AND parent_version = ?", result.getString("id"), result.getInt("version")) ) {
-								while ( resultProperties.next() ) {
-									if ( tooltipBuilder.length() != 0 )
-										tooltipBuilder.append("\n");
-									tooltipBuilder.append("   - ");
-									tooltipBuilder.append(resultProperties.getString("name"));
-									tooltipBuilder.append(": ");
-									String value = resultProperties.getString("value");
-									if ( value.length() > 22 )
-										tooltipBuilder.append(value.substring(0,19)+"...");
-									else
-										tooltipBuilder.append(value);
-								}
-							}
-							if ( tooltipBuilder.length() != 0 )
-								item.setData("tooltip", tooltipBuilder.toString());
-						}
-					}
-				}
-			}
+		if ( inList.length() == 0 ) {
+			loadComponents(null);
+			return;
+		}
 
-			closeMessage();
+		if ( logger.isDebugEnabled() ) logger.debug("Getting views");
+
+		this.hideAlreadyInModel.setVisible(true);
+		this.hideOption.setVisible(true);
+		this.hideOption.setText("Hide default views");
+
+		String nameExpression = getNameExpression();
+		ComponentsRequest request = new ComponentsRequest("component", "SELECT id, version, class, name, documentation, "+nameExpression+" AS sort_name FROM "+this.selectedDatabase.getSchemaPrefix()+"views v", nameExpression, this.tblComponents.getSortDirection() == SWT.DOWN);
+		request.addCondition("class IN ("+inList.toString()+")", classList);
+		request.addCondition("version = "+this.importConnection.getLatestVersionRequest("v.id"));
+		if ( this.hideOption.getSelection() )
+			request.addCondition("name <> 'Default View'");
+		addNameFilter(request, classList);
+		if ( this.hideAlreadyInModel.getSelection() )
+			request.excludedIds = this.importedModel.getAllViews();
+
+		loadComponents(request);
+	}
+
+	/**
+	 * @return the SQL expression used to sort the components by name (the name may be null, especially on Oracle where empty strings are stored as null)
+	 */
+	private String getNameExpression() {
+		if ( this.selectedDatabase.getDriver().equals("oracle") )
+			return "NVL(name, ' ')";
+		return "COALESCE(name, '')";
+	}
+
+	/**
+	 * Adds the content of the name filter to the request<br>
+	 * If the search index is ready, the text is searched in the names, documentation and properties of the components, which are shown the most relevant first.
+	 * Else, the text is searched in the names only.
+	 * @param request
+	 * @param classes the classes of the components to search
+	 */
+	private void addNameFilter(ComponentsRequest request, Collection<String> classes) {
+		String filter = this.filterName.getText();
+		if ( filter.length() == 0 )
+			return;
+
+		if ( (this.searchIndex != null) && this.searchIndex.isReady() && !DBSearchIndex.tokenize(filter).isEmpty() )
+			// the components are limited once they have been filtered by the database, else the most relevant ones could all be filtered out
+			request.rankedIds = this.searchIndex.search(filter, classes, Integer.MAX_VALUE);
+		else
+			request.addCondition("UPPER(name) LIKE ?", "%"+filter.toUpperCase()+"%");
+	}
+
+	/**
+	 * Replaces the content of the components table by the components returned by the request<br>
+	 * The table is virtual: the components are got from the database page by page, when the table needs to show them. 
+	 * @param request the request to get the components (null to empty the table)
+	 */
+	void loadComponents(ComponentsRequest request) {
+		if ( this.componentsLoader != null ) {
+			this.componentsLoader.cancel();
+			this.componentsLoader = null;
 		}
 
-		if ( this.tblComponents.getItemCount() < 2 ) {
-			this.lblComponents.setText(this.tblComponents.getItemCount()+" component matches your criterias");
+		this.componentsRequest = request;
+		this.componentRows.clear();
+		this.tblComponents.deselectAll();
+		this.tblComponents.clearAll();
+		// the last item is a placeholder that gets the next page when it is shown
+		this.tblComponents.setItemCount((request == null) ? 0 : 1);
+		updateComponentsLabel();
+		this.btnDoAction.setEnabled(false);
+
+		loadNextComponentsPage();
+	}
+
+	/**
+	 * Starts to get the next page of components in a background thread, if it is not already started
+	 */
+	void loadNextComponentsPage() {
+		if ( (this.componentsRequest == null) || !this.componentsRequest.hasMore || (this.componentsLoader != null) )
+			return;
+
+		this.componentsLoader = new ComponentsLoader(this.componentsRequest);
+
+		Thread loaderThread = new Thread(this.componentsLoader, "DBGuiImportComponents-loader");
+		loaderThread.setDaemon(true);
+		loaderThread.start();
+	}
+
+	/**
+	 * Called in the display thread when a page of components has been got from the database
+	 * @param loader
+	 * @param rows
+	 * @param err the exception raised while getting the page, if any
+	 */
+	void componentsPageLoaded(ComponentsLoader loader, List<ComponentRow> rows, Exception err) {
+		// the page is ignored if another request has been started in the meantime
+		if ( (loader != this.componentsLoader) || this.tblComponents.isDisposed() )
+			return;
+		this.componentsLoader = null;
+
+		ComponentsRequest request = loader.request;
+		if ( err != null ) {
+			request.hasMore = false;
+			DBGui.popup(Level.ERROR, "Failed to get the components from the database.", err);
+		} else if ( request.rankedIds != null ) {
+			request.nextRank = loader.toRank;
+			request.hasMore = (request.nextRank < request.rankedIds.size());
 		} else {
-			this.lblComponents.setText(this.tblComponents.getItemCount()+" components match your criterias");
+			request.hasMore = (rows.size() == COMPONENTS_PAGE_SIZE);
+			if ( !rows.isEmpty() ) {
+				request.lastSortName = rows.get(rows.size()-1).sortName;
+				request.lastId = rows.get(rows.size()-1).id;
+			}
 		}
 
-		this.btnDoAction.setEnabled(false);
+		int placeholderIndex = this.componentRows.size();
+		for ( ComponentRow row: rows ) {
+			if ( (request.rankedIds != null) && (this.componentRows.size() >= MAX_SEARCH_RESULTS) )
+				break;
+			if ( (request.excludedIds == null) || (request.excludedIds.get(row.id) == null) )
+				this.componentRows.add(row);
+		}
+		if ( (request.rankedIds != null) && (this.componentRows.size() >= MAX_SEARCH_RESULTS) )
+			request.hasMore = false;
+
+		this.tblComponents.setItemCount(this.componentRows.size() + (request.hasMore ? 1 : 0));
+		// the placeholder is cleared so that the table asks again for its content, which gets the next page if it is still the placeholder
+		if ( placeholderIndex < this.tblComponents.getItemCount() )
+			this.tblComponents.clear(placeholderIndex);
+		updateComponentsLabel();
 	}
 
+	/**
+	 * Updates the label that shows the number of components in the table
+	 */
+	void updateComponentsLabel() {
+		String componentType = (this.componentsRequest == null) ? "component" : this.componentsRequest.componentType;
+		int count = this.componentRows.size();
+
+		StringBuilder text = new StringBuilder();
+		if ( (this.componentsRequest != null) && this.componentsRequest.hasMore )
+			text.append("At least "+count+" "+componentType+"s match your criterias");
+		else if ( count < 2 )
+			text.append(count+" "+componentType+" matches your criterias");
+		else
+			text.append(count+" "+componentType+"s match your criterias");
+
+		if ( this.tblComponents.getSelectionCount() == 0 )
+			text.append(".");
+		else
+			text.append(" ("+this.tblComponents.getSelectionCount()+" selected).");
+
+		this.lblComponents.setText(text.toString());
+	}
 
+	/**
+	 * @return the components selected in the table
+	 */
+	List<ComponentRow> getSelectedComponents() {
+		List<ComponentRow> selected = new ArrayList<ComponentRow>();
+		for ( int index: this.tblComponents.getSelectionIndices() ) {
+			// the placeholder may be selected while the next page is got from the database
+			if ( index < this.componentRows.size() )
+				selected.add(this.componentRows.get(index));
+		}
+		return selected;
+	}
 
-	private static TableItem createTableItem(Table table, String id, String className, String name, String documentation) {
-		TableItem item = new TableItem(table, SWT.NONE);
-		item.setData("id", id);
-		item.setText(0, "  "+name);
-		if ( documentation != null ) item.setText(1, documentation);
-		item.setImage(getImage(className));
-		return item; 
+	private static void fillTableItem(TableItem item, ComponentRow row) {
+		item.setData("id", row.id);
+		item.setData("tooltip", row.tooltip);
+		item.setText(0, "  "+row.name);
+		if ( row.documentation != null ) item.setText(1, row.documentation);
+		item.setImage(getImage(row.className));
 	}
 	
 	/**
@@ -2198,9 +2282,9 @@ public class DBGuiImportComponents extends DBGui {
 		CompoundCommand undoRedoCommands = new CompoundCommand();
 		int done = 0;
 		try {
-			for ( TableItem tableItem: this.tblComponents.getSelection() ) {
-				String id = (String)tableItem.getData("id");
-				String name = tableItem.getText(0).trim();
+			for ( ComponentRow component: getSelectedComponents() ) {
+				String id = component.id;
+				String name = component.name.trim();
 
 				if ( this.radioOptionModel.getSelection() ) {
 					setMessage("("+(++done)+"/"+this.tblComponents.getSelectionCount()+") Importing model \""+name+"\".");
@@ -2564,8 +2648,21 @@ public class DBGuiImportComponents extends DBGui {
 		}
 	};
 
+	final Runnable filterTimer = new Runnable() {
+		@Override
+		public void run() {
+			if ( !DBGuiImportComponents.this.filterName.isDisposed() )
+				getComponents();
+		}
+	};
+
 	@Override
 	public void close() {
+		if ( this.componentsLoader != null ) {
+			this.componentsLoader.cancel();
+			this.componentsLoader = null;
+		}
+
 		if ( this.lblPreview.getImage() != null )
 			this.lblPreview.getImage().dispose();
 
@@ -2577,55 +2674,299 @@ public class DBGuiImportComponents extends DBGui {
 		public void handleEvent(Event e) {
 			TableColumn sortedColumn = (TableColumn) e.widget;
 			Table table = sortedColumn.getParent();
+			int sortDirection = ( table.getSortColumn() == sortedColumn && table.getSortDirection() == SWT.UP ) ? SWT.DOWN : SWT.UP;
 			table.setSortColumn(sortedColumn);
-			Integer sortDirection = (Integer)sortedColumn.getData("sortDirection");
-        	if ( sortDirection == null || sortDirection == SWT.DOWN )
-        		sortDirection=SWT.UP;
-        	else
-        		sortDirection=SWT.DOWN;
-        	sortedColumn.setData("sortDirection",sortDirection);
-        	table.setSortDirection(sortDirection);
-        	
-			int columnIndex = 0;
-			for ( int i = 0; i < table.getColumns().length; ++i ) {
-				if ( table.getColumn(i).equals(sortedColumn) ) {
-					columnIndex = i;
-					break;
+			table.setSortDirection(sortDirection);
+
+			// the components are sorted by the database, so we get them again
+			getComponents();
+		}
+	};
+
+	/**
+	 * Component shown in the components table
+	 */
+	static class ComponentRow {
+		final String id;
+		final int version;
+		final String className;
+		final String name;
+		final String documentation;
+		final String sortName;
+		String tooltip = null;
+
+		ComponentRow(String id, int version, String className, String name, String documentation, String sortName) {
+			this.id = id;
+			this.version = version;
+			this.className = className;
+			this.name = (name == null) ? "" : name;
+			this.documentation = documentation;
+			this.sortName = sortName;
+		}
+	}
+
+	/**
+	 * Request that gets the components from the database page by page<br>
+	 * The pages are got using the sort key of the last component of the previous page (name then id) rather than an offset, so that getting a page does not depend on the number of pages already got.
+	 */
+	static class ComponentsRequest {
+		final String componentType;
+		final String select;
+		final String nameExpression;
+		final boolean descending;
+		final List<String> conditions = new ArrayList<String>();
+		final List<Object> parameters = new ArrayList<Object>();
+
+		/**
+		 * Components that must not be shown in the table (null to show all the components)
+		 */
+		Map<String, ?> excludedIds = null;
+
+		boolean hasMore = true;
+		String lastSortName = null;
+		String lastId = null;
+
+		/**
+		 * IDs of the components found by the search index, the most relevant first (null if the search index is not used)
+		 */
+		List<String> rankedIds = null;
+		int nextRank = 0;
+
+		/**
+		 * @param componentType type of the components, as shown in the label above the table
+		 * @param select the SELECT clause of the request, that must return the id, version, class, name, documentation and sort_name columns
+		 * @param nameExpression the SQL expression of the name of the components, used to sort them
+		 * @param descending true if the components are sorted in descending order
+		 */
+		ComponentsRequest(String componentType, String select, String nameExpression, boolean descending) {
+			this.componentType = componentType;
+			this.select = select;
+			this.nameExpression = nameExpression;
+			this.descending = descending;
+		}
+
+		void addCondition(String condition, Object... conditionParameters) {
+			this.conditions.add(condition);
+			for ( Object parameter: conditionParameters )
+				this.parameters.add(parameter);
+		}
+
+		/**
+		 * @param fromSortName the sort name of the last component of the previous page (null to get the first page)
+		 * @param fromId the id of the last component of the previous page
+		 * @param pageParameters the list that receives the parameters of the request
+		 * @return the request that gets the next page
+		 */
+		String getPageRequest(String fromSortName, String fromId, List<Object> pageParameters) {
+			List<String> pageConditions = new ArrayList<String>(this.conditions);
+			pageParameters.addAll(this.parameters);
+
+			String operator = this.descending ? "<" : ">";
+			if ( fromId != null ) {
+				pageConditions.add("("+this.nameExpression+" "+operator+" ? OR ("+this.nameExpression+" = ? AND id "+operator+" ?))");
+				pageParameters.add(fromSortName);
+				pageParameters.add(fromSortName);
+				pageParameters.add(fromId);
+			}
+
+			StringBuilder request = new StringBuilder(this.select);
+			if ( !pageConditions.isEmpty() ) {
+				request.append(" WHERE ");
+				request.append(String.join(" AND ", pageConditions));
+			}
+			String direction = this.descending ? " DESC" : "";
+			request.append(" ORDER BY "+this.nameExpression+direction+", id"+direction);
+
+			return request.toString();
+		}
+
+		/**
+		 * @param ids the IDs of the components found by the search index that are in the page
+		 * @param pageParameters the list that receives the parameters of the request
+		 * @return the request that gets the components of the page (they need to be sorted by rank by the caller)
+		 */
+		String getRankedPageRequest(ArrayList<String> ids, List<Object> pageParameters) {
+			StringBuilder inList = new StringBuilder();
+			for ( int i = 0; i < ids.size(); ++i )
+				inList.append(inList.length()==0 ? "?" : ", ?");
+
+			List<String> pageConditions = new ArrayList<String>(this.conditions);
+			pageConditions.add("id IN ("+inList.toString()+")");
+			pageParameters.addAll(this.parameters);
+			pageParameters.add(ids);
+
+			return this.select+" WHERE "+String.join(" AND ", pageConditions);
+		}
+	}
+
+	/**
+	 * Gets a page of components, and their properties, from the database in a background thread
+	 */
+	class ComponentsLoader implements Runnable {
+		final ComponentsRequest request;
+		private final String fromSortName;
+		private final String fromId;
+		private final int fromRank;
+		final int toRank;
+		private final DBDatabaseImportConnection connection;
+		private final Display display;
+
+		private volatile boolean cancelled = false;
+		private volatile DBSelect runningSelect = null;
+
+		ComponentsLoader(ComponentsRequest request) {
+			this.request = request;
+			this.fromSortName = request.lastSortName;
+			this.fromId = request.lastId;
+			this.fromRank = request.nextRank;
+			this.toRank = (request.rankedIds == null) ? 0 : Math.min(request.nextRank + COMPONENTS_PAGE_SIZE, request.rankedIds.size());
+			this.connection = DBGuiImportComponents.this.importConnection;
+			this.display = DBGuiImportComponents.this.tblComponents.getDisplay();
+		}
+
+		/**
+		 * Stops getting the page, and cancels the request if it is being executed by the database
+		 */
+		void cancel() {
+			this.cancelled = true;
+			DBSelect select = this.runningSelect;
+			if ( select != null )
+				select.cancel();
+		}
+
+		@Override
+		public void run() {
+			final List<ComponentRow> rows = new ArrayList<ComponentRow>();
+			Exception exception = null;
+
+			// the loaders use the database connection one at a time
+			synchronized (DBGuiImportComponents.this.componentsLoaderLock) {
+				try {
+					if ( !this.cancelled )
+						fetchComponents(rows);
+					if ( !this.cancelled && !rows.isEmpty() )
+						fetchProperties(rows);
+				} catch (Exception err) {
+					exception = err;
+				} finally {
+					this.runningSelect = null;
 				}
 			}
-			
-			TableItem[] items = table.getItems();
-			Collator collator = Collator.getInstance(Locale.getDefault());
-			
-			for (int i = 1; i < items.length; i++) {
-				String value1 = items[i].getText(columnIndex);
-				for (int j = 0; j < i; j++) {
-					String value2 = items[j].getText(columnIndex);
-					if ( (sortDirection == SWT.UP && collator.compare(value1, value2) < 0) || (sortDirection == SWT.DOWN && collator.compare(value1, value2) > 0)) {
-						// we save the old values
-						String name = items[i].getText(0);
-						String documentation = items[i].getText(1);
-						String tooltip = (String) items[i].getData("tooltip");
-						Image image = items[i].getImage();
-						
-						// we delete the old row
-						items[i].dispose();
-						
-						// we create the new one
-						TableItem item = new TableItem(table, SWT.NONE, j);
-						
-						// and restore the saved values
-						item.setText(0, name);
-						if ( documentation != null ) item.setText(1, documentation);
-						item.setData("tooltip", tooltip);
-						item.setImage(image);
-						
-						// at last, we refresh the items list
-						items = table.getItems();
-						break;
-					}
+
+			if ( this.cancelled ) {
+				if ( logger.isDebugEnabled() ) logger.debug("Components request cancelled");
+				return;
+			}
+
+			final Exception pageException = exception;
+			if ( !this.display.isDisposed() ) {
+				this.display.asyncExec(new Runnable() {
+					@Override
+					public void run() { componentsPageLoaded(ComponentsLoader.this, rows, pageException); }
+				});
+			}
+		}
+
+		private void fetchComponents(List<ComponentRow> rows) throws SQLException {
+			if ( this.request.rankedIds != null ) {
+				fetchRankedComponents(rows);
+				return;
+			}
+
+			List<Object> parameters = new ArrayList<Object>();
+			String pageRequest = this.request.getPageRequest(this.fromSortName, this.fromId, parameters);
+
+			try ( DBSelect result = new DBSelect(this.connection.getDatabaseEntry().getName(), this.connection.getConnection(), new DBSelect.IExecutionListener() {
+				@Override
+				public void beforeExecution(DBSelect select) throws SQLException {
+					select.setMaxRows(COMPONENTS_PAGE_SIZE);
+					ComponentsLoader.this.runningSelect = select;
 				}
+			}, pageRequest, parameters.toArray()) ) {
+				while ( !this.cancelled && (rows.size() < COMPONENTS_PAGE_SIZE) && result.next() )
+					rows.add(new ComponentRow(result.getString("id"), result.getInt("version"), result.getString("class"), result.getString("name"), result.getString("documentation"), result.getString("sort_name")));
 			}
 		}
-	};
+
+		/**
+		 * Gets the components found by the search index, in the order of their rank
+		 */
+		private void fetchRankedComponents(List<ComponentRow> rows) throws SQLException {
+			if ( this.fromRank >= this.toRank )
+				return;
+
+			ArrayList<String> ids = new ArrayList<String>(this.request.rankedIds.subList(this.fromRank, this.toRank));
+			List<Object> parameters = new ArrayList<Object>();
+			String pageRequest = this.request.getRankedPageRequest(ids, parameters);
+
+			Map<String, ComponentRow> rowsById = new HashMap<String, ComponentRow>();
+			try ( DBSelect result = new DBSelect(this.connection.getDatabaseEntry().getName(), this.connection.getConnection(), new DBSelect.IExecutionListener() {
+				@Override
+				public void beforeExecution(DBSelect select) throws SQLException {
+					ComponentsLoader.this.runningSelect = select;
+				}
+			}, pageRequest, parameters.toArray()) ) {
+				while ( !this.cancelled && result.next() )
+					rowsById.put(result.getString("id"), new ComponentRow(result.getString("id"), result.getInt("version"), result.getString("class"), result.getString("name"), result.getString("documentation"), result.getString("sort_name")));
+			}
+
+			// the components that do not match the other criterias, or that do not exist anymore in the database, are not returned by the request
+			for ( String id: ids ) {
+				ComponentRow row = rowsById.get(id);
+				if ( row != null )
+					rows.add(row);
+			}
+		}
+
+		/**
+		 * Gets the properties of all the components of the page in a single request, to build their tooltip
+		 */
+		private void fetchProperties(List<ComponentRow> rows) throws SQLException {
+			Map<String, ComponentRow> rowsById = new HashMap<String, ComponentRow>();
+			// only the properties of the displayed version of the components are requested
+			Object[] parameters = new Object[rows.size() * 2];
+			StringBuilder whereClause = new StringBuilder();
+			for ( int i = 0 ; i < rows.size() ; ++i ) {
+				ComponentRow row = rows.get(i);
+				whereClause.append(i == 0 ? "(parent_id = ? AND parent_version = ?)" : " OR (parent_id = ? AND parent_version = ?)");
+				parameters[2*i] = row.id;
+				parameters[2*i+1] = row.version;
+				rowsById.put(row.id, row);
+			}
+
+			Map<String, StringBuilder> tooltipBuilders = new HashMap<String, StringBuilder>();
+			try ( DBSelect resultProperties = new DBSelect(this.connection.getDatabaseEntry().getName(), this.connection.getConnection(), new DBSelect.IExecutionListener() {
+				@Override
+				public void beforeExecution(DBSelect select) throws SQLException {
+					ComponentsLoader.this.runningSelect = select;
+				}
+			}, "SELECT parent_id, parent_version, name, value FROM "+this.connection.getDatabaseEntry().getSchemaPrefix()+"properties WHERE "+whereClause.toString()+" ORDER BY parent_id, parent_version, pos", parameters) ) {
+				while ( !this.cancelled && resultProperties.next() ) {
+					ComponentRow row = rowsById.get(resultProperties.getString("parent_id"));
+					if ( (row == null) || (row.version != resultProperties.getInt("parent_version")) )
+						continue;
+
+					StringBuilder tooltipBuilder = tooltipBuilders.get(row.id);
+					if ( tooltipBuilder == null ) {
+						tooltipBuilder = new StringBuilder();
+						tooltipBuilders.put(row.id, tooltipBuilder);
+					} else
+						tooltipBuilder.append("\n");
+					tooltipBuilder.append("   - ");
+					tooltipBuilder.append(resultProperties.getString("name"));
+					tooltipBuilder.append(": ");
+					String value = resultProperties.getString("value");
+					if ( value == null )
+						value = "";
+					if ( value.length() > 22 )
+						tooltipBuilder.append(value.substring(0,19)+"...");
+					else
+						tooltipBuilder.append(value);
+				}
+			}
+
+			for ( Map.Entry<String, StringBuilder> entry: tooltipBuilders.entrySet() )
+				rowsById.get(entry.getKey()).tooltip = entry.getValue().toString();
+		}
+	}
 }
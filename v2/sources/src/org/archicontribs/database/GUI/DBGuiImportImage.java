@@ -5,9 +5,16 @@
  */
 package org.archicontribs.database.GUI;
 
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
 import org.apache.log4j.Level;
 import org.archicontribs.database.DBLogger;
 import org.archicontribs.database.DBPlugin;
+import org.archicontribs.database.connection.DBDatabaseExportConnection;
 import org.archicontribs.database.connection.DBDatabaseImportConnection;
 import org.archicontribs.database.model.DBArchimateModel;
 import org.eclipse.nebula.widgets.gallery.DefaultGalleryItemRenderer;
@@ -21,6 +28,7 @@ import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.events.SelectionListener;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.Point;
 import org.eclipse.swt.layout.FormAttachment;
 import org.eclipse.swt.layout.FormData;
@@ -45,7 +53,12 @@ public class DBGuiImportImage extends DBGui {
     
     private int DEFAULT_GALLERY_ITEM_SIZE = 128;
     private int MIN_GALLERY_ITEM_SIZE = 64;
-    private int MAX_GALLERY_ITEM_SIZE = 256;
+    private int MAX_GALLERY_ITEM_SIZE = DBDatabaseExportConnection.thumbnailSize;
+    
+    /**
+     * Number of thumbnails got from the database in a single request
+     */
+    private static final int THUMBNAILS_PAGE_SIZE = 50;
     
     String imagePath = null;
     Image image = null;
@@ -54,9 +67,23 @@ public class DBGuiImportImage extends DBGui {
     
     private Group grpImages;
     Gallery gallery;
-    GalleryItem rootGalleryItem;
     Scale scale;
     
+    /**
+     * Paths of all the images in the database, in the order of the gallery items
+     */
+    List<String> imagePaths = new ArrayList<String>();
+    
+    /**
+     * Pages of thumbnails that have already been got from the database
+     */
+    private HashSet<Integer> loadedPages = new HashSet<Integer>();
+    
+    /**
+     * Thumbnails shown in the gallery, that must be disposed when the gallery is cleared
+     */
+    private List<Image> thumbnails = new ArrayList<Image>();
+    
     public DBGuiImportImage(DBArchimateModel model, String title) throws Exception {
         // We call the DBGui constructor that will create the underlying form and expose the compoRight, compoRightUp and compoRightBottom composites
         super(title);
@@ -77,14 +104,8 @@ public class DBGuiImportImage extends DBGui {
         setBtnAction("Import image", new SelectionListener() {
             @Override public void widgetSelected(SelectionEvent e) {
             	GalleryItem[] selectedItems = DBGuiImportImage.this.gallery.getSelection();
-            	if ( selectedItems != null && selectedItems.length != 0 ) {
-            		Image selectedImage = selectedItems[0].getImage();
-	                if ( selectedImage != null ) {
-	                	DBGuiImportImage.this.imagePath = (String)selectedItems[0].getData("imagePath");
-	                	DBGuiImportImage.this.image = new Image(display, selectedImage, SWT.IMAGE_COPY);
-	                    close();
-	                }
-            	}
+            	if ( selectedItems != null && selectedItems.length != 0 )
+            		importImage(selectedItems[0]);
             }
             @Override public void widgetDefaultSelected(SelectionEvent e) { widgetSelected(e); }
         });
@@ -130,7 +151,8 @@ public class DBGuiImportImage extends DBGui {
         layout.marginHeight = 0;
         galleryComposite.setLayout(layout);
         
-        this.gallery = new Gallery(galleryComposite, SWT.V_SCROLL | SWT.BORDER | SWT.FILL);
+        // the gallery is virtual: the thumbnails are got from the database, page by page, when their item is shown
+        this.gallery = new Gallery(galleryComposite, SWT.V_SCROLL | SWT.VIRTUAL | SWT.BORDER | SWT.FILL);
         this.gallery.setLayoutData(new GridData(GridData.FILL_BOTH));
         
         // Renderers
@@ -146,8 +168,17 @@ public class DBGuiImportImage extends DBGui {
         itemRenderer.setShowRoundedSelectionCorners(false);
         this.gallery.setItemRenderer(itemRenderer);
         
-        // Root Group
-        this.rootGalleryItem = new GalleryItem(this.gallery, SWT.NONE);
+        this.gallery.addListener(SWT.SetData, new Listener() {
+            @Override public void handleEvent(Event event) {
+                GalleryItem item = (GalleryItem)event.item;
+                GalleryItem parentItem = item.getParentItem();
+                if ( parentItem == null ) {
+                    // the root group contains all the images of the database
+                    item.setItemCount(DBGuiImportImage.this.imagePaths.size());
+                } else
+                    loadThumbnails(parentItem, parentItem.indexOf(item));
+            }
+        });
         
         // Slider
         this.scale = new Scale(galleryComposite, SWT.HORIZONTAL);
@@ -180,12 +211,9 @@ public class DBGuiImportImage extends DBGui {
         // Double-clicks
         this.gallery.addListener(SWT.MouseDoubleClick, new Listener() {
             @Override public void handleEvent(Event event) {
-                Image selectedImage = DBGuiImportImage.this.gallery.getItem(new Point(event.x, event.y)).getImage();
-                if ( selectedImage != null ) {
-                	DBGuiImportImage.this.imagePath = (String)DBGuiImportImage.this.gallery.getItem(new Point(event.x, event.y)).getData("imagePath");
-                	DBGuiImportImage.this.image = new Image(display, selectedImage, SWT.IMAGE_COPY);
-                    close();
-                }
+                GalleryItem item = DBGuiImportImage.this.gallery.getItem(new Point(event.x, event.y));
+                if ( (item != null) && (item.getParentItem() != null) )
+                	importImage(item);
             }
         });
         
@@ -209,31 +237,108 @@ public class DBGuiImportImage extends DBGui {
         this.importConnection = new DBDatabaseImportConnection(getDatabaseConnection());
         
         try {
-            for ( String path: this.importConnection.getImageListFromDatabase() ) {
-                GalleryItem item = new GalleryItem(this.rootGalleryItem, SWT.NONE);
-                item.setImage(this.importConnection.getImageFromDatabase(path));
+            // we only get the images paths, the thumbnails are got when their gallery item is shown
+            this.imagePaths = this.importConnection.getImageListFromDatabase();
+            this.gallery.setItemCount(1);
+        } catch (Exception err) {
+            popup(Level.ERROR, "Failed to get images from the database", err);
+        }
+    }
+    
+    /**
+     * Gets from the database the page of thumbnails that contains a gallery item
+     * @param parentItem the root group of the gallery
+     * @param index index of the item in the root group
+     */
+    void loadThumbnails(GalleryItem parentItem, int index) {
+        int page = index / THUMBNAILS_PAGE_SIZE;
+        
+        // getting the items of the page may raise SetData events for the same page
+        if ( !this.loadedPages.add(page) )
+            return;
+        
+        int start = page * THUMBNAILS_PAGE_SIZE;
+        int end = Math.min(start + THUMBNAILS_PAGE_SIZE, this.imagePaths.size());
+        List<String> paths = this.imagePaths.subList(start, end);
+        
+        try {
+            if ( logger.isDebugEnabled() ) logger.debug("Getting thumbnails "+start+" to "+(end-1)+" from the database");
+            HashMap<String, byte[]> pageThumbnails = this.importConnection.getImageThumbnailsFromDatabase(paths);
+            
+            for ( int i = start; i < end; ++i ) {
+                String path = this.imagePaths.get(i);
+                GalleryItem item = parentItem.getItem(i);
                 item.setData("imagePath", path);
+                
+                Image thumbnail = createThumbnail(path, pageThumbnails.get(path));
+                if ( thumbnail != null ) {
+                    this.thumbnails.add(thumbnail);
+                    item.setImage(thumbnail);
+                }
             }
         } catch (Exception err) {
+            this.loadedPages.remove(page);
             popup(Level.ERROR, "Failed to get images from the database", err);
         }
     }
     
     /**
-     * 
+     * Creates the thumbnail of an image
+     * @param path path of the image
+     * @param thumbnailBytes the thumbnail calculated when the image has been exported, or null if the thumbnail has not been calculated
+     * @return the thumbnail, or null if the image cannot be decoded
+     */
+    private Image createThumbnail(String path, byte[] thumbnailBytes) throws Exception {
+        if ( thumbnailBytes != null )
+            return new Image(display, new ByteArrayInputStream(thumbnailBytes));
+        
+        // the thumbnail could not be calculated when the image has been exported, so we try to calculate it from the full image
+        Image fullImage = this.importConnection.getImageFromDatabase(path);
+        if ( fullImage == null )
+            return null;
+        try {
+            ImageData data = fullImage.getImageData();
+            double scaleFactor = Math.min(1.0, (double)this.MAX_GALLERY_ITEM_SIZE / Math.max(data.width, data.height));
+            return new Image(display, data.scaledTo(Math.max(1, (int)(data.width * scaleFactor)), Math.max(1, (int)(data.height * scaleFactor))));
+        } finally {
+            fullImage.dispose();
+        }
+    }
+    
+    /**
+     * Gets the full image of a gallery item from the database and closes the window
+     * @param item
      */
+    void importImage(GalleryItem item) {
+        String path = (String)item.getData("imagePath");
+        if ( path == null )
+            return;
+        
+        try {
+            Image fullImage = this.importConnection.getImageFromDatabase(path);
+            if ( fullImage != null ) {
+                this.imagePath = path;
+                this.image = fullImage;
+                close();
+            }
+        } catch (Exception err) {
+            popup(Level.ERROR, "Failed to get the image from the database", err);
+        }
+    }
     
     /**
      * This method is called each time a connection to the database fails.<br>
      */
     @Override
     protected void notConnectedToDatabase() {
-        if( this.rootGalleryItem != null && !this.rootGalleryItem.isDisposed()) {
-            while(this.rootGalleryItem.getItemCount() > 0) {
-                GalleryItem item = this.rootGalleryItem.getItem(0);
-                this.rootGalleryItem.remove(item);
-            }
-        }
+        if ( this.gallery != null && !this.gallery.isDisposed() )
+            this.gallery.setItemCount(0);
+        
+        for ( Image thumbnail: this.thumbnails )
+            thumbnail.dispose();
+        this.thumbnails.clear();
+        this.loadedPages.clear();
+        this.imagePaths = new ArrayList<String>();
     }
     
     public String getImagePath() {
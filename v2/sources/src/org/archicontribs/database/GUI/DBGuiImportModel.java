@@ -8,6 +8,7 @@ package org.archicontribs.database.GUI;
 
 import java.io.IOException;
 import java.sql.Date;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.text.Collator;
 import java.text.SimpleDateFormat;
@@ -20,8 +21,10 @@ import org.apache.log4j.Level;
 import org.archicontribs.database.DBLogger;
 import org.archicontribs.database.DBPlugin;
 import org.archicontribs.database.connection.DBDatabaseImportConnection;
+import org.archicontribs.database.connection.DBImportModelJob;
 import org.archicontribs.database.model.DBArchimateFactory;
 import org.archicontribs.database.model.DBArchimateModel;
+import org.archicontribs.database.model.DBArchiveManager;
 import org.eclipse.gef.commands.CommandStack;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.swt.SWT;
@@ -42,6 +45,7 @@ import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 
+import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.ui.services.EditorManager;
 import com.archimatetool.editor.ui.services.ViewManager;
@@ -64,6 +68,11 @@ public class DBGuiImportModel extends DBGui {
 
     private DBArchimateModel modelToImport;
     
+    /**
+     * True once the imported model has been registered in the model manager (always from the display thread, as the tree viewer is notified of the model's changes)
+     */
+    private boolean isModelRegistered = false;
+    
     DBDatabaseImportConnection importConnection;
     
     @Getter Table tblModels;
@@ -778,88 +787,46 @@ public class DBGuiImportModel extends DBGui {
         	this.modelToImport.setLatestVersionImported(true);
         }
 
-        // we add the new model in the manager
-        IEditorModelManager.INSTANCE.registerModel(this.modelToImport);
-
-        // we import the model from the database
-        try {
-            int importSize = this.importConnection.importModel(this.modelToImport);
-            setProgressBarMinAndMax(0, importSize);
-
-            this.txtTotalElements.setText(toString(this.importConnection.getCountElementsToImport()));
-            this.txtTotalRelationships.setText(toString(this.importConnection.getCountRelationshipsToImport()));
-            this.txtTotalFolders.setText(toString(this.importConnection.getCountFoldersToImport()));
-            this.txtTotalViews.setText(toString(this.importConnection.getCountViewsToImport()));
-            this.txtTotalViewObjects.setText(toString(this.importConnection.getCountViewObjectsToImport()));
-            this.txtTotalViewConnections.setText(toString(this.importConnection.getCountViewConnectionsToImport()));
-            this.txtTotalImages.setText(toString(this.importConnection.getCountImagesToImport()));
-
-            this.txtImportedElements.setText(toString(this.importConnection.getCountElementsImported()));
-            this.txtImportedRelationships.setText(toString(this.importConnection.getCountRelationshipsImported()));
-            this.txtImportedFolders.setText(toString(this.importConnection.getCountFoldersImported()));
-            this.txtImportedViews.setText(toString(this.importConnection.getCountViewsImported()));
-            this.txtImportedViewObjects.setText(toString(this.importConnection.getCountViewObjectsImported()));
-            this.txtImportedViewConnections.setText(toString(this.importConnection.getCountViewConnectionsImported()));
-            this.txtImportedImages.setText(toString(this.importConnection.getCountImagesImported()));
-
-            logger.info("Importing folders ...");
-            this.importConnection.prepareImportFolders(this.modelToImport);
-            while ( this.importConnection.importFolders(this.modelToImport) ) {
-            	this.txtImportedFolders.setText(toString(this.importConnection.getCountFoldersImported()));
-                increaseProgressBar();
-            }
+        // we create the model's archive manager (the model is added in the manager once imported)
+        this.modelToImport.setAdapter(IArchiveManager.class, DBArchiveManager.createArchiveManager(this.modelToImport, this.importConnection.getDatabaseEntry()));
 
-            logger.info("Importing elements ...");
-            this.importConnection.prepareImportElements(this.modelToImport);
-            while ( this.importConnection.importElements(this.modelToImport) ) {
-            	this.txtImportedElements.setText(toString(this.importConnection.getCountElementsImported()));
-                increaseProgressBar();
+        // we import the model from the database in a background thread, the widgets being refreshed at most every 100 ms
+        this.isModelRegistered = false;
+        DBImportModelJob job = new DBImportModelJob(this.importConnection, this.modelToImport, new DBImportModelJob.IProgressListener() {
+            @Override public void progressChanged(final DBImportModelJob theJob) {
+                display.asyncExec(new Runnable() {
+                    @Override public void run() { showImportProgress(theJob); }
+                });
             }
-
-            logger.info("Importing relationships ...");
-            this.importConnection.prepareImportRelationships(this.modelToImport);
-            while ( this.importConnection.importRelationships(this.modelToImport) ) {
-            	this.txtImportedRelationships.setText(toString(this.importConnection.getCountRelationshipsImported()));
-                increaseProgressBar();
+        }, 100);
+        
+        try {
+            Thread importThread = new Thread(job, "DBImportModelJob");
+            importThread.setDaemon(true);
+            setBackgroundThread(importThread);
+            importThread.start();
+
+            // we keep the display responsive until the end of the import, which is cancelled if the user closes the window
+            while ( !job.isFinished() ) {
+                if ( isClosedByUser() && !job.isCancelled() )
+                    job.cancel();
+                if ( !display.readAndDispatch() )
+                    display.sleep();
             }
-            this.modelToImport.resolveSourceAndTargetRelationships();
+            importThread.join();
+            setBackgroundThread(null);
+            if ( isClosedByUser() )
+                throw new InterruptedException("The import has been cancelled.");
+            refreshDisplay();
+            showImportProgress(job);
 
-            logger.info("Importing views ...");
-            this.importConnection.prepareImportViews(this.modelToImport);
-            while ( this.importConnection.importViews(this.modelToImport) ) {
-            	this.txtImportedViews.setText(toString(this.importConnection.getCountViewsImported()));
-                increaseProgressBar();
-            }
+            if ( job.getException() != null )
+                throw job.getException();
 
-            logger.info("Importing view objects ...");
-            for (IDiagramModel view: this.modelToImport.getAllViews().values()) {
-                this.importConnection.prepareImportViewsObjects(view.getId(), this.modelToImport.getDBMetadata(view).getInitialVersion().getVersion());
-                while ( this.importConnection.importViewsObjects(this.modelToImport, view) ) {
-                	this.txtImportedViewObjects.setText(toString(this.importConnection.getCountViewObjectsImported()));
-                    increaseProgressBar();
-                }
-            }
-            this.txtImportedElements.setText(toString(this.importConnection.getCountElementsImported()));
-
-            logger.info("Importing view connections ...");
-            for (IDiagramModel view: this.modelToImport.getAllViews().values()) {
-                this.importConnection.prepareImportViewsConnections(view.getId(), this.modelToImport.getDBMetadata(view).getInitialVersion().getVersion());
-                while ( this.importConnection.importViewsConnections(this.modelToImport) ) {
-                	this.txtImportedViewConnections.setText(toString(this.importConnection.getCountViewConnectionsImported()));
-                    increaseProgressBar();
-                }
-            }
-            this.modelToImport.resolveSourceAndTargetConnections();
-            this.txtImportedRelationships.setText(toString(this.importConnection.getCountRelationshipsImported()));
+            // we add the new model in the manager
+            registerModel();
 
             closeMessage();
-
-            logger.info("Importing images ...");
-            for (String path: this.importConnection.getAllImagePaths()) {
-                this.importConnection.importImage(this.modelToImport, path);
-                this.txtImportedImages.setText(toString(this.importConnection.getCountImagesImported()));
-                increaseProgressBar();
-            }
             
             // If the model contains a view called "default view", we open it.
             for ( IDiagramModel view: this.modelToImport.getDiagramModels() ) {
@@ -873,14 +840,16 @@ public class DBGuiImportModel extends DBGui {
         } catch (Exception err) {
         	closeMessage();
             if ( isClosedByUser() ) {
-                // we close the partially imported model
-                CommandStack stack = (CommandStack)this.modelToImport.getAdapter(CommandStack.class);
-                stack.markSaveLocation();
+                // the import thread has stopped, so we can now rollback and close the database connection
                 try {
-                    IEditorModelManager.INSTANCE.closeModel(this.modelToImport);
-                } catch (@SuppressWarnings("unused") IOException ign) {
-                    // there is nothing we can do
+                    rollbackAndCloseConnection();
+                } catch (SQLException e) {
+                    popup(Level.ERROR, "Failed to rollback and close the database connection.", e);
                 }
+                if ( !isDisposed() )
+                    close();
+
+                // the partially imported model has not been registered in the model manager, so it is simply discarded
                 popup(Level.WARN, "The import has been cancelled.");
             } else {
                 popup(Level.ERROR, "Failed to import model from database.", err);
@@ -897,6 +866,43 @@ public class DBGuiImportModel extends DBGui {
         return;
     }
 
+    /**
+     * Number of components to import, as shown in the progress bar
+     */
+    private int importSizeShown = -1;
+
+    /**
+     * Shows the progress of the import job (must be called from the display thread)
+     * @param job
+     */
+    void showImportProgress(DBImportModelJob job) {
+        if ( (this.dialog == null) || this.dialog.isDisposed() )
+            return;
+
+        if ( this.importSizeShown != job.getImportSize() ) {
+            this.importSizeShown = job.getImportSize();
+            setProgressBarMinAndMax(0, this.importSizeShown);
+
+            this.txtTotalElements.setText(toString(this.importConnection.getCountElementsToImport()));
+            this.txtTotalRelationships.setText(toString(this.importConnection.getCountRelationshipsToImport()));
+            this.txtTotalFolders.setText(toString(this.importConnection.getCountFoldersToImport()));
+            this.txtTotalViews.setText(toString(this.importConnection.getCountViewsToImport()));
+            this.txtTotalViewObjects.setText(toString(this.importConnection.getCountViewObjectsToImport()));
+            this.txtTotalViewConnections.setText(toString(this.importConnection.getCountViewConnectionsToImport()));
+            this.txtTotalImages.setText(toString(this.importConnection.getCountImagesToImport()));
+        }
+
+        this.txtImportedElements.setText(toString(this.importConnection.getCountElementsImported()));
+        this.txtImportedRelationships.setText(toString(this.importConnection.getCountRelationshipsImported()));
+        this.txtImportedFolders.setText(toString(this.importConnection.getCountFoldersImported()));
+        this.txtImportedViews.setText(toString(this.importConnection.getCountViewsImported()));
+        this.txtImportedViewObjects.setText(toString(this.importConnection.getCountViewObjectsImported()));
+        this.txtImportedViewConnections.setText(toString(this.importConnection.getCountViewConnectionsImported()));
+        this.txtImportedImages.setText(toString(this.importConnection.getCountImagesImported()));
+
+        setProgressBarValue(job.getProgress());
+    }
+
     protected void doShowResult(Exception err) {
         logger.debug("Showing result.");
         if ( this.grpProgressBar != null ) this.grpProgressBar.setVisible(false);
@@ -971,18 +977,35 @@ public class DBGuiImportModel extends DBGui {
 
         if ( statusColor == RED_COLOR ) {
         	if ( DBPlugin.INSTANCE.getPreferenceStore().getBoolean("deleteIfImportError") ) {
-	        	try {
-	                // we remove the 'dirty' flag (i.e. we consider the model as saved) because we do not want the closeModel() method ask to save it
-	                CommandStack stack = (CommandStack)this.modelToImport.getAdapter(CommandStack.class);
-	                stack.markSaveLocation();
-	    
-	                IEditorModelManager.INSTANCE.closeModel(this.modelToImport);
-	            } catch (IOException e) {
-	                popup(Level.FATAL, "Failed to close the model partially imported.\n\nWe suggest you close and restart Archi.", e);
-	            }
+        		// if the import failed, the model has not been registered in the model manager, so it is simply discarded
+        		if ( this.isModelRegistered ) {
+		        	try {
+		                // we remove the 'dirty' flag (i.e. we consider the model as saved) because we do not want the closeModel() method ask to save it
+		                CommandStack stack = (CommandStack)this.modelToImport.getAdapter(CommandStack.class);
+		                stack.markSaveLocation();
+		    
+		                IEditorModelManager.INSTANCE.closeModel(this.modelToImport);
+		                this.isModelRegistered = false;
+		            } catch (IOException e) {
+		                popup(Level.FATAL, "Failed to close the model partially imported.\n\nWe suggest you close and restart Archi.", e);
+		            }
+        		}
 	        } else {
+	        	// the partially imported model is added in the model manager now that the import thread is over
+	        	if ( !this.isModelRegistered ) {
+	        		registerModel();
+	        		IEditorModelManager.INSTANCE.openModel(this.modelToImport);
+	        	}
 	            popup(Level.ERROR, "Please be warn that the model you just imported is not concistent.\n\nYou choosed to keep it in the preferences, but should you export it back to the database, you may loose data.\n\nDo it at your own risk !");
 	        }
         }
     }
+
+    /**
+     * Registers the imported model in the model manager (must be called from the display thread, once the import thread is over)
+     */
+    private void registerModel() {
+        IEditorModelManager.INSTANCE.registerModel(this.modelToImport);
+        this.isModelRegistered = true;
+    }
 }
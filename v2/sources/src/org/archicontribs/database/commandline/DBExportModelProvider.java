@@ -50,7 +50,6 @@ import com.archimatetool.commandline.AbstractCommandLineProvider;
 import com.archimatetool.commandline.CommandLineState;
 import com.archimatetool.editor.diagram.util.DiagramUtils;
 import com.archimatetool.editor.diagram.util.ModelReferencedImage;
-import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.model.commands.DeleteArchimateElementCommand;
 import com.archimatetool.editor.model.commands.DeleteArchimateRelationshipCommand;
 import com.archimatetool.editor.model.commands.DeleteDiagramModelCommand;
@@ -370,6 +369,9 @@ public class DBExportModelProvider extends AbstractCommandLineProvider {
 				else {
 
 					try (DBDatabaseImportConnection importConnection = new DBDatabaseImportConnection(connection)) {
+						// we get all the components to import from the database in a few requests rather than
+						// one request per component
+						importConnection.prefetchComponentsToSync(exportedModel, connection);
 
 						// IMPORT FOLDERS (we import the folders BEFORE the elements, relationships and
 						// views because they must exist when the elements, relationships and views are
@@ -705,6 +707,7 @@ public class DBExportModelProvider extends AbstractCommandLineProvider {
 
 // we start a new database transaction
 			connection.setAutoCommit(false);
+			connection.setBatchSize(DBPlugin.INSTANCE.getPreferenceStore().getInt("exportBatchSize"));
 
 				logMessage("Exporting the model itslef ...");
 				connection.exportModel(exportedModel, releaseNote);// this.txtReleaseNote.getText());
@@ -741,11 +744,53 @@ public class DBExportModelProvider extends AbstractCommandLineProvider {
 
 			}
 
-			if (true) {
+			Iterator<Entry<String, IFolder>> foldersIterator = exportedModel.getAllFolders().entrySet().iterator();
+			while (foldersIterator.hasNext()) {
+				EObject componentToExport = foldersIterator.next().getValue();
+				DATABASE_STATUS dbStatus = exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
+				if (dbStatus == DATABASE_STATUS.isNewInModel)
+					connection.exportEObject(componentToExport);
+				else if (dbStatus == DATABASE_STATUS.isUpdatedInModel)
+					connection.exportEObject(componentToExport);
 
-				Iterator<Entry<String, IFolder>> foldersIterator = exportedModel.getAllFolders().entrySet().iterator();
-				while (foldersIterator.hasNext()) {
-					EObject componentToExport = foldersIterator.next().getValue();
+				connection.assignEObjectToModel(componentToExport);
+
+			}
+
+			Iterator<Entry<String, IDiagramModel>> viewsIterator = exportedModel.getAllViews().entrySet()
+					.iterator();
+			while (viewsIterator.hasNext()) {
+				EObject componentToExport = viewsIterator.next().getValue();
+				String txtFieldToIncrement = null;
+				DBMetadata metadata = exportedModel.getDBMetadata(componentToExport);
+				DATABASE_STATUS dbStatus = metadata.getDatabaseStatus();
+				if (dbStatus == DATABASE_STATUS.isNewInModel)
+					txtFieldToIncrement = "";
+				else if (dbStatus == DATABASE_STATUS.isUpdatedInModel)
+					txtFieldToIncrement = "";
+
+				if (txtFieldToIncrement != null) {
+					if (metadata.getScreenshot().isScreenshotActive()) {
+						createImage((IDiagramModel) componentToExport,
+								connection.getDatabaseEntry().getViewsImagesScaleFactor(),
+								connection.getDatabaseEntry().getViewsImagesBorderWidth());
+
+					}
+					connection.exportEObject(componentToExport);
+					metadata.setExported(true);
+				} else
+					metadata.setExported(false);
+
+				connection.assignEObjectToModel(componentToExport);
+
+			}
+
+			Iterator<Entry<String, IDiagramModelObject>> viewObjectsIterator = exportedModel.getAllViewObjects()
+					.entrySet().iterator();
+			while (viewObjectsIterator.hasNext()) {
+				IDiagramModelObject componentToExport = viewObjectsIterator.next().getValue();
+
+				if (exportedModel.getDBMetadata(componentToExport.getDiagramModel()).isExported()) {
 					DATABASE_STATUS dbStatus = exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
 					if (dbStatus == DATABASE_STATUS.isNewInModel)
 						connection.exportEObject(componentToExport);
@@ -753,82 +798,37 @@ public class DBExportModelProvider extends AbstractCommandLineProvider {
 						connection.exportEObject(componentToExport);
 
 					connection.assignEObjectToModel(componentToExport);
-
 				}
 
-				Iterator<Entry<String, IDiagramModel>> viewsIterator = exportedModel.getAllViews().entrySet()
-						.iterator();
-				while (viewsIterator.hasNext()) {
-					EObject componentToExport = viewsIterator.next().getValue();
-					String txtFieldToIncrement = null;
-					DBMetadata metadata = exportedModel.getDBMetadata(componentToExport);
-					DATABASE_STATUS dbStatus = metadata.getDatabaseStatus();
-					if (dbStatus == DATABASE_STATUS.isNewInModel)
-						txtFieldToIncrement = "";
-					else if (dbStatus == DATABASE_STATUS.isUpdatedInModel)
-						txtFieldToIncrement = "";
+			}
 
-					if (txtFieldToIncrement != null) {
-						if (metadata.getScreenshot().isScreenshotActive()) {
-							createImage((IDiagramModel) componentToExport,
-									connection.getDatabaseEntry().getViewsImagesScaleFactor(),
-									connection.getDatabaseEntry().getViewsImagesBorderWidth());
+			logMessage("Exporting view connections ...");
+			Iterator<Entry<String, IDiagramModelConnection>> viewConnectionsIterator = exportedModel
+					.getAllViewConnections().entrySet().iterator();
+			while (viewConnectionsIterator.hasNext()) {
+				IDiagramModelConnection componentToExport = viewConnectionsIterator.next().getValue();
 
-						}
+				if (exportedModel.getDBMetadata(componentToExport.getDiagramModel()).isExported()) {
+					DATABASE_STATUS dbStatus = exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
+					if (dbStatus == DATABASE_STATUS.isNewInModel)
+						connection.exportEObject(componentToExport);
+					else if (dbStatus == DATABASE_STATUS.isUpdatedInModel)
 						connection.exportEObject(componentToExport);
-						metadata.setExported(true);
-					} else
-						metadata.setExported(false);
 
 					connection.assignEObjectToModel(componentToExport);
-
-				}
-
-				Iterator<Entry<String, IDiagramModelObject>> viewObjectsIterator = exportedModel.getAllViewObjects()
-						.entrySet().iterator();
-				while (viewObjectsIterator.hasNext()) {
-					IDiagramModelObject componentToExport = viewObjectsIterator.next().getValue();
-
-					if (exportedModel.getDBMetadata(componentToExport.getDiagramModel()).isExported()) {
-						DATABASE_STATUS dbStatus = exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
-						if (dbStatus == DATABASE_STATUS.isNewInModel)
-							connection.exportEObject(componentToExport);
-						else if (dbStatus == DATABASE_STATUS.isUpdatedInModel)
-							connection.exportEObject(componentToExport);
-
-						connection.assignEObjectToModel(componentToExport);
-					}
-
 				}
 
-				logMessage("Exporting view connections ...");
-				Iterator<Entry<String, IDiagramModelConnection>> viewConnectionsIterator = exportedModel
-						.getAllViewConnections().entrySet().iterator();
-				while (viewConnectionsIterator.hasNext()) {
-					IDiagramModelConnection componentToExport = viewConnectionsIterator.next().getValue();
-
-					if (exportedModel.getDBMetadata(componentToExport.getDiagramModel()).isExported()) {
-						DATABASE_STATUS dbStatus = exportedModel.getDBMetadata(componentToExport).getDatabaseStatus();
-						if (dbStatus == DATABASE_STATUS.isNewInModel)
-							connection.exportEObject(componentToExport);
-						else if (dbStatus == DATABASE_STATUS.isUpdatedInModel)
-							connection.exportEObject(componentToExport);
-
-						connection.assignEObjectToModel(componentToExport);
-					}
-
-				}
+			}
 
-				logMessage("Exporting images ...");
+			logMessage("Exporting images ...");
 // no need to use imagesNotInModel as the requested images have been imported at the same time as their view object
-				IArchiveManager archiveMgr = (IArchiveManager) exportedModel.getAdapter(IArchiveManager.class);
-				for (String path : exportedModel.getAllImagePaths()) {
-					connection.exportImage(path, archiveMgr.getBytesFromEntry(path));
-				}
+			connection.exportImages(exportedModel);
+
+// we copy the unchanged memberships from the previous version of the model
+			connection.copyMembershipsForward();
 
 // we register the undoableCommands on the model's stack, this way, the user will be able to manually undo them
-				this.stack.execute(undoableCommands);
-			}
+			this.stack.execute(undoableCommands);
 		} catch (Exception exportError) {
 // if the user clicked on the "cancel" button, then the database connection is closed, which generates an exception when a SQL request is executed
 			try {
@@ -0,0 +1,66 @@
+package org.archicontribs.database.connection;
+/**
+ * wrapper to execute the same INSERT or UPDATE request for several lines using a JDBC batch
+ * One may use '?' in the request and provide the corresponding values for each line using the addBatch method (strings, integers, booleans and byte[] are accepted)
+ * The lines are sent to the database when the executeBatch method is called
+ */
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.archicontribs.database.DBLogger;
+
+import lombok.Getter;
+
+public class DBBatchRequest extends DBStatement {
+	private static final DBLogger logger = new DBLogger(DBBatchRequest.class);
+
+	/**
+	 * Number of lines that have been added to the batch but not sent yet to the database
+	 */
+	@Getter private int pendingRows = 0;
+
+	public DBBatchRequest(String theDriverName, Connection theConnection, String theRequest) throws SQLException {
+		super(theDriverName, theConnection, theRequest);
+	}
+
+	/**
+	 * Binds the parameters and adds the corresponding line to the batch
+	 * @param theParameters
+	 * @throws SQLException
+	 */
+	@SafeVarargs
+	public final <T> void addBatch(T... theParameters) throws SQLException {
+		constructStatement(theParameters);
+		this.preparedStatement.addBatch();
+		++this.pendingRows;
+	}
+
+	/**
+	 * Sends all the pending lines to the database
+	 * @return the number of lines impacted by the batch
+	 * @throws SQLException
+	 */
+	public int executeBatch() throws SQLException {
+		if ( this.pendingRows == 0 )
+			return 0;
+
+		if ( logger.isTraceEnabled() ) logger.trace("      --> executing batch of "+this.pendingRows+" lines");
+
+		int rowCount = 0;
+		try {
+			for ( int result: this.preparedStatement.executeBatch() ) {
+				// some drivers do not return the number of impacted lines, so we count one line per successful request
+				if ( result == Statement.SUCCESS_NO_INFO )
+					++rowCount;
+				else if ( result > 0 )
+					rowCount += result;
+			}
+		} finally {
+			this.pendingRows = 0;
+		}
+
+		return rowCount;
+	}
+}
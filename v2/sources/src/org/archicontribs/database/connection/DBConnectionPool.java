@@ -0,0 +1,262 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+
+package org.archicontribs.database.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.archicontribs.database.DBDatabaseEntry;
+import org.archicontribs.database.DBLogger;
+import org.archicontribs.database.DBPlugin;
+
+/**
+ * Plugin wide pool of database connections<br>
+ * <br>
+ * Opening a JDBC connection may be slow (TLS handshake, authentication, ...) so the connections that are closed by the DBDatabaseConnection class are kept opened in a pool
+ * and given back to the next DBDatabaseConnection that connects to the same database. There is one pool per database entry and each pool keeps at most "connectionPoolMaxSize" idle connections.<br>
+ * <br>
+ * A connection is validated before it is reused, and the connections that stayed idle more than "connectionPoolIdleTimeout" seconds are closed by a background timer.<br>
+ * The pools are locked only to get or put a connection: the connections are validated, reset and closed outside of the lock, as the driver may take several seconds to answer.<br>
+ * The pool also remembers that the database structure has already been checked, so that the check is done only once per database.
+ *
+ * @author Herve Jouin
+ */
+public class DBConnectionPool {
+	private static final DBLogger logger = new DBLogger(DBConnectionPool.class);
+
+	/**
+	 * Number of seconds the driver is given to validate a connection
+	 */
+	private static final int validationTimeout = 5;
+
+	/**
+	 * Number of milliseconds between two evictions of the connections that stayed idle for too long
+	 */
+	private static final long evictionPeriod = 30000L;
+
+	/**
+	 * Timer that evicts the idle connections, started when the first connection is kept in a pool
+	 */
+	private static Timer evictionTimer = null;
+
+	/**
+	 * Pools of all the database entries
+	 */
+	private static final Map<String, DBConnectionPool> pools = new HashMap<String, DBConnectionPool>();
+
+	private static class IdleConnection {
+		final Connection connection;
+		final long idleSince;
+
+		IdleConnection(Connection connection) {
+			this.connection = connection;
+			this.idleSince = System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Idle connections, from the least recently used to the most recently used
+	 */
+	private final LinkedList<IdleConnection> idleConnections = new LinkedList<IdleConnection>();
+
+	/**
+	 * true when the database structure has been checked successfully
+	 */
+	private boolean databaseChecked = false;
+
+	private DBConnectionPool() {
+		// the pools are created by the getPool() method
+	}
+
+	/**
+	 * The pool key contains all the connection details, this way a database entry that is modified in the preferences gets a new pool
+	 */
+	private static String getKey(DBDatabaseEntry databaseEntry) {
+		return databaseEntry.getName()+"\n"+databaseEntry.getDriver()+"\n"+databaseEntry.getJdbcConnectionString()+"\n"+databaseEntry.getUsername()+"\n"+databaseEntry.getSchema();
+	}
+
+	private static DBConnectionPool getPool(DBDatabaseEntry databaseEntry) {
+		String key = getKey(databaseEntry);
+		DBConnectionPool pool = pools.get(key);
+		if ( pool == null ) {
+			pool = new DBConnectionPool();
+			pools.put(key, pool);
+		}
+		return pool;
+	}
+
+	private static int getMaxSize() {
+		return DBPlugin.INSTANCE.getPreferenceStore().getInt("connectionPoolMaxSize");
+	}
+
+	private static long getIdleTimeout() {
+		return DBPlugin.INSTANCE.getPreferenceStore().getInt("connectionPoolIdleTimeout") * 1000L;
+	}
+
+	/**
+	 * Gets an idle connection to the database
+	 * @param databaseEntry
+	 * @return a validated connection, or null if the pool has got no valid idle connection
+	 */
+	public static Connection borrow(DBDatabaseEntry databaseEntry) {
+		while ( true ) {
+			IdleConnection idleConnection;
+			synchronized ( DBConnectionPool.class ) {
+				DBConnectionPool pool = getPool(databaseEntry);
+				if ( pool.idleConnections.isEmpty() )
+					return null;
+				// we use the most recently used connection as it is the most likely to be still valid
+				idleConnection = pool.idleConnections.removeLast();
+			}
+
+			// the connection may have stayed idle for too long since the last run of the eviction timer
+			Connection connection = idleConnection.connection;
+			if ( (idleConnection.idleSince >= System.currentTimeMillis() - getIdleTimeout()) && isValid(connection) ) {
+				if ( logger.isDebugEnabled() ) logger.debug("Reusing pooled connection to database "+databaseEntry.getName());
+				return connection;
+			}
+			if ( logger.isDebugEnabled() ) logger.debug("Discarding invalid pooled connection to database "+databaseEntry.getName());
+			close(connection);
+		}
+	}
+
+	/**
+	 * Gives back a connection to the pool<br>
+	 * The current transaction, if any, is rolled back.
+	 * @param databaseEntry
+	 * @param connection
+	 * @return true if the connection has been kept in the pool, false if it must be closed by the caller
+	 */
+	public static boolean giveBack(DBDatabaseEntry databaseEntry, Connection connection) {
+		if ( (databaseEntry == null) || (connection == null) || (getMaxSize() <= 0) )
+			return false;
+
+		try {
+			if ( connection.isClosed() )
+				return false;
+
+			// the next user of the connection must start with a clean transaction
+			if ( !connection.getAutoCommit() ) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException err) {
+			logger.error("Cannot reset the database connection, so it is not kept in the pool", err);
+			return false;
+		}
+
+		synchronized ( DBConnectionPool.class ) {
+			DBConnectionPool pool = getPool(databaseEntry);
+			if ( pool.idleConnections.size() >= getMaxSize() )
+				return false;
+
+			if ( logger.isDebugEnabled() ) logger.debug("Keeping connection to database "+databaseEntry.getName()+" in the pool");
+			pool.idleConnections.addLast(new IdleConnection(connection));
+
+			if ( evictionTimer == null ) {
+				evictionTimer = new Timer("DBConnectionPool eviction", true);
+				evictionTimer.schedule(new TimerTask() {
+					@Override
+					public void run() {
+						evictIdleConnections();
+					}
+				}, evictionPeriod, evictionPeriod);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param databaseEntry
+	 * @return true if the database structure has already been checked successfully
+	 */
+	public static synchronized boolean isDatabaseChecked(DBDatabaseEntry databaseEntry) {
+		return getPool(databaseEntry).databaseChecked;
+	}
+
+	/**
+	 * Remembers if the database structure has been checked successfully
+	 * @param databaseEntry
+	 * @param checked
+	 */
+	public static synchronized void setDatabaseChecked(DBDatabaseEntry databaseEntry, boolean checked) {
+		getPool(databaseEntry).databaseChecked = checked;
+	}
+
+	/**
+	 * Closes all the idle connections of all the pools (for instance when Archi stops)
+	 */
+	public static void closeAll() {
+		List<Connection> connectionsToClose = new ArrayList<Connection>();
+		synchronized ( DBConnectionPool.class ) {
+			if ( evictionTimer != null ) {
+				evictionTimer.cancel();
+				evictionTimer = null;
+			}
+			for ( DBConnectionPool pool: pools.values() ) {
+				for ( IdleConnection idleConnection: pool.idleConnections )
+					connectionsToClose.add(idleConnection.connection);
+				pool.idleConnections.clear();
+			}
+			pools.clear();
+		}
+
+		for ( Connection connection: connectionsToClose )
+			close(connection);
+	}
+
+	/**
+	 * Closes the connections of all the pools that stayed idle for too long<br>
+	 * This method is called periodically by the eviction timer.
+	 */
+	static void evictIdleConnections() {
+		List<Connection> connectionsToClose = new ArrayList<Connection>();
+		synchronized ( DBConnectionPool.class ) {
+			long oldest = System.currentTimeMillis() - getIdleTimeout();
+			for ( DBConnectionPool pool: pools.values() ) {
+				Iterator<IdleConnection> iterator = pool.idleConnections.iterator();
+				while ( iterator.hasNext() ) {
+					IdleConnection idleConnection = iterator.next();
+					if ( idleConnection.idleSince < oldest ) {
+						connectionsToClose.add(idleConnection.connection);
+						iterator.remove();
+					}
+				}
+			}
+		}
+
+		for ( Connection connection: connectionsToClose ) {
+			if ( logger.isDebugEnabled() ) logger.debug("Closing a database connection that stayed idle for too long");
+			close(connection);
+		}
+	}
+
+	private static boolean isValid(Connection connection) {
+		try {
+			return !connection.isClosed() && connection.isValid(validationTimeout);
+		} catch (@SuppressWarnings("unused") SQLException err) {
+			return false;
+		}
+	}
+
+	private static void close(Connection connection) {
+		DBStatementCache.unregister(connection);
+		try {
+			connection.close();
+		} catch (SQLException err) {
+			logger.error("Cannot close the database connection", err);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package org.archicontribs.database.connection;
+/**
+ * wrapper to stream lines to a PostGreSQL table using the "COPY ... FROM STDIN" request of the PostGreSQL JDBC driver
+ * The lines are added using the addRow method (strings, integers, timestamps, booleans and byte[] are accepted), encoded in CSV format and buffered
+ * The buffered lines are sent to the database in a single COPY request when the executeCopy method is called
+ */
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+import org.archicontribs.database.DBLogger;
+import org.postgresql.PGConnection;
+
+import lombok.Getter;
+
+public class DBCopyRequest implements AutoCloseable {
+	private static final DBLogger logger = new DBLogger(DBCopyRequest.class);
+
+	private static final char[] HEXA_DIGITS = "0123456789abcdef".toCharArray();
+
+	private Connection connection;
+	@Getter private String request;
+
+	/**
+	 * CSV encoded lines that have not been sent yet to the database
+	 */
+	private StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * Number of lines that have been added to the buffer but not sent yet to the database
+	 */
+	@Getter private int pendingRows = 0;
+
+	/**
+	 * @param theConnection connection to a PostGreSQL database
+	 * @param table the name of the table, prefixed by its schema if any
+	 * @param columns the columns that will be provided by the addRow method, in the same order
+	 */
+	public DBCopyRequest(Connection theConnection, String table, String columns) {
+		this.connection = theConnection;
+		this.request = "COPY "+table+" ("+columns+") FROM STDIN WITH (FORMAT csv)";
+	}
+
+	/**
+	 * Encodes the parameters in CSV format and adds the corresponding line to the buffer
+	 * <br>A null parameter is sent as an unquoted empty field, that PostGreSQL reads as NULL.
+	 * @param theParameters
+	 * @throws SQLException if a parameter cannot be encoded
+	 */
+	@SafeVarargs
+	public final <T> void addRow(T... theParameters) throws SQLException {
+		int rowStart = this.buffer.length();
+
+		for ( int rank = 0 ; rank < theParameters.length ; ++rank ) {
+			if ( rank != 0 )
+				this.buffer.append(',');
+
+			T parameter = theParameters[rank];
+			if ( parameter == null )
+				continue;
+
+			if ( parameter instanceof String ) {
+				// an empty string must be quoted to be distinguished from NULL
+				String value = (String)parameter;
+				this.buffer.append('"');
+				for ( int i = 0 ; i < value.length() ; ++i ) {
+					char c = value.charAt(i);
+					if ( c == '"' )
+						this.buffer.append('"');
+					this.buffer.append(c);
+				}
+				this.buffer.append('"');
+			} else if ( (parameter instanceof Integer) || (parameter instanceof Boolean) || (parameter instanceof Timestamp) )
+				this.buffer.append(String.valueOf(parameter));
+			else if ( parameter instanceof byte[] ) {
+				// bytea columns accept the hexadecimal format
+				this.buffer.append("\\x");
+				for ( byte b: (byte[])parameter ) {
+					this.buffer.append(HEXA_DIGITS[(b >> 4) & 0x0f]);
+					this.buffer.append(HEXA_DIGITS[b & 0x0f]);
+				}
+			} else {
+				this.buffer.setLength(rowStart);
+				throw new SQLException("Unknown "+parameter.getClass().getSimpleName()+" parameter in COPY request.");
+			}
+		}
+		this.buffer.append('\n');
+		++this.pendingRows;
+	}
+
+	/**
+	 * Sends all the pending lines to the database
+	 * @return the number of lines inserted in the database
+	 * @throws SQLException
+	 */
+	public int executeCopy() throws SQLException {
+		if ( this.pendingRows == 0 )
+			return 0;
+
+		if ( logger.isTraceEnabled() ) logger.trace("      --> "+this.request+" ("+this.pendingRows+" lines)");
+
+		try {
+			return (int)this.connection.unwrap(PGConnection.class).getCopyAPI().copyIn(this.request, new StringReader(this.buffer.toString()));
+		} catch (IOException err) {
+			throw new SQLException("Failed to send the lines to the database.", err);
+		} finally {
+			this.buffer.setLength(0);
+			this.pendingRows = 0;
+		}
+	}
+
+	/**
+	 * Discards the pending lines
+	 */
+	@Override
+	public void close() {
+		this.buffer.setLength(0);
+		this.pendingRows = 0;
+	}
+}
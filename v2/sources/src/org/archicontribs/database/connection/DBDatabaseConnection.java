@@ -18,9 +18,13 @@ import java.sql.SQLException;
 import java.sql.Savepoint;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
@@ -29,6 +33,7 @@ import org.apache.log4j.Level;
 import org.archicontribs.database.DBColumn;
 import org.archicontribs.database.DBColumnType;
 import org.archicontribs.database.DBDatabaseEntry;
+import org.archicontribs.database.DBIndex;
 import org.archicontribs.database.DBLogger;
 import org.archicontribs.database.DBPlugin;
 import org.archicontribs.database.DBTable;
@@ -36,6 +41,7 @@ import org.archicontribs.database.GUI.DBGui;
 import org.archicontribs.database.data.DBChecksum;
 import org.archicontribs.database.data.DBDatabase;
 import org.archicontribs.database.data.DBImportMode;
+import org.archicontribs.database.data.DBVersion;
 import org.archicontribs.database.model.DBArchimateModel;
 import org.archicontribs.database.model.DBMetadata;
 import org.archicontribs.database.model.commands.DBImportViewFromIdCommand;
@@ -58,7 +64,13 @@ public class DBDatabaseConnection implements AutoCloseable {
 	 * Version of the expected database model.<br>
 	 * If the value found into the columns version of the table "database_version", then the plugin will try to upgrade the datamodel.
 	 */
-	public static final int databaseVersion = 213;
+	public static final int databaseVersion = 220;
+
+	/**
+	 * Columns of the models table that store the number of components of each model version, in the order of the import procedure<br>
+	 * They allow to size the import progress bars without counting the components in the database.
+	 */
+	protected static final String[] modelsCountColumns = {"count_elements", "count_relationships", "count_folders", "count_views", "count_views_objects", "count_views_connections", "count_images"};
 
 	/**
 	 * the databaseEntry corresponding to the connection
@@ -80,6 +92,26 @@ public class DBDatabaseConnection implements AutoCloseable {
 	 */
 	@Getter protected Connection connection = null;
 
+	/**
+	 * Number of lines grouped in a JDBC batch by the insertInBatch() method (zero if the batch mode is disabled)
+	 */
+	@Getter protected int batchSize = 0;
+
+	/**
+	 * Pending JDBC batches, indexed by their INSERT request
+	 */
+	protected LinkedHashMap<String, DBBatchRequest> batchRequests = new LinkedHashMap<String, DBBatchRequest>();
+
+	/**
+	 * Pending PostGreSQL COPY requests, indexed by their COPY request
+	 */
+	protected LinkedHashMap<String, DBCopyRequest> copyRequests = new LinkedHashMap<String, DBCopyRequest>();
+
+	/**
+	 * Tables that are filled in using COPY requests when the database entry is a PostGreSQL database in copy mode
+	 */
+	private static final HashSet<String> copyTables = new HashSet<String>(Arrays.asList("elements_in_model", "relationships_in_model", "folders_in_model", "views_in_model", "views_objects_in_view", "views_connections_in_view", "properties", "features", "bendpoints"));
+
 
 	/**
 	 * Configuration of the database tables
@@ -135,7 +167,14 @@ public class DBDatabaseConnection implements AutoCloseable {
 	@Getter private List<DBColumn> imagesColumns = null;
 	@Getter private List<String> imagesPrimaryKeys = null;
 
+	@Getter private List<DBColumn> imagesContentColumns = null;
+	@Getter private List<String> imagesContentPrimaryKeys = null;
+
+	@Getter private List<DBColumn> latestVersionsColumns = null;
+	@Getter private List<String> latestVersionsPrimaryKeys = null;
+
 	@Getter private List<DBTable> databaseTables = null;
+	@Getter private List<DBIndex> databaseIndexes = null;
 
 	/**
 	 * Opens a connection to a JDBC database using all the connection details
@@ -173,6 +212,11 @@ public class DBDatabaseConnection implements AutoCloseable {
 		this.schema = this.databaseEntry.getSchema();
 		this.schemaPrefix = this.databaseEntry.getSchemaPrefix();
 
+		// if a connection to the same database has been kept in the pool, we reuse it
+		this.connection = DBConnectionPool.borrow(this.databaseEntry);
+		if ( this.connection != null )
+			return;
+
 		try {
 			// we load the jdbc class
 			Class.forName(clazz);
@@ -214,6 +258,9 @@ public class DBDatabaseConnection implements AutoCloseable {
 				if ( logger.isDebugEnabled() ) logger.debug("Connecting with username = "+username);
 				this.connection = DriverManager.getConnection(connectionString, username, password);
 			}
+
+			// we keep the prepared statements opened to avoid parsing the same requests again and again
+			DBStatementCache.register(this.connection, DBPlugin.INSTANCE.getPreferenceStore().getInt("preparedStatementCacheSize"));
 		} catch (SQLException e) {
 			// if the JDBC driver fails to connect to the database using the specified driver, then it tries with all the other drivers
 			// and the exception is raised by the latest driver (log4j in our case)
@@ -245,11 +292,18 @@ public class DBDatabaseConnection implements AutoCloseable {
 	 */
 	@Override
 	public void close() throws SQLException {
+		clearBatches();
+		this.batchSize = 0;
+
 		if ( this.connection == null || this.connection.isClosed() ) {
 			if ( logger.isDebugEnabled() ) logger.debug("The database connection is already closed.");
 		} else {
-			if ( logger.isDebugEnabled() ) logger.debug("Closing the database connection.");
-			this.connection.close();
+			// the connection is kept in the pool to be reused by the next connection to the same database
+			if ( !DBConnectionPool.giveBack(this.databaseEntry, this.connection) ) {
+				if ( logger.isDebugEnabled() ) logger.debug("Closing the database connection.");
+				DBStatementCache.unregister(this.connection);
+				this.connection.close();
+			}
 		}
 
 		this.connection = null;
@@ -287,6 +341,10 @@ public class DBDatabaseConnection implements AutoCloseable {
 		// No tables to be checked in Neo4J databases
 		if ( this.databaseEntry.getDriver().equals(DBDatabase.NEO4J.getDriverName()) )
 			return true;
+
+		// the database has already been checked by a previous connection
+		if ( DBConnectionPool.isDatabaseChecked(this.databaseEntry) )
+			return true;
 		
 		if ( logger.isTraceEnabled() ) logger.trace("Checking \""+this.schemaPrefix+"database_version\" table");
 
@@ -314,7 +372,8 @@ public class DBDatabaseConnection implements AutoCloseable {
 			else
 				throw new SQLException("The database needs to be upgraded.");
 		}
-		
+
+		DBConnectionPool.setDatabaseChecked(this.databaseEntry, true);
 		return true;
 	}
 
@@ -347,7 +406,8 @@ public class DBDatabaseConnection implements AutoCloseable {
 			if ( !isConnected() )
 				openConnection();
 
-			// checking if the database_version table exists
+			// checking if the database_version table exists (the result of the previous checks is ignored as we are explicitly asked to check the database)
+			DBConnectionPool.setDatabaseChecked(this.databaseEntry, false);
 			checkDatabase(dbGui);
 
 
@@ -464,6 +524,18 @@ public class DBDatabaseConnection implements AutoCloseable {
 				*/
 			}
 			
+			// we check that the secondary indexes required by the plugin's requests exist
+			List<DBIndex> missingIndexes = getMissingIndexes(metadata);
+			if ( !missingIndexes.isEmpty() ) {
+				isDatabaseStructureCorrect = false;
+				hasGotNotNullErrorsOnly = false;
+				message.append("\nIndexes");
+				for ( DBIndex index: missingIndexes ) {
+					logger.debug("   Index "+index.toString()+" is missing");
+					message.append("\n   Index "+index.toString()+" is missing");
+				}
+			}
+
 			if ( hasGotNotNullErrorsOnly )
 				message.append("\n\nYou may uncheck the \"Check for NOT NULL\" option in the plugin preferences pages should you wish to use this database.");
 
@@ -517,6 +589,11 @@ public class DBDatabaseConnection implements AutoCloseable {
 				executeRequest(table.generateCreateStatement());
 			}
 			
+			for ( DBIndex index: this.databaseIndexes ) {
+				if ( logger.isDebugEnabled() ) logger.debug("Creating index "+index.toString());
+				executeRequest(index.generateCreateStatement(this.databaseEntry.getDriver()));
+			}
+			
 			// we fill in the database_version table 
 			insert(this.schemaPrefix+"database_version", DBColumn.getColumnNames(this.databaseVersionColumns), DBPlugin.createID(null), DBPlugin.pluginName, databaseVersion);
 			
@@ -648,61 +725,99 @@ public class DBDatabaseConnection implements AutoCloseable {
 			requestString.append(columnName);
 
 			executeRequest(requestString.toString());
-		} else {
-			StringBuilder createTableRequest = new StringBuilder();
-			StringBuilder columnNames = new StringBuilder();
-			StringBuilder primaryKeys = new StringBuilder();
-
-			// just in case
-			dropTableIfExists(tableName+"_old");
-
-			String tableInfoRequest = "PRAGMA TABLE_INFO("+tableName+")";
-			try (PreparedStatement pstmt = this.connection.prepareStatement(tableInfoRequest, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY) ) {
-				if ( logger.isTraceSQLEnabled() ) logger.trace("      --> "+tableInfoRequest);
-				try (ResultSet result = pstmt.executeQuery() ) {
-					createTableRequest.append("CREATE TABLE "+tableName+" (");
-					boolean columnsNeedComma = false;
-					boolean primaryKeysNeedComma = false;
-					while ( result.next() ) {
-						// if the column is not the column to drop, then we create it
-						if ( !DBPlugin.areEqual(columnName, result.getString("name")) ) {
-							if ( columnsNeedComma ) {
-								createTableRequest.append(", ");
-								columnNames.append(", ");
-							}
-							createTableRequest.append(result.getString("name"));
-							createTableRequest.append(" ");
-							createTableRequest.append(result.getString("type"));
+		} else
+			recreateSqliteTable(tableName, columnName, null);
+	}
 
-							columnNames.append(result.getString("name"));
+	/**
+	 * Adds the NOT NULL constraint to a column, once all its rows have got a value
+	 * @param tableName
+	 * @param columnName
+	 * @param columnType
+	 * @throws SQLException
+	 */
+	public void setColumnNotNull(String tableName, String columnName, String columnType) throws SQLException {
+		if ( logger.isDebugEnabled() ) logger.debug("Altering table "+tableName+", setting column "+columnName+" NOT NULL");
 
-							columnsNeedComma = true;
-						}
+		if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.SQLITE.getDriverName()) )
+			recreateSqliteTable(tableName, null, columnName);
 
-						if ( result.getInt("pk") != 0 ) {
-							if ( primaryKeysNeedComma ) {
-								primaryKeys.append(", ");
-							}
-							primaryKeys.append(result.getString("name"));
-							primaryKeysNeedComma = true;
+		else if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.MSSQL.getDriverName()) )
+			executeRequest("ALTER TABLE "+tableName+" ALTER COLUMN "+columnName+" "+columnType+" NOT NULL");
+
+		else if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.POSTGRESQL.getDriverName()) )
+			executeRequest("ALTER TABLE "+tableName+" ALTER COLUMN "+columnName+" SET NOT NULL");
+
+		else if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.MYSQL.getDriverName()) )
+			executeRequest("ALTER TABLE "+tableName+" MODIFY "+columnName+" "+columnType+" NOT NULL");
+
+		else if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.ORACLE.getDriverName()) )
+			executeRequest("ALTER TABLE "+tableName+" MODIFY ( "+columnName+" NOT NULL )");
+	}
+
+	/**
+	 * sqlite has got very limited alter table support, so the table is created again and its content copied
+	 * @param tableName
+	 * @param columnToDrop the column that is not created again (null to keep all the columns)
+	 * @param columnToSetNotNull the column that is created with the NOT NULL constraint (null if none)
+	 * @throws SQLException
+	 */
+	private void recreateSqliteTable(String tableName, String columnToDrop, String columnToSetNotNull) throws SQLException {
+		StringBuilder createTableRequest = new StringBuilder();
+		StringBuilder columnNames = new StringBuilder();
+		StringBuilder primaryKeys = new StringBuilder();
+
+		// just in case
+		dropTableIfExists(tableName+"_old");
+
+		String tableInfoRequest = "PRAGMA TABLE_INFO("+tableName+")";
+		try (PreparedStatement pstmt = this.connection.prepareStatement(tableInfoRequest, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY) ) {
+			if ( logger.isTraceSQLEnabled() ) logger.trace("      --> "+tableInfoRequest);
+			try (ResultSet result = pstmt.executeQuery() ) {
+				createTableRequest.append("CREATE TABLE "+tableName+" (");
+				boolean columnsNeedComma = false;
+				boolean primaryKeysNeedComma = false;
+				while ( result.next() ) {
+					// if the column is not the column to drop, then we create it
+					if ( !DBPlugin.areEqual(columnToDrop, result.getString("name")) ) {
+						if ( columnsNeedComma ) {
+							createTableRequest.append(", ");
+							columnNames.append(", ");
 						}
-					}
-					if ( primaryKeys.length() != 0 ) {
-						createTableRequest.append(", PRIMARY KEY (");
-						createTableRequest.append(primaryKeys.toString());
-						createTableRequest.append(")");
+						createTableRequest.append(result.getString("name"));
+						createTableRequest.append(" ");
+						createTableRequest.append(result.getString("type"));
+						if ( (result.getInt("notnull") != 0) || DBPlugin.areEqual(columnToSetNotNull, result.getString("name")) )
+							createTableRequest.append(" NOT NULL");
+
+						columnNames.append(result.getString("name"));
+
+						columnsNeedComma = true;
 					}
 
+					if ( result.getInt("pk") != 0 ) {
+						if ( primaryKeysNeedComma ) {
+							primaryKeys.append(", ");
+						}
+						primaryKeys.append(result.getString("name"));
+						primaryKeysNeedComma = true;
+					}
+				}
+				if ( primaryKeys.length() != 0 ) {
+					createTableRequest.append(", PRIMARY KEY (");
+					createTableRequest.append(primaryKeys.toString());
 					createTableRequest.append(")");
 				}
+
+				createTableRequest.append(")");
 			}
+		}
 
-			executeRequest("ALTER TABLE "+tableName+" RENAME TO "+tableName+"_old");
-			executeRequest(createTableRequest.toString());
-			executeRequest("INSERT INTO "+tableName+" SELECT "+columnNames+" FROM "+tableName+"_old");
+		executeRequest("ALTER TABLE "+tableName+" RENAME TO "+tableName+"_old");
+		executeRequest(createTableRequest.toString());
+		executeRequest("INSERT INTO "+tableName+" SELECT "+columnNames+" FROM "+tableName+"_old");
 
-			dropTableIfExists(tableName+"_old");
-		}
+		dropTableIfExists(tableName+"_old");
 	}
 
 	/**
@@ -1202,9 +1317,155 @@ public class DBDatabaseConnection implements AutoCloseable {
 			dbVersion = 213;
 		}
 
+		// convert from version 213 to 214
+		//      - create table images_content that stores the images content indexed by its checksum
+		//      - replace the image column of the images table by the checksum of the image content
+		if ( dbVersion == 213 ) {
+			DBGui.popup("Please wait while converting images.");
+
+			if ( logger.isDebugEnabled() ) logger.debug("Creating table "+this.schemaPrefix+"images_content");
+			executeRequest("CREATE TABLE "+this.schemaPrefix+"images_content ("
+					+ "checksum "+objectIDColumn.getType()+" NOT NULL, "
+					+ "image " + imageColumn.getType() +" NOT NULL, "
+					+ "PRIMARY KEY (checksum)"
+					+ ")");
+
+			addColumn(this.schemaPrefix+"images", "checksum", objectIDColumn.getType());
+
+			List<String> paths = new ArrayList<String>();
+			try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT path FROM "+this.schemaPrefix+"images") ) {
+				while ( result.next() )
+					paths.add(result.getString("path"));
+			}
+
+			// identical images that have been imported under different paths are stored only once
+			HashSet<String> checksums = new HashSet<String>();
+			String[] contentColumns = {"checksum", "image"};
+			for ( String path: paths ) {
+				byte[] image = null;
+				try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT "+getBlobSizeRequest("image")+" AS image_size, image FROM "+this.schemaPrefix+"images WHERE path = ?", path) ) {
+					if ( result.next() )
+						image = result.getBytes("image", "image_size", 0);
+				}
+
+				if ( image == null ) {
+					executeRequest("DELETE FROM "+this.schemaPrefix+"images WHERE path = ?", path);
+					continue;
+				}
+
+				String checksum = DBChecksum.calculateChecksum(image);
+				if ( checksums.add(checksum) )
+					insert(this.schemaPrefix+"images_content", contentColumns, checksum, image);
+				executeRequest("UPDATE "+this.schemaPrefix+"images SET checksum = ? WHERE path = ?", checksum, path);
+			}
+
+			dropColumn(this.schemaPrefix+"images", "image");
+
+			// all the images have now got a checksum (the images without content have been deleted)
+			setColumnNotNull(this.schemaPrefix+"images", "checksum", objectIDColumn.getType());
+
+			DBGui.closePopup();
+
+			dbVersion = 214;
+		}
+
+		// convert from version 214 to 215
+		//      - add thumbnail column to images_content table
+		//      - calculate the thumbnails of the existing images
+		if ( dbVersion == 214 ) {
+			DBGui.popup("Please wait while calculating images thumbnails.");
+
+			addColumn(this.schemaPrefix+"images_content", "thumbnail", imageColumn.getType());
+
+			List<String> checksums = new ArrayList<String>();
+			try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT checksum FROM "+this.schemaPrefix+"images_content") ) {
+				while ( result.next() )
+					checksums.add(result.getString("checksum"));
+			}
+
+			// the images are got one by one so only one image content is kept in memory at a time
+			for ( String checksum: checksums ) {
+				byte[] image = null;
+				try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT "+getBlobSizeRequest("image")+" AS image_size, image FROM "+this.schemaPrefix+"images_content WHERE checksum = ?", checksum) ) {
+					if ( result.next() )
+						image = result.getBytes("image", "image_size", 0);
+				}
+
+				// the images that cannot be decoded keep a null thumbnail
+				byte[] thumbnail = (image == null) ? null : DBDatabaseExportConnection.createThumbnail(image);
+				if ( thumbnail != null )
+					executeRequest("UPDATE "+this.schemaPrefix+"images_content SET thumbnail = ? WHERE checksum = ?", thumbnail, checksum);
+			}
+
+			DBGui.closePopup();
+
+			dbVersion = 215;
+		}
+
+		// convert from version 215 to 216
+		//      - create the secondary indexes required by the plugin's requests
+		//             (this step comes after all the steps that use the dropColumn() method, as on SQLite it recreates the tables without their indexes)
+		if ( dbVersion == 215 ) {
+			createMissingIndexes();
+
+			dbVersion = 216;
+		}
+
+		// convert from version 216 to 217
+		//      - create table latest_versions that stores the latest version of each component
+		if ( dbVersion == 216 ) {
+			DBGui.popup("Please wait while calculating the components latest versions.");
+
+			if ( logger.isDebugEnabled() ) logger.debug("Creating table "+this.schemaPrefix+"latest_versions");
+			executeRequest("CREATE TABLE "+this.schemaPrefix+"latest_versions ("
+					+ "id "+objectIDColumn.getType()+" NOT NULL, "
+					+ "class "+objectIDColumn.getType()+" NOT NULL, "
+					+ "version "+integerColumn.getType()+" NOT NULL, "
+					+ "checksum "+objectIDColumn.getType()+" NOT NULL, "
+					+ "PRIMARY KEY (id)"
+					+ ")");
+
+			rebuildLatestVersions();
+
+			DBGui.closePopup();
+
+			dbVersion = 217;
+		}
+
+		// convert from version 217 to 218
+		//      - add the count_* columns to the models table, that store the number of components of each model version
+		//             (the counts of the existing model versions are left empty, they are calculated by the import procedure)
+		if ( dbVersion == 217 ) {
+			for ( String column: modelsCountColumns )
+				addColumn(this.schemaPrefix+"models", column, integerColumn.getType());
+
+			dbVersion = 218;
+		}
+
+		// convert from version 218 to 219
+		//      - add the root_checksum column to the models table, that stores the root of the model's Merkle tree
+		//             (the existing model versions are left empty, so they are always compared component by component)
+		if ( dbVersion == 218 ) {
+			addColumn(this.schemaPrefix+"models", "root_checksum", objectIDColumn.getType());
+
+			dbVersion = 219;
+		}
+
+		// convert from version 219 to 220
+		//      - add the subtree_checksum column to the folders_in_model table, that stores the checksum of the folder's subtree in the model's Merkle tree
+		//             (the existing model versions are left empty, so they are always compared component by component)
+		if ( dbVersion == 219 ) {
+			addColumn(this.schemaPrefix+"folders_in_model", "subtree_checksum", objectIDColumn.getType());
+
+			dbVersion = 220;
+		}
+
 		executeRequest("UPDATE "+this.schemaPrefix+"database_version SET version = "+dbVersion+" WHERE archi_plugin = '"+DBPlugin.pluginName+"'");
 		commit();
 
+		// the prepared statements may reference columns that have been changed by the upgrade
+		DBStatementCache.clear(this.connection);
+
 		setAutoCommit(true);
 	}
 
@@ -1235,10 +1496,237 @@ public class DBDatabaseConnection implements AutoCloseable {
 	public final <T> int insert(String table, String[] columns, T...parameters) throws SQLException {
 		assert ( isConnected() );
 
+		ArrayList<T> newParameters = new ArrayList<T>();
+		String request = generateInsertRequest(table, columns, newParameters, parameters);
+
+		@SuppressWarnings("resource")
+		DBRequest dbRequest = new DBRequest(this.databaseEntry.getName(), this.connection, request, newParameters.toArray());
+		int rowCount = dbRequest.getRowCount();
+		dbRequest.close();
+
+		return rowCount;
+	}
+
+	/**
+	 * wrapper to generate a INSERT request and add it to a JDBC batch
+	 * <br>The lines are grouped by request (i.e. by table and non null columns) and sent to the database each time batchSize lines are pending, or when the flushBatches() method is called.
+	 * <br>If the batch mode is disabled (batchSize equals zero), the line is immediately inserted in the database.
+	 * @param table 
+	 * @param columns 
+	 * @param parameters 
+	 * @param <T> 
+	 * @return The number of lines inserted in the database by this call (the lines waiting in a batch are counted when the batch is sent)
+	 * @throws SQLException 
+	 */
+	@SafeVarargs
+	public final <T> int insertInBatch(String table, String[] columns, T...parameters) throws SQLException {
+		if ( this.batchSize <= 0 )
+			return insert(table, columns, parameters);
+
+		assert ( isConnected() );
+
+		if ( isCopyTable(table) )
+			return copyInBatch(table, columns, parameters);
+
+		ArrayList<T> newParameters = new ArrayList<T>();
+		String request = generateInsertRequest(table, columns, newParameters, parameters);
+
+		return executeInBatch(request, newParameters.toArray());
+	}
+
+	/**
+	 * @param table the name of the table, prefixed by the schema
+	 * @return true if the lines of the table must be sent using PostGreSQL COPY requests rather than JDBC batches
+	 */
+	private boolean isCopyTable(String table) {
+		if ( !this.databaseEntry.isPostgresqlCopyMode() || !DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.POSTGRESQL.getDriverName()) )
+			return false;
+
+		return table.startsWith(this.schemaPrefix) && copyTables.contains(table.substring(this.schemaPrefix.length()));
+	}
+
+	/**
+	 * adds a line to a PostGreSQL COPY request
+	 * <br>The lines are grouped by table and non null columns (so the database default values are kept for the null columns) and sent to the database each time batchSize lines are pending, or when the flushBatches() method is called.
+	 * @param table 
+	 * @param columns 
+	 * @param parameters 
+	 * @param <T> 
+	 * @return The number of lines inserted in the database by this call (the lines waiting in the COPY request are counted when the request is sent)
+	 * @throws SQLException 
+	 */
+	@SafeVarargs
+	private final <T> int copyInBatch(String table, String[] columns, T...parameters) throws SQLException {
 		StringBuilder cols = new StringBuilder();
-		StringBuilder values = new StringBuilder();
 		ArrayList<T> newParameters = new ArrayList<T>();
 
+		for (int i=0 ; i < columns.length ; ++i) {
+			if ( parameters[i] != null ) {
+				if ( cols.length() != 0 )
+					cols.append(", ");
+				cols.append(columns[i]);
+				newParameters.add(parameters[i]);
+			}
+		}
+
+		if ( cols.length() == 0 )
+			throw new SQLException("SQL request cannot have all its parameters null.");
+
+		String key = table+" ("+cols.toString()+")";
+		DBCopyRequest copyRequest = this.copyRequests.get(key);
+		if ( copyRequest == null ) {
+			copyRequest = new DBCopyRequest(this.connection, table, cols.toString());
+			this.copyRequests.put(key, copyRequest);
+		}
+		copyRequest.addRow(newParameters.toArray());
+
+		if ( copyRequest.getPendingRows() >= this.batchSize )
+			return executeCopy(copyRequest);
+
+		return 0;
+	}
+
+	/**
+	 * Sends the pending lines of a JDBC batch to the database, within a savepoint
+	 * @param batchRequest
+	 * @return the number of lines impacted by the batch
+	 * @throws SQLException
+	 */
+	private int executeBatch(DBBatchRequest batchRequest) throws SQLException {
+		if ( batchRequest.getPendingRows() == 0 )
+			return 0;
+
+		Savepoint savepoint = setSavepoint();
+		try {
+			int rowCount = batchRequest.executeBatch();
+			releaseSavepoint(savepoint);
+			return rowCount;
+		} catch (SQLException err) {
+			rollbackToSavepoint(savepoint);
+			throw err;
+		}
+	}
+
+	/**
+	 * Sends the pending lines of a COPY request to the database, within a savepoint
+	 * @param copyRequest
+	 * @return the number of lines inserted in the database
+	 * @throws SQLException
+	 */
+	private int executeCopy(DBCopyRequest copyRequest) throws SQLException {
+		if ( copyRequest.getPendingRows() == 0 )
+			return 0;
+
+		Savepoint savepoint = setSavepoint();
+		try {
+			int rowCount = copyRequest.executeCopy();
+			releaseSavepoint(savepoint);
+			return rowCount;
+		} catch (SQLException err) {
+			rollbackToSavepoint(savepoint);
+			throw err;
+		}
+	}
+
+	/**
+	 * wrapper to add an INSERT or UPDATE request to a JDBC batch
+	 * <br>The lines are grouped by request and sent to the database each time batchSize lines are pending, or when the flushBatches() method is called.
+	 * <br>If the batch mode is disabled (batchSize equals zero), the request is immediately executed.
+	 * @param request 
+	 * @param parameters 
+	 * @param <T> 
+	 * @return The number of lines impacted by this call (the lines waiting in a batch are counted when the batch is sent)
+	 * @throws SQLException 
+	 */
+	@SafeVarargs
+	public final <T> int executeInBatch(String request, T...parameters) throws SQLException {
+		if ( this.batchSize <= 0 )
+			return executeRequest(request, parameters);
+
+		assert ( isConnected() );
+
+		DBBatchRequest batchRequest = this.batchRequests.get(request);
+		if ( batchRequest == null ) {
+			batchRequest = new DBBatchRequest(this.databaseEntry.getName(), this.connection, request);
+			this.batchRequests.put(request, batchRequest);
+		}
+		batchRequest.addBatch(parameters);
+
+		if ( batchRequest.getPendingRows() >= this.batchSize )
+			return executeBatch(batchRequest);
+
+		return 0;
+	}
+
+	/**
+	 * Tables of the components whose latest version is stored in the latest_versions table, with the SQL expression of their class
+	 */
+	private static final String[][] latestVersionsTables = {
+			{"elements", "c.class"},
+			{"relationships", "c.class"},
+			{"folders", "'Folder'"},
+			{"views", "c.class"},
+			{"views_objects", "c.class"},
+			{"views_connections", "c.class"}
+	};
+
+	/**
+	 * Recalculates the content of the latest_versions table from the components tables<br>
+	 * The latest_versions table is maintained by the export, so this is only required if it has been altered outside of the plugin.
+	 * @return the number of components in the latest_versions table
+	 * @throws SQLException
+	 */
+	public int rebuildLatestVersions() throws SQLException {
+		if ( logger.isDebugEnabled() ) logger.debug("Rebuilding table "+this.schemaPrefix+"latest_versions");
+
+		executeRequest("DELETE FROM "+this.schemaPrefix+"latest_versions");
+
+		int rowCount = 0;
+		for ( String[] table: latestVersionsTables ) {
+			rowCount += executeRequest("INSERT INTO "+this.schemaPrefix+"latest_versions (id, class, version, checksum)"
+					+ " SELECT c.id, "+table[1]+", c.version, c.checksum FROM "+this.schemaPrefix+table[0]+" c"
+					+ " JOIN (SELECT id AS latest_id, MAX(version) AS latest_version FROM "+this.schemaPrefix+table[0]+" GROUP BY id) l ON l.latest_id = c.id AND l.latest_version = c.version"
+					);
+		}
+
+		if ( logger.isDebugEnabled() ) logger.debug(rowCount+" components in table "+this.schemaPrefix+"latest_versions");
+		return rowCount;
+	}
+
+	/**
+	 * @param idColumn the SQL expression of the ID of the component
+	 * @return a SQL expression that gets the latest version of the component from the latest_versions table
+	 */
+	public String getLatestVersionRequest(String idColumn) {
+		return "(SELECT version FROM "+this.schemaPrefix+"latest_versions WHERE id = "+idColumn+")";
+	}
+
+	/**
+	 * @param blobColumn a BLOB column
+	 * @return a SQL expression that gets the size of the BLOB in bytes, so that it can be read directly in an array of the right size
+	 */
+	public String getBlobSizeRequest(String blobColumn) {
+		if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.MSSQL.getDriverName()) )
+			return "DATALENGTH("+blobColumn+")";
+		if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.ORACLE.getDriverName()) )
+			return "DBMS_LOB.GETLENGTH("+blobColumn+")";
+		return "LENGTH("+blobColumn+")";
+	}
+
+	/**
+	 * Generates the INSERT request for the non null parameters
+	 * @param table
+	 * @param columns
+	 * @param newParameters list that is filled in with the non null parameters
+	 * @param parameters
+	 * @return the INSERT request
+	 * @throws SQLException if all the parameters are null
+	 */
+	@SafeVarargs
+	private static <T> String generateInsertRequest(String table, String[] columns, ArrayList<T> newParameters, T...parameters) throws SQLException {
+		StringBuilder cols = new StringBuilder();
+		StringBuilder values = new StringBuilder();
+
 		for (int i=0 ; i < columns.length ; ++i) {
 			if ( parameters[i] != null ) {
 				if ( cols.length() != 0 ) {
@@ -1254,14 +1742,123 @@ public class DBDatabaseConnection implements AutoCloseable {
 		if ( (cols.length() == 0) || (values.length() == 0) )
 			throw new SQLException("SQL request cannot have all its parameters null.");
 
-		@SuppressWarnings("resource")
-		DBRequest request = new DBRequest(this.databaseEntry.getName(), this.connection, "INSERT INTO "+table+" ("+cols.toString()+") VALUES ("+values.toString()+")", newParameters.toArray());
-		int rowCount = request.getRowCount();
-		request.close();
+		return "INSERT INTO "+table+" ("+cols.toString()+") VALUES ("+values.toString()+")";
+	}
+
+	/**
+	 * Sets the number of lines grouped in a JDBC batch by the insertInBatch() method
+	 * <br>The pending batches are sent to the database before the new size is applied.
+	 * @param size the number of lines in a batch, zero to disable the batch mode
+	 * @throws SQLException 
+	 */
+	public void setBatchSize(int size) throws SQLException {
+		flushBatches();
+
+		// the Neo4J JDBC driver does not generate INSERT requests, so the batch mode is meaningless
+		if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.NEO4J.getDriverName()) )
+			this.batchSize = 0;
+		else
+			this.batchSize = Math.max(size, 0);
+
+		if ( logger.isDebugEnabled() ) logger.debug("Setting database batch size to "+this.batchSize);
+	}
+
+	/**
+	 * Sends all the pending batches to the database
+	 * @return the number of lines inserted in the database
+	 * @throws SQLException 
+	 */
+	public int flushBatches() throws SQLException {
+		int rowCount = 0;
+
+		for ( DBBatchRequest batchRequest: this.batchRequests.values() )
+			rowCount += executeBatch(batchRequest);
+
+		for ( DBCopyRequest copyRequest: this.copyRequests.values() )
+			rowCount += executeCopy(copyRequest);
+
+		if ( (rowCount != 0) && logger.isDebugEnabled() ) logger.debug("Flushed "+rowCount+" lines from pending batches.");
 
 		return rowCount;
 	}
 
+	/**
+	 * Discards all the pending batches and closes the corresponding prepared statements
+	 */
+	public void clearBatches() {
+		for ( DBBatchRequest batchRequest: this.batchRequests.values() )
+			batchRequest.close();
+		this.batchRequests.clear();
+
+		for ( DBCopyRequest copyRequest: this.copyRequests.values() )
+			copyRequest.close();
+		this.copyRequests.clear();
+	}
+
+	/**
+	 * Name of the session temporary table used to send lists of components to the database
+	 */
+	private static final String temporaryComponentsTable = "tmp_components";
+
+	/**
+	 * Oracle's global temporary tables are permanent database objects that would need to be created in the database schema, so they are not used.
+	 * @return true if the database supports session temporary tables
+	 */
+	public boolean isTemporaryTableSupported() {
+		String driver = this.databaseEntry.getDriver();
+		return DBPlugin.areEqual(driver, DBDatabase.POSTGRESQL.getDriverName())
+				|| DBPlugin.areEqual(driver, DBDatabase.MYSQL.getDriverName())
+				|| DBPlugin.areEqual(driver, DBDatabase.MSSQL.getDriverName())
+				|| DBPlugin.areEqual(driver, DBDatabase.SQLITE.getDriverName());
+	}
+
+	/**
+	 * @return the name of the session temporary table that contains the components loaded by the fillTemporaryComponentsTable() method
+	 */
+	public String getTemporaryComponentsTableName() {
+		// MS SQL Server temporary tables names must start with a #
+		if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.MSSQL.getDriverName()) )
+			return "#"+temporaryComponentsTable;
+		return temporaryComponentsTable;
+	}
+
+	/**
+	 * Replaces the content of the session temporary table by the provided components<br>
+	 * The table is created the first time it is used by a database session, and is dropped by the database when the session is closed. Its columns are:
+	 * <li>id: the ID of the component</li>
+	 * <li>version: the version of the component (zero if unknown)</li>
+	 * <li>checksum: the checksum of the component (may be null)</li>
+	 * @param components map of the components IDs and their version and checksum
+	 * @throws SQLException
+	 */
+	public void fillTemporaryComponentsTable(Map<String, DBVersion> components) throws SQLException {
+		assert ( isTemporaryTableSupported() );
+
+		String tableName = getTemporaryComponentsTableName();
+
+		if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.MSSQL.getDriverName()) ) {
+			// the temporary tables take the collation of tempdb, that may differ from the database's one that is used by the joined tables
+			String columns = "id VARCHAR(50) COLLATE DATABASE_DEFAULT NOT NULL, version INTEGER NOT NULL, checksum VARCHAR(50) COLLATE DATABASE_DEFAULT, PRIMARY KEY (id)";
+			executeRequest("IF OBJECT_ID('tempdb.."+tableName+"') IS NULL CREATE TABLE "+tableName+" ("+columns+")");
+		} else {
+			String columns = "id VARCHAR(50) NOT NULL, version INTEGER NOT NULL, checksum VARCHAR(50), PRIMARY KEY (id)";
+			executeRequest("CREATE TEMPORARY TABLE IF NOT EXISTS "+tableName+" ("+columns+")");
+		}
+		executeRequest("DELETE FROM "+tableName);
+
+		if ( logger.isDebugEnabled() ) logger.debug("Loading "+components.size()+" components in temporary table "+tableName);
+
+		int rowsPerBatch = Math.max(DBPlugin.INSTANCE.getPreferenceStore().getInt("exportBatchSize"), 1);
+		try ( DBBatchRequest batchRequest = new DBBatchRequest(this.databaseEntry.getName(), this.connection, "INSERT INTO "+tableName+" (id, version, checksum) VALUES (?, ?, ?)") ) {
+			for ( Map.Entry<String, DBVersion> component: components.entrySet() ) {
+				batchRequest.addBatch(component.getKey(), component.getValue().getVersion(), component.getValue().getChecksum());
+				if ( batchRequest.getPendingRows() >= rowsPerBatch )
+					batchRequest.executeBatch();
+			}
+			batchRequest.executeBatch();
+		}
+	}
+
 	/**
 	 * Gets the list of models in the current database
 	 * @param filter (use "%" as wildcard) 
@@ -1358,6 +1955,8 @@ public class DBDatabaseConnection implements AutoCloseable {
 	 * @throws SQLException 
 	 */
 	public void commit() throws SQLException {
+		flushBatches();
+
 		if ( logger.isDebugEnabled() ) logger.debug("Committing database transaction.");
 		this.connection.commit();
 	}
@@ -1368,6 +1967,10 @@ public class DBDatabaseConnection implements AutoCloseable {
 	 * @throws SQLException 
 	 */
 	public void rollback(Savepoint savepoint) throws SQLException {
+		// the lines waiting in the batches must not be sent to the database anymore
+		if ( savepoint == null )
+			clearBatches();
+
 		if ( this.connection == null ) {
 			logger.warn("Cannot rollback as there is no database connection opened.");
 		} else {
@@ -1390,6 +1993,47 @@ public class DBDatabaseConnection implements AutoCloseable {
 		rollback(null);
 	}
 
+	/**
+	 * Sets a savepoint in the current transaction
+	 * <br>On PostGreSQL databases, no request can be sent anymore in a transaction after a failed request, unless the transaction is rolled back to a savepoint. The savepoints are therefore set per batch or per phase rather than per request, to keep the bulk INSERT requests as fast as possible.
+	 * @return the savepoint, or null if no savepoint is required (the database is not a PostGreSQL database or is in auto commit mode)
+	 * @throws SQLException
+	 */
+	public Savepoint setSavepoint() throws SQLException {
+		if ( !DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.POSTGRESQL.getDriverName()) || this.connection.getAutoCommit() )
+			return null;
+
+		return this.connection.setSavepoint();
+	}
+
+	/**
+	 * Releases a savepoint set by the setSavepoint() method
+	 * @param savepoint the savepoint (nothing is done if null)
+	 * @throws SQLException
+	 */
+	public void releaseSavepoint(Savepoint savepoint) throws SQLException {
+		if ( savepoint != null )
+			this.connection.releaseSavepoint(savepoint);
+	}
+
+	/**
+	 * Rolls back the current transaction to a savepoint set by the setSavepoint() method, so that new requests can be sent to the database after a failed request
+	 * <br>The rollback errors are logged but not thrown, so that they do not hide the error of the failed request.
+	 * @param savepoint the savepoint (nothing is done if null)
+	 */
+	public void rollbackToSavepoint(Savepoint savepoint) {
+		if ( savepoint == null )
+			return;
+
+		try {
+			this.connection.rollback(savepoint);
+			this.connection.releaseSavepoint(savepoint);
+			if ( logger.isTraceEnabled() ) logger.trace("Rolled back to savepoint");
+		} catch (SQLException err) {
+			logger.error("Failed to rollback to savepoint", err);
+		}
+	}
+
 	/**
 	 * @param <T>
 	 * @param request
@@ -1401,6 +2045,9 @@ public class DBDatabaseConnection implements AutoCloseable {
 	final public <T> int executeRequest(String request, T... parameters) throws SQLException {
 		int rowCount = 0;
 
+		// the request may depend on lines that are still waiting in a batch
+		flushBatches();
+
 		@SuppressWarnings("resource")
 		DBRequest dbRequest = new DBRequest(this.databaseEntry.getName(), this.connection, request, parameters);
 		rowCount = dbRequest.getRowCount();
@@ -1430,6 +2077,9 @@ public class DBDatabaseConnection implements AutoCloseable {
 		this.modelsColumns.add(new DBColumn("properties", this.databaseEntry, DBColumnType.INTEGER, false));
 		this.modelsColumns.add(new DBColumn("features", this.databaseEntry, DBColumnType.INTEGER, false));
 		this.modelsColumns.add(new DBColumn("checksum", this.databaseEntry, DBColumnType.OBJECTID, true));
+		for ( String column: modelsCountColumns )
+			this.modelsColumns.add(new DBColumn(column, this.databaseEntry, DBColumnType.INTEGER, false));
+		this.modelsColumns.add(new DBColumn("root_checksum", this.databaseEntry, DBColumnType.OBJECTID, false));
 
 		this.modelsPrimaryKeys = new ArrayList<String>();
 		this.modelsPrimaryKeys.add("id");
@@ -1464,6 +2114,7 @@ public class DBDatabaseConnection implements AutoCloseable {
 		this.foldersInModelColumns.add(new DBColumn("model_id", this.databaseEntry, DBColumnType.OBJECTID, true));
 		this.foldersInModelColumns.add(new DBColumn("model_version", this.databaseEntry, DBColumnType.INTEGER, true));
 		this.foldersInModelColumns.add(new DBColumn("pos", this.databaseEntry, DBColumnType.INTEGER, true));
+		this.foldersInModelColumns.add(new DBColumn("subtree_checksum", this.databaseEntry, DBColumnType.OBJECTID, false));
 
 		this.foldersInModelPrimaryKeys = new ArrayList<String>();
 		this.foldersInModelPrimaryKeys.add("fim_id");
@@ -1706,7 +2357,24 @@ public class DBDatabaseConnection implements AutoCloseable {
 
 		this.imagesColumns = new ArrayList<DBColumn>();
 		this.imagesColumns.add(new DBColumn("path", this.databaseEntry, DBColumnType.OBJECTID, true));
-		this.imagesColumns.add(new DBColumn("image", this.databaseEntry, DBColumnType.IMAGE, true));
+		this.imagesColumns.add(new DBColumn("checksum", this.databaseEntry, DBColumnType.OBJECTID, true));
+
+		this.imagesContentColumns = new ArrayList<DBColumn>();
+		this.imagesContentColumns.add(new DBColumn("checksum", this.databaseEntry, DBColumnType.OBJECTID, true));
+		this.imagesContentColumns.add(new DBColumn("image", this.databaseEntry, DBColumnType.IMAGE, true));
+		this.imagesContentColumns.add(new DBColumn("thumbnail", this.databaseEntry, DBColumnType.IMAGE, false));
+
+		this.imagesContentPrimaryKeys = new ArrayList<String>();
+		this.imagesContentPrimaryKeys.add("checksum");
+
+		this.latestVersionsColumns = new ArrayList<DBColumn>();
+		this.latestVersionsColumns.add(new DBColumn("id", this.databaseEntry, DBColumnType.OBJECTID, true));
+		this.latestVersionsColumns.add(new DBColumn("class", this.databaseEntry, DBColumnType.OBJECTID, true));
+		this.latestVersionsColumns.add(new DBColumn("version", this.databaseEntry, DBColumnType.INTEGER, true));
+		this.latestVersionsColumns.add(new DBColumn("checksum", this.databaseEntry, DBColumnType.OBJECTID, true));
+
+		this.latestVersionsPrimaryKeys = new ArrayList<String>();
+		this.latestVersionsPrimaryKeys.add("id");
 		
 		this.viewsObjectsInViewColumns = new ArrayList<DBColumn>();
 		this.viewsObjectsInViewColumns.add(new DBColumn("oiv_id", this.databaseEntry, DBColumnType.AUTO_INCREMENT, true));
@@ -1752,5 +2420,98 @@ public class DBDatabaseConnection implements AutoCloseable {
 		this.databaseTables.add(new DBTable(this.schema, "bendpoints", this.bendpointsColumns, this.bendpointsPrimaryKeys));
 		this.databaseTables.add(new DBTable(this.schema, "metadata", this.metadataColumns, this.metadataPrimaryKeys));
 		this.databaseTables.add(new DBTable(this.schema, "images", this.imagesColumns, this.imagesPrimaryKeys));
+		this.databaseTables.add(new DBTable(this.schema, "images_content", this.imagesContentColumns, this.imagesContentPrimaryKeys));
+		this.databaseTables.add(new DBTable(this.schema, "latest_versions", this.latestVersionsColumns, this.latestVersionsPrimaryKeys));
+
+		/* ****************************************************************************************************** */
+
+		// the index names are kept short as Oracle limits them to 30 characters, and unique as some databases share the index names between all the tables of a schema
+		this.databaseIndexes = new ArrayList<DBIndex>();
+		this.databaseIndexes.add(new DBIndex(this.schema, "fim_model_idx", "folders_in_model", Arrays.asList("model_id", "model_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "fim_folder_idx", "folders_in_model", Arrays.asList("folder_id", "folder_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "eim_model_idx", "elements_in_model", Arrays.asList("model_id", "model_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "eim_element_idx", "elements_in_model", Arrays.asList("element_id", "element_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "relationships_source_idx", "relationships", Arrays.asList("source_id")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "relationships_target_idx", "relationships", Arrays.asList("target_id")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "rim_model_idx", "relationships_in_model", Arrays.asList("model_id", "model_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "rim_relationship_idx", "relationships_in_model", Arrays.asList("relationship_id", "relationship_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "vim_model_idx", "views_in_model", Arrays.asList("model_id", "model_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "vim_view_idx", "views_in_model", Arrays.asList("view_id", "view_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "views_objects_element_idx", "views_objects", Arrays.asList("element_id")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "oiv_view_idx", "views_objects_in_view", Arrays.asList("view_id", "view_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "oiv_object_idx", "views_objects_in_view", Arrays.asList("object_id", "object_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "views_connections_rel_idx", "views_connections", Arrays.asList("relationship_id")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "civ_view_idx", "views_connections_in_view", Arrays.asList("view_id", "view_version")));
+		this.databaseIndexes.add(new DBIndex(this.schema, "civ_connection_idx", "views_connections_in_view", Arrays.asList("connection_id", "connection_version")));
+		// the properties, features and bendpoints tables do not need any secondary index as their primary key starts with parent_id and parent_version
+	}
+
+	/**
+	 * Gets the secondary indexes that are required by the plugin's requests but that do not exist in the database<br>
+	 * An index is considered as existing if an index or the primary key of its table starts with the same columns, whatever its name.
+	 * @param metadata
+	 * @return the missing indexes
+	 * @throws SQLException
+	 */
+	private List<DBIndex> getMissingIndexes(DatabaseMetaData metadata) throws SQLException {
+		List<DBIndex> missingIndexes = new ArrayList<DBIndex>();
+		Map<String, List<List<String>>> existingIndexes = new LinkedHashMap<String, List<List<String>>>();
+		boolean isOracle = DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.ORACLE.getDriverName());
+
+		for ( DBIndex index: this.databaseIndexes ) {
+			List<List<String>> tableIndexes = existingIndexes.get(index.getTableName());
+			if ( tableIndexes == null ) {
+				tableIndexes = new ArrayList<List<String>>();
+				existingIndexes.put(index.getTableName(), tableIndexes);
+
+				for ( DBTable table: this.databaseTables ) {
+					if ( DBPlugin.areEqual(table.getName(), index.getTableName()) && (table.getPrimaryKeys() != null) )
+						tableIndexes.add(table.getPrimaryKeys());
+				}
+
+				// oracle requires uppercase table names
+				String tableName = isOracle ? index.getTableName().toUpperCase() : index.getTableName();
+				String schemaName = DBPlugin.isEmpty(this.schema) ? null : (isOracle ? this.schema.toUpperCase() : this.schema);
+
+				// the columns are returned ordered by index name and position in the index
+				Map<String, List<String>> indexColumns = new LinkedHashMap<String, List<String>>();
+				try ( ResultSet result = metadata.getIndexInfo(null, schemaName, tableName, false, true) ) {
+					while ( result.next() ) {
+						String indexName = result.getString("INDEX_NAME");
+						String columnName = result.getString("COLUMN_NAME");
+						if ( (indexName == null) || (columnName == null) )
+							continue;		// table statistics
+						List<String> columns = indexColumns.get(indexName);
+						if ( columns == null ) {
+							columns = new ArrayList<String>();
+							indexColumns.put(indexName, columns);
+						}
+						columns.add(columnName);
+					}
+				}
+				tableIndexes.addAll(indexColumns.values());
+			}
+
+			if ( !index.isCoveredBy(tableIndexes) )
+				missingIndexes.add(index);
+		}
+
+		return missingIndexes;
+	}
+
+	/**
+	 * Creates the secondary indexes that are required by the plugin's requests but that do not exist in the database
+	 * @throws SQLException
+	 */
+	public void createMissingIndexes() throws SQLException {
+		if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.NEO4J.getDriverName()) )
+			return;
+
+		initializeDatabaseTables();
+
+		for ( DBIndex index: getMissingIndexes(this.connection.getMetaData()) ) {
+			if ( logger.isDebugEnabled() ) logger.debug("Creating index "+index.toString());
+			executeRequest(index.generateCreateStatement(this.databaseEntry.getDriver()));
+		}
 	}
 }
\ No newline at end of file
@@ -6,26 +6,48 @@
 
 package org.archicontribs.database.connection;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import org.archicontribs.database.DBDatabaseEntry;
 import org.archicontribs.database.DBLogger;
 import org.archicontribs.database.DBPlugin;
 import org.archicontribs.database.GUI.DBGui;
+import org.archicontribs.database.data.DBChecksum;
 import org.archicontribs.database.data.DBDatabase;
 import org.archicontribs.database.data.DBVersion;
 import org.archicontribs.database.model.DBArchimateModel;
 import org.archicontribs.database.model.DBMetadata;
+import org.archicontribs.database.model.DBMetadata.DATABASE_STATUS;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.SWTException;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.ImageLoader;
+import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateModelObject;
 import com.archimatetool.model.IArchimateRelationship;
@@ -61,6 +83,11 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 	 */
 	private static int maxValuesInSQLRequest = 1000;
 
+	/**
+	 * max width and height of the images thumbnails (this is the max size of the items of the images gallery)
+	 */
+	public static final int thumbnailSize = 256;
+
 	private boolean isconnectionDuplicate = false;
 
 	/**
@@ -70,6 +97,16 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 	 */
 	private Timestamp lastTransactionTimestamp = null;
 
+	/**
+	 * Rows waiting to be sent to a Neo4J database, grouped by Cypher request (the requests are sent in the order they have been added, so that the nodes are created before the properties and relationships that reference them)
+	 */
+	private LinkedHashMap<String, List<Map<String, Object>>> neo4jRows = new LinkedHashMap<String, List<Map<String, Object>>>();
+
+	/**
+	 * Number of rows in the neo4jRows map
+	 */
+	private int neo4jPendingRows = 0;
+
 
 
 	/**
@@ -494,6 +531,154 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		}
 	}
 
+	/**
+	 * Tables that link the components to the models, with the prefix of their columns
+	 */
+	private static final String[][] inModelTables = {
+			{"elements_in_model", "element"},
+			{"relationships_in_model", "relationship"},
+			{"folders_in_model", "folder"},
+			{"views_in_model", "view"}
+	};
+
+	/**
+	 * Maximum number of folders whose components are compared to the database when only some subtrees of the model's Merkle tree differ<br>
+	 * Their IDs are parameters of the comparison requests, so they must stay below the limits of the databases.
+	 */
+	private static final int maxFoldersToCompare = 500;
+
+	/**
+	 * Checks in a few requests which folders of the model differ from the latest version of the model in the database.<br>
+	 * <br>
+	 * The model's Merkle tree can be compared to the database only if:
+	 * <ul>
+	 *    <li> the model has been imported from (or last exported to) the latest version of the model in the database
+	 *    <li> none of its components has been updated in the database by another model since
+	 * </ul>
+	 * If the root of the tree is unchanged, the model is up to date. Else, the comparison descends from the root folders into the subtrees whose checksum differs
+	 * from the one stored in the database. The unchanged subtrees are skipped with all their components.
+	 * @param model
+	 * @return an empty set if the model is up to date, the IDs of the folders whose components must be compared to the database,
+	 *         or null if all the components must be compared (in both cases using the getAllVersionFromDatabase method)
+	 * @throws SQLException
+	 * @throws NoSuchAlgorithmException
+	 * @throws UnsupportedEncodingException
+	 */
+	public Set<String> getFoldersToCompare(DBArchimateModel model) throws SQLException, NoSuchAlgorithmException, UnsupportedEncodingException {
+		// we do not manage versions in a Neo4J database
+		assert(!DBPlugin.areEqual(this.databaseEntry.getDriver().toLowerCase(), "neo4j"));
+
+		if ( model.getInitialVersion().getVersion() == 0 )
+			return null;
+
+		String rootChecksum = model.calculateRootChecksum();
+
+		StringBuilder updatedComponentsRequest = new StringBuilder();
+		for ( String[] table: inModelTables ) {
+			if ( updatedComponentsRequest.length() != 0 )
+				updatedComponentsRequest.append(" + ");
+			updatedComponentsRequest.append("(SELECT COUNT(*) FROM "+this.schemaPrefix+table[0]+" i"
+					+ " JOIN "+this.schemaPrefix+"latest_versions l ON l.id = i."+table[1]+"_id"
+					+ " WHERE i.model_id = m.id AND i.model_version = m.version AND l.version <> i."+table[1]+"_version)");
+		}
+
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT m.version, m.root_checksum, "+updatedComponentsRequest.toString()+" AS updated_components"
+				+ " FROM "+this.schemaPrefix+"models m"
+				+ " WHERE m.id = ? AND m.version = (SELECT MAX(version) FROM "+this.schemaPrefix+"models WHERE id = ?)"
+				, model.getId(), model.getId()) ) {
+			if ( !result.next() )
+				return null;
+
+			if ( logger.isDebugEnabled() ) logger.debug("Latest database version = "+result.getInt("version")+" (root checksum = "+result.getString("root_checksum")+"), initial version = "+model.getInitialVersion().getVersion()+" (root checksum = "+rootChecksum+"), "+result.getInt("updated_components")+" components updated by other models");
+
+			if ( (result.getInt("version") != model.getInitialVersion().getVersion()) || (result.getInt("updated_components") != 0) || (result.getString("root_checksum") == null) )
+				return null;
+
+			if ( DBPlugin.areEqual(result.getString("root_checksum"), rootChecksum) )
+				return new HashSet<String>();
+		}
+
+		// we get the checksums of the subtrees of the latest version of the model in the database
+		HashMap<String, String> databaseSubtreeChecksums = new HashMap<String, String>();
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT folder_id, subtree_checksum FROM "+this.schemaPrefix+"folders_in_model WHERE model_id = ? AND model_version = ?"
+				, model.getId(), model.getInitialVersion().getVersion()) ) {
+			while ( result.next() )
+				databaseSubtreeChecksums.put(result.getString("folder_id"), result.getString("subtree_checksum"));
+		}
+
+		// the folders that have been removed from the model may still contain components in the database
+		Set<String> foldersToCompare = new HashSet<String>();
+		for ( String folderId: databaseSubtreeChecksums.keySet() ) {
+			if ( !model.getAllFolders().containsKey(folderId) )
+				foldersToCompare.add(folderId);
+		}
+
+		for ( IFolder folder: model.getFolders() )
+			addFoldersToCompare(model, folder, databaseSubtreeChecksums, foldersToCompare);
+
+		if ( foldersToCompare.size() > maxFoldersToCompare ) {
+			if ( logger.isDebugEnabled() ) logger.debug(foldersToCompare.size()+" folders differ from the database, all the components will be compared.");
+			return null;
+		}
+
+		if ( logger.isDebugEnabled() ) logger.debug(foldersToCompare.size()+" folders out of "+model.getAllFolders().size()+" differ from the database.");
+		return foldersToCompare;
+	}
+
+	/**
+	 * Descends into the subtree of a folder if its checksum differs from the one stored in the database
+	 * @param model
+	 * @param folder
+	 * @param databaseSubtreeChecksums the checksums of the subtrees stored in the database, indexed by the folders IDs
+	 * @param foldersToCompare set filled in with the IDs of the folders whose components must be compared to the database
+	 */
+	private static void addFoldersToCompare(DBArchimateModel model, IFolder folder, Map<String, String> databaseSubtreeChecksums, Set<String> foldersToCompare) {
+		// an unchanged subtree is skipped with all its sub-folders
+		if ( DBPlugin.areEqual(model.getSubtreeChecksums().get(folder.getId()), databaseSubtreeChecksums.get(folder.getId())) )
+			return;
+
+		foldersToCompare.add(folder.getId());
+		for ( IFolder subFolder: folder.getFolders() )
+			addFoldersToCompare(model, subFolder, databaseSubtreeChecksums, foldersToCompare);
+	}
+
+	/**
+	 * Filters the components that must be compared to the database: the components whose parent folder is in the foldersToCompare set, and the folders of that set.<br>
+	 * The other components are set in sync with the database.
+	 * @param model
+	 * @param components
+	 * @param foldersToCompare the IDs of the folders whose components must be compared, or null to compare all the components
+	 * @param gui
+	 * @return the components to compare
+	 */
+	private static <T extends IIdentifier> Map<String, T> getComponentsToCompare(DBArchimateModel model, Map<String, T> components, Set<String> foldersToCompare, DBGui gui) {
+		if ( foldersToCompare == null )
+			return components;
+
+		Map<String, T> componentsToCompare = new LinkedHashMap<String, T>();
+		for ( T component: components.values() ) {
+			DBMetadata dbMetadata = model.getDBMetadata(component);
+			IFolder parentFolder = dbMetadata.getParentFolder();
+			if ( foldersToCompare.contains(component.getId()) || ((parentFolder != null) && foldersToCompare.contains(parentFolder.getId())) )
+				componentsToCompare.put(component.getId(), component);
+			else {
+				setInSync(dbMetadata);
+				if ( gui != null ) gui.increaseProgressBar();
+			}
+		}
+		return componentsToCompare;
+	}
+
+	/**
+	 * Sets a component that has not been compared to the database in sync with its initial version
+	 * @param dbMetadata
+	 */
+	private static void setInSync(DBMetadata dbMetadata) {
+		dbMetadata.getCurrentVersion().setVersion(dbMetadata.getInitialVersion().getVersion());
+		dbMetadata.getDatabaseVersion().set(dbMetadata.getInitialVersion());
+		dbMetadata.getLatestDatabaseVersion().set(dbMetadata.getInitialVersion());
+	}
+
 	/**
 	 * Gets the version of all the model's components, and checks as well for the components that are in the latest model's version in the database but that are not in the model.
 	 * Those components are stored in the << not in model >> hashmaps:
@@ -511,6 +696,20 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 	 * @throws SQLException
 	 */
 	public void getAllVersionFromDatabase(DBArchimateModel model, DBGui gui) throws SQLException {
+		getAllVersionFromDatabase(model, gui, null);
+	}
+
+	/**
+	 * Gets the version of the model's components, as the getAllVersionFromDatabase(DBArchimateModel, DBGui) method does, but only for the components of some folders.<br>
+	 * The components of the other folders are set in sync with the database.<br>
+	 * <br>
+	 * The components can be filtered only when the versions are compared in a temporary table, else all the components are compared.
+	 * @param model
+	 * @param gui
+	 * @param foldersToCompare the IDs of the folders whose components are compared, as returned by the getFoldersToCompare method, or null to compare all the components
+	 * @throws SQLException
+	 */
+	public void getAllVersionFromDatabase(DBArchimateModel model, DBGui gui, Set<String> foldersToCompare) throws SQLException {
 		// we do not manage versions in a Neo4J database
 		assert(!DBPlugin.areEqual(this.databaseEntry.getDriver().toLowerCase(), "neo4j"));
 
@@ -527,6 +726,157 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		getModelVersionFromDatabase(model);
 		if ( gui != null ) gui.increaseProgressBar();
 
+		Map<String, IDiagramModel> viewsToCompare = model.getAllViews();
+		if ( isTemporaryTableSupported() && DBPlugin.INSTANCE.getPreferenceStore().getBoolean("compareVersionsInTemporaryTable") ) {
+			viewsToCompare = getComponentsToCompare(model, model.getAllViews(), foldersToCompare, gui);
+			getVersionsFromTemporaryTable(model, getComponentsToCompare(model, model.getAllElements(), foldersToCompare, gui), "elements", "element", this.elementsNotInModel, false, foldersToCompare, gui);
+			getVersionsFromTemporaryTable(model, getComponentsToCompare(model, model.getAllRelationships(), foldersToCompare, gui), "relationships", "relationship", this.relationshipsNotInModel, false, foldersToCompare, gui);
+			getVersionsFromTemporaryTable(model, getComponentsToCompare(model, model.getAllFolders(), foldersToCompare, gui), "folders", "folder", this.foldersNotInModel, false, foldersToCompare, gui);
+			getVersionsFromTemporaryTable(model, viewsToCompare, "views", "view", this.viewsNotInModel, true, foldersToCompare, gui);
+		} else
+			getElementsRelationshipsFoldersAndViewsVersionsFromDatabase(model, gui);
+
+		HashMap<String, IIdentifier> componentHashMap = new HashMap<String, IIdentifier>();
+
+
+
+		// we check if the latest version of the model has got images that are not in the model
+		if ( logger.isDebugEnabled() ) logger.debug("Checking missing images from the database");
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT DISTINCT image_path FROM "+this.schemaPrefix+"views_objects "
+				+ "JOIN "+this.schemaPrefix+"views_objects_in_view ON views_objects_in_view.object_id = views_objects.id AND views_objects_in_view.object_version = views_objects.version "
+				+ "JOIN "+this.schemaPrefix+"views_in_model ON views_in_model.view_id = views_objects_in_view.view_id AND views_in_model.view_version = views_objects_in_view.view_version "
+				+ "WHERE image_path IS NOT NULL AND views_in_model.model_id = ? AND views_in_model.model_version = ?"
+				,model.getId()
+				,model.getDatabaseVersion().getVersion()
+				) ) {
+			while ( result.next() ) {
+				if ( !model.getAllImagePaths().contains(result.getString("image_path")) ) {
+					this.imagesNotInModel.put(result.getString("image_path"), new DBMetadata());
+				}
+				if ( gui != null ) gui.increaseProgressBar();
+			}
+		}
+
+		// we compare the objects and connections of existing views
+		Iterator<Entry<String, IDiagramModel>> viewsIterator = viewsToCompare.entrySet().iterator();
+		while ( viewsIterator.hasNext() )
+			getViewObjectsAndConnectionsVersionsFromDatabase(model, model.getDBMetadata(viewsIterator.next().getValue()), gui);
+
+		// the objects and connections of the views that are not compared are in sync with the database
+		if ( viewsToCompare != model.getAllViews() ) {
+			for ( IDiagramModelObject viewObject: model.getAllViewObjects().values() ) {
+				if ( !viewsToCompare.containsKey(viewObject.getDiagramModel().getId()) ) {
+					setInSync(model.getDBMetadata(viewObject));
+					if ( gui != null ) gui.increaseProgressBar();
+				}
+			}
+			for ( IDiagramModelConnection viewConnection: model.getAllViewConnections().values() ) {
+				if ( !viewsToCompare.containsKey(viewConnection.getDiagramModel().getId()) ) {
+					setInSync(model.getDBMetadata(viewConnection));
+					if ( gui != null ) gui.increaseProgressBar();
+				}
+			}
+		}
+
+		// we also need to compare the objects and connections that are in the views that will be imported into the model
+		Iterator<Entry<String, DBMetadata>> viewsNotInModelIterator = this.viewsNotInModel.entrySet().iterator();
+		while ( viewsNotInModelIterator.hasNext() )
+			getViewObjectsAndConnectionsVersionsFromDatabase(model, viewsNotInModelIterator.next().getValue(), gui);
+		
+		
+		
+		// if some view objects have got an initialVersion equal to zero, it means that they're not part of the latest version of the model in the database
+		// so we check if they are completely new or if they exist in another model
+		Iterator<Map.Entry<String, IDiagramModelObject>> itvo = model.getAllViewObjects().entrySet().iterator();
+		while (itvo.hasNext()) {
+			DBMetadata dbMetadata = model.getDBMetadata(itvo.next().getValue());
+			if ( dbMetadata.getInitialVersion().getVersion() == 0 )
+				componentHashMap.put(dbMetadata.getId(), (IIdentifier)dbMetadata.getComponent());
+
+			if ( componentHashMap.size() == DBDatabaseExportConnection.maxValuesInSQLRequest ) {
+				getHashMapVersionFromDatabase(componentHashMap, gui);
+				componentHashMap.clear();
+			}
+		}
+		if ( componentHashMap.size() != 0 ) {
+			getHashMapVersionFromDatabase(componentHashMap, gui);
+			componentHashMap.clear();
+		}
+		
+		// if some view connections have got an initialVersion equal to zero, it means that they're not part of the latest version of the model in the database
+		// so we check if they are completely new or if they exist in another model
+		Iterator<Map.Entry<String, IDiagramModelConnection>> itvc = model.getAllViewConnections().entrySet().iterator();
+		while (itvc.hasNext()) {
+			DBMetadata dbMetadata = model.getDBMetadata(itvc.next().getValue());
+			if ( dbMetadata.getInitialVersion().getVersion() == 0 )
+				componentHashMap.put(dbMetadata.getId(), (IIdentifier)dbMetadata.getComponent());
+
+			if ( componentHashMap.size() == DBDatabaseExportConnection.maxValuesInSQLRequest ) {
+				getHashMapVersionFromDatabase(componentHashMap, gui);
+				componentHashMap.clear();
+			}
+		}
+		if ( componentHashMap.size() != 0 ) {
+			getHashMapVersionFromDatabase(componentHashMap, gui);
+			componentHashMap.clear();
+		}
+		
+		
+		
+		
+
+		// even if the model does not exist in the database, the images can exist in the database
+		// images do not have a version as they cannot be modified. Their path is a checksum and loading a new image creates a new path.
+
+		// at last, we check if all the images in the model are in the database
+		// we did not know them before now, so do not increase the progress bar !
+		if ( logger.isDebugEnabled() ) logger.debug("Checking if the images exist in the database");
+		HashSet<String> imagePathsInDatabase = getValuesInDatabase("images", "path", model.getAllImagePaths());
+		for ( String path: model.getAllImagePaths() ) {
+			if ( !imagePathsInDatabase.contains(path) )
+				this.imagesNotInDatabase.put(path, new DBMetadata());
+		}
+	}
+
+	/**
+	 * Gets the values that exist in a column of a table, using one request per chunk of maxValuesInSQLRequest values
+	 * @param table
+	 * @param column
+	 * @param values the values to look for
+	 * @return the values that have been found in the table
+	 * @throws SQLException
+	 */
+	private HashSet<String> getValuesInDatabase(String table, String column, Collection<String> values) throws SQLException {
+		HashSet<String> found = new HashSet<String>();
+		ArrayList<String> chunk = new ArrayList<String>();
+
+		Iterator<String> iterator = values.iterator();
+		while ( iterator.hasNext() ) {
+			chunk.add(iterator.next());
+
+			if ( (chunk.size() == DBDatabaseExportConnection.maxValuesInSQLRequest) || !iterator.hasNext() ) {
+				StringBuilder inClause = new StringBuilder();
+				for ( int i = 0; i < chunk.size(); ++i )
+					inClause.append(i == 0 ? "?" : ", ?");
+
+				try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT "+column+" FROM "+this.schemaPrefix+table+" WHERE "+column+" IN ("+inClause.toString()+")", chunk.toArray()) ) {
+					while ( result.next() )
+						found.add(result.getString(column));
+				}
+				chunk.clear();
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Gets the versions of the elements, relationships, folders and views from the database, reading all the versions of all the components of the database model
+	 * @param model
+	 * @param gui
+	 * @throws SQLException
+	 */
+	private void getElementsRelationshipsFoldersAndViewsVersionsFromDatabase(DBArchimateModel model, DBGui gui) throws SQLException {
 		String modelId = model.getId();
 		int modelInitialVersion = model.getInitialVersion().getVersion();
 		int modelDatabaseVersion = model.getDatabaseVersion().getVersion();
@@ -976,62 +1326,168 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 			getHashMapVersionFromDatabase(componentHashMap, gui);
 			componentHashMap.clear();
 		}
+	}
 
+	/**
+	 * Gets the versions of the components of one class using set-based requests on the session temporary table<br>
+	 * <br>
+	 * The components IDs and checksums are loaded in the temporary table, then the database calculates the initial, database and latest versions of each component in a single request
+	 * instead of sending all the versions of all the components. The components that are in sync (their initial, database and latest versions are the version known by the model, with the same checksum)
+	 * are not returned by the database, their versions are copied from their initial version.
+	 * @param model the model
+	 * @param components the model's components of the class
+	 * @param table the table that contains the components ("elements", "relationships", "folders" or "views")
+	 * @param prefix the prefix of the columns of the table that links the components to the models ("element", "relationship", "folder" or "view")
+	 * @param notInModel map filled in with the components that are in the database version of the model but not in the model
+	 * @param hasContainerChecksum true if the table has got a container_checksum column
+	 * @param foldersToCompare the IDs of the folders whose components are compared, or null to compare all the components of the database version of the model
+	 * @param gui
+	 * @throws SQLException
+	 */
+	private void getVersionsFromTemporaryTable(DBArchimateModel model, Map<String, ? extends IIdentifier> components, String table, String prefix, HashMap<String, DBMetadata> notInModel, boolean hasContainerChecksum, Set<String> foldersToCompare, DBGui gui) throws SQLException {
+		if ( logger.isDebugEnabled() ) logger.debug("Getting versions of the "+table+" from the database using a temporary table");
 
-
-
-		// we check if the latest version of the model has got images that are not in the model
-		if ( logger.isDebugEnabled() ) logger.debug("Checking missing images from the database");
-		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT DISTINCT image_path FROM "+this.schemaPrefix+"views_objects "
-				+ "JOIN "+this.schemaPrefix+"views_objects_in_view ON views_objects_in_view.object_id = views_objects.id AND views_objects_in_view.object_version = views_objects.version "
-				+ "JOIN "+this.schemaPrefix+"views_in_model ON views_in_model.view_id = views_objects_in_view.view_id AND views_in_model.view_version = views_objects_in_view.view_version "
-				+ "WHERE image_path IS NOT NULL AND views_in_model.model_id = ? AND views_in_model.model_version = ?"
-				,model.getId()
-				,model.getDatabaseVersion().getVersion()
+		String modelId = model.getId();
+		int modelInitialVersion = model.getInitialVersion().getVersion();
+		int modelDatabaseVersion = model.getDatabaseVersion().getVersion();
+		String tableName = this.schemaPrefix+table;
+		String inModelTableName = this.schemaPrefix+table+"_in_model";
+		String temporaryTableName = getTemporaryComponentsTableName();
+
+		// we send the checksum of all the components, and the version we know if the component has not been modified since it has been imported or exported
+		HashMap<String, DBVersion> knownVersions = new HashMap<String, DBVersion>();
+		for ( IIdentifier component: components.values() ) {
+			DBMetadata dbMetadata = model.getDBMetadata(component);
+			String checksum = dbMetadata.getCurrentVersion().getChecksum();
+			int knownVersion = DBPlugin.areEqual(dbMetadata.getInitialVersion().getChecksum(), checksum) ? dbMetadata.getInitialVersion().getVersion() : 0;
+			knownVersions.put(component.getId(), new DBVersion(knownVersion, checksum, null));
+		}
+		fillTemporaryComponentsTable(knownVersions);
+
+		HashMap<String, DBMetadata> differences = new HashMap<String, DBMetadata>();
+
+		// when only some folders are compared, we only get the components that they contain in the database version of the model (and the folders themselves)
+		StringBuilder foldersClause = new StringBuilder();
+		ArrayList<String> folderIds = new ArrayList<String>();
+		if ( foldersToCompare != null ) {
+			folderIds.addAll(foldersToCompare);
+			StringBuilder inClause = new StringBuilder();
+			for ( int i = 0; i < folderIds.size(); ++i )
+				inClause.append(i == 0 ? "?" : ", ?");
+			if ( folderIds.isEmpty() )
+				foldersClause.append(" AND 1 = 0");
+			else if ( prefix.equals("folder") )
+				foldersClause.append(" AND (parent_folder_id IN ("+inClause.toString()+") OR folder_id IN ("+inClause.toString()+"))");
+			else
+				foldersClause.append(" AND parent_folder_id IN ("+inClause.toString()+")");
+		}
+		ArrayList<Object> parameters = new ArrayList<Object>();
+		parameters.add(modelId);
+		parameters.add(modelInitialVersion);
+		parameters.add(modelId);
+		parameters.add(modelDatabaseVersion);
+		parameters.add(modelId);
+		parameters.add(modelDatabaseVersion);
+		parameters.addAll(folderIds);
+		if ( prefix.equals("folder") )
+			parameters.addAll(folderIds);
+
+		// the initial version is the version of the initial model, or the latest version that has got the same checksum than the model's component
+		// we do not return the components whose initial, database and latest versions are the version known by the model
+		String containerChecksumColumns = hasContainerChecksum ? ", i.container_checksum AS initial_container_checksum, d.container_checksum AS database_container_checksum, l.container_checksum AS latest_container_checksum" : "";
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,
+				"SELECT v.id, v.initial_version, v.database_version, v.latest_version"
+						+ ", i.checksum AS initial_checksum, i.created_on AS initial_created_on"
+						+ ", d.checksum AS database_checksum, d.created_on AS database_created_on"
+						+ ", l.checksum AS latest_checksum, l.created_on AS latest_created_on"
+						+ containerChecksumColumns
+						+ " FROM ("
+						+ "SELECT c.id"
+						+ ", MAX(CASE WHEN m.model_id = ? AND (m.model_version = ? OR c.checksum = t.checksum) THEN c.version ELSE 0 END) AS initial_version"
+						+ ", MAX(CASE WHEN m.model_id = ? AND m.model_version = ? THEN c.version ELSE 0 END) AS database_version"
+						+ ", MAX(c.version) AS latest_version"
+						+ ", MAX(COALESCE(t.version, 0)) AS known_version"
+						+ ", MAX(t.checksum) AS known_checksum"
+						+ " FROM "+tableName+" c"
+						+ " LEFT JOIN "+inModelTableName+" m ON m."+prefix+"_id = c.id AND m."+prefix+"_version = c.version"
+						+ " LEFT JOIN "+temporaryTableName+" t ON t.id = c.id"
+						+ " WHERE c.id IN (SELECT "+prefix+"_id FROM "+inModelTableName+" WHERE model_id = ? AND model_version = ?"+foldersClause.toString()+")"
+						+ " GROUP BY c.id"
+						+ ") v"
+						+ " LEFT JOIN "+tableName+" i ON i.id = v.id AND i.version = v.initial_version"
+						+ " LEFT JOIN "+tableName+" d ON d.id = v.id AND d.version = v.database_version"
+						+ " JOIN "+tableName+" l ON l.id = v.id AND l.version = v.latest_version"
+						+ " WHERE v.known_version = 0 OR v.initial_version <> v.known_version OR v.database_version <> v.known_version OR v.latest_version <> v.known_version OR l.checksum <> v.known_checksum"
+						+ " ORDER BY v.id"
+						,parameters.toArray()
 				) ) {
 			while ( result.next() ) {
-				if ( !model.getAllImagePaths().contains(result.getString("image_path")) ) {
-					this.imagesNotInModel.put(result.getString("image_path"), new DBMetadata());
+				String id = result.getString("id");
+				IIdentifier component = components.get(id);
+				DBMetadata dbMetadata;
+
+				if ( component == null ) {
+					dbMetadata = new DBMetadata(id);
+					notInModel.put(id, dbMetadata);
+					logger.trace("   Getting version of "+dbMetadata.getDebugName()+" (is in the database, but not in the model)");
+				} else {
+					dbMetadata = model.getDBMetadata(component);
+					logger.trace("   Getting version of "+dbMetadata.getDebugName()+" (is in the database and in the model)");
+					dbMetadata.getCurrentVersion().setVersion(0);
+					dbMetadata.getInitialVersion().reset();
+					dbMetadata.getDatabaseVersion().reset();
+					dbMetadata.getLatestDatabaseVersion().reset();
 				}
-				if ( gui != null ) gui.increaseProgressBar();
-			}
-		}
+				differences.put(id, dbMetadata);
 
-		// we compare the objects and connections of existing views
-		Iterator<Entry<String, IDiagramModel>> viewsIterator = model.getAllViews().entrySet().iterator();
-		while ( viewsIterator.hasNext() )
-			getViewObjectsAndConnectionsVersionsFromDatabase(model, model.getDBMetadata(viewsIterator.next().getValue()), gui);
+				int initialVersion = result.getInt("initial_version");
+				if ( initialVersion != 0 ) {
+					dbMetadata.getInitialVersion().set(initialVersion, hasContainerChecksum ? result.getString("initial_container_checksum") : null, result.getString("initial_checksum"), result.getTimestamp("initial_created_on"));
+					dbMetadata.getCurrentVersion().setVersion(initialVersion);
+				}
 
-		// we also need to compare the objects and connections that are in the views that will be imported into the model
-		Iterator<Entry<String, DBMetadata>> viewsNotInModelIterator = this.viewsNotInModel.entrySet().iterator();
-		while ( viewsNotInModelIterator.hasNext() )
-			getViewObjectsAndConnectionsVersionsFromDatabase(model, viewsNotInModelIterator.next().getValue(), gui);
-		
-		
-		
-		// if some view objects have got an initialVersion equal to zero, it means that they're not part of the latest version of the model in the database
-		// so we check if they are completely new or if they exist in another model
-		Iterator<Map.Entry<String, IDiagramModelObject>> itvo = model.getAllViewObjects().entrySet().iterator();
-		while (itvo.hasNext()) {
-			DBMetadata dbMetadata = model.getDBMetadata(itvo.next().getValue());
-			if ( dbMetadata.getInitialVersion().getVersion() == 0 )
-				componentHashMap.put(dbMetadata.getId(), (IIdentifier)dbMetadata.getComponent());
+				int databaseVersion = result.getInt("database_version");
+				if ( databaseVersion != 0 )
+					dbMetadata.getDatabaseVersion().set(databaseVersion, hasContainerChecksum ? result.getString("database_container_checksum") : null, result.getString("database_checksum"), result.getTimestamp("database_created_on"));
 
-			if ( componentHashMap.size() == DBDatabaseExportConnection.maxValuesInSQLRequest ) {
-				getHashMapVersionFromDatabase(componentHashMap, gui);
-				componentHashMap.clear();
+				dbMetadata.getLatestDatabaseVersion().set(result.getInt("latest_version"), hasContainerChecksum ? result.getString("latest_container_checksum") : null, result.getString("latest_checksum"), result.getTimestamp("latest_created_on"));
+
+				if ( gui != null ) gui.increaseProgressBar();
 			}
 		}
-		if ( componentHashMap.size() != 0 ) {
-			getHashMapVersionFromDatabase(componentHashMap, gui);
-			componentHashMap.clear();
+
+		// we get the model's components that are not part of the database version of the model
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,
+				"SELECT t.id FROM "+temporaryTableName+" t"
+						+ " WHERE NOT EXISTS (SELECT 1 FROM "+inModelTableName+" m WHERE m."+prefix+"_id = t.id AND m.model_id = ? AND m.model_version = ?)"
+						,modelId
+						,modelDatabaseVersion
+				) ) {
+			while ( result.next() ) {
+				String id = result.getString("id");
+				DBMetadata dbMetadata = model.getDBMetadata(components.get(id));
+				dbMetadata.getCurrentVersion().setVersion(0);
+				dbMetadata.getInitialVersion().reset();
+				dbMetadata.getDatabaseVersion().reset();
+				dbMetadata.getLatestDatabaseVersion().reset();
+				differences.put(id, dbMetadata);
+				if ( gui != null ) gui.increaseProgressBar();
+			}
 		}
-		
-		// if some view connections have got an initialVersion equal to zero, it means that they're not part of the latest version of the model in the database
-		// so we check if they are completely new or if they exist in another model
-		Iterator<Map.Entry<String, IDiagramModelConnection>> itvc = model.getAllViewConnections().entrySet().iterator();
-		while (itvc.hasNext()) {
-			DBMetadata dbMetadata = model.getDBMetadata(itvc.next().getValue());
+
+		// the other components are in sync with the database
+		HashMap<String, IIdentifier> componentHashMap = new HashMap<String, IIdentifier>();
+		for ( IIdentifier component: components.values() ) {
+			DBMetadata dbMetadata = model.getDBMetadata(component);
+			if ( !differences.containsKey(component.getId()) ) {
+				dbMetadata.getCurrentVersion().setVersion(dbMetadata.getInitialVersion().getVersion());
+				dbMetadata.getDatabaseVersion().set(dbMetadata.getInitialVersion());
+				dbMetadata.getLatestDatabaseVersion().set(dbMetadata.getInitialVersion());
+				if ( gui != null ) gui.increaseProgressBar();
+			}
+
+			// if some components have got an initialVersion equal to zero, it means that they're not part of the latest version of the model in the database
+			// so we check if they are completely new or if they exist in another model
 			if ( dbMetadata.getInitialVersion().getVersion() == 0 )
 				componentHashMap.put(dbMetadata.getId(), (IIdentifier)dbMetadata.getComponent());
 
@@ -1044,27 +1500,6 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 			getHashMapVersionFromDatabase(componentHashMap, gui);
 			componentHashMap.clear();
 		}
-		
-		
-		
-		
-
-		// even if the model does not exist in the database, the images can exist in the database
-		// images do not have a version as they cannot be modified. Their path is a checksum and loading a new image creates a new path.
-
-		// at last, we check if all the images in the model are in the database
-		// we did not know them before now, so do not increase the progress bar !
-		if ( logger.isDebugEnabled() ) logger.debug("Checking if the images exist in the database");
-		for ( String path: model.getAllImagePaths() ) {
-			try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT path from "+this.schemaPrefix+"images where path = ?", path) ) {
-				if ( result.next() && result.getObject("path") != null ) {
-					// the image is in the database
-				} else {
-					// the image is not in the database
-					this.imagesNotInDatabase.put(path, new DBMetadata());
-				}
-			}
-		}
 	}
 
 	private void getViewObjectsAndConnectionsVersionsFromDatabase(DBArchimateModel model, DBMetadata viewMetadata, DBGui gui) throws SQLException, RuntimeException {
@@ -1263,6 +1698,99 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		executeRequest("MATCH (n) DETACH DELETE n");
 	}
 
+	/**
+	 * Creates the Neo4J indexes on the id and version properties of the nodes that are exported<br>
+	 * <br>
+	 * Without them, each MERGE or MATCH request scans all the nodes of the label. The indexes must be created before the export transaction is started as Neo4J does not allow to mix schema and data changes in the same transaction.<br>
+	 * The indexes that already exist are left unchanged.
+	 * @param model the model that will be exported
+	 */
+	public void createNeo4jIndexes(DBArchimateModel model) {
+		HashSet<String> labels = new HashSet<String>();
+		labels.add("elements");
+		if ( !this.databaseEntry.isNeo4jNativeMode() ) {
+			for ( IArchimateRelationship relationship: model.getAllRelationships().values() )
+				labels.add(getNeo4jLabel(relationship));
+		}
+
+		for ( String label: labels ) {
+			if ( logger.isDebugEnabled() ) logger.debug("Creating Neo4J index on :"+label+"(id, version)");
+			try {
+				executeRequest("CREATE INDEX ON :"+label+"(id, version)");
+			} catch (SQLException err) {
+				// the index is an optimization, the export works without it
+				logger.warn("Failed to create Neo4J index on :"+label+"(id, version)", err);
+			}
+		}
+	}
+
+	/**
+	 * @param component
+	 * @return the label of the Neo4J node of a component
+	 */
+	private String getNeo4jLabel(EObject component) {
+		if ( component instanceof IArchimateRelationship )
+			return this.databaseEntry.isNeo4jTypedRelationship() ? (component.getClass().getSimpleName()+"s") : "relationships";
+		if ( component instanceof DBArchimateModel )
+			return "models";
+		return "elements";
+	}
+
+	/**
+	 * Adds a row to the rows waiting to be sent to a Neo4J database<br>
+	 * The request must start with "UNWIND ? AS r", the row being accessible through the "r" variable.<br>
+	 * All the pending rows are sent to the database each time exportBatchSize rows are pending, or when the flushBatches() method is called.
+	 * @param request
+	 * @param row
+	 * @throws SQLException
+	 */
+	private void addNeo4jRow(String request, Map<String, Object> row) throws SQLException {
+		List<Map<String, Object>> rows = this.neo4jRows.get(request);
+		if ( rows == null ) {
+			rows = new ArrayList<Map<String, Object>>();
+			this.neo4jRows.put(request, rows);
+		}
+		rows.add(row);
+
+		if ( ++this.neo4jPendingRows >= Math.max(DBPlugin.INSTANCE.getPreferenceStore().getInt("exportBatchSize"), 1) )
+			flushNeo4jRows();
+	}
+
+	/**
+	 * Sends the pending rows to the Neo4J database, one request per Cypher request
+	 * @return the number of rows sent to the database
+	 * @throws SQLException
+	 */
+	private int flushNeo4jRows() throws SQLException {
+		if ( this.neo4jPendingRows == 0 )
+			return 0;
+
+		// the map is replaced before the requests are executed as executeRequest() flushes the batches
+		LinkedHashMap<String, List<Map<String, Object>>> rowsToSend = this.neo4jRows;
+		int rowCount = this.neo4jPendingRows;
+		this.neo4jRows = new LinkedHashMap<String, List<Map<String, Object>>>();
+		this.neo4jPendingRows = 0;
+
+		if ( logger.isDebugEnabled() ) logger.debug("Sending "+rowCount+" rows to the Neo4J database in "+rowsToSend.size()+" requests.");
+		for ( Entry<String, List<Map<String, Object>>> entry: rowsToSend.entrySet() )
+			executeRequest(entry.getKey(), entry.getValue());
+
+		return rowCount;
+	}
+
+	@Override
+	public int flushBatches() throws SQLException {
+		return flushNeo4jRows() + super.flushBatches();
+	}
+
+	@Override
+	public void clearBatches() {
+		this.neo4jRows.clear();
+		this.neo4jPendingRows = 0;
+		this.membershipsToCopy.clear();
+		super.clearBatches();
+	}
+
 
 	/**
 	 * Exports the model metadata into the database
@@ -1271,7 +1799,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 	 * @throws Exception 
 	 */
 	public void exportModel(DBArchimateModel model, String releaseNote) throws Exception {
-		final String[] modelsColumns = {"id", "version", "name", "note", "purpose", "created_by", "created_on", "properties", "features", "checksum"};
+		final String[] modelsColumns = {"id", "version", "name", "note", "purpose", "created_by", "created_on", "properties", "features", "checksum", "count_elements", "count_relationships", "count_folders", "count_views", "count_views_objects", "count_views_connections", "count_images", "root_checksum"};
 
 		if ( (model.getName() == null) || (model.getName().equals("")) )
 			throw new RuntimeException("Model name cannot be empty.");
@@ -1288,6 +1816,13 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		int nbProperties = (model.getProperties() == null) ? 0 : model.getProperties().size();
 		int nbFeatures = (model.getFeatures() == null) ? 0 : model.getFeatures().size();
 
+		// the components that are not exported differ between the model and the database, so the Merkle tree is not stored
+		// (the subtrees checksums are calculated with the root checksum and stored when the folders are assigned to the model)
+		String rootChecksum = null;
+		model.getSubtreeChecksums().clear();
+		if ( !model.getAllConflicts().containsValue(DBPlugin.CONFLICT_CHOICE.doNotExport) )
+			rootChecksum = model.calculateRootChecksum();
+
 		insert(this.schemaPrefix+"models", modelsColumns
 				,model.getId()
 				,model.getCurrentVersion().getVersion()
@@ -1299,6 +1834,14 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 				,nbProperties
 				,nbFeatures
 				,model.getCurrentVersion().getChecksum()
+				,model.getAllElements().size()
+				,model.getAllRelationships().size()
+				,model.getAllFolders().size()
+				,model.getAllViews().size()
+				,model.getAllViewObjects().size()
+				,model.getAllViewConnections().size()
+				,countImagesInViews(model)
+				,rootChecksum
 				);
 
 		if ( nbProperties != 0 )
@@ -1308,6 +1851,54 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 			exportFeatures(model);
 
 		exportMetadata(model);
+
+		// the folders statuses must be got before the components are exported
+		model.setChangedFolders(getChangedFolders(model));
+	}
+
+	/**
+	 * Maximum number of changed folders for which the unchanged memberships are copied from the previous version of the model<br>
+	 * Their IDs are parameters of the copy requests, so they must stay below the limits of the databases.
+	 */
+	private static final int maxChangedFolders = 500;
+
+	/**
+	 * @param model
+	 * @return the IDs of the folders whose content differs from the latest version of the model in the database, or null if all the memberships must be sent to the database
+	 */
+	private Set<String> getChangedFolders(DBArchimateModel model) {
+		if ( (model.getDatabaseVersion().getVersion() == 0) || DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.NEO4J.getDriverName()) )
+			return null;
+
+		// the folders that have been removed from the model may still contain components in the latest version of the model
+		Set<String> changedFolders = new HashSet<String>(this.foldersNotInModel.keySet());
+		for ( IFolder folder: model.getAllFolders().values() ) {
+			DBMetadata dbMetadata = model.getDBMetadata(folder);
+			DATABASE_STATUS dbStatus = dbMetadata.getDatabaseStatus();
+			if ( (dbStatus == DATABASE_STATUS.isNewInModel) || (dbStatus == DATABASE_STATUS.isUpdatedInModel) || (dbMetadata.getCurrentVersion().getVersion() != dbMetadata.getDatabaseVersion().getVersion()) )
+				changedFolders.add(folder.getId());
+		}
+
+		if ( changedFolders.size() > maxChangedFolders ) {
+			if ( logger.isDebugEnabled() ) logger.debug(changedFolders.size()+" folders have been changed, all the memberships will be sent to the database.");
+			return null;
+		}
+
+		return changedFolders;
+	}
+
+	/**
+	 * @param model
+	 * @return the number of distinct images referenced by the model's views objects, as counted by the import procedure
+	 */
+	private static int countImagesInViews(DBArchimateModel model) {
+		HashSet<String> imagePaths = new HashSet<String>();
+		for ( IDiagramModelObject viewObject: model.getAllViewObjects().values() ) {
+			String imagePath = DBMetadata.getDBMetadata(viewObject).getImagePath();
+			if ( imagePath != null )
+				imagePaths.add(imagePath);
+		}
+		return imagePaths.size();
 	}
 
 	/**
@@ -1341,6 +1932,81 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 			throw new Exception("Do not know how to assign to the model: "+eObject.getClass().getSimpleName());
 	}
 
+	/**
+	 * Memberships tables in which some rows have not been sent to the database, with the model they belong to<br>
+	 * These rows must be copied from the latest version of the model by the copyMembershipsForward() method.
+	 */
+	private Map<String, DBArchimateModel> membershipsToCopy = new LinkedHashMap<String, DBArchimateModel>();
+
+	/**
+	 * Checks if a component has the same version and the same parent folder as in the latest version of the model in the database<br>
+	 * In this case, its membership row does not need to be sent to the database as it is copied from the latest version of the model by the copyMembershipsForward() method.
+	 * @param model
+	 * @param dbMetadata the metadata of the component
+	 * @param parentFolder the folder that contains the component in the model
+	 * @param table the memberships table
+	 * @return true if the membership is unchanged
+	 */
+	private boolean isMembershipUnchanged(DBArchimateModel model, DBMetadata dbMetadata, IFolder parentFolder, String table) {
+		// the content of a folder whose version is unchanged is the same as in the latest version of the model, so the component has not been moved
+		if ( (model.getChangedFolders() == null)
+				|| (dbMetadata.getDatabaseVersion().getVersion() == 0)
+				|| (dbMetadata.getCurrentVersion().getVersion() != dbMetadata.getDatabaseVersion().getVersion())
+				|| model.getChangedFolders().contains(parentFolder.getId()) )
+			return false;
+
+		this.membershipsToCopy.put(table, model);
+		return true;
+	}
+
+	/**
+	 * Copies from the latest version of the model in the database the memberships rows that have not been sent by the assignEObjectToModel() method<br>
+	 * <br>
+	 * The rows of the folders that have been changed are not copied, nor the rows of the components that have been sent to the database.<br>
+	 * This method must be called once all the components have been assigned to the model.
+	 * @return the number of rows copied
+	 * @throws SQLException
+	 */
+	public int copyMembershipsForward() throws SQLException {
+		int rowCount = 0;
+
+		for ( Entry<String, DBArchimateModel> entry: this.membershipsToCopy.entrySet() ) {
+			DBArchimateModel model = entry.getValue();
+			String table = this.schemaPrefix+entry.getKey();
+			String prefix = null;
+			for ( String[] inModelTable: inModelTables ) {
+				if ( inModelTable[0].equals(entry.getKey()) )
+					prefix = inModelTable[1];
+			}
+
+			ArrayList<String> changedFolders = new ArrayList<String>(model.getChangedFolders());
+			StringBuilder questionMarks = new StringBuilder();
+			for ( int i = 0 ; i < changedFolders.size() ; ++i ) {
+				if ( i != 0 )
+					questionMarks.append(", ");
+				questionMarks.append("?");
+			}
+
+			int count = executeRequest("INSERT INTO "+table+" ("+prefix+"_id, "+prefix+"_version, parent_folder_id, model_id, model_version, pos)"
+					+ " SELECT p."+prefix+"_id, p."+prefix+"_version, p.parent_folder_id, p.model_id, ?, p.pos FROM "+table+" p"
+					+ " WHERE p.model_id = ? AND p.model_version = ?"
+					+ " AND NOT EXISTS (SELECT 1 FROM "+table+" n WHERE n."+prefix+"_id = p."+prefix+"_id AND n.model_id = p.model_id AND n.model_version = ?)"
+					+ (changedFolders.isEmpty() ? "" : " AND p.parent_folder_id NOT IN ("+questionMarks.toString()+")")
+					, model.getCurrentVersion().getVersion()
+					, model.getId()
+					, model.getDatabaseVersion().getVersion()
+					, model.getCurrentVersion().getVersion()
+					, changedFolders
+					);
+
+			if ( logger.isDebugEnabled() ) logger.debug(count+" unchanged rows copied in table "+table+" from version "+model.getDatabaseVersion().getVersion()+" of the model");
+			rowCount += count;
+		}
+
+		this.membershipsToCopy.clear();
+		return rowCount;
+	}
+
 	/**
 	 * Export an element to the database
 	 * @param element 
@@ -1360,18 +2026,17 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		int nbFeatures = (element.getFeatures() == null) ? 0 : element.getFeatures().size();
 
 		if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.NEO4J.getDriverName()) ) {
-			// TODO: USE MERGE instead to replace existing nodes
-			executeRequest("CREATE (new:elements {id:?, version:?, class:?, name:?, type:?, documentation:?, checksum:?})"
-					,element.getId()
-					,dbMetadata.getCurrentVersion().getVersion()
-					,element.getClass().getSimpleName()
-					,element.getName()
-					,dbMetadata.getJunctionType()
-					,element.getDocumentation()
-					,dbMetadata.getCurrentVersion().getChecksum()
-					);
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("id", element.getId());
+			row.put("version", dbMetadata.getCurrentVersion().getVersion());
+			row.put("class", element.getClass().getSimpleName());
+			row.put("name", element.getName());
+			row.put("type", dbMetadata.getJunctionType());
+			row.put("documentation", element.getDocumentation());
+			row.put("checksum", dbMetadata.getCurrentVersion().getChecksum());
+			addNeo4jRow("UNWIND ? AS r MERGE (new:elements {id:r.id, version:r.version}) SET new.class = r.class, new.name = r.name, new.type = r.type, new.documentation = r.documentation, new.checksum = r.checksum", row);
 		} else {
-			insert(this.schemaPrefix+"elements", elementsColumns
+			insertInBatch(this.schemaPrefix+"elements", elementsColumns
 					,element.getId()
 					,dbMetadata.getCurrentVersion().getVersion()
 					,element.getClass().getSimpleName()
@@ -1384,6 +2049,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 					,nbFeatures
 					,dbMetadata.getCurrentVersion().getChecksum()
 					);
+			exportLatestVersion(element.getId(), element.getClass().getSimpleName(), dbMetadata);
 		}
 
 		if ( nbProperties != 0 )
@@ -1409,9 +2075,12 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		DBArchimateModel model = (DBArchimateModel)element.getArchimateModel();
 		DBMetadata dbMetadata = model.getDBMetadata(element);
 
+		if ( isMembershipUnchanged(model, dbMetadata, (IFolder)element.eContainer(), "elements_in_model") )
+			return;
+
 		if ( logger.isTraceEnabled() ) logger.trace("   Assigning element to model");
 
-		insert(this.schemaPrefix+"elements_in_model", elementsInModelColumns
+		insertInBatch(this.schemaPrefix+"elements_in_model", elementsInModelColumns
 				,element.getId()
 				,dbMetadata.getCurrentVersion().getVersion()   // we use currentVersion as it has been set in exportElement()
 				,((IFolder)element.eContainer()).getId()
@@ -1440,49 +2109,45 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		int nbFeatures = (relationship.getFeatures() == null) ? 0 : relationship.getFeatures().size();
 
 		if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.NEO4J.getDriverName()) ) {
-			String relationshipType = (this.databaseEntry.isNeo4jTypedRelationship() ? (relationship.getClass().getSimpleName()+"s") : "relationships");
-			// TODO: USE MERGE instead to replace existing nodes
+			String relationshipType = getNeo4jLabel(relationship);
 
 			// we remove the "Relationship" suffix from the relationship name
 			String relationshipName = relationship.getClass().getSimpleName();
 			if ( relationshipName.endsWith("Relationship") )
 				relationshipName = relationshipName.substring(0, relationshipName.length() - 12);
 
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("source_id", relationship.getSource().getId());
+			row.put("source_version", model.getDBMetadata(relationship.getSource()).getCurrentVersion().getVersion());
+			row.put("target_id", relationship.getTarget().getId());
+			row.put("target_version", model.getDBMetadata(relationship.getTarget()).getCurrentVersion().getVersion());
+			row.put("id", relationship.getId());
+			row.put("version", dbMetadata.getCurrentVersion().getVersion());
+			row.put("name", relationship.getName());
+			row.put("documentation", relationship.getDocumentation());
+			row.put("strength", dbMetadata.getStrength());
+			row.put("access_type", dbMetadata.getAccessType());
+			row.put("checksum", dbMetadata.getCurrentVersion().getChecksum());
+
 			if ( this.databaseEntry.isNeo4jNativeMode() ) {
 				if ( (relationship.getSource() instanceof IArchimateElement) && (relationship.getTarget() instanceof IArchimateElement) ) {
-					executeRequest("MATCH (source:elements {id:?, version:?}), (target:elements {id:?, version:?}) CREATE (source)-[relationship:"+relationshipType+" {id:?, version:?, class:?, name:?, documentation:?, strength:?, access_type:?, checksum:?}]->(target)"
-							,relationship.getSource().getId()
-							,model.getDBMetadata(relationship.getSource()).getCurrentVersion().getVersion()
-							,relationship.getTarget().getId()
-							,model.getDBMetadata(relationship.getTarget()).getCurrentVersion().getVersion()
-							,relationship.getId()
-							,dbMetadata.getCurrentVersion().getVersion()
-							,relationshipName
-							,relationship.getName()
-							,relationship.getDocumentation()
-							,dbMetadata.getStrength()
-							,dbMetadata.getAccessType()
-							,dbMetadata.getCurrentVersion().getChecksum()
-							);
+					row.put("class", relationshipName);
+					addNeo4jRow("UNWIND ? AS r MATCH (source:elements {id:r.source_id, version:r.source_version}), (target:elements {id:r.target_id, version:r.target_version})"
+							+ " MERGE (source)-[relationship:"+relationshipType+" {id:r.id, version:r.version}]->(target)"
+							+ " SET relationship.class = r.class, relationship.name = r.name, relationship.documentation = r.documentation, relationship.strength = r.strength, relationship.access_type = r.access_type, relationship.checksum = r.checksum"
+							, row);
 				}
 			} else {
-				executeRequest("MATCH (source {id:?, version:?}), (target {id:?, version:?}) CREATE (relationship:"+relationshipType+" {id:?, version:?, class:?, name:?, documentation:?, strength:?, access_type:?, checksum:?}), (source)-[rel1:relatedTo]->(relationship)-[rel2:relatedTo]->(target)"
-						,relationship.getSource().getId()
-						,model.getDBMetadata(relationship.getSource()).getCurrentVersion().getVersion()
-						,relationship.getTarget().getId()
-						,model.getDBMetadata(relationship.getTarget()).getCurrentVersion().getVersion()
-						,relationship.getId()
-						,dbMetadata.getCurrentVersion().getVersion()
-						,relationship.getClass().getSimpleName()
-						,relationship.getName()
-						,relationship.getDocumentation()
-						,dbMetadata.getStrength()
-						,dbMetadata.getAccessType()
-						,dbMetadata.getCurrentVersion().getChecksum()
-						);
+				// the source and target labels are part of the request so that the nodes are found using the indexes
+				row.put("class", relationship.getClass().getSimpleName());
+				addNeo4jRow("UNWIND ? AS r MATCH (source:"+getNeo4jLabel(relationship.getSource())+" {id:r.source_id, version:r.source_version}), (target:"+getNeo4jLabel(relationship.getTarget())+" {id:r.target_id, version:r.target_version})"
+						+ " MERGE (relationship:"+relationshipType+" {id:r.id, version:r.version})"
+						+ " SET relationship.class = r.class, relationship.name = r.name, relationship.documentation = r.documentation, relationship.strength = r.strength, relationship.access_type = r.access_type, relationship.checksum = r.checksum"
+						+ " MERGE (source)-[:relatedTo]->(relationship) MERGE (relationship)-[:relatedTo]->(target)"
+						, row);
 			}
 		} else {
-			insert(this.schemaPrefix+"relationships", relationshipsColumns
+			insertInBatch(this.schemaPrefix+"relationships", relationshipsColumns
 					,relationship.getId()
 					,dbMetadata.getCurrentVersion().getVersion()
 					,relationship.getClass().getSimpleName()
@@ -1499,6 +2164,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 					,nbFeatures
 					,dbMetadata.getCurrentVersion().getChecksum()
 					);
+			exportLatestVersion(relationship.getId(), relationship.getClass().getSimpleName(), dbMetadata);
 		}
 
 		if ( nbProperties != 0 )
@@ -1524,9 +2190,12 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		DBArchimateModel model = (DBArchimateModel)relationship.getArchimateModel();
 		DBMetadata dbMetadata = model.getDBMetadata(relationship);
 
+		if ( isMembershipUnchanged(model, dbMetadata, (IFolder)relationship.eContainer(), "relationships_in_model") )
+			return;
+
 		if ( logger.isTraceEnabled() ) logger.trace("   Assigning relationship to model");
 
-		insert(this.schemaPrefix+"relationships_in_model", relationshipsInModelColumns
+		insertInBatch(this.schemaPrefix+"relationships_in_model", relationshipsInModelColumns
 				,relationship.getId()
 				,dbMetadata.getCurrentVersion().getVersion()
 				,((IFolder)relationship.eContainer()).getId()
@@ -1554,7 +2223,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		int nbProperties = (folder.getProperties() == null) ? 0 : folder.getProperties().size();
 		int nbFeatures = (folder.getFeatures() == null) ? 0 : folder.getFeatures().size();
 
-		insert(this.schemaPrefix+"folders", foldersColumns
+		insertInBatch(this.schemaPrefix+"folders", foldersColumns
 				,folder.getId()
 				,dbMetadata.getCurrentVersion().getVersion()
 				,folder.getType().getValue()
@@ -1567,6 +2236,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 				,nbFeatures
 				,dbMetadata.getCurrentVersion().getChecksum()
 				);
+		exportLatestVersion(folder.getId(), "Folder", dbMetadata);
 
 		if ( nbProperties != 0 )
 			exportProperties(folder);
@@ -1587,19 +2257,20 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 	 * @throws Exception 
 	 */
 	private void assignFolderToModel(IFolder folder) throws Exception {
-		final String[] foldersInModelColumns = {"folder_id", "folder_version", "parent_folder_id", "model_id", "model_version", "pos"};
+		final String[] foldersInModelColumns = {"folder_id", "folder_version", "parent_folder_id", "model_id", "model_version", "pos", "subtree_checksum"};
 		DBArchimateModel model = (DBArchimateModel)folder.getArchimateModel();
 		DBMetadata dbMetadata = model.getDBMetadata(folder);
 
 		if ( logger.isTraceEnabled() ) logger.trace("   Assigning folder to model");
 
-		insert(this.schemaPrefix+"folders_in_model", foldersInModelColumns
+		insertInBatch(this.schemaPrefix+"folders_in_model", foldersInModelColumns
 				,folder.getId()
 				,dbMetadata.getCurrentVersion().getVersion()
 				,(((IIdentifier)((Folder)folder).eContainer()).getId() == model.getId() ? null : ((IIdentifier)((Folder)folder).eContainer()).getId())
 				,model.getId()
 				,model.getCurrentVersion().getVersion()
 				,++this.folderPos
+				,model.getSubtreeChecksums().get(folder.getId())
 				);
 	}
 
@@ -1640,6 +2311,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 				,dbMetadata.getCurrentVersion().getChecksum()
 				,dbMetadata.getCurrentVersion().getContainerChecksum()
 				);
+		exportLatestVersion(view.getId(), view.getClass().getSimpleName(), dbMetadata);
 
 		if ( nbProperties != 0 )
 			exportProperties(view);
@@ -1664,9 +2336,12 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		DBArchimateModel model = (DBArchimateModel)view.getArchimateModel();
 		DBMetadata dbMetadata = model.getDBMetadata(view);
 
+		if ( isMembershipUnchanged(model, dbMetadata, (IFolder)view.eContainer(), "views_in_model") )
+			return;
+
 		if ( logger.isTraceEnabled() ) logger.trace("   Assigning view to model");
 
-		insert(this.schemaPrefix+"views_in_model", viewsInModelColumns
+		insertInBatch(this.schemaPrefix+"views_in_model", viewsInModelColumns
 				,view.getId()
 				,dbMetadata.getCurrentVersion().getVersion()
 				,((IFolder)view.eContainer()).getId()
@@ -1701,7 +2376,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		int nbProperties = (!(viewObject instanceof IProperties) || !(viewObject instanceof IDiagramModelArchimateComponent) || (((IProperties)viewObject).getProperties() == null)) ? 0 : ((IProperties)viewObject).getProperties().size();
 		int nbFeatures = (viewObject.getFeatures() == null) ? 0 : viewObject.getFeatures().size();
 
-		insert(this.schemaPrefix+"views_objects", ViewsObjectsColumns
+		insertInBatch(this.schemaPrefix+"views_objects", ViewsObjectsColumns
 				,((IIdentifier)viewObject).getId()
 				,dbMetadata.getCurrentVersion().getVersion()
 				,viewObject.getClass().getSimpleName()
@@ -1736,6 +2411,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 				,nbFeatures
 				,dbMetadata.getCurrentVersion().getChecksum()
 				);
+		exportLatestVersion(((IIdentifier)viewObject).getId(), viewObject.getClass().getSimpleName(), dbMetadata);
 
 		if ( nbProperties != 0 )
 			exportProperties((IProperties)viewObject);
@@ -1758,7 +2434,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 
 		if ( logger.isTraceEnabled() ) logger.trace("   Assigning view object to view");
 
-		insert(this.schemaPrefix+"views_objects_in_view", viewObjectInViewColumns
+		insertInBatch(this.schemaPrefix+"views_objects_in_view", viewObjectInViewColumns
 				,viewObject.getId()
 				,dbMetadata.getCurrentVersion().getVersion()
 				,viewContainer.getId()
@@ -1795,7 +2471,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		int nbFeatures = (viewConnection.getFeatures() == null) ? 0 : viewConnection.getFeatures().size();
 		int nbBendpoints = (viewConnection.getBendpoints() == null) ? 0 : viewConnection.getBendpoints().size();
 
-		insert(this.schemaPrefix+"views_connections", ViewsConnectionsColumns
+		insertInBatch(this.schemaPrefix+"views_connections", ViewsConnectionsColumns
 				,((IIdentifier)viewConnection).getId()
 				,dbMetadata.getCurrentVersion().getVersion()
 				,viewConnection.getClass().getSimpleName()
@@ -1819,6 +2495,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 				,nbBendpoints
 				,dbMetadata.getCurrentVersion().getChecksum()
 				);
+		exportLatestVersion(((IIdentifier)viewConnection).getId(), viewConnection.getClass().getSimpleName(), dbMetadata);
 
 		if ( nbProperties != 0 )
 			exportProperties(viewConnection);
@@ -1843,7 +2520,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 
 		if ( logger.isTraceEnabled() ) logger.trace("   Assigning view connection to view");
 
-		insert(this.schemaPrefix+"views_connections_in_view", viewObjectInViewColumns
+		insertInBatch(this.schemaPrefix+"views_connections_in_view", viewObjectInViewColumns
 				,viewConnection.getId()
 				,dbMetadata.getCurrentVersion().getVersion()
 				,viewContainer.getId()
@@ -1854,6 +2531,31 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 
 	}
 
+	/**
+	 * Updates the latest_versions table with the version of a component that is being exported
+	 * @param id the ID of the component
+	 * @param clazz the class of the component
+	 * @param dbMetadata the metadata of the component
+	 * @throws SQLException
+	 */
+	private void exportLatestVersion(String id, String clazz, DBMetadata dbMetadata) throws SQLException {
+		final String[] latestVersionsColumns = {"id", "class", "version", "checksum"};
+
+		if ( dbMetadata.getLatestDatabaseVersion().getVersion() == 0 )
+			insertInBatch(this.schemaPrefix+"latest_versions", latestVersionsColumns
+					,id
+					,clazz
+					,dbMetadata.getCurrentVersion().getVersion()
+					,dbMetadata.getCurrentVersion().getChecksum()
+					);
+		else
+			executeInBatch("UPDATE "+this.schemaPrefix+"latest_versions SET version = ?, checksum = ? WHERE id = ?"
+					,dbMetadata.getCurrentVersion().getVersion()
+					,dbMetadata.getCurrentVersion().getChecksum()
+					,id
+					);
+	}
+
 	/**
 	 * Export properties to the database
 	 * @param parent 
@@ -1871,16 +2573,11 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 			for ( int propPos = 0 ; propPos < parent.getProperties().size(); ++propPos) {
 				IProperty prop = parent.getProperties().get(propPos);
 				if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.NEO4J.getDriverName()) ) {
-					executeRequest("MATCH (parent {id:?, version:?}) CREATE (prop:property {pos:?, name:?, value:?}), (parent)-[:hasProperty]->(prop)"
-							,parentId
-							,parentVersion
-							,propPos
-							,prop.getKey()
-							,prop.getValue()
-							);
+					addNeo4jRow("UNWIND ? AS r MATCH (parent:"+getNeo4jLabel((EObject)parent)+" {id:r.parent_id, version:r.parent_version}) MERGE (parent)-[:hasProperty]->(prop:property {pos:r.pos}) SET prop.name = r.name, prop.value = r.value"
+							, getNeo4jChildRow(parentId, parentVersion, propPos, prop.getKey(), prop.getValue()));
 				}
 				else
-					insert(this.schemaPrefix+"properties", propertiesColumns
+					insertInBatch(this.schemaPrefix+"properties", propertiesColumns
 							,parentId
 							,parentVersion
 							,propPos
@@ -1908,16 +2605,11 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 			for ( int pos = 0 ; pos < parent.getFeatures().size(); ++pos) {
 				IFeature feature = parent.getFeatures().get(pos);
 				if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.NEO4J.getDriverName()) ) {
-					executeRequest("MATCH (parent {id:?, version:?}) CREATE (feat:feature {pos:?, name:?, value:?}), (parent)-[:hasFeature]->(feat)"
-							,parentId
-							,parentVersion
-							,pos
-							,feature.getName()
-							,feature.getValue()
-							);
+					addNeo4jRow("UNWIND ? AS r MATCH (parent:"+getNeo4jLabel((EObject)parent)+" {id:r.parent_id, version:r.parent_version}) MERGE (parent)-[:hasFeature]->(feat:feature {pos:r.pos}) SET feat.name = r.name, feat.value = r.value"
+							, getNeo4jChildRow(parentId, parentVersion, pos, feature.getName(), feature.getValue()));
 				}
 				else
-					insert(this.schemaPrefix+"features", featuresColumns
+					insertInBatch(this.schemaPrefix+"features", featuresColumns
 							,parentId
 							,parentVersion
 							,pos
@@ -1928,6 +2620,19 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 		}
 	}
 
+	/**
+	 * @return the Neo4J row of a property, feature or metadata
+	 */
+	private static Map<String, Object> getNeo4jChildRow(String parentId, int parentVersion, int pos, String name, String value) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		row.put("parent_id", parentId);
+		row.put("parent_version", parentVersion);
+		row.put("pos", pos);
+		row.put("name", name);
+		row.put("value", value);
+		return row;
+	}
+
 	/**
 	 * Export bendpoints of a DiagramModelConnection
 	 * @param parent the diagramModelConnection
@@ -1944,7 +2649,7 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 
 			for ( int pos = 0 ; pos < parent.getBendpoints().size(); ++pos) {
 				IDiagramModelBendpoint bendpoint = parent.getBendpoints().get(pos);
-				insert(this.schemaPrefix+"bendpoints", bendpointsColumns
+				insertInBatch(this.schemaPrefix+"bendpoints", bendpointsColumns
 						,parentId
 						,parentVersion
 						,pos
@@ -1972,16 +2677,11 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 				for ( int propPos = 0 ; propPos < parent.getMetadata().getEntries().size(); ++propPos) {
 					IProperty prop = parent.getMetadata().getEntries().get(propPos);
 					if ( DBPlugin.areEqual(this.databaseEntry.getDriver(), DBDatabase.NEO4J.getDriverName()) ) {
-						executeRequest("MATCH (parent {id:?, version:?}) CREATE (prop:metadata {pos:?, name:?, value:?}), (parent)-[:hasMetadata]->(prop)"
-								,parent.getId()
-								,parent.getCurrentVersion().getVersion()
-								,propPos
-								,prop.getKey()
-								,prop.getValue()
-								);
+						addNeo4jRow("UNWIND ? AS r MATCH (parent:"+getNeo4jLabel(parent)+" {id:r.parent_id, version:r.parent_version}) MERGE (parent)-[:hasMetadata]->(prop:metadata {pos:r.pos}) SET prop.name = r.name, prop.value = r.value"
+								, getNeo4jChildRow(parent.getId(), parent.getCurrentVersion().getVersion(), propPos, prop.getKey(), prop.getValue()));
 					}
 					else
-						insert(this.schemaPrefix+"metadata", metadataColumns
+						insertInBatch(this.schemaPrefix+"metadata", metadataColumns
 								,parent.getId()
 								,parent.getCurrentVersion().getVersion()
 								,propPos
@@ -1994,26 +2694,167 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 	}
 
 	/**
-	 * Exports an image to the database
-	 * @param path
-	 * @param image
-	 * @return
+	 * Exports the images of a model to the database<br>
+	 * <br>
+	 * The images content is stored only once in the images_content table, indexed by its checksum, and the images table links the images paths to their content.<br>
+	 * The paths and checksums that already exist in the database are got in a few requests, then only the missing contents and paths are inserted.<br>
+	 * <br>
+	 * The checksums and thumbnails are calculated by exportImagesThreads worker threads while the images are read and inserted by the calling thread, so all the requests are still sent on this connection in a single transaction.
+	 * At most 2 images per worker thread are waiting to be inserted so only a few images contents are kept in memory at a time.
+	 * @param model
+	 * @return the paths of the images that were not yet in the database
 	 * @throws SQLException
+	 * @throws NoSuchAlgorithmException
 	 */
-	public boolean exportImage(String path, byte[] image) throws SQLException {
-		// we do not export null images (should never happen, but it sometimes does)
-		if ( image == null ) 
-			return false;
+	public List<String> exportImages(DBArchimateModel model) throws SQLException, NoSuchAlgorithmException {
+		List<String> exportedPaths = new ArrayList<String>();
+
+		HashSet<String> pathsInDatabase = getValuesInDatabase("images", "path", model.getAllImagePaths());
+
+		int nbThreads = Math.max(DBPlugin.INSTANCE.getPreferenceStore().getInt("exportImagesThreads"), 0);
+		int maxPendingImages = Math.max(2 * nbThreads, 1);
+		ExecutorService executor = null;
+		if ( nbThreads > 0 ) {
+			executor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+				@Override public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "DBExportImages");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
 
-		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT path FROM "+this.schemaPrefix+"images WHERE path = ?", path) ) {
-			if ( !result.next() ) {
-				// if the image is not yet in the db, we insert it
-				String[] databaseColumns = {"path", "image"};
-				insert(this.schemaPrefix+"images", databaseColumns, path, image);
-				return true;
+		try {
+			// we calculate the checksum of the images that are not yet in the database
+			// the images content is not kept: it is got again from the archive manager when it needs to be inserted
+			IArchiveManager archiveMgr = (IArchiveManager)model.getAdapter(IArchiveManager.class);
+			LinkedHashMap<String, String> checksums = new LinkedHashMap<String, String>();
+			LinkedHashMap<String, Future<String>> pendingChecksums = new LinkedHashMap<String, Future<String>>();
+			for ( String path: model.getAllImagePaths() ) {
+				if ( !pathsInDatabase.contains(path) ) {
+					final byte[] image = archiveMgr.getBytesFromEntry(path);
+					// we do not export null images (should never happen, but it sometimes does)
+					if ( image != null ) {
+						pendingChecksums.put(path, submit(executor, new Callable<String>() {
+							@Override public String call() throws NoSuchAlgorithmException { return DBChecksum.calculateChecksum(image); }
+						}));
+						if ( pendingChecksums.size() >= maxPendingImages ) {
+							Entry<String, Future<String>> oldest = pendingChecksums.entrySet().iterator().next();
+							checksums.put(oldest.getKey(), getResult(oldest.getValue()));
+							pendingChecksums.remove(oldest.getKey());
+						}
+					}
+				}
 			}
+			for ( Entry<String, Future<String>> entry: pendingChecksums.entrySet() )
+				checksums.put(entry.getKey(), getResult(entry.getValue()));
+
+			if ( checksums.isEmpty() )
+				return exportedPaths;
+
+			// identical images that are referenced by different paths are stored only once
+			HashSet<String> checksumsInDatabase = getValuesInDatabase("images_content", "checksum", new HashSet<String>(checksums.values()));
+			LinkedHashMap<String, Future<byte[][]>> pendingContents = new LinkedHashMap<String, Future<byte[][]>>();
+			for ( Entry<String, String> entry: checksums.entrySet() ) {
+				// the checksum is added to the set once submitted so the content is inserted only once
+				if ( checksumsInDatabase.add(entry.getValue()) ) {
+					final byte[] image = archiveMgr.getBytesFromEntry(entry.getKey());
+					pendingContents.put(entry.getValue(), submit(executor, new Callable<byte[][]>() {
+						@Override public byte[][] call() { return new byte[][] {image, createThumbnail(image)}; }
+					}));
+					if ( pendingContents.size() >= maxPendingImages ) {
+						Entry<String, Future<byte[][]>> oldest = pendingContents.entrySet().iterator().next();
+						insertImageContent(oldest.getKey(), getResult(oldest.getValue()));
+						pendingContents.remove(oldest.getKey());
+					}
+				}
+			}
+			for ( Entry<String, Future<byte[][]>> entry: pendingContents.entrySet() )
+				insertImageContent(entry.getKey(), getResult(entry.getValue()));
+
+			String[] pathColumns = {"path", "checksum"};
+			for ( Entry<String, String> entry: checksums.entrySet() ) {
+				insert(this.schemaPrefix+"images", pathColumns, entry.getKey(), entry.getValue());
+				exportedPaths.add(entry.getKey());
+			}
+		} finally {
+			if ( executor != null )
+				executor.shutdownNow();
+		}
+
+		return exportedPaths;
+	}
+
+	/**
+	 * Inserts an image content and its thumbnail in the images_content table
+	 * @param checksum
+	 * @param content the image content and its thumbnail
+	 * @throws SQLException
+	 */
+	private void insertImageContent(String checksum, byte[][] content) throws SQLException {
+		if ( logger.isDebugEnabled() ) logger.debug("Exporting image content "+checksum+" ("+content[0].length/1024+" Ko)");
+		String[] contentColumns = {"checksum", "image", "thumbnail"};
+		insert(this.schemaPrefix+"images_content", contentColumns, checksum, content[0], content[1]);
+	}
+
+	/**
+	 * Runs a calculation in a worker thread, or in the calling thread if there is no worker thread
+	 * @param executor the worker threads (may be null)
+	 * @param callable the calculation
+	 * @return the result of the calculation
+	 */
+	private static <T> Future<T> submit(ExecutorService executor, Callable<T> callable) {
+		FutureTask<T> task = new FutureTask<T>(callable);
+		if ( executor == null )
+			task.run();
+		else
+			executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Waits for the result of a calculation run by the submit() method
+	 * @param future
+	 * @return the result of the calculation
+	 * @throws SQLException if the calculation has been interrupted
+	 * @throws NoSuchAlgorithmException if the checksum cannot be calculated
+	 */
+	private static <T> T getResult(Future<T> future) throws SQLException, NoSuchAlgorithmException {
+		try {
+			return future.get();
+		} catch (InterruptedException err) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for the images checksums and thumbnails.", err);
+		} catch (ExecutionException err) {
+			if ( err.getCause() instanceof NoSuchAlgorithmException )
+				throw (NoSuchAlgorithmException)err.getCause();
+			if ( err.getCause() instanceof RuntimeException )
+				throw (RuntimeException)err.getCause();
+			throw new SQLException("Failed to calculate the images checksums and thumbnails.", err.getCause());
+		}
+	}
+
+	/**
+	 * Creates the thumbnail of an image, that is shown by the images gallery instead of the full image
+	 * @param image the image content
+	 * @return the thumbnail as a PNG image that fits in a thumbnailSize x thumbnailSize square, or null if the image cannot be decoded
+	 */
+	public static byte[] createThumbnail(byte[] image) {
+		try {
+			ImageData data = new ImageData(new ByteArrayInputStream(image));
+
+			double scale = Math.min(1.0, (double)thumbnailSize / Math.max(data.width, data.height));
+			ImageData thumbnailData = data.scaledTo(Math.max(1, (int)(data.width * scale)), Math.max(1, (int)(data.height * scale)));
+
+			ImageLoader loader = new ImageLoader();
+			loader.data = new ImageData[] {thumbnailData};
+			ByteArrayOutputStream thumbnail = new ByteArrayOutputStream();
+			loader.save(thumbnail, SWT.IMAGE_PNG);
+			return thumbnail.toByteArray();
+		} catch (SWTException err) {
+			if ( logger.isDebugEnabled() ) logger.debug("Cannot create the thumbnail of the image: "+err.getMessage());
+			return null;
 		}
-		return false;
 	}
 
 	/**
@@ -2058,6 +2899,9 @@ public class DBDatabaseExportConnection extends DBDatabaseConnection {
 	 * Reset the counters
 	 */
 	public void reset() {
+		// we discard the lines that may still be waiting in the batches
+		clearBatches();
+
 		// We reset all "pos" to zero
 		this.elementPos = 0;
 		this.relationshipPos = 0;
@@ -6,24 +6,28 @@
 
 package org.archicontribs.database.connection;
 
-import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.archicontribs.database.DBDatabaseEntry;
 import org.archicontribs.database.DBLogger;
 import org.archicontribs.database.DBPlugin;
+import org.archicontribs.database.DBPlugin.CONFLICT_CHOICE;
 import org.archicontribs.database.data.DBBendpoint;
 import org.archicontribs.database.data.DBDatabase;
 import org.archicontribs.database.data.DBImportMode;
 import org.archicontribs.database.data.DBProperty;
 import org.archicontribs.database.model.DBArchimateModel;
 import org.archicontribs.database.model.DBMetadata;
+import org.archicontribs.database.model.DBMetadata.DATABASE_STATUS;
 import org.archicontribs.database.model.commands.DBImportElementFromIdCommand;
 import org.archicontribs.database.model.commands.DBImportRelationshipFromIdCommand;
 import org.eclipse.emf.ecore.EClass;
@@ -169,15 +173,20 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 
 		if ( logger.isDebugEnabled() ) logger.debug("   Getting "+clazz);
 
+		// if the component has been prefetched, we do not need to request the database
+		hashResult = this.prefetchedObjects.remove(clazz+":"+getPrefetchKey(id, objectVersion));
+		if ( hashResult != null )
+			return hashResult;
+
 		try {
 			if ( version == 0 ) {
 				// because of PostGreSQL, we need to split the request in two
-				if (      DBPlugin.areEqual(clazz,  "IArchimateElement") )       result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, name, documentation, type, created_by, created_on, properties, features, checksum FROM "+this.schemaPrefix+"elements e WHERE id = ? AND version = (SELECT MAX(version) FROM "+this.schemaPrefix+"elements WHERE id = e.id)", id);
-				else if ( DBPlugin.areEqual(clazz,  "IArchimateRelationship") )  result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, name, documentation, source_id, target_id, strength, access_type, created_by, created_on, properties, features, checksum FROM "+this.schemaPrefix+"relationships r WHERE id = ? AND version = (SELECT MAX(version) FROM "+this.schemaPrefix+"relationships WHERE id = r.id)", id);
-				else if ( DBPlugin.areEqual(clazz,  "IFolder") )                 result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, 'Folder' as class, type, root_type, name, documentation, created_by, created_on, properties, features, checksum FROM "+this.schemaPrefix+"folders f WHERE id = ? AND version = (SELECT MAX(version) FROM "+this.schemaPrefix+"folders WHERE id = f.id)", id);
-				else if ( DBPlugin.areEqual(clazz,  "IDiagramModel") )           result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, name, documentation, created_by, created_on, background, connection_router_type, viewpoint, properties, features, checksum, container_checksum FROM "+this.schemaPrefix+"views v WHERE id = ? AND version = (SELECT MAX(version) FROM "+this.schemaPrefix+"views WHERE id = v.id)", id);
-				else if ( DBPlugin.areEqual(clazz,  "IDiagramModelObject") )     result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, container_id, element_id, diagram_ref_id, border_color, border_type, content, documentation, is_locked, image_path, image_position, line_color, line_width, fill_color, alpha, font, font_color, name, notes, text_alignment, text_position, type, x, y, width, height, created_by, created_on, properties, features, checksum FROM "+this.schemaPrefix+"views_objects v WHERE id = ? AND version = (SELECT MAX(version) FROM "+this.schemaPrefix+"views_objects WHERE id = v.id)", id);
-				else if ( DBPlugin.areEqual(clazz,  "IDiagramModelConnection") ) result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, container_id, name, documentation, is_locked, line_color, line_width, font, font_color, relationship_id, relationship_version, source_object_id, target_object_id, text_position, type, created_by, created_on, properties, features, bendpoints, checksum FROM "+this.schemaPrefix+"views_connections v WHERE id = ? AND version = (SELECT MAX(version) FROM "+this.schemaPrefix+"views_connections WHERE id = v.id)", id);
+				if (      DBPlugin.areEqual(clazz,  "IArchimateElement") )       result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, name, documentation, type, created_by, created_on, properties, features, checksum FROM "+this.schemaPrefix+"elements e WHERE id = ? AND version = "+getLatestVersionRequest("e.id"), id);
+				else if ( DBPlugin.areEqual(clazz,  "IArchimateRelationship") )  result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, name, documentation, source_id, target_id, strength, access_type, created_by, created_on, properties, features, checksum FROM "+this.schemaPrefix+"relationships r WHERE id = ? AND version = "+getLatestVersionRequest("r.id"), id);
+				else if ( DBPlugin.areEqual(clazz,  "IFolder") )                 result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, 'Folder' as class, type, root_type, name, documentation, created_by, created_on, properties, features, checksum FROM "+this.schemaPrefix+"folders f WHERE id = ? AND version = "+getLatestVersionRequest("f.id"), id);
+				else if ( DBPlugin.areEqual(clazz,  "IDiagramModel") )           result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, name, documentation, created_by, created_on, background, connection_router_type, viewpoint, properties, features, checksum, container_checksum FROM "+this.schemaPrefix+"views v WHERE id = ? AND version = "+getLatestVersionRequest("v.id"), id);
+				else if ( DBPlugin.areEqual(clazz,  "IDiagramModelObject") )     result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, container_id, element_id, diagram_ref_id, border_color, border_type, content, documentation, is_locked, image_path, image_position, line_color, line_width, fill_color, alpha, font, font_color, name, notes, text_alignment, text_position, type, x, y, width, height, created_by, created_on, properties, features, checksum FROM "+this.schemaPrefix+"views_objects v WHERE id = ? AND version = "+getLatestVersionRequest("v.id"), id);
+				else if ( DBPlugin.areEqual(clazz,  "IDiagramModelConnection") ) result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, container_id, name, documentation, is_locked, line_color, line_width, font, font_color, relationship_id, relationship_version, source_object_id, target_object_id, text_position, type, created_by, created_on, properties, features, bendpoints, checksum FROM "+this.schemaPrefix+"views_connections v WHERE id = ? AND version = "+getLatestVersionRequest("v.id"), id);
 				else throw new Exception("Do not know how to get a "+clazz+" from the database.");
 			} else {        
 				if (      DBPlugin.areEqual(clazz,  "IArchimateElement") )       result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT id, version, class, name, documentation, type, created_by, created_on, properties, features, checksum FROM "+this.schemaPrefix+"elements WHERE id = ? AND version = ?", id, version);
@@ -239,6 +248,251 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 		return hashResult;
 	}
 
+	/**
+	 * Maximum number of (id, version) pairs sent in a single bulk request
+	 */
+	private static final int maxPairsInSQLRequest = 500;
+
+	/**
+	 * Components that have been got from the database by the prefetchObjectsFromDatabase method, indexed by "class:id:version"<br>
+	 * Each of them is consumed by the first call to getObjectFromDatabase.
+	 */
+	private HashMap<String, HashMap<String, Object>> prefetchedObjects = new HashMap<String, HashMap<String, Object>>();
+
+	/**
+	 * Gets several components of the same class from the database and converts them into HashMaps<br>
+	 * <br>
+	 * The components are got in a few requests (one per chunk of maxPairsInSQLRequest components for the components themselves, then one per chunk for their properties, features and bendpoints)
+	 * rather than one request per component as done by the getObjectFromDatabase method.
+	 * @param clazz class of components to get
+	 * @param idVersions versions of the components to get, indexed by their ID (0 to get the latest version)
+	 * @return HashMap containing the objects data, indexed by "id:version" where version is the requested version. The components that are not found in the database are not returned.
+	 * @throws Exception
+	 */
+	public HashMap<String, HashMap<String, Object>> getObjectsFromDatabase(String clazz, Map<String, Integer> idVersions) throws Exception {
+		HashMap<String, HashMap<String, Object>> objects = new HashMap<String, HashMap<String, Object>>();
+
+		if ( idVersions.isEmpty() )
+			return objects;
+
+		if ( logger.isDebugEnabled() ) logger.debug("   Getting "+idVersions.size()+" "+clazz+" from the database");
+
+		String table;
+		String columns;
+		if (      DBPlugin.areEqual(clazz,  "IArchimateElement") )       { table = "elements";          columns = "id, version, class, name, documentation, type, created_by, created_on, properties, features, checksum"; }
+		else if ( DBPlugin.areEqual(clazz,  "IArchimateRelationship") )  { table = "relationships";     columns = "id, version, class, name, documentation, source_id, target_id, strength, access_type, created_by, created_on, properties, features, checksum"; }
+		else if ( DBPlugin.areEqual(clazz,  "IFolder") )                 { table = "folders";           columns = "id, version, 'Folder' as class, type, root_type, name, documentation, created_by, created_on, properties, features, checksum"; }
+		else if ( DBPlugin.areEqual(clazz,  "IDiagramModel") )           { table = "views";             columns = "id, version, class, name, documentation, created_by, created_on, background, connection_router_type, viewpoint, properties, features, checksum, container_checksum"; }
+		else if ( DBPlugin.areEqual(clazz,  "IDiagramModelObject") )     { table = "views_objects";     columns = "id, version, class, container_id, element_id, diagram_ref_id, border_color, border_type, content, documentation, is_locked, image_path, image_position, line_color, line_width, fill_color, alpha, font, font_color, name, notes, text_alignment, text_position, type, x, y, width, height, created_by, created_on, properties, features, checksum"; }
+		else if ( DBPlugin.areEqual(clazz,  "IDiagramModelConnection") ) { table = "views_connections"; columns = "id, version, class, container_id, name, documentation, is_locked, line_color, line_width, font, font_color, relationship_id, relationship_version, source_object_id, target_object_id, text_position, type, created_by, created_on, properties, features, bendpoints, checksum"; }
+		else throw new Exception("Do not know how to get a "+clazz+" from the database.");
+
+		// we split the components between those whose latest version is requested and those whose version is known
+		ArrayList<String> latestIds = new ArrayList<String>();
+		ArrayList<String> versionedIds = new ArrayList<String>();
+		for ( Map.Entry<String, Integer> entry: idVersions.entrySet() ) {
+			if ( entry.getValue() == null || entry.getValue().intValue() == 0 )
+				latestIds.add(entry.getKey());
+			else
+				versionedIds.add(entry.getKey());
+		}
+
+		// the database rows, indexed by "id:version" where version is the version found in the database
+		HashMap<String, HashMap<String, Object>> rows = new HashMap<String, HashMap<String, Object>>();
+
+		for ( int start = 0; start < latestIds.size(); start += maxPairsInSQLRequest ) {
+			List<String> chunk = latestIds.subList(start, Math.min(start + maxPairsInSQLRequest, latestIds.size()));
+			StringBuilder inClause = new StringBuilder();
+			for ( int i = 0; i < chunk.size(); ++i )
+				inClause.append(i == 0 ? "?" : ", ?");
+
+			// the latest versions of the whole chunk are got from the latest_versions table rather than by a correlated sub-request for each component
+			try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,
+					"SELECT "+columns+" FROM "+this.schemaPrefix+table
+					+ " JOIN (SELECT id AS latest_id, version AS latest_version FROM "+this.schemaPrefix+"latest_versions WHERE id IN ("+inClause.toString()+")) l"
+					+ " ON l.latest_id = id AND l.latest_version = version"
+					, chunk.toArray()) ) {
+				while ( result.next() ) {
+					HashMap<String, Object> row = resultSetToHashMap(result.getResult());
+					rows.put(getPrefetchKey((String)row.get("id"), (Integer)row.get("version")), row);
+					objects.put(getPrefetchKey((String)row.get("id"), 0), row);
+				}
+			}
+		}
+
+		for ( int start = 0; start < versionedIds.size(); start += maxPairsInSQLRequest ) {
+			List<String> chunk = versionedIds.subList(start, Math.min(start + maxPairsInSQLRequest, versionedIds.size()));
+			StringBuilder whereClause = new StringBuilder();
+			Object[] parameters = new Object[chunk.size() * 2];
+			for ( int i = 0; i < chunk.size(); ++i ) {
+				whereClause.append(i == 0 ? "(id = ? AND version = ?)" : " OR (id = ? AND version = ?)");
+				parameters[2*i] = chunk.get(i);
+				parameters[2*i+1] = idVersions.get(chunk.get(i));
+			}
+
+			try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT "+columns+" FROM "+this.schemaPrefix+table+" WHERE "+whereClause.toString(), parameters) ) {
+				while ( result.next() ) {
+					HashMap<String, Object> row = resultSetToHashMap(result.getResult());
+					String key = getPrefetchKey((String)row.get("id"), (Integer)row.get("version"));
+					rows.put(key, row);
+					objects.put(key, row);
+				}
+			}
+		}
+
+		// we get the properties, features and bendpoints of the components that have got some
+		ArrayList<String> withProperties = new ArrayList<String>();
+		ArrayList<String> withFeatures = new ArrayList<String>();
+		ArrayList<String> withBendpoints = new ArrayList<String>();
+		for ( Map.Entry<String, HashMap<String, Object>> entry: rows.entrySet() ) {
+			HashMap<String, Object> row = entry.getValue();
+			if ( hasChildren(row.put("properties", new ArrayList<DBProperty>())) ) withProperties.add(entry.getKey());
+			if ( hasChildren(row.put("features", new ArrayList<DBProperty>())) ) withFeatures.add(entry.getKey());
+			if ( DBPlugin.areEqual(clazz,  "IDiagramModelConnection") && hasChildren(row.put("bendpoints", new ArrayList<DBBendpoint>())) ) withBendpoints.add(entry.getKey());
+		}
+		getPropertiesOfObjects("properties", withProperties, rows);
+		getPropertiesOfObjects("features", withFeatures, rows);
+		getBendpointsOfObjects(withBendpoints, rows);
+
+		if ( logger.isDebugEnabled() ) logger.debug("   Found "+objects.size()+" "+clazz+" in the database");
+
+		return objects;
+	}
+
+	/**
+	 * @return true if the "properties", "features" or "bendpoints" column of a component contains a number of children different from zero
+	 */
+	private static boolean hasChildren(Object count) {
+		return (count instanceof Integer) && ((Integer)count).intValue() != 0;
+	}
+
+	/**
+	 * Gets the properties or the features of several components and adds them to the "properties" or "features" ArrayList of the components' HashMap
+	 * @param table "properties" or "features"
+	 * @param keys "id:version" of the components that have got properties or features
+	 * @param rows the components' HashMaps, indexed by "id:version"
+	 * @throws SQLException
+	 */
+	@SuppressWarnings("unchecked")
+	private void getPropertiesOfObjects(String table, ArrayList<String> keys, HashMap<String, HashMap<String, Object>> rows) throws SQLException {
+		for ( int start = 0; start < keys.size(); start += maxPairsInSQLRequest ) {
+			List<String> chunk = keys.subList(start, Math.min(start + maxPairsInSQLRequest, keys.size()));
+			StringBuilder whereClause = new StringBuilder();
+			Object[] parameters = getParentParameters(chunk, rows, whereClause);
+
+			try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT parent_id, parent_version, name, value FROM "+this.schemaPrefix+table+" WHERE "+whereClause.toString()+" ORDER BY parent_id, parent_version, pos", parameters) ) {
+				while ( result.next() ) {
+					HashMap<String, Object> row = rows.get(getPrefetchKey(result.getString("parent_id"), result.getInt("parent_version")));
+					if ( row != null )
+						((ArrayList<DBProperty>)row.get(table)).add(new DBProperty(result.getString("name"), result.getString("value")));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the bendpoints of several connections and adds them to the "bendpoints" ArrayList of the connections' HashMap
+	 * @param keys "id:version" of the connections that have got bendpoints
+	 * @param rows the connections' HashMaps, indexed by "id:version"
+	 * @throws SQLException
+	 */
+	@SuppressWarnings("unchecked")
+	private void getBendpointsOfObjects(ArrayList<String> keys, HashMap<String, HashMap<String, Object>> rows) throws SQLException {
+		for ( int start = 0; start < keys.size(); start += maxPairsInSQLRequest ) {
+			List<String> chunk = keys.subList(start, Math.min(start + maxPairsInSQLRequest, keys.size()));
+			StringBuilder whereClause = new StringBuilder();
+			Object[] parameters = getParentParameters(chunk, rows, whereClause);
+
+			try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT parent_id, parent_version, start_x, start_y, end_x, end_y FROM "+this.schemaPrefix+"bendpoints WHERE "+whereClause.toString()+" ORDER BY parent_id, parent_version, pos", parameters) ) {
+				while ( result.next() ) {
+					HashMap<String, Object> row = rows.get(getPrefetchKey(result.getString("parent_id"), result.getInt("parent_version")));
+					if ( row != null )
+						((ArrayList<DBBendpoint>)row.get("bendpoints")).add(new DBBendpoint(result.getInt("start_x"), result.getInt("start_y"), result.getInt("end_x"), result.getInt("end_y")));
+				}
+			}
+		}
+	}
+
+	private static Object[] getParentParameters(List<String> keys, HashMap<String, HashMap<String, Object>> rows, StringBuilder whereClause) {
+		Object[] parameters = new Object[keys.size() * 2];
+		for ( int i = 0; i < keys.size(); ++i ) {
+			HashMap<String, Object> row = rows.get(keys.get(i));
+			whereClause.append(i == 0 ? "(parent_id = ? AND parent_version = ?)" : " OR (parent_id = ? AND parent_version = ?)");
+			parameters[2*i] = row.get("id");
+			parameters[2*i+1] = row.get("version");
+		}
+		return parameters;
+	}
+
+	/**
+	 * Gets several components of the same class from the database and keeps them in memory<br>
+	 * The next call to getObjectFromDatabase for one of these components (with the same requested version) will not request the database.
+	 * @param clazz class of components to get
+	 * @param idVersions versions of the components to get, indexed by their ID (0 to get the latest version)
+	 * @throws Exception
+	 */
+	public void prefetchObjectsFromDatabase(String clazz, Map<String, Integer> idVersions) throws Exception {
+		for ( Map.Entry<String, HashMap<String, Object>> entry: getObjectsFromDatabase(clazz, idVersions).entrySet() )
+			this.prefetchedObjects.put(clazz+":"+entry.getKey(), entry.getValue());
+	}
+
+	/**
+	 * Prefetches all the components that will be imported from the database when a model is synced with the database before its export:<br>
+	 * the components created in the database, the components updated in the database and the conflicting components that the user chose to import from the database.
+	 * @param model the model that is exported
+	 * @param exportConnection the connection that calculated the versions of the model's components
+	 * @throws Exception
+	 */
+	public void prefetchComponentsToSync(DBArchimateModel model, DBDatabaseExportConnection exportConnection) throws Exception {
+		if ( logger.isDebugEnabled() ) logger.debug("Prefetching the components to import from the database");
+
+		HashMap<String, Integer> folders = getVersionsToSync(exportConnection.getFoldersNotInModel(), model, model.getAllFolders());
+		HashMap<String, Integer> elements = getVersionsToSync(exportConnection.getElementsNotInModel(), model, model.getAllElements());
+		HashMap<String, Integer> relationships = getVersionsToSync(exportConnection.getRelationshipsNotInModel(), model, model.getAllRelationships());
+		HashMap<String, Integer> views = getVersionsToSync(exportConnection.getViewsNotInModel(), model, model.getAllViews());
+		HashMap<String, Integer> viewObjects = getVersionsToSync(exportConnection.getViewObjectsNotInModel(), model, model.getAllViewObjects());
+		HashMap<String, Integer> viewConnections = getVersionsToSync(exportConnection.getViewConnectionsNotInModel(), model, model.getAllViewConnections());
+
+		for ( Map.Entry<EObject, CONFLICT_CHOICE> entry: model.getAllConflicts().entrySet() ) {
+			if ( entry.getValue() == CONFLICT_CHOICE.importFromDatabase ) {
+				EObject component = entry.getKey();
+				String id = ((IIdentifier)component).getId();
+				Integer version = Integer.valueOf(model.getDBMetadata(component).getLatestDatabaseVersion().getVersion());
+				if ( component instanceof IArchimateElement ) elements.put(id, version);
+				else if ( component instanceof IArchimateRelationship ) relationships.put(id, version);
+				else if ( component instanceof IDiagramModel ) views.put(id, version);
+				else if ( component instanceof IDiagramModelObject ) viewObjects.put(id, version);
+				else if ( component instanceof IDiagramModelConnection ) viewConnections.put(id, version);
+			}
+		}
+
+		prefetchObjectsFromDatabase("IFolder", folders);
+		prefetchObjectsFromDatabase("IArchimateElement", elements);
+		prefetchObjectsFromDatabase("IArchimateRelationship", relationships);
+		prefetchObjectsFromDatabase("IDiagramModel", views);
+		prefetchObjectsFromDatabase("IDiagramModelObject", viewObjects);
+		prefetchObjectsFromDatabase("IDiagramModelConnection", viewConnections);
+	}
+
+	/**
+	 * @return the versions of the components that are imported by the sync: the latest version of the components that have been created in the database, and version 0 (latest) for the components updated in the database
+	 */
+	private static HashMap<String, Integer> getVersionsToSync(Map<String, DBMetadata> notInModel, DBArchimateModel model, Map<String, ? extends EObject> components) {
+		HashMap<String, Integer> versions = new HashMap<String, Integer>();
+
+		for ( Map.Entry<String, DBMetadata> entry: notInModel.entrySet() ) {
+			if ( entry.getValue().getInitialVersion().getVersion() == 0 )
+				versions.put(entry.getKey(), Integer.valueOf(entry.getValue().getLatestDatabaseVersion().getVersion()));
+		}
+
+		for ( Map.Entry<String, ? extends EObject> entry: components.entrySet() ) {
+			if ( model.getDBMetadata(entry.getValue()).getDatabaseStatus() == DATABASE_STATUS.isUpadtedInDatabase )
+				versions.put(entry.getKey(), Integer.valueOf(0));
+		}
+
+		return versions;
+	}
+
 	/**
 	 * Creates a HashMap from a ResultSet
 	 * @param rs 
@@ -294,6 +548,14 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 	private String importFoldersRequest;
 	private String importViewsRequest;
 
+	/**
+	 * Properties, features and bendpoints of the model's components, read in a few requests when the model is imported<br>
+	 * They are indexed by "parent_id:parent_version" and are null when they have not been prefetched.
+	 */
+	private HashMap<String, ArrayList<DBProperty>> prefetchedProperties = null;
+	private HashMap<String, ArrayList<DBProperty>> prefetchedFeatures = null;
+	private HashMap<String, ArrayList<DBBendpoint>> prefetchedBendpoints = null;
+
 	/**
 	 * Import the model metadata from the database
 	 * @param model 
@@ -320,11 +582,28 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 			}
 		}
 
-		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT name, purpose, created_on, properties, features, checksum FROM "+this.schemaPrefix+"models WHERE id = ? AND version = ?", model.getId(), model.getInitialVersion().getVersion()) ) {
+		// number of components of the model version, as stored by the export procedure
+		// (the counts are missing if the model version has been exported by an older version of the plugin)
+		HashMap<String, Integer> storedCounts = new HashMap<String, Integer>();
+
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT name, purpose, created_on, properties, features, checksum, "+String.join(", ", modelsCountColumns)+" FROM "+this.schemaPrefix+"models WHERE id = ? AND version = ?", model.getId(), model.getInitialVersion().getVersion()) ) {
 			result.next();
 			model.setPurpose(result.getString("purpose"));
 			model.getInitialVersion().setTimestamp(result.getTimestamp("created_on"));
 			model.getInitialVersion().setChecksum(result.getString("checksum"));
+
+			for ( String column: modelsCountColumns ) {
+				if ( result.getObject(column) != null )
+					storedCounts.put(column, result.getInt(column));
+			}
+
+			// the model contains the same elements, relationships, folders and views whatever their version, but the view objects, view connections
+			// and images depend on the version of the views, so they must be counted if the latest version of the views is imported
+			if ( model.isLatestVersionImported() ) {
+				storedCounts.remove("count_views_objects");
+				storedCounts.remove("count_views_connections");
+				storedCounts.remove("count_images");
+			}
 			
 			if ( result.getInt("properties") != 0 )
 				importProperties(model, model.getId(), model.getInitialVersion().getVersion());
@@ -335,56 +614,72 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 			importMetadata(model);
 		}
 
-		String versionToImport = model.isLatestVersionImported() ? "(SELECT MAX(version) FROM "+this.schemaPrefix+"elements WHERE id = element_id)" : "element_version";
+		String versionToImport = model.isLatestVersionImported() ? getLatestVersionRequest("element_id") : "element_version";
 		this.importElementsRequest = "SELECT DISTINCT element_id, parent_folder_id, version, class, name, type, "+this.toCharDocumentationAsDocumentation+", created_on, properties, features, checksum"
 				+ " FROM "+this.schemaPrefix+"elements_in_model"
 				+ " JOIN "+this.schemaPrefix+"elements ON elements.id = element_id AND version = "+versionToImport
 				+ " WHERE model_id = ? AND model_version = ?"
 				+ " GROUP BY element_id, parent_folder_id, version, class, name, type, "+this.toCharDocumentation+", properties, features, created_on, checksum, pos";
-		try (DBSelect resultElements = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countElements FROM ("+this.importElementsRequest+") elts", model.getId(), model.getInitialVersion().getVersion()) ) {
-			resultElements.next();
-			this.countElementsToImport = resultElements.getInt("countElements");
-			this.countElementsImported = 0;
+		if ( storedCounts.containsKey("count_elements") )
+			this.countElementsToImport = storedCounts.get("count_elements");
+		else {
+			try (DBSelect resultElements = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countElements FROM ("+this.importElementsRequest+") elts", model.getId(), model.getInitialVersion().getVersion()) ) {
+				resultElements.next();
+				this.countElementsToImport = resultElements.getInt("countElements");
+			}
 		}
+		this.countElementsImported = 0;
 
 
-		versionToImport = model.isLatestVersionImported() ? "(SELECT MAX(version) FROM "+this.schemaPrefix+"relationships WHERE id = relationship_id)" : "relationship_version";
+		versionToImport = model.isLatestVersionImported() ? getLatestVersionRequest("relationship_id") : "relationship_version";
 		this.importRelationshipsRequest = "SELECT DISTINCT relationship_id, parent_folder_id, version, class, name, "+this.toCharDocumentationAsDocumentation+", source_id, target_id, strength, access_type, is_directed, created_on, properties, features, checksum"
 				+ " FROM "+this.schemaPrefix+"relationships_in_model"
 				+ " INNER JOIN "+this.schemaPrefix+"relationships ON id = relationship_id AND version = "+versionToImport
 				+ " WHERE model_id = ? AND model_version = ?"
 				+ " GROUP BY relationship_id, parent_folder_id, version, class, name, "+this.toCharDocumentation+", source_id, target_id, strength, access_type, is_directed, properties, features, created_on, checksum";
-		try ( DBSelect resultRelationships = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countRelationships FROM ("+this.importRelationshipsRequest+") relts"
-				,model.getId()
-				,model.getInitialVersion().getVersion()
-				) ) {
-			resultRelationships.next();
-			this.countRelationshipsToImport = resultRelationships.getInt("countRelationships");
-			this.countRelationshipsImported = 0;
+		if ( storedCounts.containsKey("count_relationships") )
+			this.countRelationshipsToImport = storedCounts.get("count_relationships");
+		else {
+			try ( DBSelect resultRelationships = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countRelationships FROM ("+this.importRelationshipsRequest+") relts"
+					,model.getId()
+					,model.getInitialVersion().getVersion()
+					) ) {
+				resultRelationships.next();
+				this.countRelationshipsToImport = resultRelationships.getInt("countRelationships");
+			}
 		}
+		this.countRelationshipsImported = 0;
 
-		versionToImport = model.isLatestVersionImported() ? "(SELECT MAX(version) FROM "+this.schemaPrefix+"folders WHERE folders.id = folders_in_model.folder_id)" : "folders_in_model.folder_version";
+		versionToImport = model.isLatestVersionImported() ? getLatestVersionRequest("folders_in_model.folder_id") : "folders_in_model.folder_version";
 		String selectFoldersRequest = "SELECT DISTINCT folder_id, folder_version, parent_folder_id, type, root_type, name, "+this.toCharDocumentationAsDocumentation+", created_on, properties, features, checksum, pos"
 				+ " FROM "+this.schemaPrefix+"folders_in_model"
 				+ " JOIN "+this.schemaPrefix+"folders ON folders.id = folders_in_model.folder_id AND folders.version = "+versionToImport
 				+ " WHERE model_id = ? AND model_version = ?";
-		try ( DBSelect resultFolders = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countFolders FROM ("+selectFoldersRequest+") fldrs", model.getId(), model.getInitialVersion().getVersion()) ) {
-			resultFolders.next();
-			this.countFoldersToImport = resultFolders.getInt("countFolders");
-			this.countFoldersImported = 0;
+		if ( storedCounts.containsKey("count_folders") )
+			this.countFoldersToImport = storedCounts.get("count_folders");
+		else {
+			try ( DBSelect resultFolders = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countFolders FROM ("+selectFoldersRequest+") fldrs", model.getId(), model.getInitialVersion().getVersion()) ) {
+				resultFolders.next();
+				this.countFoldersToImport = resultFolders.getInt("countFolders");
+			}
 		}
+		this.countFoldersImported = 0;
 		this.importFoldersRequest = selectFoldersRequest + " ORDER BY pos";				// we need to put aside the ORDER BY from the SELECT FROM SELECT because of SQL Server
 
-		versionToImport = model.isLatestVersionImported() ? "(select max(version) from "+this.schemaPrefix+"views where views.id = views_in_model.view_id)" : "views_in_model.view_version";
+		versionToImport = model.isLatestVersionImported() ? getLatestVersionRequest("views_in_model.view_id") : "views_in_model.view_version";
 		String selectViewsRequest = "SELECT DISTINCT id, version, parent_folder_id, class, name, "+this.toCharDocumentationAsDocumentation+", background, connection_router_type, viewpoint, created_on, properties, features, checksum, container_checksum, pos"
 				+ " FROM "+this.schemaPrefix+"views_in_model"
 				+ " JOIN "+this.schemaPrefix+"views ON views.id = views_in_model.view_id AND views.version = "+versionToImport
 				+ " WHERE model_id = ? AND model_version = ?";
-		try ( DBSelect resultViews = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countViews FROM ("+selectViewsRequest+") vws", model.getId(), model.getInitialVersion().getVersion()) ) {
-			resultViews.next();
-			this.countViewsToImport = resultViews.getInt("countViews");
-			this.countViewsImported = 0;
+		if ( storedCounts.containsKey("count_views") )
+			this.countViewsToImport = storedCounts.get("count_views");
+		else {
+			try ( DBSelect resultViews = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countViews FROM ("+selectViewsRequest+") vws", model.getId(), model.getInitialVersion().getVersion()) ) {
+				resultViews.next();
+				this.countViewsToImport = resultViews.getInt("countViews");
+			}
 		}
+		this.countViewsImported = 0;
 		this.importViewsRequest = selectViewsRequest + " ORDER BY pos";				// we need to put aside the ORDER BY from the SELECT FROM SELECT because of SQL Server
 
 		// versionToImport is same as for views
@@ -393,11 +688,15 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 				+ " JOIN "+this.schemaPrefix+"views_objects_in_view ON views_objects_in_view.object_id = views_objects.id AND views_objects_in_view.object_version = views_objects.version"
 				+ " JOIN "+this.schemaPrefix+"views_in_model ON views_objects_in_view.view_id = views_in_model.view_id AND views_objects_in_view.view_version = "+versionToImport
 				+ " WHERE model_id = ? AND model_version = ?";
-		try ( DBSelect resultViewObjects = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countViewsObjects FROM ("+selectViewsObjectsRequest+") vobjs", model.getId(), model.getInitialVersion().getVersion()) ) {
-			resultViewObjects.next();
-			this.countViewObjectsToImport = resultViewObjects.getInt("countViewsObjects");
-			this.countViewObjectsImported = 0;
+		if ( storedCounts.containsKey("count_views_objects") )
+			this.countViewObjectsToImport = storedCounts.get("count_views_objects");
+		else {
+			try ( DBSelect resultViewObjects = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countViewsObjects FROM ("+selectViewsObjectsRequest+") vobjs", model.getId(), model.getInitialVersion().getVersion()) ) {
+				resultViewObjects.next();
+				this.countViewObjectsToImport = resultViewObjects.getInt("countViewsObjects");
+			}
 		}
+		this.countViewObjectsImported = 0;
 		// (unused) this.importViewsObjectsRequest = this.selectViewsObjectsRequest + " ORDER BY views_objects.pos";				// we need to put aside the ORDER BY from the SELECT FROM SELECT because of SQL Server
 
 		// versionToImport is same as for views
@@ -406,36 +705,140 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 				+ " JOIN "+this.schemaPrefix+"views_connections_in_view ON views_connections_in_view.connection_id = views_connections.id AND views_connections_in_view.connection_version = views_connections.version"
 				+ " JOIN "+this.schemaPrefix+"views_in_model ON views_connections_in_view.view_id = views_in_model.view_id AND views_connections_in_view.view_version = "+versionToImport
 				+ " WHERE model_id = ? AND model_version = ?";
-		try ( DBSelect resultViewConnections = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countViewsConnections FROM ("+selectViewsConnectionsRequest+") vcons", model.getId(), model.getInitialVersion().getVersion()) ) {
-			resultViewConnections.next();
-			this.countViewConnectionsToImport = resultViewConnections.getInt("countViewsConnections");
-			this.countViewConnectionsImported = 0;
+		if ( storedCounts.containsKey("count_views_connections") )
+			this.countViewConnectionsToImport = storedCounts.get("count_views_connections");
+		else {
+			try ( DBSelect resultViewConnections = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(*) AS countViewsConnections FROM ("+selectViewsConnectionsRequest+") vcons", model.getId(), model.getInitialVersion().getVersion()) ) {
+				resultViewConnections.next();
+				this.countViewConnectionsToImport = resultViewConnections.getInt("countViewsConnections");
+			}
 		}
+		this.countViewConnectionsImported = 0;
 		// (unused) this.importViewsConnectionsRequest = this.selectViewsConnectionsRequest + " ORDER BY views_connections.pos";				// we need to put aside the ORDER BY from the SELECT FROM SELECT because of SQL Server
 
-		try ( DBSelect resultImages = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(DISTINCT image_path) AS countImages"+
-				" FROM "+this.schemaPrefix+"views_in_model"+
-				" INNER JOIN "+this.schemaPrefix+"views ON views_in_model.view_id = views.id AND views_in_model.view_version = views.version"+
-				" INNER JOIN "+this.schemaPrefix+"views_objects_in_view ON views_objects_in_view.view_id = views.id AND views_objects_in_view.view_version = views.version"+
-				" INNER JOIN "+this.schemaPrefix+"views_objects ON views_objects.id = views_objects_in_view.object_id AND views_objects.version = views_objects_in_view.object_version"+
-				" WHERE model_id = ? AND model_version = ? AND image_path IS NOT NULL" 
-				,model.getId()
-				,model.getInitialVersion().getVersion()
-				))
-		{
-			resultImages.next();
-			this.countImagesToImport = resultImages.getInt("countImages");
-			this.countImagesImported = 0;
+		if ( storedCounts.containsKey("count_images") )
+			this.countImagesToImport = storedCounts.get("count_images");
+		else {
+			try ( DBSelect resultImages = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT COUNT(DISTINCT image_path) AS countImages"+
+					" FROM "+this.schemaPrefix+"views_in_model"+
+					" INNER JOIN "+this.schemaPrefix+"views ON views_in_model.view_id = views.id AND views.version = "+versionToImport+
+					" INNER JOIN "+this.schemaPrefix+"views_objects_in_view ON views_objects_in_view.view_id = views.id AND views_objects_in_view.view_version = views.version"+
+					" INNER JOIN "+this.schemaPrefix+"views_objects ON views_objects.id = views_objects_in_view.object_id AND views_objects.version = views_objects_in_view.object_version"+
+					" WHERE model_id = ? AND model_version = ? AND image_path IS NOT NULL" 
+					,model.getId()
+					,model.getInitialVersion().getVersion()
+					))
+			{
+				resultImages.next();
+				this.countImagesToImport = resultImages.getInt("countImages");
+			}
 		}
+		this.countImagesImported = 0;
 
 		if ( logger.isDebugEnabled() ) logger.debug("Importing "+this.countElementsToImport+" elements, "+this.countRelationshipsToImport+" relationships, "+this.countFoldersToImport+" folders, "+this.countViewsToImport+" views, "+this.countViewObjectsToImport+" views objects, "+this.countViewConnectionsToImport+" views connections, and "+this.countImagesToImport+" images.");
 
 		// initializing the HashMaps that will be used to reference imported objects
 		this.allImagePaths.clear();
 
+		// we get all the properties, features and bendpoints of the model's components in a few requests rather than one request per component
+		prefetchComponentsData(model);
+
 		return this.countElementsToImport + this.countRelationshipsToImport + this.countFoldersToImport + this.countViewsToImport + this.countViewObjectsToImport + this.countViewConnectionsToImport + this.countImagesToImport;
 	}
 
+	/**
+	 * Gets the properties, features and bendpoints of all the model's components from the database<br>
+	 * They are stored in memory and attached to the components by the importProperties, importFeatures and importBendpoints methods.
+	 * @param model 
+	 * @throws SQLException 
+	 */
+	private void prefetchComponentsData(DBArchimateModel model) throws SQLException {
+		if ( logger.isDebugEnabled() ) logger.debug("   Prefetching properties, features and bendpoints");
+
+		String modelId = model.getId();
+		int modelVersion = model.getInitialVersion().getVersion();
+
+		// the versions of the components are calculated the same way as in the import requests
+		String viewVersion = model.isLatestVersionImported() ? getLatestVersionRequest("views_in_model.view_id") : "views_in_model.view_version";
+		String viewsObjectsRequest = "SELECT views_objects_in_view.object_id AS id, views_objects_in_view.object_version AS version"
+				+ " FROM "+this.schemaPrefix+"views_objects_in_view"
+				+ " JOIN "+this.schemaPrefix+"views_in_model ON views_objects_in_view.view_id = views_in_model.view_id AND views_objects_in_view.view_version = "+viewVersion
+				+ " WHERE model_id = ? AND model_version = ?";
+		String viewsConnectionsRequest = "SELECT views_connections_in_view.connection_id AS id, views_connections_in_view.connection_version AS version"
+				+ " FROM "+this.schemaPrefix+"views_connections_in_view"
+				+ " JOIN "+this.schemaPrefix+"views_in_model ON views_connections_in_view.view_id = views_in_model.view_id AND views_connections_in_view.view_version = "+viewVersion
+				+ " WHERE model_id = ? AND model_version = ?";
+		String componentsRequest = "SELECT element_id AS id, "+(model.isLatestVersionImported() ? getLatestVersionRequest("element_id") : "element_version")+" AS version"
+				+ " FROM "+this.schemaPrefix+"elements_in_model WHERE model_id = ? AND model_version = ?"
+				+ " UNION SELECT relationship_id AS id, "+(model.isLatestVersionImported() ? getLatestVersionRequest("relationship_id") : "relationship_version")+" AS version"
+				+ " FROM "+this.schemaPrefix+"relationships_in_model WHERE model_id = ? AND model_version = ?"
+				+ " UNION SELECT folder_id AS id, "+(model.isLatestVersionImported() ? getLatestVersionRequest("folders_in_model.folder_id") : "folders_in_model.folder_version")+" AS version"
+				+ " FROM "+this.schemaPrefix+"folders_in_model WHERE model_id = ? AND model_version = ?"
+				+ " UNION SELECT view_id AS id, "+viewVersion+" AS version"
+				+ " FROM "+this.schemaPrefix+"views_in_model WHERE model_id = ? AND model_version = ?"
+				+ " UNION "+viewsObjectsRequest
+				+ " UNION "+viewsConnectionsRequest;
+		Object[] componentsParameters = {modelId, modelVersion, modelId, modelVersion, modelId, modelVersion, modelId, modelVersion, modelId, modelVersion, modelId, modelVersion};
+
+		this.prefetchedProperties = new HashMap<String, ArrayList<DBProperty>>();
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT parent_id, parent_version, name, value"
+				+ " FROM "+this.schemaPrefix+"properties"
+				+ " JOIN ("+componentsRequest+") components ON components.id = parent_id AND components.version = parent_version"
+				+ " ORDER BY parent_id, parent_version, pos"
+				, componentsParameters) ) {
+			while ( result.next() ) {
+				String key = getPrefetchKey(result.getString("parent_id"), result.getInt("parent_version"));
+				ArrayList<DBProperty> properties = this.prefetchedProperties.get(key);
+				if ( properties == null ) {
+					properties = new ArrayList<DBProperty>();
+					this.prefetchedProperties.put(key, properties);
+				}
+				properties.add(new DBProperty(result.getString("name"), result.getString("value")));
+			}
+		}
+
+		this.prefetchedFeatures = new HashMap<String, ArrayList<DBProperty>>();
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT parent_id, parent_version, name, value"
+				+ " FROM "+this.schemaPrefix+"features"
+				+ " JOIN ("+componentsRequest+") components ON components.id = parent_id AND components.version = parent_version"
+				+ " ORDER BY parent_id, parent_version, pos"
+				, componentsParameters) ) {
+			while ( result.next() ) {
+				String key = getPrefetchKey(result.getString("parent_id"), result.getInt("parent_version"));
+				ArrayList<DBProperty> features = this.prefetchedFeatures.get(key);
+				if ( features == null ) {
+					features = new ArrayList<DBProperty>();
+					this.prefetchedFeatures.put(key, features);
+				}
+				features.add(new DBProperty(result.getString("name"), result.getString("value")));
+			}
+		}
+
+		// only the views connections have got bendpoints
+		this.prefetchedBendpoints = new HashMap<String, ArrayList<DBBendpoint>>();
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT parent_id, parent_version, start_x, start_y, end_x, end_y"
+				+ " FROM "+this.schemaPrefix+"bendpoints"
+				+ " JOIN ("+viewsConnectionsRequest+") components ON components.id = parent_id AND components.version = parent_version"
+				+ " ORDER BY parent_id, parent_version, pos"
+				, modelId, modelVersion) ) {
+			while ( result.next() ) {
+				String key = getPrefetchKey(result.getString("parent_id"), result.getInt("parent_version"));
+				ArrayList<DBBendpoint> bendpoints = this.prefetchedBendpoints.get(key);
+				if ( bendpoints == null ) {
+					bendpoints = new ArrayList<DBBendpoint>();
+					this.prefetchedBendpoints.put(key, bendpoints);
+				}
+				bendpoints.add(new DBBendpoint(result.getInt("start_x"), result.getInt("start_y"), result.getInt("end_x"), result.getInt("end_y")));
+			}
+		}
+
+		if ( logger.isDebugEnabled() ) logger.debug("   Prefetched properties of "+this.prefetchedProperties.size()+" components, features of "+this.prefetchedFeatures.size()+" components and bendpoints of "+this.prefetchedBendpoints.size()+" connections");
+	}
+
+	private static String getPrefetchKey(String id, int version) {
+		return id + ":" + version;
+	}
+
 	/**
 	 * Prepare the import of the folders from the database
 	 * @param model 
@@ -750,10 +1153,30 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 				);
 	}
 
+	/**
+	 * Prepare the import of the views objects of all the model's views from the database, using a single request<br>
+	 * The views objects are sorted by view and by position, so they can be dispatched to their view while the result set is read.
+	 * @param model 
+	 * @throws Exception 
+	 */
+	public void prepareImportViewsObjects(DBArchimateModel model) throws Exception {
+		if ( logger.isDebugEnabled() ) logger.debug("   Preparing to import views objects of all the views");
+		String viewVersion = model.isLatestVersionImported() ? getLatestVersionRequest("views_in_model.view_id") : "views_in_model.view_version";
+		this.currentResultSetViewsObjects = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT DISTINCT id, version, class, container_id, element_id, diagram_ref_id, border_color, border_type, "+this.toCharContentAsContent+", "+this.toCharDocumentationAsDocumentation+", is_locked, image_path, image_position, line_color, line_width, fill_color, alpha, font, font_color, name, "+this.toCharNotesAsNotes+", text_alignment, text_position, type, x, y, width, height, properties, features, checksum, created_on, views_objects_in_view.view_id AS view_id, views_objects_in_view.pos AS pos"
+				+" FROM "+this.schemaPrefix+"views_objects"
+				+" JOIN "+this.schemaPrefix+"views_objects_in_view ON views_objects_in_view.object_id = views_objects.id AND views_objects_in_view.object_version = views_objects.version"
+				+" JOIN "+this.schemaPrefix+"views_in_model ON views_objects_in_view.view_id = views_in_model.view_id AND views_objects_in_view.view_version = "+viewVersion
+				+" WHERE model_id = ? AND model_version = ?"
+				+" ORDER BY view_id, pos"
+				,model.getId()
+				,model.getInitialVersion().getVersion()
+				);
+	}
+
 	/**
 	 * import the views objects from the database
 	 * @param model 
-	 * @param view 
+	 * @param view the view in which the views objects are imported, or null if the views objects of all the views are imported (in which case the view is read from the result set)
 	 * @return 
 	 * @throws Exception 
 	 */
@@ -761,6 +1184,7 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 		if ( this.currentResultSetViewsObjects != null ) {
 			if ( this.currentResultSetViewsObjects.next() ) {
 				EObject eObject;
+				IDiagramModel parentView = (view != null) ? view : model.getAllViews().get(this.currentResultSetViewsObjects.getString("view_id"));
 
 				if ( this.currentResultSetViewsObjects.getString("class").startsWith("Canvas") )
 					eObject = ICanvasFactory.eINSTANCE.create((EClass)(ICanvasFactory.eINSTANCE.getEPackage().getEClassifier(this.currentResultSetViewsObjects.getString("class"))));
@@ -819,8 +1243,8 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 				// The container is either the view, or a container in the view
 				// if the container is not found, we create the object in the view as this is better than an NullPointerException
 				IDiagramModelContainer container = (IDiagramModelContainer)model.getAllViewObjects().get(this.currentResultSetViewsObjects.getString("container_id"));
-				if ( (container == null) || DBPlugin.areEqual(this.currentResultSetViewsObjects.getString("container_id"), view.getId()) )
-					view.getChildren().add((IDiagramModelObject)eObject);
+				if ( (container == null) || DBPlugin.areEqual(this.currentResultSetViewsObjects.getString("container_id"), parentView.getId()) )
+					parentView.getChildren().add((IDiagramModelObject)eObject);
 				else
 					((IDiagramModelContainer)model.getAllViewObjects().get(this.currentResultSetViewsObjects.getString("container_id"))).getChildren().add((IDiagramModelObject)eObject);
 
@@ -865,6 +1289,26 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 				);
 	}
 
+	/**
+	 * Prepare the import of the views connections of all the model's views from the database, using a single request<br>
+	 * The views connections are sorted by view and by position.
+	 * @param model 
+	 * @throws Exception 
+	 */
+	public void prepareImportViewsConnections(DBArchimateModel model) throws Exception {
+		if ( logger.isDebugEnabled() ) logger.debug("   Preparing to import views connections of all the views");
+		String viewVersion = model.isLatestVersionImported() ? getLatestVersionRequest("views_in_model.view_id") : "views_in_model.view_version";
+		this.currentResultSetViewsConnections = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT DISTINCT id, version, class, container_id, name, "+this.toCharDocumentationAsDocumentation+", is_locked, line_color, line_width, font, font_color, relationship_id, source_object_id, target_object_id, text_position, type, properties, features, bendpoints, checksum, views_connections_in_view.view_id AS view_id, views_connections_in_view.pos AS pos"
+				+" FROM "+this.schemaPrefix+"views_connections"
+				+" JOIN "+this.schemaPrefix+"views_connections_in_view ON views_connections_in_view.connection_id = views_connections.id AND views_connections_in_view.connection_version = views_connections.version"
+				+" JOIN "+this.schemaPrefix+"views_in_model ON views_connections_in_view.view_id = views_in_model.view_id AND views_connections_in_view.view_version = "+viewVersion
+				+" WHERE model_id = ? AND model_version = ?"
+				+" ORDER BY view_id, pos"
+				,model.getId()
+				,model.getInitialVersion().getVersion()
+				);
+	}
+
 	/**
 	 * import the views connections from the database
 	 * @param model 
@@ -971,12 +1415,13 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 	 * @throws Exception 
 	 */
 	public void importImage(DBArchimateModel model, String path) throws Exception {
-		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT image FROM "+this.schemaPrefix+"images WHERE path = ?", path) ) {
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT "+getBlobSizeRequest("image")+" AS image_size, image FROM "+this.schemaPrefix+"images_content JOIN "+this.schemaPrefix+"images ON images.checksum = images_content.checksum WHERE path = ?", path) ) {
 			if (result.next() ) {
 				IArchiveManager archiveMgr = (IArchiveManager)model.getAdapter(IArchiveManager.class);
 				try {
 					String imagePath;
-					byte[] imageContent = result.getBytes("image");
+					// the image is read directly in an array of its size, and refused if it is bigger than the maxBlobSize preference
+					byte[] imageContent = result.getBytes("image", "image_size", DBSelect.getMaxBlobSize());
 
 					if ( logger.isDebugEnabled() ) {
 						if ( (imageContent.length/1024)/2014 > 1 )
@@ -1006,16 +1451,80 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 	 * @throws Exception 
 	 */
 	public Image getImageFromDatabase(String path) throws Exception {
-		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT image FROM "+this.schemaPrefix+"images WHERE path = ?", path) ) {
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT image FROM "+this.schemaPrefix+"images_content JOIN "+this.schemaPrefix+"images ON images.checksum = images_content.checksum WHERE path = ?", path) ) {
 			if ( result.next() ) {
-				byte[] imageContent = result.getBytes("image");
-				if ( logger.isDebugEnabled() ) logger.debug( "Importing "+path+" with "+imageContent.length/1024+" Ko of data");
-				return new Image(Display.getDefault(), new ImageData(new ByteArrayInputStream(imageContent)));
+				if ( logger.isDebugEnabled() ) logger.debug( "Importing "+path);
+				// the image is decoded directly from the database stream, without copying the whole BLOB in memory first
+				try ( InputStream imageContent = result.getBinaryStream("image", DBSelect.getMaxBlobSize()) ) {
+					if ( imageContent != null )
+						return new Image(Display.getDefault(), new ImageData(imageContent));
+				}
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Gets the checksum of the content of several images, using one request per chunk of maxPairsInSQLRequest paths
+	 * @param paths
+	 * @return the checksums indexed by the images paths (the paths that are not found in the database are not returned)
+	 * @throws SQLException
+	 */
+	public HashMap<String, String> getImagesChecksums(Collection<String> paths) throws SQLException {
+		HashMap<String, String> checksums = new HashMap<String, String>();
+		List<String> allPaths = new ArrayList<String>(paths);
+
+		for ( int start = 0; start < allPaths.size(); start += maxPairsInSQLRequest ) {
+			List<String> chunk = allPaths.subList(start, Math.min(start + maxPairsInSQLRequest, allPaths.size()));
+			StringBuilder inClause = new StringBuilder();
+			for ( int i = 0; i < chunk.size(); ++i )
+				inClause.append(i == 0 ? "?" : ", ?");
+
+			try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection, "SELECT path, checksum FROM "+this.schemaPrefix+"images WHERE path IN ("+inClause.toString()+")", chunk.toArray()) ) {
+				while ( result.next() )
+					checksums.put(result.getString("path"), result.getString("checksum"));
+			}
+		}
+
+		return checksums;
+	}
+
+	/**
+	 * Gets the content of an image from the database
+	 * @param checksum checksum of the image content
+	 * @return the image content, or null if the image is not found in the database
+	 * @throws SQLException
+	 */
+	public byte[] getImageContentFromDatabase(String checksum) throws SQLException {
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT "+getBlobSizeRequest("image")+" AS image_size, image FROM "+this.schemaPrefix+"images_content WHERE checksum = ?", checksum) ) {
+			if ( result.next() )
+				return result.getBytes("image", "image_size", DBSelect.getMaxBlobSize());
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the thumbnails of several images, in a single request
+	 * @param paths paths of the images (at most maxPairsInSQLRequest paths)
+	 * @return the thumbnails indexed by the images paths. The thumbnail is null if it has not been calculated when the image has been exported.
+	 * @throws SQLException
+	 */
+	public HashMap<String, byte[]> getImageThumbnailsFromDatabase(List<String> paths) throws SQLException {
+		HashMap<String, byte[]> thumbnails = new HashMap<String, byte[]>();
+		if ( paths.isEmpty() )
+			return thumbnails;
+
+		StringBuilder inClause = new StringBuilder();
+		for ( int i = 0; i < paths.size(); ++i )
+			inClause.append(i == 0 ? "?" : ", ?");
+
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT path, "+getBlobSizeRequest("thumbnail")+" AS thumbnail_size, thumbnail FROM "+this.schemaPrefix+"images_content JOIN "+this.schemaPrefix+"images ON images.checksum = images_content.checksum WHERE path IN ("+inClause.toString()+")", paths.toArray()) ) {
+			while ( result.next() )
+				thumbnails.put(result.getString("path"), result.getBytes("thumbnail", "thumbnail_size", DBSelect.getMaxBlobSize()));
+		}
+		return thumbnails;
+	}
+
 	/**
 	 * gets the list of all images in the database
 	 * @return 
@@ -1023,7 +1532,7 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 	 */
 	public List<String> getImageListFromDatabase() throws Exception {
 		List<String> list = new ArrayList<String>();
-		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT path FROM "+this.schemaPrefix+"images") ) {
+		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT path FROM "+this.schemaPrefix+"images ORDER BY path") ) {
 			while ( result.next() ) {
 				list.add(result.getString("path"));
 			}
@@ -1055,6 +1564,18 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 		// first, we delete all existing properties
 		parent.getProperties().clear();
 
+		// if the properties have been prefetched during the model import, we do not need to request the database
+		ArrayList<DBProperty> prefetched = (this.prefetchedProperties == null) ? null : this.prefetchedProperties.get(getPrefetchKey(id, version));
+		if ( prefetched != null ) {
+			for ( DBProperty property: prefetched ) {
+				IProperty prop = IArchimateFactory.eINSTANCE.createProperty();
+				prop.setKey(property.getKey());
+				prop.setValue(property.getValue());
+				parent.getProperties().add(prop);
+			}
+			return;
+		}
+
 		// then, we import the properties from the database 
 		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT name, value FROM "+this.schemaPrefix+"properties WHERE parent_id = ? AND parent_version = ? ORDER BY pos", id, version)) {
 			while ( result.next() ) {
@@ -1080,6 +1601,18 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 		// first, we delete all existing properties
 		parent.getFeatures().clear();
 
+		// if the features have been prefetched during the model import, we do not need to request the database
+		ArrayList<DBProperty> prefetched = (this.prefetchedFeatures == null) ? null : this.prefetchedFeatures.get(getPrefetchKey(id, version));
+		if ( prefetched != null ) {
+			for ( DBProperty property: prefetched ) {
+				IFeature feature = IArchimateFactory.eINSTANCE.createFeature();
+				feature.setName(property.getKey());
+				feature.setValue(property.getValue());
+				parent.getFeatures().add(feature);
+			}
+			return;
+		}
+
 		// then, we import the properties from the database 
 		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT name, value FROM "+this.schemaPrefix+"features WHERE parent_id = ? AND parent_version = ? ORDER BY pos", id, version)) {
 			while ( result.next() ) {
@@ -1105,6 +1638,20 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 		// first, we delete all existing bendpoints
 		if ( parent.getBendpoints() != null )
 			parent.getBendpoints().clear();
+
+		// if the bendpoints have been prefetched during the model import, we do not need to request the database
+		ArrayList<DBBendpoint> prefetched = (this.prefetchedBendpoints == null) ? null : this.prefetchedBendpoints.get(getPrefetchKey(id, version));
+		if ( prefetched != null ) {
+			for ( DBBendpoint dbBendpoint: prefetched ) {
+				IDiagramModelBendpoint bendpoint = IArchimateFactory.eINSTANCE.createDiagramModelBendpoint();
+				bendpoint.setStartX(dbBendpoint.getStartX());
+				bendpoint.setStartY(dbBendpoint.getStartY());
+				bendpoint.setEndX(dbBendpoint.getEndX());
+				bendpoint.setEndY(dbBendpoint.getEndY());
+				parent.getBendpoints().add(bendpoint);
+			}
+			return;
+		}
 		
 		// then we import the bendpoints from the database
 		try ( DBSelect result = new DBSelect(this.databaseEntry.getName(), this.connection,"SELECT start_x, start_y, end_x, end_y FROM "+this.schemaPrefix+"bendpoints WHERE parent_id = ? AND parent_version = ? ORDER BY pos", id, version)) {
@@ -1210,8 +1757,11 @@ public class DBDatabaseImportConnection extends DBDatabaseConnection {
 		this.countImagesToImport = 0;
 		this.countImagesImported = 0;
 
-		// we empty the hashmap
+		// we empty the hashmaps
 		this.allImagePaths.clear();
+		this.prefetchedProperties = null;
+		this.prefetchedFeatures = null;
+		this.prefetchedBendpoints = null;
 	}
 
 	@Override
@@ -0,0 +1,224 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+
+package org.archicontribs.database.connection;
+
+import java.sql.SQLException;
+
+import org.archicontribs.database.DBLogger;
+import org.archicontribs.database.DBPlugin;
+import org.archicontribs.database.model.DBArchimateModel;
+import org.archicontribs.database.model.DBArchiveManager;
+
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.model.IDiagramModel;
+
+import lombok.Getter;
+
+/**
+ * Imports a whole model from the database<br>
+ * <br>
+ * The import can be run synchronously using the importModel() method, or in a background thread as the class implements the Runnable interface.
+ * The progress of the import is reported through the IProgressListener interface (at most every progressInterval milliseconds, and each time the import phase changes) so that the caller does not need to be called for each imported component.<br>
+ * <br>
+ * If the model's archive manager is a DBArchiveManager, the images are only registered and their content is got from the database when needed.<br>
+ * <br>
+ * The import can be cancelled using the cancel() method: the import stops before the next component is imported and the database transaction is rolled back. It is up to the caller to discard the partially imported model.
+ *
+ * @author Herve Jouin
+ */
+public class DBImportModelJob implements Runnable {
+	private static final DBLogger logger = new DBLogger(DBImportModelJob.class);
+
+	/**
+	 * Listener notified of the progress of the import
+	 */
+	public interface IProgressListener {
+		/**
+		 * Called by the thread that runs the import
+		 * @param job
+		 */
+		void progressChanged(DBImportModelJob job);
+	}
+
+	@Getter private final DBDatabaseImportConnection importConnection;
+	@Getter private final DBArchimateModel model;
+	private final IProgressListener listener;
+	private final long progressInterval;
+
+	/**
+	 * Description of the current import phase
+	 */
+	@Getter private volatile String phase = null;
+
+	/**
+	 * Number of components to import
+	 */
+	@Getter private volatile int importSize = 0;
+
+	/**
+	 * Number of components already imported
+	 */
+	@Getter private volatile int progress = 0;
+
+	@Getter private volatile boolean cancelled = false;
+	@Getter private volatile boolean finished = false;
+
+	/**
+	 * Exception raised by the import when run in a background thread (null if the import succeeded)
+	 */
+	@Getter private volatile Exception exception = null;
+
+	private long lastNotification = 0;
+
+	/**
+	 * @param importConnection the connection to the database
+	 * @param model the model to import (its ID and version must be set)
+	 * @param listener the listener to notify of the import progress (may be null)
+	 * @param progressInterval minimum number of milliseconds between two notifications of the listener
+	 */
+	public DBImportModelJob(DBDatabaseImportConnection importConnection, DBArchimateModel model, IProgressListener listener, long progressInterval) {
+		this.importConnection = importConnection;
+		this.model = model;
+		this.listener = listener;
+		this.progressInterval = progressInterval;
+	}
+
+	/**
+	 * Asks the import to stop before the next component is imported
+	 */
+	public void cancel() {
+		if ( logger.isDebugEnabled() ) logger.debug("Cancelling the import of the model");
+		this.cancelled = true;
+	}
+
+	/**
+	 * Imports the model in the current thread and stores the exception, if any, so that it can be retrieved using the getException() method
+	 */
+	@Override
+	public void run() {
+		try {
+			importModel();
+		} catch (Exception err) {
+			this.exception = err;
+		}
+	}
+
+	/**
+	 * Imports the model in the current thread
+	 * @throws Exception
+	 */
+	public void importModel() throws Exception {
+		try {
+			setPhase("Importing model ...");
+			this.importSize = this.importConnection.importModel(this.model);
+
+			setPhase("Importing folders ...");
+			this.importConnection.prepareImportFolders(this.model);
+			while ( this.importConnection.importFolders(this.model) )
+				componentImported();
+
+			setPhase("Importing elements ...");
+			this.importConnection.prepareImportElements(this.model);
+			while ( this.importConnection.importElements(this.model) )
+				componentImported();
+
+			setPhase("Importing relationships ...");
+			this.importConnection.prepareImportRelationships(this.model);
+			while ( this.importConnection.importRelationships(this.model) )
+				componentImported();
+			this.model.resolveSourceAndTargetRelationships();
+
+			setPhase("Importing views ...");
+			this.importConnection.prepareImportViews(this.model);
+			while ( this.importConnection.importViews(this.model) )
+				componentImported();
+
+			boolean singlePass = DBPlugin.INSTANCE.getPreferenceStore().getBoolean("importViewsInSinglePass");
+
+			setPhase("Importing view objects ...");
+			if ( singlePass ) {
+				this.importConnection.prepareImportViewsObjects(this.model);
+				while ( this.importConnection.importViewsObjects(this.model, null) )
+					componentImported();
+			} else {
+				for (IDiagramModel view: this.model.getAllViews().values()) {
+					this.importConnection.prepareImportViewsObjects(view.getId(), this.model.getDBMetadata(view).getInitialVersion().getVersion());
+					while ( this.importConnection.importViewsObjects(this.model, view) )
+						componentImported();
+				}
+			}
+
+			setPhase("Importing view connections ...");
+			if ( singlePass ) {
+				this.importConnection.prepareImportViewsConnections(this.model);
+				while ( this.importConnection.importViewsConnections(this.model) )
+					componentImported();
+			} else {
+				for (IDiagramModel view: this.model.getAllViews().values()) {
+					this.importConnection.prepareImportViewsConnections(view.getId(), this.model.getDBMetadata(view).getInitialVersion().getVersion());
+					while ( this.importConnection.importViewsConnections(this.model) )
+						componentImported();
+				}
+			}
+			this.model.resolveSourceAndTargetConnections();
+
+			setPhase("Importing images ...");
+			IArchiveManager archiveMgr = (IArchiveManager)this.model.getAdapter(IArchiveManager.class);
+			if ( archiveMgr instanceof DBArchiveManager ) {
+				// the images content will be got from the database when needed
+				((DBArchiveManager)archiveMgr).registerImages(this.importConnection.getImagesChecksums(this.importConnection.getAllImagePaths()));
+				for ( int i = 0; i < this.importConnection.getAllImagePaths().size(); ++i )
+					componentImported();
+			} else {
+				for (String path: this.importConnection.getAllImagePaths()) {
+					this.importConnection.importImage(this.model, path);
+					componentImported();
+				}
+			}
+		} catch (Exception err) {
+			// the import is read only, but we rollback in case a transaction has been started
+			try {
+				this.importConnection.rollback();
+			} catch (SQLException e2) {
+				logger.error("Failed to rollback the database transaction", e2);
+			}
+			throw err;
+		} finally {
+			this.finished = true;
+			notifyListener(true);
+		}
+	}
+
+	private void setPhase(String newPhase) throws InterruptedException {
+		checkCancelled();
+		logger.info(newPhase);
+		this.phase = newPhase;
+		notifyListener(true);
+	}
+
+	private void componentImported() throws InterruptedException {
+		checkCancelled();
+		++this.progress;
+		notifyListener(false);
+	}
+
+	private void checkCancelled() throws InterruptedException {
+		if ( this.cancelled )
+			throw new InterruptedException("The import has been cancelled.");
+	}
+
+	private void notifyListener(boolean force) {
+		if ( this.listener == null )
+			return;
+
+		long now = System.currentTimeMillis();
+		if ( force || (now - this.lastNotification >= this.progressInterval) ) {
+			this.lastNotification = now;
+			this.listener.progressChanged(this);
+		}
+	}
+}
@@ -0,0 +1,641 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+
+package org.archicontribs.database.connection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.archicontribs.database.DBDatabaseEntry;
+import org.archicontribs.database.DBLogger;
+import org.archicontribs.database.DBPlugin;
+import org.archicontribs.database.data.DBChecksum;
+
+/**
+ * Local full-text index of the models, elements and views of a database<br>
+ * <br>
+ * The names, documentation and properties values of the latest version of the components are split in terms. For each term, the index keeps the list of the components
+ * that contain it (the postings), weighted by the field where the term has been found. The postings are stored in a file that is memory-mapped: only the terms and
+ * the components IDs are loaded in memory.<br>
+ * <br>
+ * The index is stored in the plugin's state location, in one folder per database. It is updated incrementally: only the components created or checked in since the
+ * previous update are got from the database.<br>
+ * <br>
+ * The components deleted from the database are kept in the index, so the result of a search must be checked against the database.
+ *
+ * @author Herve Jouin
+ */
+public class DBSearchIndex {
+	private static final DBLogger logger = new DBLogger(DBSearchIndex.class);
+
+	/**
+	 * Version of the files format, the index is rebuilt if the files have been written with another version
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Weight of the terms found in the name of the components (the terms found in the documentation and in the properties values have got a weight of 1)
+	 */
+	private static final float NAME_WEIGHT = 3f;
+
+	/**
+	 * Weight of a term that only starts with a searched word, compared to a term that equals the searched word
+	 */
+	private static final float PREFIX_WEIGHT = 0.5f;
+
+	/**
+	 * Saturation of the weight of a term in a component (the more a term is found in a component, the less each occurrence counts)
+	 */
+	private static final float SATURATION = 1.2f;
+
+	private static final int MAX_TERM_LENGTH = 64;
+
+	/**
+	 * The components created or checked in up to UPDATE_MARGIN milliseconds before the previous update are got again, as the timestamps are set by the users' computers
+	 */
+	private static final long UPDATE_MARGIN = 10 * 60 * 1000L;
+
+	/**
+	 * Size of a posting in the postings file (int component number + float weight)
+	 */
+	private static final int POSTING_SIZE = 8;
+
+	private static final Map<String, DBSearchIndex> indexes = new HashMap<String, DBSearchIndex>();
+
+	private final File folder;
+
+	/**
+	 * Content of the index<br>
+	 * A segment is never modified: the merge builds a new segment and replaces the current one once it is written, so the index can be searched without waiting for the merge.
+	 */
+	private volatile Segment segment = new Segment();
+
+	private boolean updating = false;
+
+	/**
+	 * @param databaseEntry
+	 * @return the search index of the database, loaded from the disk if it exists
+	 */
+	public static DBSearchIndex getIndex(DBDatabaseEntry databaseEntry) {
+		String key;
+		try {
+			key = DBChecksum.calculateChecksum(databaseEntry.getDriver()+"/"+databaseEntry.getServer()+"/"+databaseEntry.getPort()+"/"+databaseEntry.getDatabase()+"/"+databaseEntry.getSchema());
+		} catch (Exception err) {
+			logger.error("Failed to calculate the search index folder name", err);
+			key = databaseEntry.getName().replaceAll("[^A-Za-z0-9_-]", "_");
+		}
+
+		synchronized (indexes) {
+			DBSearchIndex index = indexes.get(key);
+			if ( index == null ) {
+				index = new DBSearchIndex(DBPlugin.INSTANCE.getStateLocation().append("search").append(key).toFile());
+				indexes.put(key, index);
+			}
+			return index;
+		}
+	}
+
+	private DBSearchIndex(File folder) {
+		this.folder = folder;
+		try {
+			load();
+		} catch (Exception err) {
+			logger.warn("Failed to load the search index from "+folder.getPath()+", it will be rebuilt", err);
+			this.segment = new Segment();
+		}
+	}
+
+	/**
+	 * @return true if the index has been built at least once, and can therefore be searched
+	 */
+	public boolean isReady() {
+		return this.segment.lastUpdate != null;
+	}
+
+	/**
+	 * Updates the index in a background thread, using its own connection to the database
+	 * @param databaseEntry
+	 */
+	public void updateInBackground(final DBDatabaseEntry databaseEntry) {
+		Thread updateThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try ( DBDatabaseImportConnection connection = new DBDatabaseImportConnection(databaseEntry) ) {
+					update(connection);
+				} catch (Exception err) {
+					logger.error("Failed to update the search index of database "+databaseEntry.getName(), err);
+				}
+			}
+		}, "DBSearchIndex-update");
+		updateThread.setDaemon(true);
+		updateThread.start();
+	}
+
+	/**
+	 * Adds to the index the components created or checked in since the previous update
+	 * @param connection
+	 * @return the number of components indexed
+	 * @throws SQLException
+	 * @throws IOException
+	 */
+	public int update(DBDatabaseImportConnection connection) throws SQLException, IOException {
+		Timestamp since;
+		synchronized (this) {
+			if ( this.updating )
+				return 0;
+			this.updating = true;
+			Timestamp lastUpdate = this.segment.lastUpdate;
+			since = (lastUpdate == null) ? null : new Timestamp(Math.max(0, lastUpdate.getTime() - UPDATE_MARGIN));
+		}
+
+		try {
+			long startTime = System.currentTimeMillis();
+			if ( logger.isDebugEnabled() ) logger.debug(((since == null) ? "Building" : "Updating")+" the search index of database "+connection.getDatabaseEntry().getName());
+
+			IndexBuilder builder = new IndexBuilder();
+			String schemaPrefix = connection.getDatabaseEntry().getSchemaPrefix();
+			addComponents(connection, builder, "models", "'Model'", "c.purpose", "c.version = (SELECT MAX(version) FROM "+schemaPrefix+"models WHERE id = c.id)", since);
+			addComponents(connection, builder, "elements", "c.class", "c.documentation", "c.version = "+connection.getLatestVersionRequest("c.id"), since);
+			addComponents(connection, builder, "views", "c.class", "c.documentation", "c.version = "+connection.getLatestVersionRequest("c.id"), since);
+
+			// the updating flag ensures that a single merge runs at a time, the searches keep using the current segment until the merge replaces it
+			merge(builder);
+
+			if ( logger.isDebugEnabled() ) logger.debug(builder.componentIds.size()+" components indexed in "+(System.currentTimeMillis() - startTime)+" ms ("+this.segment.componentIds.length+" components in the search index)");
+			return builder.componentIds.size();
+		} finally {
+			synchronized (this) {
+				this.updating = false;
+			}
+		}
+	}
+
+	/**
+	 * Gets the components of a table that have been created or checked in since a timestamp, and their properties
+	 */
+	private static void addComponents(DBDatabaseImportConnection connection, IndexBuilder builder, String table, String classExpression, String documentationColumn, String latestVersionCondition, Timestamp since) throws SQLException {
+		String schemaPrefix = connection.getDatabaseEntry().getSchemaPrefix();
+		String condition = " WHERE "+latestVersionCondition;
+		Object[] parameters = new Object[0];
+		if ( since != null ) {
+			condition += " AND (c.created_on > ? OR c.checkedin_on > ?)";
+			parameters = new Object[] {since, since};
+		}
+
+		try ( DBSelect result = new DBSelect(connection.getDatabaseEntry().getName(), connection.getConnection(), "SELECT c.id, "+classExpression+" AS class, c.name, "+documentationColumn+" AS documentation, c.created_on, c.checkedin_on FROM "+schemaPrefix+table+" c"+condition, parameters) ) {
+			while ( result.next() ) {
+				builder.addComponent(result.getString("id"), result.getString("class"), result.getString("name"), result.getString("documentation"));
+				builder.updateTimestamp(result.getTimestamp("created_on"));
+				builder.updateTimestamp(result.getTimestamp("checkedin_on"));
+			}
+		}
+
+		try ( DBSelect result = new DBSelect(connection.getDatabaseEntry().getName(), connection.getConnection(), "SELECT p.parent_id, p.value FROM "+schemaPrefix+"properties p JOIN "+schemaPrefix+table+" c ON c.id = p.parent_id AND c.version = p.parent_version"+condition, parameters) ) {
+			while ( result.next() )
+				builder.addProperty(result.getString("parent_id"), result.getString("value"));
+		}
+	}
+
+	/**
+	 * Searches the components that contain all the words of a text<br>
+	 * The words are searched as prefixes of the indexed terms, so that the text can be searched while it is typed.
+	 * @param text the text to search
+	 * @param classes the classes of the components to search (null to search all the components)
+	 * @param maxResults maximum number of components to return
+	 * @return the IDs of the components found, the most relevant first
+	 */
+	public List<String> search(String text, Collection<String> classes, int maxResults) {
+		Segment current = this.segment;
+		List<String> words = new ArrayList<String>(new LinkedHashSet<String>(tokenize(text)));
+		if ( words.isEmpty() || (current.postings == null) )
+			return Collections.emptyList();
+		if ( words.size() > 31 )
+			words = words.subList(0, 31);
+
+		int nbComponents = current.componentIds.length;
+		final float[] scores = new float[nbComponents];
+		int[] matchedWords = new int[nbComponents];
+
+		for ( int w = 0; w < words.size(); ++w ) {
+			String word = words.get(w);
+			int t = Arrays.binarySearch(current.terms, word);
+			if ( t < 0 )
+				t = -t - 1;
+
+			for ( ; (t < current.terms.length) && current.terms[t].startsWith(word); ++t ) {
+				int count = current.termCounts[t];
+				float idf = (float)Math.log(1 + (nbComponents - count + 0.5) / (count + 0.5));
+				float termWeight = current.terms[t].equals(word) ? idf : idf * PREFIX_WEIGHT;
+
+				int position = (int)current.termOffsets[t];
+				for ( int p = 0; p < count; ++p, position += POSTING_SIZE ) {
+					int component = current.postings.getInt(position);
+					float weight = current.postings.getFloat(position + 4);
+					scores[component] += termWeight * weight * (SATURATION + 1) / (weight + SATURATION);
+					matchedWords[component] |= 1 << w;
+				}
+			}
+		}
+
+		int allWords = (1 << words.size()) - 1;
+		PriorityQueue<Integer> best = new PriorityQueue<Integer>(Math.max(1, Math.min(maxResults, nbComponents)), new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) { return Float.compare(scores[a], scores[b]); }
+		});
+		for ( int component = 0; component < nbComponents; ++component ) {
+			if ( (matchedWords[component] != allWords) || ((classes != null) && !classes.contains(current.componentClasses[component])) )
+				continue;
+			if ( best.size() < maxResults )
+				best.add(component);
+			else if ( scores[component] > scores[best.peek()] ) {
+				best.poll();
+				best.add(component);
+			}
+		}
+
+		String[] result = new String[best.size()];
+		for ( int i = result.length - 1; i >= 0; --i )
+			result[i] = current.componentIds[best.poll()];
+		return Arrays.asList(result);
+	}
+
+	/**
+	 * Splits a text in lower case terms, without accents
+	 * @param text
+	 * @return the list of terms
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> result = new ArrayList<String>();
+		if ( DBPlugin.isEmpty(text) )
+			return result;
+
+		String normalized = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+		StringBuilder term = new StringBuilder();
+		for ( int i = 0; i <= normalized.length(); ++i ) {
+			char c = (i < normalized.length()) ? normalized.charAt(i) : ' ';
+			if ( Character.getType(c) == Character.NON_SPACING_MARK )
+				continue;
+			if ( Character.isLetterOrDigit(c) ) {
+				if ( term.length() < MAX_TERM_LENGTH )
+					term.append(c);
+			} else if ( term.length() != 0 ) {
+				result.add(term.toString());
+				term.setLength(0);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Merges the components got from the database in the index, and writes the index on the disk
+	 */
+	private void merge(IndexBuilder builder) throws IOException {
+		Segment current = this.segment;
+		if ( builder.componentIds.isEmpty() && (current.lastUpdate != null) )
+			return;
+
+		// the components already indexed are replaced by their new version
+		Map<String, Integer> existingNumbers = new HashMap<String, Integer>();
+		for ( int i = 0; i < current.componentIds.length; ++i )
+			existingNumbers.put(current.componentIds[i], i);
+
+		BitSet replaced = new BitSet(current.componentIds.length);
+		for ( String id: builder.componentIds ) {
+			Integer number = existingNumbers.get(id);
+			if ( number != null )
+				replaced.set(number);
+		}
+
+		// the components are renumbered: the components kept first, then the new components
+		int[] newNumbers = new int[current.componentIds.length];
+		int nbKept = current.componentIds.length - replaced.cardinality();
+		String[] newIds = new String[nbKept + builder.componentIds.size()];
+		String[] newClasses = new String[newIds.length];
+		int n = 0;
+		for ( int i = 0; i < current.componentIds.length; ++i ) {
+			if ( replaced.get(i) )
+				newNumbers[i] = -1;
+			else {
+				newNumbers[i] = n;
+				newIds[n] = current.componentIds[i];
+				newClasses[n++] = current.componentClasses[i];
+			}
+		}
+		for ( int i = 0; i < builder.componentIds.size(); ++i ) {
+			newIds[n] = builder.componentIds.get(i);
+			newClasses[n++] = builder.componentClasses.get(i);
+		}
+
+		// we write the new postings file, merging the existing terms and the new terms (both are sorted)
+		String[] builderTerms = builder.postings.keySet().toArray(new String[0]);
+		Arrays.sort(builderTerms);
+
+		List<String> newTerms = new ArrayList<String>();
+		List<Long> newOffsets = new ArrayList<Long>();
+		List<Integer> newCounts = new ArrayList<Integer>();
+
+		int newGeneration = current.postingsGeneration + 1;
+		File postingsFile = getPostingsFile(newGeneration);
+		this.folder.mkdirs();
+
+		try ( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(postingsFile))) ) {
+			long offset = 0;
+			int i = 0, j = 0;
+			while ( (i < current.terms.length) || (j < builderTerms.length) ) {
+				int compare = (i >= current.terms.length) ? 1 : (j >= builderTerms.length) ? -1 : current.terms[i].compareTo(builderTerms[j]);
+				String term = (compare <= 0) ? current.terms[i] : builderTerms[j];
+				int count = 0;
+
+				if ( compare <= 0 ) {
+					int position = (int)current.termOffsets[i];
+					for ( int p = 0; p < current.termCounts[i]; ++p, position += POSTING_SIZE ) {
+						int number = newNumbers[current.postings.getInt(position)];
+						if ( number != -1 ) {
+							out.writeInt(number);
+							out.writeFloat(current.postings.getFloat(position + 4));
+							++count;
+						}
+					}
+					++i;
+				}
+
+				if ( compare >= 0 ) {
+					count += builder.postings.get(builderTerms[j]).write(out, nbKept);
+					++j;
+				}
+
+				if ( count != 0 ) {
+					newTerms.add(term);
+					newOffsets.add(offset);
+					newCounts.add(count);
+					offset += (long)count * POSTING_SIZE;
+				}
+			}
+		}
+
+		Timestamp newLastUpdate = current.lastUpdate;
+		if ( (builder.lastTimestamp != null) && ((newLastUpdate == null) || builder.lastTimestamp.after(newLastUpdate)) )
+			newLastUpdate = builder.lastTimestamp;
+		if ( newLastUpdate == null )
+			newLastUpdate = new Timestamp(0);
+
+		// the index file references the new postings file, so it is replaced once the postings file is written
+		File indexFile = new File(this.folder, "index.dat");
+		File tempFile = new File(this.folder, "index.tmp");
+		try ( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))) ) {
+			out.writeInt(FORMAT_VERSION);
+			out.writeLong(newLastUpdate.getTime());
+			out.writeInt(newGeneration);
+			out.writeInt(newIds.length);
+			for ( int c = 0; c < newIds.length; ++c ) {
+				out.writeUTF(newIds[c]);
+				out.writeUTF(newClasses[c]);
+			}
+			out.writeInt(newTerms.size());
+			for ( int t = 0; t < newTerms.size(); ++t ) {
+				out.writeUTF(newTerms.get(t));
+				out.writeLong(newOffsets.get(t));
+				out.writeInt(newCounts.get(t));
+			}
+		}
+		Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+		String[] newTermsArray = newTerms.toArray(new String[0]);
+		long[] newOffsetsArray = new long[newOffsets.size()];
+		int[] newCountsArray = new int[newCounts.size()];
+		for ( int t = 0; t < newTermsArray.length; ++t ) {
+			newOffsetsArray[t] = newOffsets.get(t);
+			newCountsArray[t] = newCounts.get(t);
+		}
+		this.segment = new Segment(newIds, newClasses, newTermsArray, newOffsetsArray, newCountsArray, newGeneration, mapPostings(postingsFile), newLastUpdate);
+
+		// on Windows, a memory-mapped file cannot be deleted until it is garbage collected, so it will be deleted at the next load
+		if ( !getPostingsFile(current.postingsGeneration).delete() && logger.isTraceEnabled() )
+			logger.trace("Cannot delete the previous postings file yet");
+	}
+
+	/**
+	 * Loads the index from the disk
+	 */
+	private void load() throws IOException {
+		File indexFile = new File(this.folder, "index.dat");
+		if ( !indexFile.exists() )
+			return;
+
+		try ( DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile))) ) {
+			if ( in.readInt() != FORMAT_VERSION ) {
+				logger.info("The search index of "+this.folder.getPath()+" has been written by another version of the plugin, it will be rebuilt");
+				return;
+			}
+			Timestamp loadedLastUpdate = new Timestamp(in.readLong());
+			int generation = in.readInt();
+
+			int nbComponents = in.readInt();
+			String[] loadedIds = new String[nbComponents];
+			String[] loadedClasses = new String[nbComponents];
+			for ( int c = 0; c < nbComponents; ++c ) {
+				loadedIds[c] = in.readUTF();
+				loadedClasses[c] = in.readUTF();
+			}
+
+			int nbTerms = in.readInt();
+			String[] loadedTerms = new String[nbTerms];
+			long[] loadedOffsets = new long[nbTerms];
+			int[] loadedCounts = new int[nbTerms];
+			for ( int t = 0; t < nbTerms; ++t ) {
+				loadedTerms[t] = in.readUTF();
+				loadedOffsets[t] = in.readLong();
+				loadedCounts[t] = in.readInt();
+			}
+
+			this.segment = new Segment(loadedIds, loadedClasses, loadedTerms, loadedOffsets, loadedCounts, generation, mapPostings(getPostingsFile(generation)), loadedLastUpdate);
+		}
+
+		// we delete the postings files of the previous generations
+		File[] files = this.folder.listFiles();
+		if ( files != null ) {
+			for ( File file: files ) {
+				if ( file.getName().startsWith("postings-") && !file.equals(getPostingsFile(this.segment.postingsGeneration)) )
+					file.delete();
+			}
+		}
+
+		if ( logger.isDebugEnabled() ) logger.debug("Search index loaded from "+this.folder.getPath()+" ("+this.segment.componentIds.length+" components, "+this.segment.terms.length+" terms)");
+	}
+
+	private File getPostingsFile(int generation) {
+		return new File(this.folder, "postings-"+generation+".dat");
+	}
+
+	private static ByteBuffer mapPostings(File postingsFile) throws IOException {
+		try ( RandomAccessFile file = new RandomAccessFile(postingsFile, "r"); FileChannel channel = file.getChannel() ) {
+			// the mapping stays valid once the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Content of the index, that is not modified once it has been built<br>
+	 * The postings are only read with absolute positions, so the segment can be searched by several threads at the same time.
+	 */
+	private static class Segment {
+		/**
+		 * IDs and classes of the indexed components, indexed by their number in the postings
+		 */
+		final String[] componentIds;
+		final String[] componentClasses;
+
+		/**
+		 * Sorted terms, with the offset and the number of their postings in the postings file
+		 */
+		final String[] terms;
+		final long[] termOffsets;
+		final int[] termCounts;
+
+		final int postingsGeneration;
+		final ByteBuffer postings;
+
+		/**
+		 * Most recent created_on or checkedin_on timestamp of the indexed components (null if the index has never been built)
+		 */
+		final Timestamp lastUpdate;
+
+		/**
+		 * Creates an empty segment, for an index that has never been built
+		 */
+		Segment() {
+			this(new String[0], new String[0], new String[0], new long[0], new int[0], 0, null, null);
+		}
+
+		Segment(String[] componentIds, String[] componentClasses, String[] terms, long[] termOffsets, int[] termCounts, int postingsGeneration, ByteBuffer postings, Timestamp lastUpdate) {
+			this.componentIds = componentIds;
+			this.componentClasses = componentClasses;
+			this.terms = terms;
+			this.termOffsets = termOffsets;
+			this.termCounts = termCounts;
+			this.postingsGeneration = postingsGeneration;
+			this.postings = postings;
+			this.lastUpdate = lastUpdate;
+		}
+	}
+
+	/**
+	 * Postings of a term, for the components got from the database
+	 */
+	private static class Postings {
+		int[] components = new int[4];
+		float[] weights = new float[4];
+		int size = 0;
+
+		void add(int component, float weight) {
+			if ( this.size == this.components.length ) {
+				this.components = Arrays.copyOf(this.components, this.size * 2);
+				this.weights = Arrays.copyOf(this.weights, this.size * 2);
+			}
+			this.components[this.size] = component;
+			this.weights[this.size++] = weight;
+		}
+
+		/**
+		 * Writes the postings sorted by component, the weights of a same component being added
+		 * @return the number of postings written
+		 */
+		int write(DataOutputStream out, int firstNumber) throws IOException {
+			final int[] sortedComponents = this.components;
+			Integer[] order = new Integer[this.size];
+			for ( int i = 0; i < this.size; ++i )
+				order[i] = i;
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) { return Integer.compare(sortedComponents[a], sortedComponents[b]); }
+			});
+
+			int count = 0;
+			int i = 0;
+			while ( i < this.size ) {
+				int component = this.components[order[i]];
+				float weight = 0;
+				while ( (i < this.size) && (this.components[order[i]] == component) )
+					weight += this.weights[order[i++]];
+				out.writeInt(firstNumber + component);
+				out.writeFloat(weight);
+				++count;
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Index of the components got from the database, before it is merged in the index
+	 */
+	private static class IndexBuilder {
+		final List<String> componentIds = new ArrayList<String>();
+		final List<String> componentClasses = new ArrayList<String>();
+		final Map<String, Integer> componentNumbers = new HashMap<String, Integer>();
+		final Map<String, Postings> postings = new HashMap<String, Postings>();
+		Timestamp lastTimestamp = null;
+
+		void addComponent(String id, String className, String name, String documentation) {
+			Integer number = this.componentNumbers.get(id);
+			if ( number == null ) {
+				number = this.componentIds.size();
+				this.componentIds.add(id);
+				this.componentClasses.add(className);
+				this.componentNumbers.put(id, number);
+			}
+			addText(number, name, NAME_WEIGHT);
+			addText(number, documentation, 1f);
+		}
+
+		void addProperty(String id, String value) {
+			Integer number = this.componentNumbers.get(id);
+			if ( number != null )
+				addText(number, value, 1f);
+		}
+
+		void updateTimestamp(Timestamp timestamp) {
+			if ( (timestamp != null) && ((this.lastTimestamp == null) || timestamp.after(this.lastTimestamp)) )
+				this.lastTimestamp = timestamp;
+		}
+
+		private void addText(int number, String text, float weight) {
+			for ( String term: tokenize(text) ) {
+				Postings termPostings = this.postings.get(term);
+				if ( termPostings == null ) {
+					termPostings = new Postings();
+					this.postings.put(term, termPostings);
+				}
+				termPostings.add(number, weight);
+			}
+		}
+	}
+}
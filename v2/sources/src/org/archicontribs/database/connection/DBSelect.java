@@ -6,6 +6,10 @@ package org.archicontribs.database.connection;
  * @return the ResultSet with the data read from the database
  */
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.ResultSet;
@@ -13,6 +17,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 
 import org.archicontribs.database.DBLogger;
+import org.archicontribs.database.DBPlugin;
 
 import lombok.Getter;
 
@@ -20,16 +25,40 @@ public class DBSelect extends DBStatement {
 	private static final DBLogger logger = new DBLogger(DBSelect.class);
 	
 	@Getter ResultSet result = null;
+
+	/**
+	 * Size of the buffer used to read the BLOBs
+	 */
+	private static final int blobBufferSize = 8192;
 	
+	/**
+	 * Listener called once the request is prepared, just before it is executed
+	 */
+	public interface IExecutionListener {
+		/**
+		 * @param select the request, that may for instance be limited in rows or kept to be cancelled from another thread
+		 * @throws SQLException
+		 */
+		void beforeExecution(DBSelect select) throws SQLException;
+	}
+
 	@SafeVarargs
 	public <T> DBSelect(String theDriverName, Connection theConnection, String theRequest, T... theParameters) throws SQLException {
+        this(theDriverName, theConnection, (IExecutionListener)null, theRequest, theParameters);
+	}
+
+	@SafeVarargs
+	public <T> DBSelect(String theDriverName, Connection theConnection, IExecutionListener theListener, String theRequest, T... theParameters) throws SQLException {
         super(theDriverName, theConnection, theRequest, theParameters);
 
         try {
+            if ( theListener != null )
+                theListener.beforeExecution(this);
             this.result = executeQuery();
         } catch (Exception err) {
             // in case of an SQLException, we log the raw request to ease the debug process
             if ( logger.isTraceEnabled() ) logger.trace("SQL Exception for database request: "+theRequest);
+            close();
             throw err;
         }
 	}
@@ -54,6 +83,136 @@ public class DBSelect extends DBStatement {
 		return this.result.getBytes(columnLabel);
 	}
 	
+	/**
+	 * Reads a BLOB column through a stream, without letting the driver materialise the whole BLOB before its size is checked
+	 * @param columnLabel
+	 * @param maxSize maximum number of bytes that can be read from the stream (0 for no limit)
+	 * @return the stream, or null if the column is null. Reading more than maxSize bytes raises an IOException.
+	 * @throws SQLException
+	 */
+	public InputStream getBinaryStream(String columnLabel, long maxSize) throws SQLException {
+		InputStream stream = this.result.getBinaryStream(columnLabel);
+		if ( (stream == null) || (maxSize <= 0) )
+			return stream;
+		return new BoundedInputStream(stream, columnLabel, maxSize);
+	}
+
+	/**
+	 * Reads a BLOB column through a bounded buffer
+	 * @param columnLabel
+	 * @param maxSize maximum size of the BLOB in bytes (0 for no limit)
+	 * @return the BLOB content, or null if the column is null
+	 * @throws SQLException if the BLOB cannot be read or is bigger than maxSize
+	 */
+	public byte[] getBytes(String columnLabel, long maxSize) throws SQLException {
+		return getBytes(columnLabel, null, maxSize);
+	}
+
+	/**
+	 * Reads a BLOB column whose size is known directly in an array of that size, so that the BLOB is not copied once read
+	 * @param columnLabel
+	 * @param sizeColumnLabel column that contains the size of the BLOB, got with the DBDatabaseConnection.getBlobSizeRequest() expression (it must be selected before the BLOB column).
+	 *                        If null, the BLOB is read through a bounded buffer.
+	 * @param maxSize maximum size of the BLOB in bytes (0 for no limit)
+	 * @return the BLOB content, or null if the column is null
+	 * @throws SQLException if the BLOB cannot be read or is bigger than maxSize
+	 */
+	public byte[] getBytes(String columnLabel, String sizeColumnLabel, long maxSize) throws SQLException {
+		long size = -1;
+		if ( sizeColumnLabel != null ) {
+			size = this.result.getLong(sizeColumnLabel);
+			if ( this.result.wasNull() )
+				size = -1;
+			else if ( (maxSize > 0) && (size > maxSize) ) {
+				// the BLOB is refused before it is read
+				logger.error("The "+columnLabel+" is bigger than the "+maxSize/1024/1024+" Mo allowed by the \"maxBlobSize\" preference ("+getHeapUsage()+")");
+				throw new SQLException("Failed to read column "+columnLabel+": the "+columnLabel+" is bigger than the "+maxSize/1024/1024+" Mo allowed by the \"maxBlobSize\" preference.");
+			} else if ( size > Integer.MAX_VALUE - 8 )
+				throw new SQLException("Failed to read column "+columnLabel+": the "+columnLabel+" is too big to be read in memory.");
+		}
+
+		try ( InputStream stream = getBinaryStream(columnLabel, maxSize) ) {
+			if ( stream == null )
+				return null;
+
+			if ( size >= 0 ) {
+				byte[] bytes = new byte[(int)size];
+				int offset = 0;
+				int length;
+				while ( (offset < bytes.length) && ((length = stream.read(bytes, offset, bytes.length - offset)) != -1) )
+					offset += length;
+				if ( (offset != bytes.length) || (stream.read() != -1) )
+					throw new IOException("the size of the "+columnLabel+" does not match its content.");
+
+				if ( logger.isDebugEnabled() ) logger.debug("   Read "+bytes.length/1024+" Ko from column "+columnLabel+" ("+getHeapUsage()+")");
+				return bytes;
+			}
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(blobBufferSize);
+			byte[] buffer = new byte[blobBufferSize];
+			int length;
+			while ( (length = stream.read(buffer)) != -1 )
+				bytes.write(buffer, 0, length);
+
+			if ( logger.isDebugEnabled() ) logger.debug("   Read "+bytes.size()/1024+" Ko from column "+columnLabel+" ("+getHeapUsage()+")");
+			return bytes.toByteArray();
+		} catch (IOException err) {
+			throw new SQLException("Failed to read column "+columnLabel+": "+err.getMessage(), err);
+		}
+	}
+
+	/**
+	 * @return the maximum size of the BLOBs read from the database in bytes, as set in the "maxBlobSize" preference in megabytes (0 for no limit)
+	 */
+	public static long getMaxBlobSize() {
+		return DBPlugin.INSTANCE.getPreferenceStore().getInt("maxBlobSize") * 1024L * 1024L;
+	}
+
+	/**
+	 * @return the heap usage, as a string that can be logged
+	 */
+	public static String getHeapUsage() {
+		Runtime runtime = Runtime.getRuntime();
+		return "heap used: "+(runtime.totalMemory() - runtime.freeMemory())/1024/1024+" Mo / "+runtime.maxMemory()/1024/1024+" Mo";
+	}
+
+	/**
+	 * Stream that raises an IOException as soon as more than maxSize bytes are read
+	 */
+	private static class BoundedInputStream extends FilterInputStream {
+		private final String columnLabel;
+		private final long maxSize;
+		private long count = 0;
+
+		BoundedInputStream(InputStream in, String columnLabel, long maxSize) {
+			super(in);
+			this.columnLabel = columnLabel;
+			this.maxSize = maxSize;
+		}
+
+		@Override public int read() throws IOException {
+			int b = super.read();
+			if ( b != -1 )
+				count(1);
+			return b;
+		}
+
+		@Override public int read(byte[] b, int off, int len) throws IOException {
+			int length = super.read(b, off, len);
+			if ( length > 0 )
+				count(length);
+			return length;
+		}
+
+		private void count(int length) throws IOException {
+			this.count += length;
+			if ( this.count > this.maxSize ) {
+				logger.error("The "+this.columnLabel+" is bigger than the "+this.maxSize/1024/1024+" Mo allowed by the \"maxBlobSize\" preference ("+getHeapUsage()+")");
+				throw new IOException("The "+this.columnLabel+" is bigger than the "+this.maxSize/1024/1024+" Mo allowed by the \"maxBlobSize\" preference.");
+			}
+		}
+	}
+
 	public Date getDate(String columnLabel) throws SQLException {
 		return this.result.getDate(columnLabel);
 	}
@@ -13,10 +13,10 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
 
 import org.archicontribs.database.DBLogger;
-import org.archicontribs.database.DBPlugin;
-import org.archicontribs.database.data.DBDatabase;
 
 public class DBStatement implements AutoCloseable {
 	private static final DBLogger logger = new DBLogger(DBStatement.class);
@@ -27,6 +27,16 @@ public class DBStatement implements AutoCloseable {
 	PreparedStatement preparedStatement = null;
 	String request = null;
 
+	/**
+	 * Cache of the prepared statements of the database connection (null if the connection has got no cache)
+	 */
+	DBStatementCache statementCache = null;
+
+	/**
+	 * Maximum number of rows returned by the request (0 for no limit)
+	 */
+	int maxRows = 0;
+
 	@SafeVarargs
 	public <T> DBStatement(String theDriverName, Connection theConnection, String theRequest, T... theParameters) throws SQLException {
 		this.driverName = theDriverName;
@@ -36,7 +46,11 @@ public class DBStatement implements AutoCloseable {
 			if ( theParameters.length == 0 )
 				this.statement = theConnection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 			else {
-				this.preparedStatement = theConnection.prepareStatement(theRequest, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				this.statementCache = DBStatementCache.get(theConnection);
+				if ( this.statementCache != null )
+					this.preparedStatement = this.statementCache.acquire(theConnection, theRequest, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				else
+					this.preparedStatement = theConnection.prepareStatement(theRequest, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
 				constructStatement(theParameters);
 			}
 		} catch (SQLException err) {
@@ -47,6 +61,22 @@ public class DBStatement implements AutoCloseable {
 
 	}
 
+	/**
+	 * Prepares the request without binding any parameter (the parameters are bound later on, row by row, in batch mode)
+	 */
+	protected DBStatement(String theDriverName, Connection theConnection, String theRequest) throws SQLException {
+		this.driverName = theDriverName;
+		this.connection = theConnection;
+		this.request = theRequest;
+		try {
+			this.preparedStatement = theConnection.prepareStatement(theRequest, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		} catch (SQLException err) {
+			// in case of an SQLException, we log the raw request to ease the debug process
+			if ( logger.isTraceEnabled() ) logger.trace("SQL Exception for database request: "+theRequest);
+			throw err;
+		}
+	}
+
 	public ResultSet executeQuery() throws SQLException {
 		if ( this.statement != null && ! this.statement.isClosed() ) 
 			return this.statement.executeQuery(this.request);
@@ -57,8 +87,33 @@ public class DBStatement implements AutoCloseable {
 		return null;
 	}
 
+	/**
+	 * Limits the number of rows returned by the request
+	 * @param theMaxRows maximum number of rows (0 for no limit)
+	 * @throws SQLException
+	 */
+	public void setMaxRows(int theMaxRows) throws SQLException {
+		if ( this.statement != null )
+			this.statement.setMaxRows(theMaxRows);
+		if ( this.preparedStatement != null )
+			this.preparedStatement.setMaxRows(theMaxRows);
+		this.maxRows = theMaxRows;
+	}
+
+	/**
+	 * Cancels the request while it is executed by another thread
+	 */
+	public void cancel() {
+		try {
+			Statement runningStatement = (this.preparedStatement != null) ? this.preparedStatement : this.statement;
+			if ( runningStatement != null && !runningStatement.isClosed() )
+				runningStatement.cancel();
+		} catch (SQLException err) {
+			logger.warn("Cannot cancel the request", err);
+		}
+	}
+
 	public int executeUpdate() throws SQLException {
-		Savepoint savepoint = null;
 		int rowCount = 0;
 		
 		if ( logger.isTraceEnabled() && !this.request.toLowerCase().startsWith("insert") ) {
@@ -66,28 +121,12 @@ public class DBStatement implements AutoCloseable {
 			logger.trace("      --> "+this.request);
 		}
 
-		try {
-			// on PostGreSQL databases, we can only send new requests if we rollback the transaction that caused the exception
-			if ( DBPlugin.areEqual(this.driverName, DBDatabase.POSTGRESQL.getDriverName()) )
-				savepoint = this.connection.setSavepoint();
-			
-			if ( this.statement != null && !this.statement.isClosed() )
-				rowCount = this.statement.executeUpdate(this.request);
-			else
-				if ( this.preparedStatement != null && !this.preparedStatement.isClosed() )
-					rowCount = this.preparedStatement.executeUpdate();
-		} catch (SQLException err) {
-			if ( savepoint != null ) {
-				try {
-					rollback(savepoint);
-					if ( logger.isTraceEnabled() ) logger.trace("Rolled back to savepoint");
-				} catch (SQLException e2) { logger.error("Failed to rollback to savepoint", e2); }
-			}
-			throw err;
-		} finally {
-			if ( savepoint != null )
-				this.connection.releaseSavepoint(savepoint);
-		}
+		// no savepoint is set here: on PostGreSQL databases, the savepoints that allow to send new requests after a failed request are set per batch or per phase by the DBDatabaseConnection class
+		if ( this.statement != null && !this.statement.isClosed() )
+			rowCount = this.statement.executeUpdate(this.request);
+		else
+			if ( this.preparedStatement != null && !this.preparedStatement.isClosed() )
+				rowCount = this.preparedStatement.executeUpdate();
 		
 		return rowCount;
 	}
@@ -140,6 +179,11 @@ public class DBStatement implements AutoCloseable {
 				if ( logger.isTraceEnabled() ) debugRequest.append(String.valueOf((boolean)parameters[parameterRank]));
 				this.preparedStatement.setBoolean(++requestRank, (Boolean)parameters[parameterRank]);
 
+			} else if ( isCypherRows(parameters[parameterRank]) ) {
+				// the Neo4J driver sends the list of maps as a single Cypher parameter (used by the "UNWIND ? AS r" requests)
+				if ( logger.isTraceEnabled() ) debugRequest.append("[list of "+((List<?>)parameters[parameterRank]).size()+" rows]");
+				this.preparedStatement.setObject(++requestRank, parameters[parameterRank]);
+
 			} else if ( parameters[parameterRank] instanceof ArrayList<?> ){
 				for(int i = 0; i < ((ArrayList<String>)parameters[parameterRank]).size(); ++i) {
 					if ( logger.isTraceEnabled() ) {
@@ -171,6 +215,14 @@ public class DBStatement implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * @param parameter
+	 * @return true if the parameter is a list of maps, that must be sent as a single Cypher parameter
+	 */
+	private static boolean isCypherRows(Object parameter) {
+		return (parameter instanceof List<?>) && !((List<?>)parameter).isEmpty() && (((List<?>)parameter).get(0) instanceof Map<?,?>);
+	}
+
 	@Override public void close() {
 		try {
 			if ( this.statement != null && !this.statement.isClosed() ) {
@@ -183,7 +235,14 @@ public class DBStatement implements AutoCloseable {
 
 		try {
 			if ( this.preparedStatement != null && !this.preparedStatement.isClosed() ) {
-				this.preparedStatement.close();
+				// if the connection has got a cache, the prepared statement is kept opened to be reused by the next identical request
+				if ( this.statementCache != null ) {
+					if ( this.maxRows != 0 )
+						this.preparedStatement.setMaxRows(0);
+					this.statementCache.release(this.request, ResultSet.TYPE_FORWARD_ONLY, this.preparedStatement);
+				}
+				else
+					this.preparedStatement.close();
 				this.preparedStatement = null;
 			}
 		} catch (SQLException err) {
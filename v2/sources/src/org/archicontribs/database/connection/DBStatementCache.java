@@ -0,0 +1,197 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+
+package org.archicontribs.database.connection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.archicontribs.database.DBLogger;
+
+import lombok.Getter;
+
+/**
+ * LRU cache of the prepared statements of a database connection<br>
+ * The same SQL requests are executed thousands of times during an import or an export, so we keep the prepared statements opened instead of asking the database to parse them again and again.<br>
+ * <br>
+ * A prepared statement is removed from the cache while it is in use (so that nested requests never share the same statement) and is put back in the cache when the DBStatement is closed.
+ *
+ * @author Herve Jouin
+ */
+public class DBStatementCache {
+	private static final DBLogger logger = new DBLogger(DBStatementCache.class);
+
+	/**
+	 * Caches of all the opened database connections
+	 */
+	private static final Map<Connection, DBStatementCache> caches = new IdentityHashMap<Connection, DBStatementCache>();
+
+	/**
+	 * Maximum number of idle prepared statements kept in the cache
+	 */
+	@Getter private final int maxSize;
+
+	/**
+	 * Number of prepared statements that have been found in the cache
+	 */
+	@Getter private long hits = 0;
+
+	/**
+	 * Number of prepared statements that have been prepared because they were not found in the cache
+	 */
+	@Getter private long misses = 0;
+
+	/**
+	 * Idle prepared statements, sorted from the least recently used to the most recently used
+	 */
+	private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true);
+
+	private DBStatementCache(int size) {
+		this.maxSize = size;
+	}
+
+	/**
+	 * Creates the cache of a database connection
+	 * @param connection
+	 * @param size maximum number of idle prepared statements to keep, zero to disable the cache
+	 */
+	public static void register(Connection connection, int size) {
+		if ( connection == null || size <= 0 )
+			return;
+
+		synchronized(caches) {
+			if ( !caches.containsKey(connection) ) {
+				if ( logger.isDebugEnabled() ) logger.debug("Creating prepared statements cache (size = "+size+")");
+				caches.put(connection, new DBStatementCache(size));
+			}
+		}
+	}
+
+	/**
+	 * Closes all the prepared statements of a database connection and removes its cache
+	 * @param connection
+	 */
+	public static void unregister(Connection connection) {
+		DBStatementCache cache;
+		synchronized(caches) {
+			cache = caches.remove(connection);
+		}
+
+		if ( cache != null ) {
+			if ( logger.isDebugEnabled() ) logger.debug("Closing prepared statements cache (hits = "+cache.getHits()+", misses = "+cache.getMisses()+")");
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @param connection
+	 * @return the cache of the database connection, null if the connection has got no cache
+	 */
+	public static DBStatementCache get(Connection connection) {
+		if ( connection == null )
+			return null;
+
+		synchronized(caches) {
+			return caches.get(connection);
+		}
+	}
+
+	private static String getKey(String request, int resultSetType) {
+		return String.valueOf(resultSetType) + ":" + request;
+	}
+
+	/**
+	 * Gets a prepared statement from the cache, or prepares a new one if the request is not in the cache
+	 * <br>The prepared statement is removed from the cache until it is released.
+	 * @param connection
+	 * @param request
+	 * @param resultSetType
+	 * @param resultSetConcurrency
+	 * @return the prepared statement
+	 * @throws SQLException
+	 */
+	public synchronized PreparedStatement acquire(Connection connection, String request, int resultSetType, int resultSetConcurrency) throws SQLException {
+		PreparedStatement preparedStatement = this.statements.remove(getKey(request, resultSetType));
+
+		if ( preparedStatement != null && !preparedStatement.isClosed() ) {
+			++this.hits;
+			return preparedStatement;
+		}
+
+		++this.misses;
+		return connection.prepareStatement(request, resultSetType, resultSetConcurrency);
+	}
+
+	/**
+	 * Puts back a prepared statement in the cache
+	 * <br>The least recently used prepared statement is closed if the cache is full.
+	 * @param request
+	 * @param resultSetType
+	 * @param preparedStatement
+	 */
+	public synchronized void release(String request, int resultSetType, PreparedStatement preparedStatement) {
+		try {
+			if ( preparedStatement.isClosed() )
+				return;
+
+			preparedStatement.clearParameters();
+		} catch (SQLException err) {
+			logger.error("Cannot reset the PreparedStatement", err);
+			close(preparedStatement);
+			return;
+		}
+
+		// if the same request is already in the cache (nested requests), we keep only one prepared statement
+		PreparedStatement oldStatement = this.statements.put(getKey(request, resultSetType), preparedStatement);
+		if ( oldStatement != null && oldStatement != preparedStatement )
+			close(oldStatement);
+
+		Iterator<PreparedStatement> iterator = this.statements.values().iterator();
+		while ( this.statements.size() > this.maxSize && iterator.hasNext() ) {
+			close(iterator.next());
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Closes all the idle prepared statements
+	 */
+	public synchronized void clear() {
+		for ( PreparedStatement preparedStatement: this.statements.values() )
+			close(preparedStatement);
+		this.statements.clear();
+	}
+
+	/**
+	 * Closes all the idle prepared statements of a database connection (for instance when the database structure is modified)
+	 * @param connection
+	 */
+	public static void clear(Connection connection) {
+		DBStatementCache cache = get(connection);
+		if ( cache != null )
+			cache.clear();
+	}
+
+	private static void close(PreparedStatement preparedStatement) {
+		try {
+			preparedStatement.close();
+		} catch (SQLException err) {
+			logger.error("Cannot close the PreparedStatement", err);
+		}
+	}
+
+	/**
+	 * @return the number of idle prepared statements in the cache
+	 */
+	public synchronized int size() {
+		return this.statements.size();
+	}
+}
@@ -7,6 +7,14 @@
 package org.archicontribs.database.data;
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
@@ -63,6 +71,300 @@ public class DBChecksum {
 	private static final char startOfText = (char)2;
 	private static final char endOfText = (char)3;
 	
+	/**
+	 * Size of the buffers used to encode the fields before they are sent to the message digest
+	 */
+	private static final int bufferSize = 8192;
+	
+	/**
+	 * Platform's default charset, used by the new String(byte[]) constructor
+	 */
+	private static final Charset defaultCharset = Charset.defaultCharset();
+	
+	/**
+	 * UTF-8 bytes of the character that replaces the malformed bytes
+	 */
+	private static final byte[] utf8Replacement = "\uFFFD".getBytes(StandardCharsets.UTF_8);
+	
+	/**
+	 * UTF-8 bytes of the character of each byte value in the platform's default charset, packed in an int as (length << 24) | (byte1 << 16) | (byte2 << 8) | byte3<br>
+	 * If the platform's default charset is UTF-8, the bytes that start a multi-byte sequence are set to 0 as they must be decoded with the next bytes.<br>
+	 * The table is null if the platform's default charset is neither UTF-8 nor a single byte charset.
+	 */
+	private static final int[] defaultByteEncodings = getByteEncodings(defaultCharset);
+	
+	/**
+	 * @param charset
+	 * @return the UTF-8 bytes of the character of each byte value in the charset, or null if it is neither UTF-8 nor a single byte charset
+	 */
+	private static int[] getByteEncodings(Charset charset) {
+		int[] encodings = new int[256];
+		
+		// the well formed bytes are unchanged when decoded then encoded in UTF-8
+		if ( charset.equals(StandardCharsets.UTF_8) ) {
+			for ( int b = 0; b < 256; ++b ) {
+				if ( b < 0x80 )
+					encodings[b] = packEncoding(new byte[] {(byte)b});
+				else if ( (b < 0xC2) || (b > 0xF4) )
+					encodings[b] = packEncoding(utf8Replacement);		// continuation bytes and bytes that cannot start a sequence
+			}
+			return encodings;
+		}
+		
+		if ( !charset.canEncode() || (charset.newDecoder().maxCharsPerByte() != 1.0f) || (charset.newEncoder().maxBytesPerChar() != 1.0f) )
+			return null;
+		
+		// a single byte charset has got no state, so each byte is always decoded to the same character
+		for ( int b = 0; b < 256; ++b )
+			encodings[b] = packEncoding(new String(new byte[] {(byte)b}, charset).getBytes(StandardCharsets.UTF_8));
+		return encodings;
+	}
+	
+	/**
+	 * @param bytes the UTF-8 bytes of a character of the Basic Multilingual Plane (so 3 bytes long at most)
+	 * @return the bytes packed in an int as (length << 24) | (byte1 << 16) | (byte2 << 8) | byte3
+	 */
+	private static int packEncoding(byte[] bytes) {
+		int encoding = bytes.length << 24;
+		for ( int i = 0; i < bytes.length; ++i )
+			encoding |= (bytes[i] & 0xFF) << (16 - 8 * i);
+		return encoding;
+	}
+	
+	/**
+	 * Calculates a MD5 checksum by feeding the fields directly to a MessageDigest, without concatenating them in a StringBuilder.<br>
+	 * <br>
+	 * The bytes sent to the message digest are exactly the same as the UTF-8 bytes of the StringBuilder that was used before, so the checksums are unchanged:
+	 * <li>each field is surrounded by the startOfText and endOfText characters</li>
+	 * <li>the byte arrays are decoded using the platform's default charset as the new String(byte[]) constructor does</li>
+	 * <br>
+	 * The byte arrays are translated byte per byte when the default charset is UTF-8 or a single byte charset, else they are decoded then encoded in UTF-8.<br>
+	 * The encoders and buffers are reused, so there is one DigestBuilder per thread.
+	 */
+	static class DigestBuilder {
+		private final MessageDigest messageDigest;
+		private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		private final CharsetDecoder decoder;
+		private final int[] byteEncodings;
+		private final ByteBuffer byteBuffer = ByteBuffer.allocate(bufferSize);
+		private final CharBuffer charBuffer = CharBuffer.allocate(bufferSize);
+		
+		DigestBuilder() throws NoSuchAlgorithmException {
+			this(defaultCharset);
+		}
+		
+		/**
+		 * @param charset charset used to decode the byte arrays (the platform's default charset is used by the checksums, the other charsets are used by the tests)
+		 */
+		DigestBuilder(Charset charset) throws NoSuchAlgorithmException {
+			this.messageDigest = MessageDigest.getInstance("MD5");
+			this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+			this.byteEncodings = charset.equals(defaultCharset) ? defaultByteEncodings : getByteEncodings(charset);
+		}
+		
+		void reset() {
+			this.messageDigest.reset();
+		}
+		
+		/**
+		 * Adds a field
+		 */
+		void append(String value) {
+			this.messageDigest.update((byte)startOfText);
+			if ( value != null )
+				update(value);
+			this.messageDigest.update((byte)endOfText);
+		}
+		
+		/**
+		 * Adds a field, as if it was decoded with the platform's default charset, without creating any intermediate String
+		 */
+		void append(byte[] value) {
+			this.messageDigest.update((byte)startOfText);
+			if ( value != null ) {
+				if ( this.byteEncodings != null )
+					appendEncoded(value);
+				else
+					appendDecoded(value);
+			}
+			this.messageDigest.update((byte)endOfText);
+		}
+		
+		/**
+		 * Sends the UTF-8 bytes of the characters to the message digest, using the byteEncodings table<br>
+		 * When the default charset is UTF-8, the well formed sequences are sent as is and the malformed ones are replaced by the replacement character as the new String(byte[]) constructor does.
+		 */
+		private void appendEncoded(byte[] value) {
+			// the bytes are copied in a buffer as calling the message digest for each short sequence is much slower
+			byte[] buffer = this.byteBuffer.array();
+			int length = 0;
+			int i = 0;
+			while ( i < value.length ) {
+				// a sequence, or the replacement character, is 4 bytes long at most
+				if ( length > buffer.length - 4 ) {
+					this.messageDigest.update(buffer, 0, length);
+					length = 0;
+				}
+				
+				// the 3 bytes are always copied, the length tells how many of them are kept, this avoids unpredictable branches on binary data
+				int encoding = this.byteEncodings[value[i] & 0xFF];
+				if ( encoding != 0 ) {
+					buffer[length] = (byte)(encoding >>> 16);
+					buffer[length + 1] = (byte)(encoding >>> 8);
+					buffer[length + 2] = (byte)encoding;
+					length += encoding >>> 24;
+					++i;
+					continue;
+				}
+				
+				int sequenceLength = getUtf8SequenceLength(value, i);
+				if ( sequenceLength > 0 ) {
+					System.arraycopy(value, i, buffer, length, sequenceLength);
+					length += sequenceLength;
+					i += sequenceLength;
+				} else {
+					System.arraycopy(utf8Replacement, 0, buffer, length, utf8Replacement.length);
+					length += utf8Replacement.length;
+					i -= sequenceLength;
+				}
+			}
+			this.messageDigest.update(buffer, 0, length);
+		}
+		
+		/**
+		 * Gets the length of the UTF-8 sequence that starts at the given index
+		 * @return the length of the sequence if it is well formed, or minus the number of bytes that the UTF-8 decoder replaces by a single replacement character if it is malformed
+		 */
+		private static int getUtf8SequenceLength(byte[] value, int index) {
+			int b1 = value[index] & 0xFF;
+			int remaining = value.length - index;
+			
+			if ( b1 < 0x80 )
+				return 1;
+			
+			if ( (b1 >= 0xC2) && (b1 <= 0xDF) ) {
+				if ( remaining < 2 )
+					return -remaining;
+				return isUtf8Continuation(value[index + 1]) ? 2 : -1;
+			}
+			
+			if ( (b1 >= 0xE0) && (b1 <= 0xEF) ) {
+				if ( remaining < 2 )
+					return -remaining;
+				int b2 = value[index + 1] & 0xFF;
+				if ( ((b1 == 0xE0) && (b2 < 0xA0)) || !isUtf8Continuation(b2) )
+					return -1;
+				if ( remaining < 3 )
+					return -remaining;
+				if ( !isUtf8Continuation(value[index + 2]) )
+					return -2;
+				// the surrogates are not valid characters
+				return ((b1 == 0xED) && (b2 >= 0xA0)) ? -3 : 3;
+			}
+			
+			if ( (b1 >= 0xF0) && (b1 <= 0xF4) ) {
+				if ( remaining < 2 )
+					return -remaining;
+				int b2 = value[index + 1] & 0xFF;
+				if ( ((b1 == 0xF0) && (b2 < 0x90)) || ((b1 == 0xF4) && (b2 > 0x8F)) || !isUtf8Continuation(b2) )
+					return -1;
+				if ( remaining < 3 )
+					return -remaining;
+				if ( !isUtf8Continuation(value[index + 2]) )
+					return -2;
+				if ( remaining < 4 )
+					return -remaining;
+				return isUtf8Continuation(value[index + 3]) ? 4 : -3;
+			}
+			
+			return -1;
+		}
+		
+		private static boolean isUtf8Continuation(int b) {
+			return (b & 0xC0) == 0x80;
+		}
+		
+		/**
+		 * Decodes the bytes with the platform's default charset and sends the resulting characters, encoded in UTF-8, to the message digest
+		 */
+		private void appendDecoded(byte[] value) {
+			ByteBuffer in = ByteBuffer.wrap(value);
+			boolean isDecoded = false;
+			
+			this.decoder.reset();
+			this.encoder.reset();
+			while ( !isDecoded ) {
+				CoderResult result = this.decoder.decode(in, this.charBuffer, true);
+				if ( result.isUnderflow() )
+					isDecoded = this.decoder.flush(this.charBuffer).isUnderflow();
+				this.charBuffer.flip();
+				// a high surrogate at the end of the buffer stays in the buffer until its low surrogate is decoded
+				encode(this.charBuffer, isDecoded);
+				this.charBuffer.compact();
+			}
+			this.charBuffer.clear();
+			flushEncoder();
+		}
+		
+		/**
+		 * Adds characters, encoded in UTF-8
+		 */
+		void update(CharSequence chars) {
+			this.encoder.reset();
+			encode(CharBuffer.wrap(chars), true);
+			flushEncoder();
+		}
+		
+		/**
+		 * @return the hexadecimal representation of the checksum
+		 */
+		String digest() {
+			return toHexString(this.messageDigest.digest());
+		}
+		
+		private void encode(CharBuffer in, boolean endOfInput) {
+			CoderResult result;
+			do {
+				result = this.encoder.encode(in, this.byteBuffer, endOfInput);
+				updateDigest();
+			} while ( result.isOverflow() );
+		}
+		
+		private void flushEncoder() {
+			CoderResult result;
+			do {
+				result = this.encoder.flush(this.byteBuffer);
+				updateDigest();
+			} while ( result.isOverflow() );
+		}
+		
+		private void updateDigest() {
+			this.messageDigest.update(this.byteBuffer.array(), 0, this.byteBuffer.position());
+			this.byteBuffer.clear();
+		}
+	}
+	
+	private static final ThreadLocal<DigestBuilder> digestBuilders = new ThreadLocal<DigestBuilder>();
+	
+	/**
+	 * @return the DigestBuilder of the current thread, ready to calculate a new checksum
+	 * @throws NoSuchAlgorithmException
+	 */
+	static DigestBuilder getDigestBuilder() throws NoSuchAlgorithmException {
+		DigestBuilder digestBuilder = digestBuilders.get();
+		if ( digestBuilder == null ) {
+			try {
+				digestBuilder = new DigestBuilder();
+			} catch (NoSuchAlgorithmException e) {
+				DBGui.popup(Level.ERROR, "Failed to calculate checksum.", e);
+				throw e;
+			}
+			digestBuilders.set(digestBuilder);
+		}
+		digestBuilder.reset();
+		return digestBuilder;
+	}
+	
 	/**
 	 * Calculate the checksum of a model.<br>
 	 * Please note that this method is *NOT* recursive: the checksum only considers the information of the model itself.
@@ -73,14 +375,14 @@ public class DBChecksum {
 	 * @throws UnsupportedEncodingException 
 	 */
 	public static String calculateChecksum(IArchimateModel model, String releaseNote) throws NoSuchAlgorithmException, UnsupportedEncodingException {
-		StringBuilder checksumBuilder = new StringBuilder();
+		DigestBuilder checksumBuilder = getDigestBuilder();
 		
 		append(checksumBuilder, "id", model.getId());
 		append(checksumBuilder, "name", model.getName());
 		append(checksumBuilder, "purpose", model.getPurpose());
 		append(checksumBuilder, "note", releaseNote);
 		
-		return calculateChecksum(checksumBuilder);
+		return checksumBuilder.digest();
 	}
 
 	/**
@@ -92,7 +394,7 @@ public class DBChecksum {
 	 * @throws UnsupportedEncodingException 
 	 */
 	public static String calculateChecksum(EObject eObject) throws NoSuchAlgorithmException, UnsupportedEncodingException {
-		StringBuilder checksumBuilder = new StringBuilder();
+		DigestBuilder checksumBuilder = getDigestBuilder();
 		DBMetadata dbMetadata = DBMetadata.getDBMetadata(eObject);
 		
 		if ( eObject instanceof IIdentifier )						append(checksumBuilder, "id", ((IIdentifier)eObject).getId());
@@ -172,19 +474,23 @@ public class DBChecksum {
 		        													}
 		}
 		
-		return calculateChecksum(checksumBuilder);
+		return checksumBuilder.digest();
 	}
 	
-	/**
-	 * Adds the value to the StringBuilder that will be used to calculate the checksum.
-	 * @param sb StringBuilder that will be used to calculate the checksum
-	 * @param name was used for log purpose but is not used anymore
-	 * @param value value to add
-	 */
-	public static void append(StringBuilder sb, String name, String value) {
-		String sValue = (value == null ? "" : value);
-
-	    sb.append(startOfText+sValue+endOfText);
+	private static void append(DigestBuilder digestBuilder, String name, String value) {
+		digestBuilder.append(value);
+	}
+	
+	private static void append(DigestBuilder digestBuilder, String name, byte[] value) {
+		digestBuilder.append(value);
+	}
+	
+	private static void append(DigestBuilder digestBuilder, String name, int value) {
+		digestBuilder.append(String.valueOf(value));
+	}
+	
+	private static void append(DigestBuilder digestBuilder, String name, boolean value) {
+		digestBuilder.append(String.valueOf(value));
 	}
 	
 	/**
@@ -193,10 +499,11 @@ public class DBChecksum {
 	 * @param name was used for log purpose but is not used anymore
 	 * @param value value to add
 	 */
-	public static void append(StringBuilder sb, String name, byte[] value) {
-		String sValue = (value == null ? "" : new String(value));
-
-	    append(sb, name, sValue);
+	public static void append(StringBuilder sb, String name, String value) {
+	    sb.append(startOfText);
+	    if ( value != null )
+	    	sb.append(value);
+	    sb.append(endOfText);
 	}
 	
 	/**
@@ -227,7 +534,9 @@ public class DBChecksum {
 	 * @throws UnsupportedEncodingException 
 	 */
 	public static String calculateChecksum(StringBuilder input) throws NoSuchAlgorithmException, UnsupportedEncodingException {
-		return calculateChecksum(input.toString().getBytes("UTF-8"));
+		DigestBuilder digestBuilder = getDigestBuilder();
+		digestBuilder.update(input);
+		return digestBuilder.digest();
 	}
 	
 	/**
@@ -252,27 +561,34 @@ public class DBChecksum {
 	    	return null;
 	    
         MessageDigest md;
-        StringBuilder md5 = new StringBuilder();
 	    
 		try {
 
 			md = MessageDigest.getInstance("MD5");
 	    	md.update(bytes);
-	    	
-	    	byte[] digest = md.digest();
-
-	    	for (int i = 0; i < digest.length; i++) {
-	    	    if ((0xff & digest[i]) < 0x10) {
-	    	    	md5.append("0").append(Integer.toHexString((0xFF & digest[i])));
-	    	    } else {
-	    	    	md5.append(Integer.toHexString(0xFF & digest[i]));
-	    	    }
-	    	}
 		} catch (NoSuchAlgorithmException e) {
 			DBGui.popup(Level.ERROR, "Failed to calculate checksum.", e);
 			throw e;
 		}
 
-		return md5.toString();
+		return toHexString(md.digest());
+	}
+	
+	/**
+	 * @param digest
+	 * @return the hexadecimal representation of the digest
+	 */
+	static String toHexString(byte[] digest) {
+		StringBuilder md5 = new StringBuilder(digest.length * 2);
+		
+    	for (int i = 0; i < digest.length; i++) {
+    	    if ((0xff & digest[i]) < 0x10) {
+    	    	md5.append("0").append(Integer.toHexString((0xFF & digest[i])));
+    	    } else {
+    	    	md5.append(Integer.toHexString(0xFF & digest[i]));
+    	    }
+    	}
+    	
+    	return md5.toString();
 	}
 }
@@ -9,22 +9,29 @@ package org.archicontribs.database.model;
 import java.io.UnsupportedEncodingException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.archicontribs.database.DBLogger;
 import org.archicontribs.database.DBPlugin.CONFLICT_CHOICE;
 import org.archicontribs.database.data.DBChecksum;
 import org.archicontribs.database.data.DBVersion;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EContentAdapter;
 
 import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.model.FolderType;
 import com.archimatetool.model.IArchimateConcept;
 import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IArchimateRelationship;
 import com.archimatetool.model.IConnectable;
 import com.archimatetool.model.IDiagramModel;
@@ -233,6 +240,19 @@ public class DBArchimateModel extends com.archimatetool.model.impl.ArchimateMode
      */
     @Getter private Map<EObject, CONFLICT_CHOICE> allConflicts = new LinkedHashMap<EObject, CONFLICT_CHOICE>();
     
+    /**
+     * IDs of the folders whose content differs from the latest version of the model in the database, set by the export process.<br>
+     * The memberships of the components of the other folders are copied from the latest version of the model rather than sent one by one.<br>
+     * Null if all the memberships must be sent to the database.
+     */
+    @Getter @Setter private Set<String> changedFolders = null;
+    
+    /**
+     * Checksums of the subtrees of the model's Merkle tree, indexed by the folders IDs, set by the calculateRootChecksum method.<br>
+     * They are stored with the folders memberships so the comparison to the database only needs to descend into the subtrees that differ.
+     */
+    @Getter private Map<String, String> subtreeChecksums = new ConcurrentHashMap<String, String>();
+    
     /**
      * @return the list of all the image paths in the model.
      */
@@ -302,13 +322,94 @@ public class DBArchimateModel extends com.archimatetool.model.impl.ArchimateMode
         return null;
     }
 
+    /**
+     * Adapter that marks the modified components, and all their containers, as dirty so that the {@link #countAllObjects()} method recalculates only their checksums.<br>
+     * It is attached to the model by the first call to countAllObjects() as there is no cached checksum to invalidate before.
+     */
+    private EContentAdapter checksumAdapter = null;
+    
+    /**
+     * Set to true when the ID of a component is changed, as the checksums of all the components that reference it are outdated
+     */
+    private boolean allChecksumsDirty = false;
+    
+    private void addChecksumAdapter() {
+        this.checksumAdapter = new EContentAdapter() {
+            @Override
+            public void notifyChanged(Notification notification) {
+                super.notifyChanged(notification);
+                
+                if ( notification.isTouch() || (notification.getEventType() == Notification.REMOVING_ADAPTER) || !(notification.getNotifier() instanceof EObject) )
+                    return;
+                
+                if ( notification.getFeature() == IArchimatePackage.Literals.IDENTIFIER__ID ) {
+                    DBArchimateModel.this.allChecksumsDirty = true;
+                    return;
+                }
+                
+                // the checksum of the added components includes the ID of their container, and they may have been modified while they were not in the model
+                if ( (notification.getFeature() instanceof EReference) && ((EReference)notification.getFeature()).isContainment() ) {
+                    if ( notification.getNewValue() instanceof Collection<?> ) {
+                        for ( Object newValue: (Collection<?>)notification.getNewValue() )
+                            setSubtreeChecksumDirty(newValue);
+                    } else
+                        setSubtreeChecksumDirty(notification.getNewValue());
+                }
+                
+                setChecksumDirty((EObject)notification.getNotifier());
+            }
+        };
+        eAdapters().add(this.checksumAdapter);
+    }
+    
+    /**
+     * Marks the checksum of a component and of all its containers as dirty
+     */
+    private void setChecksumDirty(EObject eObject) {
+        for ( EObject obj = eObject; obj != null; obj = obj.eContainer() ) {
+            DBMetadata metadata = getExistingDBMetadata(obj);
+            if ( metadata != null )
+                metadata.setChecksumDirty();
+        }
+    }
+    
+    /**
+     * Marks the checksum of a component and of all its children as dirty
+     */
+    private void setSubtreeChecksumDirty(Object value) {
+        if ( !(value instanceof EObject) )
+            return;
+        
+        DBMetadata metadata = getExistingDBMetadata((EObject)value);
+        if ( metadata != null )
+            metadata.setChecksumDirty();
+        
+        TreeIterator<EObject> iterator = ((EObject)value).eAllContents();
+        while ( iterator.hasNext() ) {
+            metadata = getExistingDBMetadata(iterator.next());
+            if ( metadata != null )
+                metadata.setChecksumDirty();
+        }
+    }
+    
     /**
      * Counts the number of objects in the model.<br>
-     * At the same time, we calculate the current checksums
+     * At the same time, we calculate the current checksums.<br>
+     * <br>
+     * The checksums of the components that have not been modified since the previous call are not recalculated.
      * @throws Exception 
      */
     public void countAllObjects() throws Exception {
         resetCounters();
+        
+        if ( this.checksumAdapter == null )
+            addChecksumAdapter();
+        else if ( this.allChecksumsDirty ) {
+            if ( logger.isDebugEnabled() ) logger.debug("A component ID has been changed, all the checksums will be recalculated.");
+            for ( DBMetadata metadata: this.DBMetadataHashMap.values() )
+                metadata.setChecksumDirty();
+        }
+        this.allChecksumsDirty = false;
 
         if ( logger.isDebugEnabled() ) logger.debug("Counting objects in selected model.");
         // we iterate over the model components and store them in hash tables in order to count them and retrieve them more easily
@@ -345,13 +446,19 @@ public class DBArchimateModel extends com.archimatetool.model.impl.ArchimateMode
     public String countObject(EObject eObject, boolean mustCalculateChecksum) throws Exception, NoSuchAlgorithmException, UnsupportedEncodingException {
         StringBuilder checksumBuilder = null;
         DBMetadata objectMetadata = getDBMetadata(eObject);
+        String objectChecksum = null;
+        boolean isChecksumCached = false;
         int len = 0;
 
         if ( mustCalculateChecksum ) {
         	// if the eObject isa view and if it is not yet in the allViews map, then we empty the existing screenshot
         	if ( eObject instanceof IDiagramModel && (this.allViews.get(((IIdentifier)eObject).getId()) == null) )
         		objectMetadata.getScreenshot().dispose();
-            checksumBuilder = new StringBuilder(DBChecksum.calculateChecksum(eObject));
+        	
+        	// if neither the eObject nor its children have been modified, we reuse the checksums calculated during the previous count
+        	isChecksumCached = objectMetadata.isChecksumCached();
+        	objectChecksum = isChecksumCached ? objectMetadata.getCachedChecksum() : DBChecksum.calculateChecksum(eObject);
+            checksumBuilder = new StringBuilder(objectChecksum);
             len = checksumBuilder.length();
         }
 
@@ -365,14 +472,16 @@ public class DBArchimateModel extends com.archimatetool.model.impl.ArchimateMode
 										            	objectMetadata.getCurrentVersion().setContainerChecksum(checksum);
 										            	objectMetadata.getCurrentVersion().setChecksum(checksum);
 										            	objectMetadata.setChecksumValid(true);
-										                this.viewChecksum = new StringBuilder(checksumBuilder.toString());
+										            	// there is no need to concatenate the children checksums if the view checksum is cached
+										                this.viewChecksum = isChecksumCached ? null : new StringBuilder(checksumBuilder.toString());
 										            }
 										            
 										            for ( EObject child: ((IDiagramModel)eObject).getChildren() )
 										                countObject(child, mustCalculateChecksum);
 										            
 										            if ( mustCalculateChecksum ) {
-										                checksumBuilder = new StringBuilder(this.viewChecksum.toString());
+										            	if ( this.viewChecksum != null )
+										            		checksumBuilder = new StringBuilder(this.viewChecksum.toString());
 										                this.viewChecksum = null;
 										            }
 										            break;
@@ -473,9 +582,15 @@ public class DBArchimateModel extends com.archimatetool.model.impl.ArchimateMode
         }
 
         if ( mustCalculateChecksum ) {
-            // if the checksumBuilder contains a single checksum, then we get it
-            // else, we calculate a new checksum from the list of checksums
-            String checksum = (checksumBuilder.length() != len) ? DBChecksum.calculateChecksum(checksumBuilder) : checksumBuilder.toString();
+            String checksum;
+            if ( isChecksumCached )
+            	checksum = objectMetadata.getCachedSubtreeChecksum();
+            else {
+	            // if the checksumBuilder contains a single checksum, then we get it
+	            // else, we calculate a new checksum from the list of checksums
+	            checksum = (checksumBuilder.length() != len) ? DBChecksum.calculateChecksum(checksumBuilder) : checksumBuilder.toString();
+	            objectMetadata.setCachedChecksums(objectChecksum, checksum);
+            }
             objectMetadata.getCurrentVersion().setChecksum(checksum);
             return checksum;
         }
@@ -497,6 +612,57 @@ public class DBArchimateModel extends com.archimatetool.model.impl.ArchimateMode
         }
     };
     
+    private Comparator<EObject> idComparator = new Comparator<EObject>() {
+        @Override
+        public int compare(EObject o1, EObject o2) {
+            return ((IIdentifier)o1).getId().compareTo(((IIdentifier)o2).getId());
+        }
+    };
+    
+    /**
+     * Calculates the root of the model's Merkle tree.<br>
+     * <br>
+     * Each folder is hashed with its own checksum followed by the hashes of its sub-folders and the checksums of its elements, relationships and views, all sorted by ID.<br>
+     * As the views checksums already include their objects and connections, the root changes as soon as any component of the model changes.<br>
+     * <br>
+     * The current checksums must have been calculated by the countAllObjects method (and the views checksums recalculated with their screenshot if required).<br>
+     * The checksums of the subtrees are kept in the subtreeChecksums map.
+     * @return the root checksum
+     * @throws NoSuchAlgorithmException 
+     * @throws UnsupportedEncodingException 
+     */
+    public String calculateRootChecksum() throws NoSuchAlgorithmException, UnsupportedEncodingException {
+        this.subtreeChecksums.clear();
+        
+        // the release note is not part of the model content
+        StringBuilder rootBuilder = new StringBuilder(DBChecksum.calculateChecksum(this, ""));
+        
+        List<IFolder> sortedFolders = new ArrayList<IFolder>(getFolders());
+        sortedFolders.sort(this.idComparator);
+        for ( IFolder folder: sortedFolders )
+            rootBuilder.append(calculateSubtreeChecksum(folder));
+        
+        return DBChecksum.calculateChecksum(rootBuilder);
+    }
+    
+    private String calculateSubtreeChecksum(IFolder folder) throws NoSuchAlgorithmException, UnsupportedEncodingException {
+        StringBuilder subtreeBuilder = new StringBuilder(getDBMetadata(folder).getCurrentVersion().getChecksum());
+        
+        List<IFolder> sortedFolders = new ArrayList<IFolder>(folder.getFolders());
+        sortedFolders.sort(this.idComparator);
+        for ( IFolder subFolder: sortedFolders )
+            subtreeBuilder.append(calculateSubtreeChecksum(subFolder));
+        
+        List<EObject> sortedChildren = new ArrayList<EObject>(folder.getElements());
+        sortedChildren.sort(this.idComparator);
+        for ( EObject child: sortedChildren )
+            subtreeBuilder.append(getDBMetadata(child).getCurrentVersion().getChecksum());
+        
+        String subtreeChecksum = DBChecksum.calculateChecksum(subtreeBuilder);
+        this.subtreeChecksums.put(folder.getId(), subtreeChecksum);
+        return subtreeChecksum;
+    }
+    
     /**
      * register that an element has been copied during the import process. So we keep the its old and new ID.
      */
@@ -706,6 +872,20 @@ public class DBArchimateModel extends com.archimatetool.model.impl.ArchimateMode
 	 * HashMap containing the DBMetadata classes of model's components
 	 */
 	ConcurrentHashMap<String, DBMetadata> DBMetadataHashMap = new ConcurrentHashMap<String, DBMetadata>();
+	
+	/**
+	 * Gets the DBMetadata associated with an Archi component, without creating it if it does not exist yet.
+	 * @param obj : the Archi component
+	 * @return the associated DBMetadata class, or null if it does not exist
+	 */
+	private DBMetadata getExistingDBMetadata(EObject obj) {
+		if ( obj instanceof IIdentifier ) {
+			String objId = ((IIdentifier)obj).getId();
+			if ( objId != null )
+				return this.DBMetadataHashMap.get(objId);
+		}
+		return null;
+	}
     
     /**
      * Gets the DBMetadata associated with an Archi component. If it does not exist yet, it is automatically created.
@@ -0,0 +1,317 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+
+package org.archicontribs.database.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.archicontribs.database.DBDatabaseEntry;
+import org.archicontribs.database.DBLogger;
+import org.archicontribs.database.DBPlugin;
+import org.archicontribs.database.connection.DBDatabaseImportConnection;
+import org.archicontribs.database.data.DBChecksum;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.impl.ENotificationImpl;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
+
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.model.impl.ArchiveManager;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModelImageProvider;
+
+/**
+ * Archive manager that loads the images of a model imported from the database on demand<br>
+ * <br>
+ * When a model is imported, its images are only registered with the checksum of their content. The content of an image is got the first time it is needed
+ * (when a diagram that references it is rendered, when its bytes are requested or when the model is saved) from a local disk cache, or from the database if it is not in the cache.<br>
+ * When a diagram is rendered, the image is loaded by a background thread so that the display thread does not wait for the database: the diagram shows no image until it is loaded, then it is refreshed.<br>
+ * <br>
+ * The disk cache is located in the plugin's state location and is indexed by the checksum of the images content, so it is shared by all the models and all the databases.
+ *
+ * @author Herve Jouin
+ */
+public class DBArchiveManager extends ArchiveManager {
+	private static final DBLogger logger = new DBLogger(DBArchiveManager.class);
+
+	/**
+	 * Database from which the images are got
+	 */
+	private final DBDatabaseEntry databaseEntry;
+
+	/**
+	 * Model whose images are managed
+	 */
+	private final IArchimateModel model;
+
+	/**
+	 * Checksums of the images that are registered but not loaded yet, indexed by their path
+	 */
+	private final Map<String, String> pendingImages = new HashMap<String, String>();
+
+	/**
+	 * Paths of the images that are being loaded by the background thread
+	 */
+	private final Set<String> loadingImages = new HashSet<String>();
+
+	/**
+	 * Thread that loads the images requested by the display thread (it is stopped after 30 seconds of inactivity)
+	 */
+	private final ExecutorService imagesLoader = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+		@Override public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "DBLoadImage");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * @param model
+	 * @param databaseEntry database from which the images are got
+	 */
+	public DBArchiveManager(IArchimateModel model, DBDatabaseEntry databaseEntry) {
+		super(model);
+		this.model = model;
+		this.databaseEntry = databaseEntry;
+	}
+
+	/**
+	 * Creates the archive manager of a model imported from the database
+	 * @param model
+	 * @param databaseEntry database from which the model is imported
+	 * @return a DBArchiveManager if the "importImagesOnDemand" preference is set, else the Archi's default archive manager
+	 */
+	public static IArchiveManager createArchiveManager(IArchimateModel model, DBDatabaseEntry databaseEntry) {
+		if ( DBPlugin.INSTANCE.getPreferenceStore().getBoolean("importImagesOnDemand") )
+			return new DBArchiveManager(model, databaseEntry);
+		return IArchiveManager.FACTORY.createArchiveManager(model);
+	}
+
+	/**
+	 * Registers images that will be loaded on demand
+	 * @param checksums checksums of the images content, indexed by the images paths
+	 */
+	public synchronized void registerImages(Map<String, String> checksums) {
+		if ( logger.isDebugEnabled() ) logger.debug("Registering "+checksums.size()+" images to load on demand");
+		this.pendingImages.putAll(checksums);
+	}
+
+	/**
+	 * @return the number of images that are registered but not loaded yet
+	 */
+	public synchronized int countPendingImages() {
+		return this.pendingImages.size();
+	}
+
+	@Override
+	public byte[] getBytesFromEntry(String entryName) {
+		loadImage(entryName);
+		return super.getBytesFromEntry(entryName);
+	}
+
+	@Override
+	public Image createImage(String imagePath) throws Exception {
+		// the display thread does not wait for the database: the image is loaded in the background and the diagrams are refreshed once it is loaded
+		Display display = Display.getCurrent();
+		if ( display != null ) {
+			if ( loadImageInBackground(imagePath, display) )
+				return null;
+		} else
+			loadImage(imagePath);
+		return super.createImage(imagePath);
+	}
+
+	@Override
+	public List<String> getLoadedImagePaths() {
+		// the registered images are considered as part of the model, even if their content is not loaded yet
+		List<String> paths = new ArrayList<String>(super.getLoadedImagePaths());
+		synchronized (this) {
+			for ( String path: this.pendingImages.keySet() ) {
+				if ( !paths.contains(path) )
+					paths.add(path);
+			}
+		}
+		return paths;
+	}
+
+	@Override
+	public void saveModel() throws IOException {
+		// the images must be saved in the archive file with the model
+		loadAllImages();
+
+		// the model is not saved without its images, else they would be lost
+		int nbPendingImages = countPendingImages();
+		if ( nbPendingImages != 0 )
+			throw new IOException("Failed to load "+nbPendingImages+" image"+(nbPendingImages>1?"s":"")+" from the database "+this.databaseEntry.getName()+", the model has not been saved.");
+
+		super.saveModel();
+	}
+
+	/**
+	 * Loads all the images that are registered but not loaded yet
+	 */
+	public void loadAllImages() {
+		List<String> paths;
+		synchronized (this) {
+			paths = new ArrayList<String>(this.pendingImages.keySet());
+		}
+		for ( String path: paths )
+			loadImage(path);
+	}
+
+	/**
+	 * Loads an image if it is registered but not loaded yet
+	 * @param path
+	 */
+	private synchronized void loadImage(String path) {
+		String checksum = this.pendingImages.get(path);
+		if ( checksum == null )
+			return;
+
+		try {
+			byte[] content = getImageContent(path, checksum);
+			if ( content == null ) {
+				logger.error("Cannot load image "+path+": its content is not in the database");
+				this.pendingImages.remove(path);
+				return;
+			}
+			addLoadedImage(path, content);
+		} catch (Exception err) {
+			// the image stays registered, so that it can be loaded at a later time
+			logger.error("Failed to load image "+path, err);
+		}
+	}
+
+	/**
+	 * Loads an image in the background thread if it is registered but not loaded yet<br>
+	 * Once the image is loaded, the diagrams that reference it are refreshed by the display thread.
+	 * @param path
+	 * @param display
+	 * @return true if the image is not loaded yet
+	 */
+	private synchronized boolean loadImageInBackground(final String path, final Display display) {
+		final String checksum = this.pendingImages.get(path);
+		if ( checksum == null )
+			return false;
+
+		// the image may already be requested by another diagram
+		if ( !this.loadingImages.add(path) )
+			return true;
+
+		this.imagesLoader.execute(new Runnable() {
+			@Override public void run() {
+				byte[] content = null;
+				try {
+					content = getImageContent(path, checksum);
+					if ( content == null )
+						logger.error("Cannot load image "+path+": its content is not in the database");
+				} catch (Exception err) {
+					// the image stays registered, so that it can be loaded at a later time
+					logger.error("Failed to load image "+path, err);
+				}
+
+				final byte[] loadedContent = content;
+				if ( !display.isDisposed() ) {
+					display.asyncExec(new Runnable() {
+						@Override public void run() {
+							synchronized (DBArchiveManager.this) {
+								DBArchiveManager.this.loadingImages.remove(path);
+								// the image may have been loaded by the loadImage() method in the meantime
+								if ( (loadedContent == null) || !DBArchiveManager.this.pendingImages.containsKey(path) )
+									return;
+								addLoadedImage(path, loadedContent);
+							}
+							refreshDiagrams(path);
+						}
+					});
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Adds the content of a registered image in the archive manager (the caller must hold the lock)
+	 * @param path
+	 * @param content
+	 */
+	private void addLoadedImage(String path, byte[] content) {
+		this.pendingImages.remove(path);
+		super.addByteContentEntry(path, content);
+	}
+
+	/**
+	 * Gets the content of an image from the disk cache, or from the database if it is not in the cache (in which case the cache is updated)
+	 * @param path
+	 * @param checksum
+	 * @return the image content, or null if it is not in the database
+	 * @throws Exception
+	 */
+	private byte[] getImageContent(String path, String checksum) throws Exception {
+		File cacheFile = new File(getCacheFolder(), checksum);
+		byte[] content = null;
+
+		if ( cacheFile.exists() ) {
+			content = Files.readAllBytes(cacheFile.toPath());
+			// the cache file is ignored if it has been corrupted
+			if ( !DBPlugin.areEqual(checksum, DBChecksum.calculateChecksum(content)) ) {
+				logger.warn("The cached image "+cacheFile.getPath()+" is corrupted, the image is got from the database");
+				content = null;
+			} else if ( logger.isDebugEnabled() ) logger.debug("Loading image "+path+" from the cache");
+		}
+
+		if ( content == null ) {
+			if ( logger.isDebugEnabled() ) logger.debug("Loading image "+path+" from the database "+this.databaseEntry.getName());
+			try ( DBDatabaseImportConnection connection = new DBDatabaseImportConnection(this.databaseEntry) ) {
+				content = connection.getImageContentFromDatabase(checksum);
+			}
+			if ( content == null )
+				return null;
+
+			cacheFile.getParentFile().mkdirs();
+			Files.write(cacheFile.toPath(), content);
+		}
+
+		return content;
+	}
+
+	/**
+	 * Notifies the diagram components that reference an image so that their figure is refreshed (must be called from the display thread)
+	 * @param path
+	 */
+	private void refreshDiagrams(String path) {
+		Iterator<EObject> iterator = this.model.eAllContents();
+		while ( iterator.hasNext() ) {
+			EObject eObject = iterator.next();
+			if ( (eObject instanceof IDiagramModelImageProvider) && DBPlugin.areEqual(path, ((IDiagramModelImageProvider)eObject).getImagePath()) )
+				eObject.eNotify(new ENotificationImpl((InternalEObject)eObject, Notification.SET, IArchimatePackage.Literals.DIAGRAM_MODEL_IMAGE_PROVIDER__IMAGE_PATH, path, path));
+		}
+	}
+
+	/**
+	 * @return the folder of the images disk cache
+	 */
+	private static File getCacheFolder() {
+		return DBPlugin.INSTANCE.getStateLocation().append("images").toFile();
+	}
+}
@@ -113,6 +113,26 @@ public class DBMetadata  {
      * Used by views, set to false if some components are removed during the export process so their checksum needs to be recalculated
      */
     @Getter @Setter private boolean checksumValid = true;
+    
+    /**
+     * Set to true by the model's checksum adapter when the component, or one of its children, has been modified since its checksums have been calculated
+     */
+    @Getter private boolean checksumDirty = true;
+    
+    /**
+     * Checksum of the component itself, as calculated by {@link org.archicontribs.database.data.DBChecksum#calculateChecksum(EObject)}, kept while the component is not modified
+     */
+    @Getter private String cachedChecksum = null;
+    
+    /**
+     * Checksum of the component including its children, as calculated by {@link org.archicontribs.database.model.DBArchimateModel#countObject(EObject, boolean)}, kept while the component and its children are not modified
+     */
+    @Getter private String cachedSubtreeChecksum = null;
+    
+    /**
+     * Screenshot bytes that were used to calculate the cached checksum of a view (the screenshot is not part of the EMF model so its changes are not notified)
+     */
+    private byte[] cachedScreenshotBytes = null;
 
     public DBMetadata(EObject componentObject) {
         assert ( componentObject instanceof IIdentifier );
@@ -131,6 +151,35 @@ public class DBMetadata  {
         this.component = null;
         this.id = null;
     }
+    
+    /**
+     * Marks the cached checksums as outdated
+     */
+    public void setChecksumDirty() {
+        this.checksumDirty = true;
+    }
+    
+    /**
+     * Remembers the checksums of the component so that they do not need to be recalculated until the component is modified
+     * @param checksum the checksum of the component itself
+     * @param subtreeChecksum the checksum of the component including its children
+     */
+    public void setCachedChecksums(String checksum, String subtreeChecksum) {
+        this.cachedChecksum = checksum;
+        this.cachedSubtreeChecksum = subtreeChecksum;
+        this.cachedScreenshotBytes = (this.screenshot == null) ? null : this.screenshot.getBytes();
+        this.checksumDirty = false;
+    }
+    
+    /**
+     * @return true if the cached checksums can be used instead of recalculating them
+     */
+    public boolean isChecksumCached() {
+        return !this.checksumDirty
+                && (this.cachedChecksum != null)
+                && (this.cachedSubtreeChecksum != null)
+                && ((this.screenshot == null) || (this.screenshot.getBytes() == this.cachedScreenshotBytes));
+    }
 
     /**
      * Gives a status of the component regarding it's database version:<br>
@@ -129,9 +129,9 @@ public class DBImportViewObjectFromIdCommand extends CompoundCommand implements
             if ( this.newValues.get("image_path") != null ) {
                 IArchiveManager archiveMgr = (IArchiveManager)archimateModel.getAdapter(IArchiveManager.class);
                 if ( !archiveMgr.getLoadedImagePaths().contains((String)this.newValues.get("image_path")) ) {
-                    try ( DBSelect imageResult = new DBSelect(importConnection.getDatabaseEntry().getName(), importConnection.getConnection(), "SELECT image FROM "+importConnection.getSchemaPrefix()+"images WHERE path = ?", (String)this.newValues.get("image_path")) ) {
+                    try ( DBSelect imageResult = new DBSelect(importConnection.getDatabaseEntry().getName(), importConnection.getConnection(), "SELECT "+importConnection.getBlobSizeRequest("image")+" AS image_size, image FROM "+importConnection.getSchemaPrefix()+"images_content JOIN "+importConnection.getSchemaPrefix()+"images ON images.checksum = images_content.checksum WHERE path = ?", (String)this.newValues.get("image_path")) ) {
                         if ( imageResult.next() ) {
-                            this.newImageContent = imageResult.getBytes("image");
+                            this.newImageContent = imageResult.getBytes("image", "image_size", DBSelect.getMaxBlobSize());
                             logger.debug("   Importing image "+this.newValues.get("image_path")+" (size = "+this.newImageContent.length+")");
                             // TODO: the image content should be part of a cross instance array in order to be store only once in memory
                         }
@@ -95,6 +95,10 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
 	Composite compoNeo4jRelationships;
 	Button btnNeo4jStandardRelationships;
 	Button btnNeo4jTypedRelationships;
+	Label lblPostgresqlCopyMode;
+	Composite compoPostgresqlCopyMode;
+	Button btnPostgresqlCopyMode;
+	Button btnPostgresqlBatchMode;
 	Label lblServer;
 	Text txtServer;
 	Label lblPort;
@@ -869,6 +873,41 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
 		
 		this.compoExportViewsScreenshot.layout();
 		
+		this.lblPostgresqlCopyMode = new Label(this.grpDatabases, SWT.NONE);
+		this.lblPostgresqlCopyMode.setText("Export mode:");
+		this.lblPostgresqlCopyMode.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		fd = new FormData();
+		fd.top = new FormAttachment(this.lblExportViewsScreenshot, 10);
+		fd.left = new FormAttachment(this.lblExportViewsScreenshot, 0 , SWT.LEFT);
+		this.lblPostgresqlCopyMode.setLayoutData(fd);
+		this.lblPostgresqlCopyMode.setVisible(false);
+		this.lblPostgresqlCopyMode.setToolTipText("Please select how the models content is sent to the PostGreSQL database.");
+		
+		this.compoPostgresqlCopyMode = new Composite(this.grpDatabases, SWT.NONE);
+		this.compoPostgresqlCopyMode.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		this.compoPostgresqlCopyMode.setVisible(false);
+		fd = new FormData();
+		fd.top = new FormAttachment(this.lblPostgresqlCopyMode, 0, SWT.TOP);
+		fd.bottom = new FormAttachment(this.lblPostgresqlCopyMode, 0, SWT.BOTTOM);
+		fd.left = new FormAttachment(this.compoExportViewsScreenshot, 0, SWT.LEFT);
+		fd.right = new FormAttachment(this.txtName, 0, SWT.RIGHT);
+		this.compoPostgresqlCopyMode.setLayoutData(fd);
+		rl = new RowLayout();
+		rl.marginTop = 0;
+		rl.marginLeft = 0;
+		rl.spacing = 10;
+		this.compoPostgresqlCopyMode.setLayout(rl);
+		
+		this.btnPostgresqlBatchMode = new Button(this.compoPostgresqlCopyMode, SWT.RADIO);
+		this.btnPostgresqlBatchMode.setText("JDBC batches");
+		this.btnPostgresqlBatchMode.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		this.btnPostgresqlBatchMode.setToolTipText("The plugin will send the lines to the database using INSERT requests grouped in JDBC batches.");
+		
+		this.btnPostgresqlCopyMode = new Button(this.compoPostgresqlCopyMode, SWT.RADIO);
+		this.btnPostgresqlCopyMode.setText("COPY requests");
+		this.btnPostgresqlCopyMode.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		this.btnPostgresqlCopyMode.setToolTipText("The plugin will stream the lines of the models content (elements, relationships, folders and views in model, views content, properties, features and bendpoints) using \"COPY ... FROM STDIN\" requests.\n\nThis is much faster on large models.");
+		
 		this.btnSave = new Button(this.grpDatabases, SWT.NONE);
 		this.btnSave.setText("Save");
 		fd = new FormData();
@@ -915,7 +954,7 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
 		this.btnCheck.setVisible(false);
 
 
-		this.grpDatabases.setTabList(new Control[] {this.txtName, this.comboDriver, this.txtFile, this.btnBrowse, this.txtServer, this.txtPort, this.txtDatabase, this.txtSchema, this.txtUsername, this.txtPassword, this.compoExportViewsScreenshot, this.compoNeo4jMode, this.btnCheck, this.btnDiscard, this.btnSave});
+		this.grpDatabases.setTabList(new Control[] {this.txtName, this.comboDriver, this.txtFile, this.btnBrowse, this.txtServer, this.txtPort, this.txtDatabase, this.txtSchema, this.txtUsername, this.txtPassword, this.compoExportViewsScreenshot, this.compoPostgresqlCopyMode, this.compoNeo4jMode, this.btnCheck, this.btnDiscard, this.btnSave});
 
 		this.grpDatabases.layout();
 	}
@@ -968,6 +1007,7 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
 	    boolean isExpertMode = this.btnExpertMode.getSelection();
 		boolean isFile = this.comboDriver.getText().equalsIgnoreCase("sqlite");
 		boolean isNeo4j = this.comboDriver.getText().equalsIgnoreCase("neo4j");
+		boolean isPostgresql = this.comboDriver.getText().equalsIgnoreCase("postgresql");
 		boolean hasDatabaseName = !isFile && !isNeo4j;
 		boolean hasSchema = DBDatabase.get(this.comboDriver.getText()).hasSchema();
 		
@@ -1018,6 +1058,9 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
 		this.lblExportViewsScreenshot.setVisible(!isNeo4j);
 		this.compoExportViewsScreenshot.setVisible(!isNeo4j);
 		
+		this.lblPostgresqlCopyMode.setVisible(isPostgresql);
+		this.compoPostgresqlCopyMode.setVisible(isPostgresql);
+		
 		if ( this.comboDriver.getText().equalsIgnoreCase("ms-sql") ) {
 			this.txtUsername.setToolTipText("Leave username and password empty to use Windows integrated security");
 			this.txtPassword.setToolTipText("Leave username and password empty to use Windows integrated security");
@@ -1120,6 +1163,7 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
 		databaseEntry.setNeo4jNativeMode(this.btnNeo4jNativeMode.getSelection());
 		databaseEntry.setShouldEmptyNeo4jDB(this.btnNeo4jEmptyDB.getSelection());
 		databaseEntry.setNeo4jTypedRelationship(this.btnNeo4jTypedRelationships.getSelection());
+		databaseEntry.setPostgresqlCopyMode(this.btnPostgresqlCopyMode.getSelection());
 		databaseEntry.setExpertMode(this.btnExpertMode.getSelection());
 		databaseEntry.setJdbcConnectionString(this.txtJdbc.getText());
 
@@ -1149,6 +1193,8 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
 	        this.btnNeo4jDoNotEmptyDB.setSelection(true);
 	        this.btnNeo4jStandardRelationships.setSelection(true);
 	        this.btnNeo4jTypedRelationships.setSelection(false);
+	        this.btnPostgresqlCopyMode.setSelection(false);
+	        this.btnPostgresqlBatchMode.setSelection(true);
 	        this.btnExportViewsScreenshot.setSelection(false);
 			this.txtBorderWidth.setText("10");
 			this.txtScaleFactor.setText("100");
@@ -1180,6 +1226,8 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
             this.btnNeo4jDoNotEmptyDB.setSelection(!databaseEntry.shouldEmptyNeo4jDB());
             this.btnNeo4jStandardRelationships.setSelection(!databaseEntry.isNeo4jTypedRelationship());
             this.btnNeo4jTypedRelationships.setSelection(databaseEntry.isNeo4jTypedRelationship());
+            this.btnPostgresqlCopyMode.setSelection(databaseEntry.isPostgresqlCopyMode());
+            this.btnPostgresqlBatchMode.setSelection(!databaseEntry.isPostgresqlCopyMode());
             this.btnExportViewsScreenshot.setSelection(databaseEntry.isViewSnapshotRequired());
             this.btnDoNotExportViewsScreenshot.setSelection(!databaseEntry.isViewSnapshotRequired());
             this.txtBorderWidth.setText(String.valueOf(databaseEntry.getViewsImagesBorderWidth()));
@@ -1218,6 +1266,9 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
 		this.btnNeo4jDoNotEmptyDB.setEnabled(editMode);
 		this.btnNeo4jStandardRelationships.setEnabled(editMode);
 		this.btnNeo4jTypedRelationships.setEnabled(editMode);
+		
+		this.btnPostgresqlCopyMode.setEnabled(editMode);
+		this.btnPostgresqlBatchMode.setEnabled(editMode);
 	    
 	    this.btnExportViewsScreenshot.setEnabled(editMode);
 	    this.btnDoNotExportViewsScreenshot.setEnabled(editMode);
@@ -1343,6 +1394,8 @@ public class DBDatabaseEntryTableEditor extends FieldEditor {
 			this.btnShowPassword.setVisible(false);
 			this.lblExportViewsScreenshot.setVisible(false);
 			this.compoExportViewsScreenshot.setVisible(false);
+			this.lblPostgresqlCopyMode.setVisible(false);
+			this.compoPostgresqlCopyMode.setVisible(false);
 
 			this.btnSave.setVisible(false);
 			this.btnDiscard.setVisible(false);
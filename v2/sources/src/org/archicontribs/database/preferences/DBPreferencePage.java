@@ -35,6 +35,7 @@ import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Listener;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.swt.widgets.TabFolder;
 import org.eclipse.swt.widgets.TabItem;
 import org.eclipse.swt.widgets.Text;
@@ -80,6 +81,16 @@ public class DBPreferencePage extends FieldEditorPreferencePage	implements IWork
 	private Button btnTemplateImportMode;
 	private Button btnSharedImportMode;
 	private Button btnCopyImportMode;
+	private Spinner spnExportBatchSize;
+	private Spinner spnExportImagesThreads;
+	private Button btnCompareVersionsInTemporaryTable;
+	private Button btnImportViewsInSinglePass;
+	private Button btnImportImagesOnDemand;
+	private Button btnUseSearchIndex;
+	private Spinner spnMaxBlobSize;
+	private Spinner spnPreparedStatementCacheSize;
+	private Spinner spnConnectionPoolMaxSize;
+	private Spinner spnConnectionPoolIdleTimeout;
 	
 	DBLogger logger = new DBLogger(DBPreferencePage.class);
 	
@@ -375,6 +386,84 @@ public class DBPreferencePage extends FieldEditorPreferencePage	implements IWork
         fd.left = new FormAttachment(btnHelp, 10);
         helpLbl2.setLayoutData(fd);
 		
+		// ********************************* */
+		// * Performance tab  ************** */
+		// ********************************* */
+		// this tab has got no field editor to set the layout of its composite, so we set it ourselves
+		Composite performanceComposite = new Composite(this.tabFolder, SWT.NULL);
+		performanceComposite.setLayout(new GridLayout());
+		performanceComposite.setBackground(DBGui.GROUP_BACKGROUND_COLOR);
+        
+		TabItem performanceTabItem = new TabItem(this.tabFolder, SWT.NONE);
+		performanceTabItem.setText("  Performance  ");
+		performanceTabItem.setControl(performanceComposite);
+		
+		Group grpExport = new Group(performanceComposite, SWT.NONE);
+		grpExport.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		grpExport.setText("Export:");
+		grpExport.setLayout(new FormLayout());
+		grpExport.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+		
+		this.spnExportBatchSize = createSpinner(grpExport, null, "Lines sent together to the database (0 to disable batches):", "exportBatchSize", 100000);
+		this.spnExportImagesThreads = createSpinner(grpExport, this.spnExportBatchSize, "Threads preparing the images (0 to prepare them in the export thread):", "exportImagesThreads", 16);
+		
+		this.btnCompareVersionsInTemporaryTable = new Button(grpExport, SWT.CHECK);
+		this.btnCompareVersionsInTemporaryTable.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		this.btnCompareVersionsInTemporaryTable.setText("Compare the components versions in a temporary table of the database");
+		this.btnCompareVersionsInTemporaryTable.setSelection(preferenceStore.getBoolean("compareVersionsInTemporaryTable"));
+		fd = new FormData();
+		fd.top = new FormAttachment(this.spnExportImagesThreads, 5);
+		fd.left = new FormAttachment(0, 10);
+		fd.bottom = new FormAttachment(100, -5);
+		this.btnCompareVersionsInTemporaryTable.setLayoutData(fd);
+		
+		Group grpImport = new Group(performanceComposite, SWT.NONE);
+		grpImport.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		grpImport.setText("Import:");
+		grpImport.setLayout(new FormLayout());
+		grpImport.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+		
+		this.btnImportViewsInSinglePass = new Button(grpImport, SWT.CHECK);
+		this.btnImportViewsInSinglePass.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		this.btnImportViewsInSinglePass.setText("Import the content of all the views in a single pass");
+		this.btnImportViewsInSinglePass.setSelection(preferenceStore.getBoolean("importViewsInSinglePass"));
+		fd = new FormData();
+		fd.top = new FormAttachment(0, 5);
+		fd.left = new FormAttachment(0, 10);
+		this.btnImportViewsInSinglePass.setLayoutData(fd);
+		
+		this.btnImportImagesOnDemand = new Button(grpImport, SWT.CHECK);
+		this.btnImportImagesOnDemand.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		this.btnImportImagesOnDemand.setText("Import the images only when they are displayed");
+		this.btnImportImagesOnDemand.setSelection(preferenceStore.getBoolean("importImagesOnDemand"));
+		fd = new FormData();
+		fd.top = new FormAttachment(this.btnImportViewsInSinglePass, 5);
+		fd.left = new FormAttachment(0, 10);
+		this.btnImportImagesOnDemand.setLayoutData(fd);
+		
+		this.btnUseSearchIndex = new Button(grpImport, SWT.CHECK);
+		this.btnUseSearchIndex.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		this.btnUseSearchIndex.setText("Use a local index to search the components to import");
+		this.btnUseSearchIndex.setSelection(preferenceStore.getBoolean("useSearchIndex"));
+		fd = new FormData();
+		fd.top = new FormAttachment(this.btnImportImagesOnDemand, 5);
+		fd.left = new FormAttachment(0, 10);
+		this.btnUseSearchIndex.setLayoutData(fd);
+		
+		this.spnMaxBlobSize = createSpinner(grpImport, this.btnUseSearchIndex, "Maximum size of the images read in MB (0 for no limit):", "maxBlobSize", 2047);
+		((FormData)this.spnMaxBlobSize.getLayoutData()).bottom = new FormAttachment(100, -5);
+		
+		Group grpConnections = new Group(performanceComposite, SWT.NONE);
+		grpConnections.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		grpConnections.setText("Database connections:");
+		grpConnections.setLayout(new FormLayout());
+		grpConnections.setLayoutData(new GridData(SWT.FILL, SWT.TOP, true, false));
+		
+		this.spnPreparedStatementCacheSize = createSpinner(grpConnections, null, "Prepared statements cached per connection (0 to disable):", "preparedStatementCacheSize", 10000);
+		this.spnConnectionPoolMaxSize = createSpinner(grpConnections, this.spnPreparedStatementCacheSize, "Idle connections kept per database (0 to disable the pool):", "connectionPoolMaxSize", 32);
+		this.spnConnectionPoolIdleTimeout = createSpinner(grpConnections, this.spnConnectionPoolMaxSize, "Idle connections timeout in seconds:", "connectionPoolIdleTimeout", 86400);
+		((FormData)this.spnConnectionPoolIdleTimeout.getLayoutData()).bottom = new FormAttachment(100, -5);
+		
 		// ********************************* */
 		// * Logger tab  ******************* */
 		// ********************************* */
@@ -441,6 +530,38 @@ public class DBPreferencePage extends FieldEditorPreferencePage	implements IWork
         showLogger();
 	}
 	
+	/**
+	 * Creates a label and a spinner that shows the integer value of a preference
+	 * @param group group in which the label and the spinner are created
+	 * @param previousControl control under which the label and the spinner are created, or null if they are the first controls of the group
+	 * @param text text of the label
+	 * @param preferenceName name of the preference shown by the spinner
+	 * @param maximum maximum value of the spinner
+	 * @return the spinner
+	 */
+	private static Spinner createSpinner(Group group, Control previousControl, String text, String preferenceName, int maximum) {
+		Label label = new Label(group, SWT.NONE);
+		label.setBackground(DBGui.COMPO_BACKGROUND_COLOR);
+		label.setText(text);
+		
+		Spinner spinner = new Spinner(group, SWT.BORDER);
+		spinner.setMinimum(0);
+		spinner.setMaximum(maximum);
+		spinner.setSelection(preferenceStore.getInt(preferenceName));
+		FormData fd = new FormData();
+		fd.top = (previousControl == null) ? new FormAttachment(0, 5) : new FormAttachment(previousControl, 5);
+		fd.left = new FormAttachment(0, 400);
+		fd.right = new FormAttachment(0, 480);
+		spinner.setLayoutData(fd);
+		
+		fd = new FormData();
+		fd.top = new FormAttachment(spinner, 0, SWT.CENTER);
+		fd.left = new FormAttachment(0, 10);
+		label.setLayoutData(fd);
+		
+		return spinner;
+	}
+	
 	@Override
     public void propertyChange(PropertyChangeEvent event) {
 		super.propertyChange(event);
@@ -510,6 +631,16 @@ public class DBPreferencePage extends FieldEditorPreferencePage	implements IWork
     	preferenceStore.setValue("showIdInContextMenu", this.btnShoIdInContextMenu.getSelection());
     	preferenceStore.setValue("copySuffix", this.txtCopySuffix.getText());
     	preferenceStore.setValue("defaultImportMode", this.btnTemplateImportMode.getSelection() ? "template" : (this.btnSharedImportMode.getSelection() ? "shared" : "copy"));
+    	preferenceStore.setValue("exportBatchSize", this.spnExportBatchSize.getSelection());
+    	preferenceStore.setValue("exportImagesThreads", this.spnExportImagesThreads.getSelection());
+    	preferenceStore.setValue("compareVersionsInTemporaryTable", this.btnCompareVersionsInTemporaryTable.getSelection());
+    	preferenceStore.setValue("importViewsInSinglePass", this.btnImportViewsInSinglePass.getSelection());
+    	preferenceStore.setValue("importImagesOnDemand", this.btnImportImagesOnDemand.getSelection());
+    	preferenceStore.setValue("useSearchIndex", this.btnUseSearchIndex.getSelection());
+    	preferenceStore.setValue("maxBlobSize", this.spnMaxBlobSize.getSelection());
+    	preferenceStore.setValue("preparedStatementCacheSize", this.spnPreparedStatementCacheSize.getSelection());
+    	preferenceStore.setValue("connectionPoolMaxSize", this.spnConnectionPoolMaxSize.getSelection());
+    	preferenceStore.setValue("connectionPoolIdleTimeout", this.spnConnectionPoolIdleTimeout.getSelection());
     	
     	if ( this.table != null )
     	    this.table.store();
@@ -0,0 +1,141 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+
+package org.archicontribs.database.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the DigestBuilder calculates the same checksums as the StringBuilder that was used before, so that the checksums stored in the databases remain valid
+ *
+ * @author Herve Jouin
+ */
+public class DBChecksumTest {
+	private static final Charset[] charsets = {
+			StandardCharsets.UTF_8,
+			StandardCharsets.ISO_8859_1,
+			Charset.forName("windows-1252"),
+			Charset.forName("Shift_JIS"),
+			StandardCharsets.UTF_16
+	};
+
+	private static final String[] strings = {
+			null,
+			"",
+			"Application Component",
+			"\u00e9l\u00e9ment \u00e0 v\u00e9rifier, \u00e7a \u20ac",
+			"\u65e5\u672c\u8a9e\u306e\u30c6\u30ad\u30b9\u30c8",
+			"surrogate pair \ud83d\ude00 and \ud835\udc00",
+			"lone high surrogate \ud83d",
+			"\ude00 lone low surrogate",
+			"control characters \u0000 \u0002 \u0003",
+			repeat("long text \u00e9\u65e5\ud83d\ude00 ", 2000)
+	};
+
+	@Test
+	public void testStringsChecksumsAreUnchanged() throws Exception {
+		for ( String value: strings ) {
+			DBChecksum.DigestBuilder digestBuilder = new DBChecksum.DigestBuilder();
+			digestBuilder.append(value);
+
+			StringBuilder sb = new StringBuilder();
+			DBChecksum.append(sb, "value", value);
+
+			assertEquals(legacyChecksum(sb), digestBuilder.digest(), "checksum of \""+value+"\"");
+		}
+	}
+
+	@Test
+	public void testByteArraysChecksumsAreUnchanged() throws Exception {
+		for ( Charset charset: charsets ) {
+			for ( byte[] value: getByteArrays() ) {
+				DBChecksum.DigestBuilder digestBuilder = new DBChecksum.DigestBuilder(charset);
+				digestBuilder.append(value);
+
+				StringBuilder sb = new StringBuilder();
+				DBChecksum.append(sb, "value", value == null ? "" : new String(value, charset));
+
+				assertEquals(legacyChecksum(sb), digestBuilder.digest(), "checksum of a "+(value == null ? "null" : value.length+" bytes")+" array in "+charset);
+			}
+		}
+	}
+
+	@Test
+	public void testSeveralFieldsChecksumIsUnchanged() throws Exception {
+		DBChecksum.DigestBuilder digestBuilder = new DBChecksum.DigestBuilder();
+		StringBuilder sb = new StringBuilder();
+		for ( String value: strings ) {
+			digestBuilder.append(value);
+			DBChecksum.append(sb, "value", value);
+		}
+		for ( byte[] value: getByteArrays() ) {
+			digestBuilder.append(value);
+			DBChecksum.append(sb, "value", value == null ? "" : new String(value));
+		}
+
+		assertEquals(legacyChecksum(sb), digestBuilder.digest());
+	}
+
+	/**
+	 * Calculates the checksum the way it was calculated before the DigestBuilder
+	 */
+	private static String legacyChecksum(StringBuilder sb) throws Exception {
+		MessageDigest md = MessageDigest.getInstance("MD5");
+		md.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+		return DBChecksum.toHexString(md.digest());
+	}
+
+	/**
+	 * @return ASCII, multi-byte, surrogate pairs, malformed and binary byte arrays
+	 */
+	private static List<byte[]> getByteArrays() {
+		List<byte[]> byteArrays = new ArrayList<byte[]>();
+		byteArrays.add(null);
+		byteArrays.add(new byte[0]);
+		for ( String value: strings ) {
+			if ( value != null ) {
+				byteArrays.add(value.getBytes(StandardCharsets.UTF_8));
+				byteArrays.add(value.getBytes(StandardCharsets.ISO_8859_1));
+			}
+		}
+
+		// truncated and malformed UTF-8 sequences
+		byteArrays.add(new byte[] {(byte)0xC3});
+		byteArrays.add(new byte[] {(byte)0xE6, (byte)0x97});
+		byteArrays.add(new byte[] {(byte)0xF0, (byte)0x9F, (byte)0x98});
+		byteArrays.add(new byte[] {(byte)0xED, (byte)0xA0, (byte)0xBD, 'a'});
+		byteArrays.add(new byte[] {(byte)0xC0, (byte)0x80, (byte)0xF5, (byte)0xFF, (byte)0x80, 'a'});
+
+		// binary contents, like the views screenshots, longer than the DigestBuilder buffers
+		Random random = new Random(42);
+		for ( int i = 0; i < 200; ++i ) {
+			byte[] value = new byte[random.nextInt(64)];
+			random.nextBytes(value);
+			byteArrays.add(value);
+		}
+		byte[] value = new byte[100000];
+		random.nextBytes(value);
+		byteArrays.add(value);
+
+		return byteArrays;
+	}
+
+	private static String repeat(String value, int count) {
+		StringBuilder sb = new StringBuilder();
+		for ( int i = 0; i < count; ++i )
+			sb.append(value);
+		return sb.toString();
+	}
+}